@@ -143,9 +143,8 @@ exports.endSession = async (req, res) => {
                 if (studentWs.readyState === 1) { // Check if WebSocket.OPEN (using numeric value directly)
                     try {
                         studentWs.send(endMessage);
-                         // Consider a short delay before terminate? Not strictly necessary.
-                        studentWs.terminate(); // Disconnect student
-                        console.log(`Sent session_ending to student ${studentId} and terminated WS.`);
+                        studentWs.close(4410, 'Session ended.'); // Disconnect student; 4xxx: no reconnect
+                        console.log(`Sent session_ending to student ${studentId} and closed WS.`);
                     } catch (wsError) {
                         console.error(`Error sending end message or terminating WS for student ${studentId}:`, wsError);
                     }
@@ -158,7 +157,7 @@ exports.endSession = async (req, res) => {
         // Also disconnect teacher if connected
         if (sessionConnections && sessionConnections.teacher && sessionConnections.teacher.readyState === 1) {
             console.log(`Terminating teacher WebSocket connection for session ${code}.`);
-            sessionConnections.teacher.terminate();
+            sessionConnections.teacher.close(4410, 'Session ended.');
         }
         
         // Clean up the in-memory session entry
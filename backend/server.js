@@ -53,14 +53,15 @@ app.use("/api/session", sessionRoutes);
 
 // --- HTTP Server & WebSocket Server Setup ---
 const server = http.createServer(app);
-const wss = new WebSocketServer({ server });
+// Messages over 1 KB are deflated if the client agrees
+const wss = new WebSocketServer({ server, perMessageDeflate: { threshold: 1024 } });
 
 // Helper function to broadcast settings updates to all students in a session
 const broadcastSettingsUpdate = (sessionCode, updatePayload) => {
     const targetSession = sessionStore.getWebSocketSessions()[sessionCode]; // Use getter from sessionStore
     if (!targetSession || !targetSession.students) return;
     
-    const messageToSend = JSON.stringify({ type: 'settings_update', payload: updatePayload });
+    const messageToSend = JSON.stringify(sessionStore.recordSettingsChange(sessionCode, { type: 'settings_update', payload: updatePayload }));
     
     targetSession.students.forEach((studentWs) => {
         if (studentWs.readyState === 1) { // WebSocket.OPEN = 1
@@ -70,6 +71,9 @@ const broadcastSettingsUpdate = (sessionCode, updatePayload) => {
     console.log(`Broadcast settings update to session ${sessionCode}:`, updatePayload);
 };
 
+// Highest sequence number handled per client outbox journal ("userId:journalId"), to drop messages replayed twice
+const lastJournalSeq = new Map();
+
 wss.on('connection', (ws, req) => {
     console.log('WebSocket: Client attempting connection...');
 
@@ -92,6 +96,31 @@ wss.on('connection', (ws, req) => {
             return;
         }
 
+        if (messageData.type === 'batch') {
+            // Batched telemetry from a student agent: handle each message as if it had arrived on its own
+            const messages = messageData.payload && Array.isArray(messageData.payload.messages) ? messageData.payload.messages : [];
+            for (const inner of messages) {
+                if (inner && inner.type && inner.type !== 'batch') await handleMessage(inner);
+            }
+            return;
+        }
+
+        // Journaled messages carry seq and journal; acknowledge them, and skip ones already handled before a reconnect
+        const journalKey = typeof messageData.seq === 'number' && messageData.journal && ws.isAuthenticated
+            ? `${ws.userId}:${messageData.journal}` : null;
+        if (journalKey) {
+            const lastSeq = lastJournalSeq.get(journalKey) || 0;
+            if (messageData.seq > lastSeq) {
+                await handleMessage(messageData);
+                lastJournalSeq.set(journalKey, messageData.seq);
+            }
+            ws.send(JSON.stringify({ type: 'ack', payload: { seq: Math.max(messageData.seq, lastSeq), journal: messageData.journal } }));
+            return;
+        }
+        await handleMessage(messageData);
+    });
+
+    const handleMessage = async (messageData) => {
         const { type, payload, requestId } = messageData;
 
         const sendResponse = (status, data) => {
@@ -157,7 +186,7 @@ wss.on('connection', (ws, req) => {
                 if (!sessionData || !sessionData.isSessionOn) {
                     // Could happen if session ended between REST call and WS auth
                     ws.send(JSON.stringify({type: 'error', payload: {message: 'Session not found or inactive.'}}));
-                    ws.terminate();
+                    ws.close(4404, 'Session not found or inactive.'); // 4xxx: clients do not reconnect
                     return;
                 }
 
@@ -171,7 +200,7 @@ wss.on('connection', (ws, req) => {
                     if (currentSession.teacher && currentSession.teacher !== ws) {
                          console.log(`WebSocket: Replacing teacher WS for session ${ws.sessionCode}`);
                          currentSession.teacher.send(JSON.stringify({type: 'force_disconnect', payload: {message: 'Newer teacher connection established.'}}));
-                         currentSession.teacher.terminate();
+                         currentSession.teacher.close(4409, 'Replaced by a newer connection.'); // 4xxx: no reconnect
                     }
                     currentSession.teacher = ws;
                     console.log(`WebSocket: Teacher ${ws.userId} authenticated for session ${ws.sessionCode}`);
@@ -202,24 +231,35 @@ wss.on('connection', (ws, req) => {
                         console.log(`WebSocket: Replacing student WS for ${ws.userId} in session ${ws.sessionCode}`);
                         const oldWs = currentSession.students.get(ws.userId);
                         oldWs.send(JSON.stringify({type: 'force_disconnect', payload: {message: 'Newer student connection established.'}}));
-                        oldWs.terminate();
+                        oldWs.close(4409, 'Replaced by a newer connection.'); // 4xxx: no reconnect
                     }
                     currentSession.students.set(ws.userId, ws); // Store ws object which now contains details
                     console.log(`WebSocket: Student ${ws.studentName} (${ws.userId}) authenticated for session ${ws.sessionCode}`);
                     ws.send(JSON.stringify({ type: 'response', status: 'success', payload: { message: 'Authentication successful.' } })); 
 
-                    // Send initial settings to the newly authenticated student
-                    ws.send(JSON.stringify({ 
-                        type: 'initial_settings', 
-                        payload: { 
-                            sessionType: sessionData.sessionType, 
-                            blockUsb: sessionData.blockUsb,
-                            // Fetch app blacklist from the retrieved session data
-                            websiteBlacklist: sessionData.websiteBlacklist || [],
-                            websiteWhitelist: sessionData.websiteWhitelist || [],
-                            appBlacklist: sessionData.appBlacklist || [] // Use actual blacklist
-                        } 
-                    }));
+                    // A reconnecting student reports the last settings version it received; send only what it missed
+                    const missedChanges = sessionStore.getSettingsChangesSince(ws.sessionCode, payload.settingsVersion, payload.settingsEpoch);
+                    if (missedChanges) {
+                        missedChanges.forEach(change => ws.send(JSON.stringify(change)));
+                        ws.send(JSON.stringify({
+                            type: 'settings_resumed',
+                            payload: { ...sessionStore.getSettingsVersion(ws.sessionCode), missed: missedChanges.length }
+                        }));
+                    } else {
+                        // Send initial settings to the newly authenticated student
+                        ws.send(JSON.stringify({ 
+                            type: 'initial_settings', 
+                            payload: { 
+                                sessionType: sessionData.sessionType, 
+                                blockUsb: sessionData.blockUsb,
+                                // Fetch app blacklist from the retrieved session data
+                                websiteBlacklist: sessionData.websiteBlacklist || [],
+                                websiteWhitelist: sessionData.websiteWhitelist || [],
+                                appBlacklist: sessionData.appBlacklist || [], // Use actual blacklist
+                                ...sessionStore.getSettingsVersion(ws.sessionCode)
+                            } 
+                        }));
+                    }
 
                     // Notify teacher with student details (using details stored on ws object)
                     const teacherWs = currentSession.teacher;
@@ -270,7 +310,7 @@ wss.on('connection', (ws, req) => {
                     if (currentRole !== 'teacher') return sendResponse('error', { message: 'Permission denied.' });
                     const blacklistedAppsCollection_ga = MongoDBHelper.getCollection("blacklisted_apps");
                     const blacklistedApps_ga = await blacklistedAppsCollection_ga.find({ session_code: currentSessionCode, is_active: true }).toArray();
-                    ws.send(JSON.stringify({ type: 'response', status: 'success', payload: { apps: blacklistedApps_ga } })); 
+                    ws.send(JSON.stringify({ type: 'response', requestId, status: 'success', payload: { apps: blacklistedApps_ga } })); 
                     break;
 
                 case 'get_session_settings': // New handler for teacher
@@ -281,9 +321,9 @@ wss.on('connection', (ws, req) => {
                         { projection: { sessionType: 1, blockUsb: 1, websiteBlacklist: 1, websiteWhitelist: 1 } } // Fetch only needed fields
                     );
                     if (!currentSettings) {
-                        ws.send(JSON.stringify({ type: 'response', status: 'error', payload: { message: 'Session settings not found.' }})); 
+                        ws.send(JSON.stringify({ type: 'response', requestId, status: 'error', payload: { message: 'Session settings not found.' }})); 
                     } else {
-                        ws.send(JSON.stringify({ type: 'response', status: 'success', payload: currentSettings })); 
+                        ws.send(JSON.stringify({ type: 'response', requestId, status: 'success', payload: currentSettings })); 
                     }
                     break;
 
@@ -313,7 +353,7 @@ wss.on('connection', (ws, req) => {
                     
                     // Broadcast the updated list to ALL clients in the session (including teacher)
                     broadcastToSession(currentSessionCode, 
-                        { type: 'settings_update', payload: { [updateField]: sanitizedWebsites } }, 
+                        sessionStore.recordSettingsChange(currentSessionCode, { type: 'settings_update', payload: { [updateField]: sanitizedWebsites } }), 
                         null // Send to everyone, including original sender (teacher)
                     ); 
                     break;
@@ -365,10 +405,10 @@ wss.on('connection', (ws, req) => {
                     await sessionsCollection_aa.updateOne({ session_code: currentSessionCode }, { $inc: { blacklisted_apps: 1 } });
                          
                     // Send direct success response to teacher
-                    ws.send(JSON.stringify({ type: 'response', status: 'success', payload: { app: savedApp_aa } })); 
+                    ws.send(JSON.stringify({ type: 'response', requestId, status: 'success', payload: { app: savedApp_aa } })); 
                     
                     // Broadcast update to all clients
-                    broadcastToSession(currentSessionCode, { type: 'app_added', payload: { app_name: savedApp_aa.app_name } }, null);
+                    broadcastToSession(currentSessionCode, sessionStore.recordSettingsChange(currentSessionCode, { type: 'app_added', payload: { app_name: savedApp_aa.app_name } }), null);
                     break;
 
                 case 'delete_app': 
@@ -384,17 +424,17 @@ wss.on('connection', (ws, req) => {
                     const app_da = await blacklistedAppsCollection_da.findOne({ session_code: currentSessionCode, app_name: { $regex: new RegExp(`^${app_name_da}$`, 'i') }, is_active: true });
                     if (!app_da) {
                         // Send error directly
-                        ws.send(JSON.stringify({ type: 'response', status: 'error', payload: { message: 'App not found in active blacklist.' }})); 
+                        ws.send(JSON.stringify({ type: 'response', requestId, status: 'error', payload: { message: 'App not found in active blacklist.' }})); 
                     } else {
                         const result_da = await blacklistedAppsCollection_da.updateOne({ _id: app_da._id }, { $set: { is_active: false, removed_at: new Date() } });
                         if (!result_da.modifiedCount) throw new Error("Failed to update app status.");
                         await sessionsCollection_da.updateOne({ session_code: currentSessionCode }, { $inc: { blacklisted_apps: -1 } });
                              
                         // Send direct success response to teacher
-                        ws.send(JSON.stringify({ type: 'response', status: 'success', payload: { app_name: app_da.app_name } })); 
+                        ws.send(JSON.stringify({ type: 'response', requestId, status: 'success', payload: { app_name: app_da.app_name } })); 
                         
                         // Broadcast update to all clients
-                        broadcastToSession(currentSessionCode, { type: 'app_removed', payload: { app_name: app_da.app_name } }, null);
+                        broadcastToSession(currentSessionCode, sessionStore.recordSettingsChange(currentSessionCode, { type: 'app_removed', payload: { app_name: app_da.app_name } }), null);
                     }
                     break;
                     
@@ -474,9 +514,9 @@ wss.on('connection', (ws, req) => {
             } // End switch
         } catch (error) {
             console.error('WebSocket: Error handling message:', error);
-            ws.send(JSON.stringify({ type: 'error', payload: { message: 'Internal server error.' } }));
+            ws.send(JSON.stringify({ type: 'error', requestId, payload: { message: 'Internal server error.' } })); // requestId lets a waiting request fail at once
         }
-    });
+    };
 
     ws.on('close', () => {
         console.log(`WebSocket: Client disconnected (Authenticated: ${ws.isAuthenticated}, Role: ${ws.role}, UserID: ${ws.userId}, Session: ${ws.sessionCode})`);
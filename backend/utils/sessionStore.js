@@ -7,6 +7,13 @@
 // Structure: { sessionCode: { teacher: WebSocket | null, students: Map<userId, WebSocket> } }
 const sessions = {};
 
+// Versioned settings changes per session, so a reconnecting student can be sent only what it missed.
+// Versions live in memory only, so they are qualified by an epoch that changes with every server start.
+// Structure: { sessionCode: { version: number, history: Array<message> } }
+const SETTINGS_HISTORY_LIMIT = 200;
+const settingsEpoch = require('crypto').randomBytes(8).toString('hex');
+const settingsLogs = {};
+
 /**
  * Get access to all WebSocket sessions
  * @returns {Object} The sessions object
@@ -28,6 +35,47 @@ const removeSession = (sessionCode) => {
     if (sessions[sessionCode]) {
         delete sessions[sessionCode];
     }
+    delete settingsLogs[sessionCode];
+};
+
+/**
+ * Get the current settings version of a session
+ * @param {string} sessionCode The session code
+ * @returns {{settingsVersion: number, settingsEpoch: string}} Fields to add to a full settings payload
+ */
+const getSettingsVersion = (sessionCode) => ({
+    settingsVersion: settingsLogs[sessionCode] ? settingsLogs[sessionCode].version : 0,
+    settingsEpoch
+});
+
+/**
+ * Give a settings change message the session's next settings version and remember it
+ * @param {string} sessionCode The session code
+ * @param {Object} message A settings_update, app_added or app_removed message
+ * @returns {Object} The message with settingsVersion and settingsEpoch added to its payload
+ */
+const recordSettingsChange = (sessionCode, message) => {
+    const log = settingsLogs[sessionCode] || (settingsLogs[sessionCode] = { version: 0, history: [] });
+    log.version++;
+    const versioned = { ...message, payload: { ...message.payload, settingsVersion: log.version, settingsEpoch } };
+    log.history.push(versioned);
+    if (log.history.length > SETTINGS_HISTORY_LIMIT) log.history.shift();
+    return versioned;
+};
+
+/**
+ * Get the settings changes a client missed since the version it last received
+ * @param {string} sessionCode The session code
+ * @param {number} settingsVersion The client's last version
+ * @param {string} clientEpoch The epoch that version belongs to
+ * @returns {Array|null} The missed messages in order, or null if they are not all known and full settings are needed
+ */
+const getSettingsChangesSince = (sessionCode, settingsVersion, clientEpoch) => {
+    if (clientEpoch !== settingsEpoch || !Number.isInteger(settingsVersion) || settingsVersion < 0) return null;
+    const log = settingsLogs[sessionCode] || { version: 0, history: [] };
+    if (settingsVersion > log.version) return null;
+    const missed = log.history.filter(m => m.payload.settingsVersion > settingsVersion);
+    return missed.length === log.version - settingsVersion ? missed : null;
 };
 
 /**
@@ -47,5 +95,8 @@ module.exports = {
     getSession,
     removeSession,
     getAllSessionCodes,
-    getAllSessions
+    getAllSessions,
+    getSettingsVersion,
+    recordSettingsChange,
+    getSettingsChangesSince
 }; 
\ No newline at end of file
@@ -0,0 +1,295 @@
+package com.cmms;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared scheduler for the student agent's enforcement loops (apps, USB, websites).
+ * <p>
+ * All monitors register here instead of owning a thread or executor. Each task has its own interval range and
+ * jitter: after a run that found a violation the interval drops to the minimum, and every quiet run stretches it
+ * back towards the maximum. A task never runs concurrently with itself.
+ * <p>
+ * Ticks run on a small fixed pool. The few tasks that block (PowerShell and PnP queries, database and HTTP
+ * refreshes) are registered with {@link #registerBlocking}: their runs are handed to a separate executor with a
+ * bounded number of threads, so a slow query delays other blocking tasks at worst, never the quick monitors.
+ */
+public class EnforcementScheduler {
+
+    /**
+     * One unit of periodic enforcement work.
+     */
+    public interface EnforcementTask {
+        /**
+         * Runs one check.
+         *
+         * @return true if a violation was found (the task will be polled faster for a while).
+         */
+        boolean runOnce() throws Exception;
+    }
+
+    private static final int DEFAULT_THREADS = 2;
+    private static final int DEFAULT_BLOCKING_THREADS = 3;
+    private static final long BLOCKING_THREAD_KEEP_ALIVE_SECONDS = 60;
+    private static final double IDLE_BACKOFF_FACTOR = 1.5;
+    private static final EnforcementScheduler SHARED = new EnforcementScheduler(DEFAULT_THREADS, DEFAULT_BLOCKING_THREADS);
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ThreadPoolExecutor blockingExecutor;
+    private final List<TaskHandle> tasks = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param threads Threads running the ticks of all tasks.
+     */
+    public EnforcementScheduler(int threads) {
+        this(threads, DEFAULT_BLOCKING_THREADS);
+    }
+
+    /**
+     * @param threads Threads running the ticks of all tasks.
+     * @param blockingThreads Most threads running tasks registered with {@link #registerBlocking} at once; idle
+     *                        ones time out.
+     */
+    public EnforcementScheduler(int threads, int blockingThreads) {
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ScheduledThreadPoolExecutor(threads, r -> {
+            Thread t = new Thread(r, "Enforcement-" + counter.incrementAndGet());
+            t.setDaemon(true); // Allow JVM to exit even if a task is running
+            return t;
+        });
+        this.executor.setRemoveOnCancelPolicy(true);
+        AtomicInteger blockingCounter = new AtomicInteger();
+        this.blockingExecutor = new ThreadPoolExecutor(blockingThreads, blockingThreads,
+                BLOCKING_THREAD_KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "Enforcement-blocking-" + blockingCounter.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.blockingExecutor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return The process-wide scheduler used by the student agent.
+     */
+    public static EnforcementScheduler getShared() {
+        return SHARED;
+    }
+
+    /**
+     * Registers a task that runs at a fixed period (plus jitter).
+     */
+    public TaskHandle register(String name, EnforcementTask task, long periodMillis, double jitter) {
+        return register(name, task, periodMillis, periodMillis, jitter);
+    }
+
+    /**
+     * Registers an adaptive task and schedules its first run immediately.
+     *
+     * @param minIntervalMillis Interval used right after a violation.
+     * @param maxIntervalMillis Interval reached after a run of quiet checks.
+     * @param jitter Random spread applied to every delay, as a fraction (0.1 = +/-10%).
+     */
+    public TaskHandle register(String name, EnforcementTask task, long minIntervalMillis, long maxIntervalMillis, double jitter) {
+        return register(name, task, minIntervalMillis, maxIntervalMillis, jitter, false);
+    }
+
+    /**
+     * Registers an adaptive task whose runs block for a long time (external processes, database or HTTP calls), so
+     * they run on the blocking executor instead of the scheduling threads. Same parameters as
+     * {@link #register(String, EnforcementTask, long, long, double)}.
+     */
+    public TaskHandle registerBlocking(String name, EnforcementTask task, long minIntervalMillis, long maxIntervalMillis, double jitter) {
+        return register(name, task, minIntervalMillis, maxIntervalMillis, jitter, true);
+    }
+
+    private TaskHandle register(String name, EnforcementTask task, long minIntervalMillis, long maxIntervalMillis, double jitter,
+                                boolean blocking) {
+        TaskHandle handle = new TaskHandle(name, task, minIntervalMillis, Math.max(minIntervalMillis, maxIntervalMillis), jitter, blocking);
+        tasks.add(handle);
+        handle.schedule(0);
+        System.out.println("EnforcementScheduler: Registered " + (blocking ? "blocking " : "") + "task '" + name + "' ("
+                + minIntervalMillis + "-" + maxIntervalMillis + " ms).");
+        return handle;
+    }
+
+    /**
+     * @return Run-time metrics for every registered task.
+     */
+    public List<TaskStats> getStats() {
+        List<TaskStats> stats = new ArrayList<>();
+        for (TaskHandle handle : tasks) stats.add(handle.getStats());
+        return stats;
+    }
+
+    /**
+     * Handle for a registered task.
+     */
+    public class TaskHandle {
+        private final String name;
+        private final EnforcementTask task;
+        private final long minIntervalMillis;
+        private final long maxIntervalMillis;
+        private final double jitter;
+        private final boolean blocking;
+
+        private ScheduledFuture<?> next;
+        private boolean running;
+        private boolean rerunRequested;
+        private boolean cancelled;
+        private long currentIntervalMillis;
+
+        private long runs;
+        private long violations;
+        private long failures;
+        private long totalRunNanos;
+        private long maxRunNanos;
+        private long lastRunNanos;
+
+        private TaskHandle(String name, EnforcementTask task, long minIntervalMillis, long maxIntervalMillis, double jitter,
+                           boolean blocking) {
+            this.name = name;
+            this.task = task;
+            this.minIntervalMillis = minIntervalMillis;
+            this.maxIntervalMillis = maxIntervalMillis;
+            this.jitter = jitter;
+            this.blocking = blocking;
+            this.currentIntervalMillis = minIntervalMillis;
+        }
+
+        /**
+         * Runs the task as soon as possible, or right after the current run if one is in progress.
+         */
+        public synchronized void runNow() {
+            if (cancelled) return;
+            if (running) {
+                rerunRequested = true;
+                return;
+            }
+            schedule(0);
+        }
+
+        /**
+         * Stops future runs. A run already in progress is allowed to finish.
+         */
+        public synchronized void cancel() {
+            if (cancelled) return;
+            cancelled = true;
+            if (next != null) next.cancel(false);
+            tasks.remove(this);
+            System.out.println("EnforcementScheduler: Cancelled task '" + name + "'.");
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        public synchronized TaskStats getStats() {
+            return new TaskStats(name, runs, violations, failures, totalRunNanos, maxRunNanos, lastRunNanos, currentIntervalMillis);
+        }
+
+        private synchronized void schedule(long delayMillis) {
+            if (cancelled) return;
+            if (next != null) next.cancel(false);
+            Runnable run = blocking ? () -> blockingExecutor.execute(this::execute) : this::execute;
+            next = executor.schedule(run, delayMillis, TimeUnit.MILLISECONDS);
+        }
+
+        private void execute() {
+            synchronized (this) {
+                if (cancelled) return;
+                if (running) {
+                    rerunRequested = true;
+                    return;
+                }
+                running = true;
+                rerunRequested = false;
+            }
+
+            boolean violation = false;
+            boolean failed = false;
+            long start = System.nanoTime();
+            try {
+                violation = task.runOnce();
+            } catch (Exception e) {
+                failed = true;
+                System.err.println("EnforcementScheduler: Task '" + name + "' failed: " + e.getMessage());
+            }
+            long elapsed = System.nanoTime() - start;
+
+            synchronized (this) {
+                running = false;
+                runs++;
+                if (violation) violations++;
+                if (failed) failures++;
+                totalRunNanos += elapsed;
+                lastRunNanos = elapsed;
+                maxRunNanos = Math.max(maxRunNanos, elapsed);
+
+                // Adaptive interval: snap to the minimum after a violation, back off while idle
+                currentIntervalMillis = violation
+                        ? minIntervalMillis
+                        : Math.min(maxIntervalMillis, (long) Math.ceil(currentIntervalMillis * IDLE_BACKOFF_FACTOR));
+                schedule(rerunRequested ? 0 : withJitter(currentIntervalMillis));
+            }
+        }
+
+        private long withJitter(long interval) {
+            if (jitter <= 0) return interval;
+            double spread = interval * jitter;
+            return Math.max(1, Math.round(interval + ThreadLocalRandom.current().nextDouble(-spread, spread)));
+        }
+    }
+
+    /**
+     * Immutable run-time metrics for one task.
+     */
+    public static class TaskStats {
+        private final String name;
+        private final long runs;
+        private final long violations;
+        private final long failures;
+        private final long totalRunNanos;
+        private final long maxRunNanos;
+        private final long lastRunNanos;
+        private final long currentIntervalMillis;
+
+        TaskStats(String name, long runs, long violations, long failures, long totalRunNanos, long maxRunNanos,
+                  long lastRunNanos, long currentIntervalMillis) {
+            this.name = name;
+            this.runs = runs;
+            this.violations = violations;
+            this.failures = failures;
+            this.totalRunNanos = totalRunNanos;
+            this.maxRunNanos = maxRunNanos;
+            this.lastRunNanos = lastRunNanos;
+            this.currentIntervalMillis = currentIntervalMillis;
+        }
+
+        public String getName() { return name; }
+        public long getRuns() { return runs; }
+        public long getViolations() { return violations; }
+        public long getFailures() { return failures; }
+        public long getTotalRunNanos() { return totalRunNanos; }
+        public long getMaxRunNanos() { return maxRunNanos; }
+        public long getLastRunNanos() { return lastRunNanos; }
+        public long getCurrentIntervalMillis() { return currentIntervalMillis; }
+
+        public double getAverageRunMillis() {
+            return runs == 0 ? 0 : totalRunNanos / 1e6 / runs;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("TaskStats{name='%s', runs=%d, violations=%d, failures=%d, avg=%.2f ms, max=%.2f ms, interval=%d ms}",
+                    name, runs, violations, failures, getAverageRunMillis(), maxRunNanos / 1e6, currentIntervalMillis);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+package com.cmms.analytics;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Class-wide website analytics merged from the students' {@link DomainActivity} snapshots: the most visited
+ * domains across the class and the number of distinct domains, overall and per student.
+ * <p>
+ * Visit counts from every student go into one merged sketch, so memory for the top domains stays fixed however
+ * many students or visits there are; per student only the latest distinct-domain estimate is kept. Thread-safe.
+ */
+public class ClassDomainAnalytics {
+
+    // A few times the number of domains shown, so domains near the cut-off are not lost while merging
+    private static final int CANDIDATES = 256;
+
+    private final HeavyHitters visits = new HeavyHitters(DomainActivity.SKETCH_DEPTH, DomainActivity.SKETCH_WIDTH, CANDIDATES);
+    private final HyperLogLog distinct = new HyperLogLog(DomainActivity.HLL_PRECISION);
+    private final Map<String, Long> studentDistinct = new HashMap<>();
+    private long snapshots;
+
+    /**
+     * Adds one snapshot from a student.
+     *
+     * @throws IllegalArgumentException If the snapshot's sketches have other dimensions.
+     */
+    public synchronized void merge(String studentId, DomainActivity snapshot) {
+        visits.merge(snapshot.visits());
+        distinct.merge(snapshot.distinct());
+        studentDistinct.put(studentId, snapshot.distinct().cardinality());
+        snapshots++;
+    }
+
+    /**
+     * @return Up to n domains with their estimated visit counts, most visited first.
+     */
+    public synchronized List<Map.Entry<String, Long>> topDomains(int n) {
+        return visits.top(n);
+    }
+
+    public synchronized long getTotalVisits() {
+        return visits.getTotalCount();
+    }
+
+    public synchronized long getDistinctDomains() {
+        return distinct.cardinality();
+    }
+
+    /**
+     * @return The student's latest distinct-domain estimate, or -1 if no snapshot has arrived from them.
+     */
+    public synchronized long getDistinctDomains(String studentId) {
+        return studentDistinct.getOrDefault(studentId, -1L);
+    }
+
+    public synchronized long getSnapshotCount() {
+        return snapshots;
+    }
+
+    public synchronized void clear() {
+        visits.clear();
+        distinct.clear();
+        studentDistinct.clear();
+        snapshots = 0;
+    }
+}
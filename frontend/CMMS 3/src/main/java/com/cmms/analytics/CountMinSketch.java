@@ -0,0 +1,137 @@
+package com.cmms.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * Approximate counts for an unbounded set of items in fixed memory. An estimate is never below the true count and
+ * exceeds it by at most e/width of the total count with probability 1 - e^-depth.
+ * <p>
+ * Sketches with the same dimensions merge by adding their counters, so the merge of per-student sketches answers
+ * the same questions as one sketch fed every student's items. Not thread-safe.
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int width;
+    private final long[] counters;
+    private long totalCount;
+
+    /**
+     * @param depth Number of rows (independent hashes), e.g. 4.
+     * @param width Counters per row, a power of two.
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || depth > 16) throw new IllegalArgumentException("depth must be 1..16: " + depth);
+        if (width < 2 || Integer.bitCount(width) != 1) throw new IllegalArgumentException("width must be a power of two: " + width);
+        this.depth = depth;
+        this.width = width;
+        this.counters = new long[depth * width];
+    }
+
+    public void add(CharSequence item, long count) {
+        addHash(SketchHash.hash64(item), count);
+    }
+
+    /**
+     * Adds to an item given its {@link SketchHash} value.
+     */
+    void addHash(long hash, long count) {
+        if (count < 0) throw new IllegalArgumentException("count must not be negative: " + count);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + ((h1 + row * h2) & (width - 1))] += count;
+        }
+        totalCount += count;
+    }
+
+    public long estimate(CharSequence item) {
+        return estimateHash(SketchHash.hash64(item));
+    }
+
+    long estimateHash(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters[row * width + ((h1 + row * h2) & (width - 1))]);
+        }
+        return min;
+    }
+
+    /**
+     * Adds the other sketch's counts into this one.
+     *
+     * @throws IllegalArgumentException If the dimensions differ.
+     */
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge a " + other.depth + "x" + other.width + " sketch into " + depth + "x" + width);
+        }
+        for (int i = 0; i < counters.length; i++) counters[i] += other.counters[i];
+        totalCount += other.totalCount;
+    }
+
+    /**
+     * @return Sum of all counts added, exact.
+     */
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public void clear() {
+        Arrays.fill(counters, 0);
+        totalCount = 0;
+    }
+
+    /**
+     * Writes the sketch with variable-length counters, so a sparse sketch stays small.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        out.writeByte(depth);
+        out.writeInt(width);
+        writeVarLong(out, totalCount);
+        for (long counter : counters) writeVarLong(out, counter);
+    }
+
+    static CountMinSketch readFrom(DataInput in) throws IOException {
+        int depth = in.readUnsignedByte();
+        int width = in.readInt();
+        if (depth < 1 || depth > 16 || width < 2 || width > (1 << 20) || Integer.bitCount(width) != 1) {
+            throw new IOException("Bad count-min sketch dimensions " + depth + "x" + width);
+        }
+        CountMinSketch sketch = new CountMinSketch(depth, width);
+        sketch.totalCount = readVarLong(in);
+        for (int i = 0; i < sketch.counters.length; i++) sketch.counters[i] = readVarLong(in);
+        return sketch;
+    }
+
+    static void writeVarLong(DataOutput out, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            out.writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte((int) value);
+    }
+
+    static long readVarLong(DataInput in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return value;
+        }
+        throw new IOException("Malformed variable-length number");
+    }
+}
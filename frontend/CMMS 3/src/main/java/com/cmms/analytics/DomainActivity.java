@@ -0,0 +1,114 @@
+package com.cmms.analytics;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * One student's website activity as sketches: visit counts per domain ({@link HeavyHitters}) since the last
+ * snapshot, and the distinct domains visited ({@link HyperLogLog}) since the session started.
+ * <p>
+ * The agent records visits and periodically sends {@link #takeSnapshot()}; the dashboard decodes snapshots with
+ * {@link #decode(String)} and folds them into a {@link ClassDomainAnalytics}. Visit counts are sent as deltas so
+ * the dashboard can simply add them up, while the distinct-domain sketch is cumulative, which merging tolerates.
+ * A snapshot is a few kilobytes whatever the number of visits. Thread-safe.
+ */
+public class DomainActivity {
+
+    static final int SKETCH_DEPTH = 4;
+    static final int SKETCH_WIDTH = 2048;
+    static final int CANDIDATES = 64;
+    static final int HLL_PRECISION = 12;
+    private static final int MAGIC = 0x434D4441; // "CMDA"
+    private static final int VERSION = 1;
+
+    private final HeavyHitters visits;
+    private final HyperLogLog distinct;
+
+    public DomainActivity() {
+        this(new HeavyHitters(SKETCH_DEPTH, SKETCH_WIDTH, CANDIDATES), new HyperLogLog(HLL_PRECISION));
+    }
+
+    private DomainActivity(HeavyHitters visits, HyperLogLog distinct) {
+        this.visits = visits;
+        this.distinct = distinct;
+    }
+
+    public synchronized void record(String domain) {
+        long hash = SketchHash.hash64(domain);
+        visits.add(domain, hash, 1);
+        distinct.addHash(hash);
+    }
+
+    /**
+     * @return Visits recorded since the last snapshot.
+     */
+    public synchronized long getPendingVisits() {
+        return visits.getTotalCount();
+    }
+
+    public synchronized long getDistinctDomains() {
+        return distinct.cardinality();
+    }
+
+    /**
+     * Encodes the current sketches and starts a new visit count; the distinct-domain sketch carries on.
+     *
+     * @return The snapshot as Base64 text for a JSON message.
+     */
+    public synchronized String takeSnapshot() {
+        String encoded = encode();
+        visits.clear();
+        return encoded;
+    }
+
+    synchronized String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(4096);
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+        try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(bytes, deflater, 8192))) {
+            out.writeInt(MAGIC);
+            out.writeByte(VERSION);
+            visits.writeTo(out);
+            distinct.writeTo(out);
+        } catch (IOException e) {
+            throw new IllegalStateException("In-memory write failed", e);
+        } finally {
+            deflater.end();
+        }
+        return Base64.getEncoder().encodeToString(bytes.toByteArray());
+    }
+
+    /**
+     * @throws IOException If the text is not a snapshot of this format.
+     */
+    public static DomainActivity decode(String snapshot) throws IOException {
+        byte[] bytes;
+        try {
+            bytes = Base64.getDecoder().decode(snapshot);
+        } catch (IllegalArgumentException e) {
+            throw new IOException("Snapshot is not Base64", e);
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+                new InflaterInputStream(new ByteArrayInputStream(bytes)), 8192))) {
+            if (in.readInt() != MAGIC) throw new IOException("Not a domain activity snapshot");
+            int version = in.readUnsignedByte();
+            if (version != VERSION) throw new IOException("Unsupported snapshot version " + version);
+            return new DomainActivity(HeavyHitters.readFrom(in), HyperLogLog.readFrom(in));
+        }
+    }
+
+    HeavyHitters visits() {
+        return visits;
+    }
+
+    HyperLogLog distinct() {
+        return distinct;
+    }
+}
@@ -0,0 +1,166 @@
+package com.cmms.analytics;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+
+/**
+ * Manual check and benchmark for the domain analytics sketches.
+ * <p>
+ * Simulates a class of students visiting domains drawn from a Zipf distribution (plus a few personal domains
+ * each), sends every student's {@link DomainActivity} snapshots through the encoded form into one
+ * {@link ClassDomainAnalytics}, and compares the result with exact counts: the top-20 domains and their counts,
+ * and the distinct-domain estimates per student and for the class (exits with status 1 if they are off by more
+ * than the sketches' error bounds). Then reports snapshot size, dashboard memory against exact maps, and the cost
+ * of recording a visit and merging a snapshot.
+ * Run with: java com.cmms.analytics.DomainAnalyticsBenchmark [students]
+ */
+public class DomainAnalyticsBenchmark {
+
+    private static final int DOMAINS = 50_000;
+    private static final int VISITS_PER_ROUND = 2_000;
+    private static final int ROUNDS = 3;
+    private static final int TOP = 20;
+
+    public static void main(String[] args) throws Exception {
+        int students = args.length > 0 ? Integer.parseInt(args[0]) : 500;
+        Random random = new Random(42);
+        String[] domains = new String[DOMAINS];
+        for (int i = 0; i < DOMAINS; i++) domains[i] = "d" + i + ".site" + (i % 251) + ".example";
+        double[] cdf = zipfCdf(DOMAINS, 1.1);
+
+        long heapBefore = usedHeap();
+        ClassDomainAnalytics analytics = new ClassDomainAnalytics();
+        long analyticsHeap = usedHeap() - heapBefore;
+        DomainActivity[] agents = new DomainActivity[students];
+        for (int s = 0; s < students; s++) agents[s] = new DomainActivity();
+
+        heapBefore = usedHeap();
+        Map<String, Long> exactCounts = new HashMap<>();
+        Set<String> exactClass = new HashSet<>();
+        List<Set<String>> exactStudents = new ArrayList<>();
+        for (int s = 0; s < students; s++) exactStudents.add(new HashSet<>());
+        long snapshotBytes = 0;
+        long snapshots = 0;
+        long recordNanos = 0;
+        long mergeNanos = 0;
+        long visits = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            for (int s = 0; s < students; s++) {
+                String[] batch = new String[VISITS_PER_ROUND];
+                for (int v = 0; v < batch.length; v++) {
+                    batch[v] = v % 50 == 0 ? "own" + (v + round * 7) % 60 + ".student" + s + ".example"
+                            : domains[sample(cdf, random)];
+                    exactCounts.merge(batch[v], 1L, Long::sum);
+                    exactClass.add(batch[v]);
+                    exactStudents.get(s).add(batch[v]);
+                }
+                long start = System.nanoTime();
+                for (String domain : batch) agents[s].record(domain);
+                recordNanos += System.nanoTime() - start;
+                visits += batch.length;
+
+                String snapshot = agents[s].takeSnapshot();
+                snapshotBytes += snapshot.length();
+                snapshots++;
+                start = System.nanoTime();
+                analytics.merge("student" + s, DomainActivity.decode(snapshot));
+                mergeNanos += System.nanoTime() - start;
+            }
+        }
+        long exactHeap = usedHeap() - heapBefore; // The merged sketches do not grow; only the exact maps do
+
+        if (!verify(analytics, exactCounts, exactClass, exactStudents, visits)) {
+            System.err.println("Domain analytics verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("Top domains and distinct counts OK");
+
+        System.out.printf("%d students, %,d visits, %,d distinct domains, %d snapshots%n",
+                students, visits, exactClass.size(), snapshots);
+        System.out.println("Class top 5: " + analytics.topDomains(5));
+
+        System.out.printf("Snapshot: %,d bytes on average (Base64)%n", snapshotBytes / snapshots);
+        System.out.printf("Dashboard memory: sketches %,d KB (fixed) vs exact maps %,d KB%n",
+                analyticsHeap >> 10, exactHeap >> 10);
+        System.out.printf("Record: %.0f ns per visit; decode and merge: %.2f ms per snapshot%n",
+                (double) recordNanos / visits, mergeNanos / 1e6 / snapshots);
+    }
+
+    private static boolean verify(ClassDomainAnalytics analytics, Map<String, Long> exactCounts, Set<String> exactClass,
+                                  List<Set<String>> exactStudents, long visits) {
+        boolean ok = true;
+        List<Map.Entry<String, Long>> exactTop = new ArrayList<>(exactCounts.entrySet());
+        exactTop.sort((a, b) -> Long.compare(b.getValue(), a.getValue()));
+        exactTop = exactTop.subList(0, TOP);
+        List<Map.Entry<String, Long>> top = analytics.topDomains(TOP);
+
+        Set<String> exactNames = new HashSet<>();
+        for (Map.Entry<String, Long> entry : exactTop) exactNames.add(entry.getKey());
+        int found = 0;
+        long bound = (long) Math.ceil(Math.E / DomainActivity.SKETCH_WIDTH * visits);
+        for (Map.Entry<String, Long> entry : top) {
+            if (exactNames.contains(entry.getKey())) found++;
+            long exact = exactCounts.getOrDefault(entry.getKey(), 0L);
+            if (entry.getValue() < exact || entry.getValue() > exact + bound) {
+                System.err.println("Estimate for " + entry.getKey() + " is " + entry.getValue() + ", exact " + exact);
+                ok = false;
+            }
+        }
+        // Domains near the cut-off may swap places within the error bound
+        if (found < TOP - 2) {
+            System.err.println("Top " + TOP + " recall " + found + ": " + top + " vs " + exactTop);
+            ok = false;
+        }
+        if (analytics.getTotalVisits() != visits) {
+            System.err.println("Total visits " + analytics.getTotalVisits() + ", expected " + visits);
+            ok = false;
+        }
+
+        double standardError = 1.04 / Math.sqrt(1 << DomainActivity.HLL_PRECISION);
+        ok &= checkDistinct("class", analytics.getDistinctDomains(), exactClass.size(), 4 * standardError);
+        double worst = 0;
+        for (int s = 0; s < exactStudents.size(); s++) {
+            long estimate = analytics.getDistinctDomains("student" + s);
+            worst = Math.max(worst, Math.abs(estimate - exactStudents.get(s).size()) / (double) exactStudents.get(s).size());
+        }
+        if (worst > 5 * standardError) {
+            System.err.printf("Worst per-student distinct error %.1f%%%n", worst * 100);
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static boolean checkDistinct(String what, long estimate, long exact, double tolerance) {
+        if (Math.abs(estimate - exact) <= exact * tolerance) return true;
+        System.err.println("Distinct domains (" + what + ") estimated " + estimate + ", exact " + exact);
+        return false;
+    }
+
+    private static double[] zipfCdf(int n, double exponent) {
+        double[] cdf = new double[n];
+        double sum = 0;
+        for (int i = 0; i < n; i++) {
+            sum += 1 / Math.pow(i + 1, exponent);
+            cdf[i] = sum;
+        }
+        for (int i = 0; i < n; i++) cdf[i] /= sum;
+        return cdf;
+    }
+
+    private static int sample(double[] cdf, Random random) {
+        int index = Arrays.binarySearch(cdf, random.nextDouble());
+        return Math.min(cdf.length - 1, index >= 0 ? index : -index - 1);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
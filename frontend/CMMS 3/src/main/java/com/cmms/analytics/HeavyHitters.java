@@ -0,0 +1,178 @@
+package com.cmms.analytics;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The most frequent items of a stream in fixed memory: a {@link CountMinSketch} for the counts plus a min-heap of
+ * the {@code capacity} items with the highest estimates so far.
+ * <p>
+ * Merging adds the sketches and offers the other side's candidates against the merged counts, so the heaps of many
+ * sources combine into the top items overall. An item that was never among any source's candidates cannot be
+ * found again; keep the capacity a few times larger than the number of items shown. Not thread-safe.
+ */
+public class HeavyHitters {
+
+    private final CountMinSketch sketch;
+    private final int capacity;
+    // Min-heap on counts; index maps each candidate to its heap position
+    private final String[] items;
+    private final long[] counts;
+    private final Map<String, Integer> index;
+    private int size;
+
+    public HeavyHitters(int depth, int width, int capacity) {
+        this(new CountMinSketch(depth, width), capacity);
+    }
+
+    private HeavyHitters(CountMinSketch sketch, int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        this.sketch = sketch;
+        this.capacity = capacity;
+        this.items = new String[capacity];
+        this.counts = new long[capacity];
+        this.index = new HashMap<>(capacity * 2);
+    }
+
+    public void add(String item, long count) {
+        add(item, SketchHash.hash64(item), count);
+    }
+
+    void add(String item, long hash, long count) {
+        sketch.addHash(hash, count);
+        offer(item, sketch.estimateHash(hash));
+    }
+
+    public long estimate(String item) {
+        return sketch.estimate(item);
+    }
+
+    /**
+     * @return Sum of all counts added, exact.
+     */
+    public long getTotalCount() {
+        return sketch.getTotalCount();
+    }
+
+    /**
+     * Merges the other counts into this one.
+     *
+     * @throws IllegalArgumentException If the sketch dimensions differ.
+     */
+    public void merge(HeavyHitters other) {
+        sketch.merge(other.sketch);
+        // Every estimate may have grown; refresh before comparing new candidates against the heap
+        for (int i = 0; i < size; i++) counts[i] = sketch.estimate(items[i]);
+        for (int i = size / 2 - 1; i >= 0; i--) siftDown(i);
+        for (int i = 0; i < other.size; i++) offer(other.items[i], sketch.estimate(other.items[i]));
+    }
+
+    /**
+     * @return Up to n items with their estimated counts, most frequent first.
+     */
+    public List<Map.Entry<String, Long>> top(int n) {
+        Integer[] order = new Integer[size];
+        for (int i = 0; i < size; i++) order[i] = i;
+        Arrays.sort(order, (a, b) -> Long.compare(counts[b], counts[a]));
+        List<Map.Entry<String, Long>> top = new ArrayList<>(Math.min(n, size));
+        for (int i = 0; i < Math.min(n, size); i++) {
+            top.add(new AbstractMap.SimpleImmutableEntry<>(items[order[i]], counts[order[i]]));
+        }
+        return top;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public void clear() {
+        sketch.clear();
+        Arrays.fill(items, null);
+        index.clear();
+        size = 0;
+    }
+
+    /**
+     * Writes the sketch and the candidate items; their counts are recomputed from the sketch when read.
+     */
+    void writeTo(DataOutput out) throws IOException {
+        sketch.writeTo(out);
+        out.writeInt(capacity);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) out.writeUTF(items[i]);
+    }
+
+    static HeavyHitters readFrom(DataInput in) throws IOException {
+        CountMinSketch sketch = CountMinSketch.readFrom(in);
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity < 1 || capacity > 1 << 16 || size < 0 || size > capacity) {
+            throw new IOException("Bad heavy hitter sizes " + size + "/" + capacity);
+        }
+        HeavyHitters heavyHitters = new HeavyHitters(sketch, capacity);
+        for (int i = 0; i < size; i++) {
+            String item = in.readUTF();
+            heavyHitters.offer(item, sketch.estimate(item));
+        }
+        return heavyHitters;
+    }
+
+    private void offer(String item, long count) {
+        Integer position = index.get(item);
+        if (position != null) {
+            counts[position] = count; // Estimates only grow, so the item can only move down a min-heap
+            siftDown(position);
+        } else if (size < capacity) {
+            items[size] = item;
+            counts[size] = count;
+            index.put(item, size);
+            siftUp(size++);
+        } else if (count > counts[0]) {
+            index.remove(items[0]);
+            items[0] = item;
+            counts[0] = count;
+            index.put(item, 0);
+            siftDown(0);
+        }
+    }
+
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) / 2;
+            if (counts[parent] <= counts[i]) return;
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    private void siftDown(int i) {
+        while (true) {
+            int smallest = i;
+            int left = 2 * i + 1;
+            int right = left + 1;
+            if (left < size && counts[left] < counts[smallest]) smallest = left;
+            if (right < size && counts[right] < counts[smallest]) smallest = right;
+            if (smallest == i) return;
+            swap(i, smallest);
+            i = smallest;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String item = items[a];
+        items[a] = items[b];
+        items[b] = item;
+        long count = counts[a];
+        counts[a] = counts[b];
+        counts[b] = count;
+        index.put(items[a], a);
+        index.put(items[b], b);
+    }
+}
@@ -0,0 +1,25 @@
+package com.cmms.analytics;
+
+/**
+ * The 64-bit hash shared by the sketches, so one hash per item can feed all of them. Sketches built on different
+ * machines only merge correctly if they hash identically, so this must never change for a given snapshot format.
+ */
+final class SketchHash {
+
+    private SketchHash() {
+    }
+
+    static long hash64(CharSequence item) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < item.length(); i++) {
+            h = (h ^ item.charAt(i)) * 0x100000001B3L;
+        }
+        // FNV-1a spreads poorly into the high bits HyperLogLog uses; finish with murmur's fmix64
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
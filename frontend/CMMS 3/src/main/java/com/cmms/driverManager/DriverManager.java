@@ -1,5 +1,6 @@
 package com.cmms.driverManager;
 
+import com.cmms.EnforcementScheduler;
 import com.cmms.utils.MongoDBHelper;
 import org.bson.Document;
 import com.mongodb.client.MongoCollection;
@@ -21,130 +22,124 @@ public class DriverManager {
     // Store InstanceIDs of devices we have actively disabled
     private static Set<String> disabledDeviceInstanceIds = new HashSet<>();
     private static final Object lock = new Object(); // For thread safety if needed later
-    private static volatile boolean monitoringActive = false; // Flag to control the loop
-    private static Thread monitoringThread = null; // Reference to the monitoring thread
+    private static volatile boolean monitoringActive = false; // Flag to control the checks
+    private static EnforcementScheduler.TaskHandle monitoringTask = null; // Registered check on the shared scheduler
+    private static boolean initialSnapshotTaken = false;
+
+    // Poll every 2 s right after a new device shows up, relaxing to the old 5 s while nothing changes
+    private static final long MIN_CHECK_INTERVAL_MS = 2_000;
+    private static final long MAX_CHECK_INTERVAL_MS = 5_000;
+    private static final double CHECK_JITTER = 0.1;
 
     // Keywords to identify devices that should NOT be blocked
     private static final Set<String> EXEMPT_KEYWORDS = Set.of("keyboard", "mouse", "hid");
     // More specific classes/hardware IDs could be added if needed
 
-    public static void startMonitoring(String sessionCode, String studentPcId, String studentName, String className, String rollNo) {
-        // Prevent starting multiple monitor threads
-        if (monitoringActive || monitoringThread != null && monitoringThread.isAlive()) {
+    public static synchronized void startMonitoring(String sessionCode, String studentPcId, String studentName, String className, String rollNo) {
+        // Prevent registering multiple monitor tasks
+        if (monitoringActive || monitoringTask != null) {
              System.out.println("DRIVER_MANAGER: Monitoring is already active.");
              return;
         }
         
         System.out.println("DRIVER_MANAGER: Starting USB monitoring for session " + sessionCode);
-        monitoringActive = true; // Set the flag before starting the thread
+        monitoringActive = true; // Set the flag before registering the task
         disabledDeviceInstanceIds.clear(); // Clear previously disabled devices for the new session
-        
-        // Store the thread reference
-        monitoringThread = new Thread(() -> {
-            boolean firstRun = true;
-            try {
-                // Initialize with currently connected devices
-                synchronized (lock) {
-                    previousUsbDevices = getConnectedUsbDevicesWithDetails();
-                    System.out.println("DRIVER_MANAGER: Initial USB devices: " + previousUsbDevices.values());
-                    // TODO: Decide if existing non-exempt devices should be disabled on start?
-                    // for (Map.Entry<String, String> entry : previousUsbDevices.entrySet()) {
-                    //     if (!isDeviceExempt(entry.getValue())) {
-                    //         // disableDevice(entry.getKey()); ... add to disabledDeviceInstanceIds
-                    //     }
-                    // }
-                    firstRun = false;
-                }
+        initialSnapshotTaken = false;
 
-                while (monitoringActive) { // Check the flag here
-                    Thread.sleep(5000); // Check every 5 seconds
-                    if (!monitoringActive) break; // Check again after sleep
-                    
-                    Map<String, String> currentUsbDevices;
-                    synchronized (lock) {
-                        // Avoid check if monitoring was stopped during sleep
-                        if (!monitoringActive) break;
-                        currentUsbDevices = getConnectedUsbDevicesWithDetails();
-                    }
+        monitoringTask = EnforcementScheduler.getShared().registerBlocking("usb-devices-" + sessionCode,
+                () -> checkDevices(sessionCode, studentPcId, studentName, className, rollNo),
+                MIN_CHECK_INTERVAL_MS, MAX_CHECK_INTERVAL_MS, CHECK_JITTER);
+    }
 
-                    Set<String> newlyConnectedIds = new HashSet<>(currentUsbDevices.keySet());
-                    newlyConnectedIds.removeAll(previousUsbDevices.keySet());
-
-                    if (!newlyConnectedIds.isEmpty()) {
-                        System.out.println("DRIVER_MANAGER: Detected new USB InstanceIDs: " + newlyConnectedIds);
-                        for (String instanceId : newlyConnectedIds) {
-                             // Avoid acting if monitoring was stopped during loop
-                            if (!monitoringActive) break; 
-                            
-                            String description = currentUsbDevices.getOrDefault(instanceId, "Unknown Device");
-                            System.out.println("DRIVER_MANAGER: New device detected: " + description + " (" + instanceId + ")");
-
-                            if (isDeviceExempt(description)) {
-                                System.out.println("DRIVER_MANAGER: Device '" + description + "' is exempt (keyboard/mouse/hid). Allowing.");
-                                notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Allowed USB device connected: " + description);
-                            } else {
-                                System.out.println("DRIVER_MANAGER: Device '" + description + "' is NOT exempt. Attempting to disable...");
-                                if (disableDevice(instanceId)) {
-                                    System.out.println("DRIVER_MANAGER: Successfully disabled device: " + description);
-                                    synchronized(lock) {
-                                        // Check flag again before modifying shared state
-                                        if (monitoringActive) disabledDeviceInstanceIds.add(instanceId);
-                                    }
-                                    notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Blocked USB device connected: " + description);
-                                } else {
-                                    System.err.println("DRIVER_MANAGER: Failed to disable device: " + description + ". Maybe requires higher privileges?");
-                                    notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Failed to block USB device: " + description);
-                                }
-                            }
-                        }
-                    }
-                    
-                    // Check flag before updating state
-                    if (!monitoringActive) break;
+    /**
+     * One device check. The first run only records the currently connected devices.
+     *
+     * @return true if a new non-exempt device was connected.
+     */
+    private static boolean checkDevices(String sessionCode, String studentPcId, String studentName, String className, String rollNo) {
+        if (!monitoringActive) return false;
+
+        if (!initialSnapshotTaken) {
+            // Initialize with currently connected devices
+            synchronized (lock) {
+                previousUsbDevices = getConnectedUsbDevicesWithDetails();
+                System.out.println("DRIVER_MANAGER: Initial USB devices: " + previousUsbDevices.values());
+                // TODO: Decide if existing non-exempt devices should be disabled on start?
+                // for (Map.Entry<String, String> entry : previousUsbDevices.entrySet()) {
+                //     if (!isDeviceExempt(entry.getValue())) {
+                //         // disableDevice(entry.getKey()); ... add to disabledDeviceInstanceIds
+                //     }
+                // }
+                initialSnapshotTaken = true;
+            }
+            return false;
+        }
 
-                    // Update the set of known devices for the next check
-                    synchronized (lock) {
-                        previousUsbDevices = currentUsbDevices;
+        Map<String, String> currentUsbDevices;
+        synchronized (lock) {
+            // Avoid check if monitoring was stopped in the meantime
+            if (!monitoringActive) return false;
+            currentUsbDevices = getConnectedUsbDevicesWithDetails();
+        }
+
+        Set<String> newlyConnectedIds = new HashSet<>(currentUsbDevices.keySet());
+        newlyConnectedIds.removeAll(previousUsbDevices.keySet());
+
+        boolean blockedDeviceSeen = false;
+        if (!newlyConnectedIds.isEmpty()) {
+            System.out.println("DRIVER_MANAGER: Detected new USB InstanceIDs: " + newlyConnectedIds);
+            for (String instanceId : newlyConnectedIds) {
+                 // Avoid acting if monitoring was stopped during loop
+                if (!monitoringActive) return blockedDeviceSeen;
+                
+                String description = currentUsbDevices.getOrDefault(instanceId, "Unknown Device");
+                System.out.println("DRIVER_MANAGER: New device detected: " + description + " (" + instanceId + ")");
+
+                if (isDeviceExempt(description)) {
+                    System.out.println("DRIVER_MANAGER: Device '" + description + "' is exempt (keyboard/mouse/hid). Allowing.");
+                    notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Allowed USB device connected: " + description);
+                } else {
+                    blockedDeviceSeen = true;
+                    System.out.println("DRIVER_MANAGER: Device '" + description + "' is NOT exempt. Attempting to disable...");
+                    if (disableDevice(instanceId)) {
+                        System.out.println("DRIVER_MANAGER: Successfully disabled device: " + description);
+                        synchronized(lock) {
+                            // Check flag again before modifying shared state
+                            if (monitoringActive) disabledDeviceInstanceIds.add(instanceId);
+                        }
+                        notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Blocked USB device connected: " + description);
+                    } else {
+                        System.err.println("DRIVER_MANAGER: Failed to disable device: " + description + ". Maybe requires higher privileges?");
+                        notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo, "Failed to block USB device: " + description);
                     }
                 }
-            } catch (InterruptedException e) {
-                System.out.println("DRIVER_MANAGER: USB monitoring thread interrupted.");
-                Thread.currentThread().interrupt(); // Preserve interrupt status
-            } catch (Exception e) {
-                System.err.println("DRIVER_MANAGER: Error during USB monitoring loop: " + e.getMessage());
-                e.printStackTrace();
-            } finally {
-                System.out.println("DRIVER_MANAGER: USB monitoring loop finished for session " + sessionCode + ".");
-                // Re-enabling is handled by stopMonitoring()
             }
-        }, "USB-Monitor-Thread-" + sessionCode); // Give thread a name
+        }
         
-        monitoringThread.setDaemon(true); // Allow JVM exit even if this hangs
-        monitoringThread.start();
+        // Check flag before updating state
+        if (!monitoringActive) return blockedDeviceSeen;
+
+        // Update the set of known devices for the next check
+        synchronized (lock) {
+            previousUsbDevices = currentUsbDevices;
+        }
+        return blockedDeviceSeen;
     }
 
     // New method to stop monitoring
-    public static void stopMonitoring() {
+    public static synchronized void stopMonitoring() {
         if (!monitoringActive) {
             System.out.println("DRIVER_MANAGER: stopMonitoring called but not active.");
             return;
         }
         System.out.println("DRIVER_MANAGER: Stopping USB monitoring...");
-        monitoringActive = false; // Signal the loop to stop
+        monitoringActive = false; // Signal an in-progress check to stop
         
-        if (monitoringThread != null && monitoringThread.isAlive()) {
-            monitoringThread.interrupt(); // Interrupt sleep/wait
-            try {
-                monitoringThread.join(2000); // Wait for thread to finish
-            } catch (InterruptedException e) {
-                 System.err.println("DRIVER_MANAGER: Interrupted while waiting for monitoring thread to stop.");
-                 Thread.currentThread().interrupt();
-            }
-            if (monitoringThread.isAlive()) {
-                 System.err.println("DRIVER_MANAGER: Monitoring thread did not stop gracefully.");
-            }
+        if (monitoringTask != null) {
+            monitoringTask.cancel();
         }
-        monitoringThread = null; // Clear thread reference
+        monitoringTask = null; // Clear task reference
 
         System.out.println("DRIVER_MANAGER: Re-enabling devices...");
         enableAllPreviouslyDisabledDevices();
@@ -1,5 +1,7 @@
 package com.cmms.driverManager;
 
+import com.cmms.EnforcementScheduler;
+import com.cmms.service.ViolationReporter;
 import com.cmms.service.WebSocketService;
 
 import java.io.BufferedReader;
@@ -7,9 +9,6 @@ import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
 
 /**
  * Service for monitoring and blocking USB storage devices via Windows Registry.
@@ -18,9 +17,11 @@ import java.util.concurrent.TimeUnit;
 public class UsbMonitorService {
 
     private final WebSocketService webSocketService;
+    private final ViolationReporter violationReporter;
     private final String studentId;
     private volatile boolean shouldBlockUsb = false;
-    private ScheduledExecutorService executorService;
+    private final EnforcementScheduler scheduler;
+    private EnforcementScheduler.TaskHandle detectionTask;
     private volatile boolean isRunning = false;
     private final Object regLock = new Object(); // Lock for registry access
 
@@ -31,9 +32,20 @@ public class UsbMonitorService {
     private static final String REG_VALUE_DISABLE = "4"; // Value to disable
     private static final String REG_VALUE_ENABLE = "3";  // Value to enable (default)
 
+    // Detection polls every 5 s after an attempt, relaxing to the old 15 s while idle
+    private static final long MIN_DETECTION_INTERVAL_MS = 5_000;
+    private static final long MAX_DETECTION_INTERVAL_MS = 15_000;
+    private static final double DETECTION_JITTER = 0.2;
+
     public UsbMonitorService(WebSocketService webSocketService, String studentId) {
+        this(webSocketService, studentId, EnforcementScheduler.getShared());
+    }
+
+    public UsbMonitorService(WebSocketService webSocketService, String studentId, EnforcementScheduler scheduler) {
         this.webSocketService = webSocketService;
+        this.violationReporter = new ViolationReporter(webSocketService);
         this.studentId = studentId;
+        this.scheduler = scheduler;
     }
 
     public synchronized void startMonitoring(boolean blockUsbEnabled) {
@@ -52,15 +64,10 @@ public class UsbMonitorService {
             // Consider reporting error
         }
 
-        // Start detection loop (Placeholder - needs better implementation)
-        executorService = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true); 
-            return t;
-        });
-        executorService.scheduleAtFixedRate(this::detectUsbDevices, 0, 15, TimeUnit.SECONDS); // Check less frequently
-        
         isRunning = true;
+        // Start detection loop (Placeholder - needs better implementation)
+        detectionTask = scheduler.register("usb-monitor", this::detectUsbDevices,
+                MIN_DETECTION_INTERVAL_MS, MAX_DETECTION_INTERVAL_MS, DETECTION_JITTER);
     }
 
     public synchronized void stopMonitoring() {
@@ -68,19 +75,14 @@ public class UsbMonitorService {
             return;
         }
         System.out.println("UsbMonitorService: Stopping monitoring and reverting USB state...");
-        if (executorService != null) {
-            executorService.shutdownNow();
-             try {
-                if (!executorService.awaitTermination(2, TimeUnit.SECONDS)) {
-                    System.err.println("UsbMonitorService: Detection executor did not terminate gracefully.");
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        if (detectionTask != null) {
+            detectionTask.cancel();
+            detectionTask = null;
         }
         if (!revertBlockingState()) { // Ensure USB is re-enabled on stop
              System.err.println("UsbMonitorService: Failed to revert USB blocking state.");
         }
+        violationReporter.flush(); // Don't lose coalesced repeats
         isRunning = false;
         System.out.println("UsbMonitorService: Monitoring stopped.");
     }
@@ -159,8 +161,11 @@ public class UsbMonitorService {
         }
     }
 
-    private void detectUsbDevices() {
-        if (!isRunning) return;
+    /**
+     * @return true if a USB connection attempt was detected.
+     */
+    private boolean detectUsbDevices() {
+        if (!isRunning) return false;
         // --- WINDOWS SPECIFIC IMPLEMENTATION NEEDED --- 
         // Placeholder: This periodic check is highly inefficient and unreliable for real-time detection.
         // Real implementation requires WMI event subscriptions or JNA P/Invoke for WM_DEVICECHANGE.
@@ -176,31 +181,29 @@ public class UsbMonitorService {
              System.out.println("UsbMonitorService: Blocking is enabled. Device should be unusable (effect may vary).");
              // Optionally try to eject/disable programmatically if possible (very complex)
         }
+        return true;
         */
+        return false;
     }
 
     private void reportUsbAttempt(String deviceDetails) {
         if (!isRunning) return;
-        if (webSocketService != null && webSocketService.isAuthenticated()) {
-             Map<String, Object> payload = new HashMap<>();
-             payload.put("type", "usb_attempt");
+        if (webSocketService != null) {
              Map<String, Object> data = new HashMap<>();
              data.put("device_details", deviceDetails);
-             payload.put("data", data);
-             webSocketService.sendMessage("student_update", payload);
-             System.out.println("UsbMonitorService: Reported USB attempt: " + deviceDetails);
+             if (violationReporter.report("usb_attempt", deviceDetails, data)) {
+                 System.out.println("UsbMonitorService: Reported USB attempt: " + deviceDetails);
+             }
         }
     }
     
      private void reportRegistryError(String errorMessage) {
-         if (webSocketService != null && webSocketService.isAuthenticated()) {
-             Map<String, Object> payload = new HashMap<>();
-             payload.put("type", "usb_registry_error"); 
+         if (webSocketService != null) {
              Map<String, Object> data = new HashMap<>();
              data.put("error", errorMessage);
-             payload.put("data", data);
-             webSocketService.sendMessage("student_update", payload);
-             System.out.println("UsbMonitorService: Reported registry error to teacher.");
+             if (violationReporter.report("usb_registry_error", errorMessage, data)) {
+                 System.out.println("UsbMonitorService: Reported registry error to teacher.");
+             }
         }
     }
     
@@ -0,0 +1,73 @@
+package com.cmms.dto;
+
+import java.util.List;
+
+/**
+ * Typed payloads of the messages the backend pushes, as decoded by {@link com.cmms.service.MessageCodec}.
+ * Fields absent from a message are null, and versions -1. student_joined decodes to a {@link StudentInfo}.
+ */
+public final class MessagePayloads {
+
+    private MessagePayloads() {
+    }
+
+    /**
+     * initial_settings and settings_update. An update carries only the fields that changed.
+     */
+    public record Settings(String sessionType, Boolean blockUsb, List<String> websiteBlacklist,
+                           List<String> websiteWhitelist, List<String> appBlacklist,
+                           long settingsVersion, String settingsEpoch) {
+
+        /**
+         * @return Full settings, for initial_settings; absent fields are empty.
+         */
+        public SessionSettings toSessionSettings() {
+            SessionSettings settings = new SessionSettings();
+            settings.setBlockUsb(false);
+            applyTo(settings);
+            return settings;
+        }
+
+        /**
+         * Overwrites the fields this message carries and leaves the others, for settings_update.
+         */
+        public void applyTo(SessionSettings settings) {
+            if (sessionType != null) settings.setSessionType(sessionType);
+            if (blockUsb != null) settings.setBlockUsb(blockUsb);
+            if (websiteBlacklist != null) settings.setWebsiteBlacklist(websiteBlacklist);
+            if (websiteWhitelist != null) settings.setWebsiteWhitelist(websiteWhitelist);
+            if (appBlacklist != null) settings.setAppBlacklist(appBlacklist);
+        }
+    }
+
+    /**
+     * app_added and app_removed.
+     */
+    public record AppChange(String appName, long settingsVersion, String settingsEpoch) {
+    }
+
+    /**
+     * initial_student_list, sent to the teacher after authenticating.
+     */
+    public record StudentList(List<StudentInfo> students) {
+    }
+
+    /**
+     * student_left.
+     */
+    public record StudentLeft(String studentId) {
+    }
+
+    /**
+     * student_data: a report from a student's agent. The data varies with updateType and is kept as sent
+     * (maps, lists, strings, numbers as Double).
+     */
+    public record StudentData(String studentId, String updateType, Object data) {
+    }
+
+    /**
+     * batch: several messages sent as one frame.
+     */
+    public record Batch(List<WebSocketMessage> messages) {
+    }
+}
@@ -1,16 +1,21 @@
 package com.cmms.dto;
 
 import java.util.Map;
+import java.util.function.Supplier;
 
 /**
  * Represents a generic WebSocket message structure.
  * Uses Map<String, Object> for flexibility in payload.
+ * Messages decoded by {@link com.cmms.service.MessageCodec} may instead carry a typed body (see
+ * {@link MessagePayloads}); their payload map is then only built if {@link #getPayload()} is called.
  */
 public class WebSocketMessage {
     private String type;
     private Map<String, Object> payload;
     private String requestId; // Optional, for request-response patterns
     private String status; // Optional, for response messages
+    private transient Object body; // Typed payload; transient, so never serialized
+    private transient Supplier<Map<String, Object>> payloadSupplier;
 
     // Constructors
     public WebSocketMessage() { }
@@ -26,6 +31,19 @@ public class WebSocketMessage {
         this.requestId = requestId;
     }
 
+    /**
+     * A decoded message with a typed body.
+     * @param payload Builds the equivalent payload map, on first use of {@link #getPayload()}.
+     */
+    public static WebSocketMessage withBody(String type, Object body, Supplier<Map<String, Object>> payload,
+                                            String requestId, String status) {
+        WebSocketMessage message = new WebSocketMessage(type, null, requestId);
+        message.body = body;
+        message.payloadSupplier = payload;
+        message.status = status;
+        return message;
+    }
+
     // Getters and setters
     public String getType() {
         return type;
@@ -36,11 +54,23 @@ public class WebSocketMessage {
     }
 
     public Map<String, Object> getPayload() {
+        if (payload == null && payloadSupplier != null) {
+            payload = payloadSupplier.get();
+            payloadSupplier = null;
+        }
         return payload;
     }
 
+    /**
+     * @return The typed body if it is of the given class, else null.
+     */
+    public <T> T getBody(Class<T> bodyType) {
+        return bodyType.isInstance(body) ? bodyType.cast(body) : null;
+    }
+
     public void setPayload(Map<String, Object> payload) {
         this.payload = payload;
+        this.payloadSupplier = null;
     }
 
     public String getRequestId() {
@@ -63,7 +93,7 @@ public class WebSocketMessage {
     public String toString() {
         return "WebSocketMessage{" +
                "type='" + type + '\'' +
-               ", payload=" + payload +
+               ", payload=" + (body != null ? body : payload) +
                ", requestId='" + requestId + '\'' +
                ", status='" + status + '\'' +
                '}';
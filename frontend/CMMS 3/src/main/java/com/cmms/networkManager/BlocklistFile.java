@@ -0,0 +1,491 @@
+package com.cmms.networkManager;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.IDN;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.function.BiConsumer;
+
+/**
+ * Read-only domain blocklist stored in a compact file and queried through a memory mapping, for category lists
+ * with hundreds of thousands of domains that would be too large to keep as Strings.
+ * <p>
+ * Each rule is stored under its labels in reverse order ("www.example.com" becomes "com.example.www"), so a host
+ * and all of its parent domains are prefixes of the same key. Keys are sorted and front-coded: each entry stores
+ * only the bytes that differ from the previous key, and every {@value #RESTART_INTERVAL}th entry is stored in full
+ * as a restart point for binary search. A Bloom filter over all keys sits in front, so a lookup for a host that
+ * is not listed (the common case) usually costs one filter probe per label and never touches the entries.
+ * <p>
+ * Layout (big-endian): a 32-byte header, the Bloom filter words, the restart offsets, then the entries, each
+ * written as flags, shared prefix length, suffix length (one byte each) and the suffix bytes. Rules have the same
+ * meaning as in {@link DomainSet}: "example.com" matches the domain and its subdomains, "*.example.com" only the
+ * subdomains. Names are stored lower-case and in their ASCII (punycode) form.
+ * <p>
+ * {@link #open} maps the file and reads only the header, so it takes about as long as opening the file; the
+ * operating system pages the rest in on demand and shares it with other readers. The heap cost is a few objects
+ * regardless of the list size. Lookups do not allocate and are safe from any number of threads.
+ */
+public final class BlocklistFile implements DomainMatcher {
+
+    private static final int MAGIC = 0x434D4D42; // "CMMB"
+    private static final int VERSION = 1;
+    private static final int HEADER_SIZE = 32;
+    private static final int RESTART_INTERVAL = 16;
+    private static final int BLOOM_BITS_PER_ENTRY = 10; // About 1% false positives with 7 hashes
+    private static final int BLOOM_HASHES = 7;
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private static final byte FLAG_DOMAIN = 1;
+    private static final byte FLAG_SUBDOMAINS = 2;
+
+    private static final ThreadLocal<byte[][]> SCRATCH = ThreadLocal.withInitial(
+            () -> new byte[][]{new byte[MAX_KEY_LENGTH + 1], new byte[MAX_KEY_LENGTH + 1]});
+
+    private final Path path;
+    private final ByteBuffer buffer;
+    private final int entryCount;
+    private final int bloomHashes;
+    private final long bloomBits;
+    private final int restartCount;
+    private final int restartsOffset;
+    private final int dataOffset;
+
+    private BlocklistFile(Path path, ByteBuffer buffer) throws IOException {
+        this.path = path;
+        this.buffer = buffer;
+        if (buffer.capacity() < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("Not a CMMS blocklist file: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("Unsupported blocklist version " + buffer.getInt(4) + ": " + path);
+        }
+        this.entryCount = buffer.getInt(8);
+        int restartInterval = buffer.getInt(12);
+        this.bloomHashes = buffer.getInt(16);
+        int bloomWords = buffer.getInt(20);
+        this.restartCount = buffer.getInt(24);
+        int dataLength = buffer.getInt(28);
+        this.bloomBits = (long) bloomWords * 64;
+        this.restartsOffset = HEADER_SIZE + bloomWords * 8;
+        this.dataOffset = restartsOffset + restartCount * 4;
+        long dataEnd = (long) dataOffset + dataLength;
+        if (restartInterval != RESTART_INTERVAL || bloomWords <= 0 || bloomHashes <= 0 || entryCount < 0
+                || restartCount != (entryCount + RESTART_INTERVAL - 1) / RESTART_INTERVAL
+                || dataLength < 0 || dataEnd != buffer.capacity()) {
+            throw new IOException("Corrupt blocklist header: " + path);
+        }
+    }
+
+    /**
+     * Maps an existing blocklist file. The mapping stays valid after this returns and is released when the
+     * object is garbage collected.
+     *
+     * @throws IOException If the file cannot be read or is not a blocklist file.
+     */
+    public static BlocklistFile open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("Blocklist file too large: " + file);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return new BlocklistFile(file, mapped);
+        }
+    }
+
+    /**
+     * Writes entries as a blocklist file, replacing the target atomically. Entries are normalized like
+     * {@link DomainSet#add}; unusable and duplicate entries are skipped. Windows does not let a file be replaced
+     * while it is mapped, so write an updated list under a new name and swap the opened instances.
+     *
+     * @return Number of rules written.
+     */
+    public static int write(Path file, Collection<String> entries) throws IOException {
+        List<byte[]> keys = new ArrayList<>(entries.size());
+        for (String entry : entries) {
+            byte[] key = toKey(entry);
+            if (key != null) keys.add(key);
+        }
+        // The flags are the last byte of each key while sorting, so duplicates end up next to each other
+        keys.sort(BlocklistFile::compareKeys);
+
+        int count = 0;
+        byte[][] unique = new byte[keys.size()][];
+        byte[] flags = new byte[keys.size()];
+        for (byte[] key : keys) {
+            int length = key.length - 1;
+            byte flag = key[length];
+            if (count > 0 && unique[count - 1].length == length && equalPrefix(unique[count - 1], key, length)) {
+                flags[count - 1] |= flag; // Same name listed as both "x" and "*.x"
+                continue;
+            }
+            unique[count] = Arrays.copyOf(key, length);
+            flags[count] = flag;
+            count++;
+        }
+
+        long bits = Math.max(64, (long) count * BLOOM_BITS_PER_ENTRY);
+        int bloomWords = (int) ((bits + 63) / 64);
+        long[] bloom = new long[bloomWords];
+        for (int i = 0; i < count; i++) {
+            long hash = mix(hashBytes(FNV_OFFSET, unique[i], 0, unique[i].length));
+            addToBloom(bloom, hash);
+        }
+
+        int restartCount = (count + RESTART_INTERVAL - 1) / RESTART_INTERVAL;
+        int[] restarts = new int[restartCount];
+        int dataLength = 0;
+        for (int i = 0; i < count; i++) {
+            int shared = i % RESTART_INTERVAL == 0 ? 0 : sharedPrefix(unique[i - 1], unique[i]);
+            if (i % RESTART_INTERVAL == 0) restarts[i / RESTART_INTERVAL] = dataLength;
+            dataLength += 3 + unique[i].length - shared;
+        }
+
+        Path temp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (OutputStream fileOut = Files.newOutputStream(temp);
+             DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fileOut, 1 << 16))) {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeInt(count);
+            out.writeInt(RESTART_INTERVAL);
+            out.writeInt(BLOOM_HASHES);
+            out.writeInt(bloomWords);
+            out.writeInt(restartCount);
+            out.writeInt(dataLength);
+            for (long word : bloom) out.writeLong(word);
+            for (int restart : restarts) out.writeInt(restart);
+            for (int i = 0; i < count; i++) {
+                int shared = i % RESTART_INTERVAL == 0 ? 0 : sharedPrefix(unique[i - 1], unique[i]);
+                out.writeByte(flags[i]);
+                out.writeByte(shared);
+                out.writeByte(unique[i].length - shared);
+                out.write(unique[i], shared, unique[i].length - shared);
+            }
+        }
+        try {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+        return count;
+    }
+
+    /**
+     * Converts a community list into a blocklist file. Accepts one domain per line or hosts-file lines
+     * ("0.0.0.0 example.com"); comments starting with '#' or '!' and blank lines are ignored.
+     *
+     * @return Number of rules written.
+     */
+    public static int importList(Path source, Path target) throws IOException {
+        List<String> entries = new ArrayList<>();
+        try (BufferedReader reader = Files.newBufferedReader(source, StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String domain = parseListLine(line);
+                if (domain != null) entries.add(domain);
+            }
+        }
+        return write(target, entries);
+    }
+
+    /**
+     * Opens a list given either as a blocklist file or as a community list. A community list is imported into
+     * cacheDir first, and imported again only when it is newer than the imported copy.
+     */
+    public static BlocklistFile openOrImport(Path source, Path cacheDir) throws IOException {
+        if (isBlocklistFile(source)) return open(source);
+        Path target = cacheDir.resolve(source.getFileName() + ".cmmb");
+        if (!Files.isRegularFile(target)
+                || Files.getLastModifiedTime(target).compareTo(Files.getLastModifiedTime(source)) < 0) {
+            Files.createDirectories(cacheDir);
+            importList(source, target);
+        }
+        return open(target);
+    }
+
+    private static boolean isBlocklistFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(4);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // Keep reading until four bytes or end of file
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    /**
+     * @return The domain on one line of a plain or hosts-format list, or null if the line has none.
+     */
+    static String parseListLine(String line) {
+        int comment = line.indexOf('#');
+        if (comment >= 0) line = line.substring(0, comment);
+        line = line.trim();
+        if (line.isEmpty() || line.startsWith("!")) return null;
+        String[] fields = line.split("\\s+");
+        String domain = fields[0];
+        if (fields.length > 1 && (domain.indexOf(':') >= 0 || Character.isDigit(domain.charAt(0)))) {
+            domain = fields[1]; // Hosts-file line: the address comes first
+        }
+        return domain.equals("localhost") || domain.endsWith(".localdomain") ? null : domain;
+    }
+
+    @Override
+    public boolean matches(CharSequence host) {
+        if (entryCount == 0) return false;
+        byte[][] scratch = SCRATCH.get();
+        byte[] query = scratch[0];
+
+        // Build the reversed key label by label and probe every parent domain (shortest first) along the way
+        int end = host.length();
+        if (end > 0 && host.charAt(end - 1) == '.') end--;
+        if (end == 0 || end > MAX_KEY_LENGTH) return false;
+
+        int length = 0;
+        long hash = FNV_OFFSET;
+        while (true) {
+            int start = end - 1;
+            while (start >= 0 && host.charAt(start) != '.') start--;
+            start++;
+            if (length > 0) {
+                query[length++] = '.';
+                hash = hashByte(hash, (byte) '.');
+            }
+            for (int i = start; i < end; i++) {
+                char c = host.charAt(i);
+                if (c >= 'A' && c <= 'Z') c += 'a' - 'A';
+                else if (c > 0x7F) return false; // Stored names are ASCII; browsers look up the punycode form
+                query[length++] = (byte) c;
+                hash = hashByte(hash, (byte) c);
+            }
+
+            boolean whole = start == 0;
+            if (mightContain(mix(hash))) {
+                int flags = find(query, length, scratch[1]);
+                if ((flags & FLAG_DOMAIN) != 0) return true;
+                if (!whole && (flags & FLAG_SUBDOMAINS) != 0) return true;
+            }
+            if (whole) return false;
+            end = start - 1;
+        }
+    }
+
+    /**
+     * @return Number of rules in the file.
+     */
+    public int size() {
+        return entryCount;
+    }
+
+    public boolean isEmpty() {
+        return entryCount == 0;
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * @return Size of the file (and of the mapping) in bytes.
+     */
+    public long getFileSize() {
+        return buffer.capacity();
+    }
+
+    /**
+     * Calls the visitor once per rule with the domain (without a "*." prefix) and the rule's type, in key order.
+     * This decodes every entry, so it is meant for exports and diagnostics rather than lookups.
+     */
+    public void forEach(BiConsumer<String, DomainSet.MatchType> visitor) {
+        byte[] key = new byte[MAX_KEY_LENGTH];
+        int position = dataOffset;
+        for (int i = 0; i < entryCount; i++) {
+            byte flags = buffer.get(position);
+            int shared = buffer.get(position + 1) & 0xFF;
+            int suffix = buffer.get(position + 2) & 0xFF;
+            for (int j = 0; j < suffix; j++) key[shared + j] = buffer.get(position + 3 + j);
+            position += 3 + suffix;
+            String domain = fromKey(key, shared + suffix);
+            if ((flags & FLAG_DOMAIN) != 0) visitor.accept(domain, DomainSet.MatchType.DOMAIN);
+            if ((flags & FLAG_SUBDOMAINS) != 0) visitor.accept(domain, DomainSet.MatchType.SUBDOMAINS);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BlocklistFile{" + path + ", rules=" + entryCount + ", bytes=" + buffer.capacity() + '}';
+    }
+
+    // --- Lookup ---
+
+    /**
+     * @return The flags of the entry whose key equals query[0, length), or 0 if there is none.
+     */
+    private int find(byte[] query, int length, byte[] key) {
+        // Last restart point whose (full) key is <= the query
+        int low = 0;
+        int high = restartCount - 1;
+        while (low < high) {
+            int mid = (low + high + 1) >>> 1;
+            int position = dataOffset + buffer.getInt(restartsOffset + mid * 4);
+            if (compareStored(position + 3, buffer.get(position + 2) & 0xFF, query, length) <= 0) {
+                low = mid;
+            } else {
+                high = mid - 1;
+            }
+        }
+
+        int position = dataOffset + buffer.getInt(restartsOffset + low * 4);
+        int entries = Math.min(RESTART_INTERVAL, entryCount - low * RESTART_INTERVAL);
+        for (int i = 0; i < entries; i++) {
+            byte flags = buffer.get(position);
+            int shared = buffer.get(position + 1) & 0xFF;
+            int suffix = buffer.get(position + 2) & 0xFF;
+            for (int j = 0; j < suffix; j++) key[shared + j] = buffer.get(position + 3 + j);
+            int keyLength = shared + suffix;
+            int cmp = compare(key, keyLength, query, length);
+            if (cmp == 0) return flags;
+            if (cmp > 0) return 0; // Sorted, so the query is not in this block
+            position += 3 + suffix;
+        }
+        return 0;
+    }
+
+    private int compareStored(int position, int storedLength, byte[] query, int length) {
+        int n = Math.min(storedLength, length);
+        for (int i = 0; i < n; i++) {
+            int cmp = (buffer.get(position + i) & 0xFF) - (query[i] & 0xFF);
+            if (cmp != 0) return cmp;
+        }
+        return storedLength - length;
+    }
+
+    private boolean mightContain(long hash) {
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < bloomHashes; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bloomBits;
+            long word = buffer.getLong(HEADER_SIZE + (int) (bit >>> 6) * 8);
+            if ((word & (1L << bit)) == 0) return false;
+        }
+        return true;
+    }
+
+    // --- Keys and hashing ---
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static long hashByte(long hash, byte b) {
+        return (hash ^ (b & 0xFF)) * FNV_PRIME;
+    }
+
+    private static long hashBytes(long hash, byte[] bytes, int from, int to) {
+        for (int i = from; i < to; i++) hash = hashByte(hash, bytes[i]);
+        return hash;
+    }
+
+    /**
+     * Final avalanche step (from MurmurHash3) so both halves of the hash are usable for the Bloom filter.
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static void addToBloom(long[] bloom, long hash) {
+        long bits = (long) bloom.length * 64;
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32);
+        for (int i = 0; i < BLOOM_HASHES; i++) {
+            long bit = ((h1 + (long) i * h2) & Long.MAX_VALUE) % bits;
+            bloom[(int) (bit >>> 6)] |= 1L << bit;
+        }
+    }
+
+    /**
+     * @return The reversed key of an entry with its flag appended as the last byte, or null if unusable.
+     */
+    private static byte[] toKey(String entry) {
+        String host = DomainSet.normalize(entry);
+        if (host == null) return null;
+        byte flag = FLAG_DOMAIN;
+        if (host.startsWith("*.")) {
+            host = host.substring(2);
+            flag = FLAG_SUBDOMAINS;
+        }
+        try {
+            host = IDN.toASCII(host, IDN.ALLOW_UNASSIGNED).toLowerCase();
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (host.isEmpty() || host.length() > MAX_KEY_LENGTH) return null;
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c <= ' ' || c > '~') return null; // Keeps the flag byte below every key byte while sorting
+        }
+
+        byte[] key = new byte[host.length() + 1];
+        int length = 0;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            if (length > 0) key[length++] = '.';
+            for (int i = start; i < end; i++) key[length++] = (byte) host.charAt(i);
+            end = start - 1;
+        }
+        key[length] = flag;
+        return key;
+    }
+
+    private static String fromKey(byte[] key, int length) {
+        StringBuilder sb = new StringBuilder(length);
+        int end = length;
+        while (end > 0) {
+            int start = end - 1;
+            while (start >= 0 && key[start] != '.') start--;
+            start++;
+            if (sb.length() > 0) sb.append('.');
+            sb.append(new String(key, start, end - start, StandardCharsets.US_ASCII));
+            end = start - 1;
+        }
+        return sb.toString();
+    }
+
+    private static int compareKeys(byte[] a, byte[] b) {
+        return Arrays.compareUnsigned(a, b);
+    }
+
+    private static int compare(byte[] a, int aLength, byte[] b, int bLength) {
+        return Arrays.compareUnsigned(a, 0, aLength, b, 0, bLength);
+    }
+
+    private static boolean equalPrefix(byte[] a, byte[] b, int length) {
+        return Arrays.equals(a, 0, length, b, 0, length);
+    }
+
+    private static int sharedPrefix(byte[] a, byte[] b) {
+        int n = Math.min(Math.min(a.length, b.length), MAX_KEY_LENGTH);
+        int i = 0;
+        while (i < n && a[i] == b[i]) i++;
+        return i;
+    }
+}
@@ -0,0 +1,208 @@
+package com.cmms.networkManager;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual check and benchmark for {@link BlocklistFile}.
+ * <p>
+ * Checks the matching rules and the list parser (exits with status 1 on a mismatch) and cross-checks random
+ * lookups against {@link DomainSet}. Then, for each size, writes a file of synthetic domains and compares it with
+ * the List&lt;String&gt; the blacklist travels as today: heap retained, time to open, and lookup cost for a mix of
+ * listed names, subdomains and misses.
+ * Run with: java com.cmms.networkManager.BlocklistFileBenchmark [sizes...]   (default 100000 1000000)
+ */
+public class BlocklistFileBenchmark {
+
+    private static final String[] TLDS = {"com", "net", "org", "io", "co.uk", "edu", "tv", "de"};
+    private static final int LOOKUPS = 500_000;
+
+    public static void main(String[] args) throws IOException {
+        Path dir = Files.createTempDirectory("cmms-blocklist-bench");
+        try {
+            if (!verify(dir)) {
+                System.err.println("BlocklistFile verification FAILED");
+                System.exit(1);
+            }
+            System.out.println("Matching rules OK");
+
+            int[] sizes = args.length > 0 ? new int[args.length] : new int[]{100_000, 1_000_000};
+            for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+            for (int size : sizes) {
+                run(dir, size);
+            }
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static void run(Path dir, int size) throws IOException {
+        Random random = new Random(42);
+        long heapBefore = usedHeap();
+        List<String> domains = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            domains.add(randomDomain(random));
+        }
+        long listHeap = usedHeap() - heapBefore;
+
+        String[] queries = new String[4096];
+        for (int i = 0; i < queries.length; i++) {
+            String base = domains.get(random.nextInt(size));
+            switch (i % 3) {
+                case 0: queries[i] = base; break;                         // Listed name
+                case 1: queries[i] = "cdn" + i + ".static." + base; break; // Subdomain of a listed name
+                default: queries[i] = randomDomain(random); break;         // Almost always a miss
+            }
+        }
+
+        Path file = dir.resolve("list-" + size + ".cmmsbl");
+        long start = System.nanoTime();
+        BlocklistFile.write(file, domains);
+        long writeNanos = System.nanoTime() - start;
+
+        // Opening is cheap, so take the best of a few runs
+        long openNanos = Long.MAX_VALUE;
+        for (int i = 0; i < 5; i++) {
+            start = System.nanoTime();
+            BlocklistFile.open(file);
+            openNanos = Math.min(openNanos, System.nanoTime() - start);
+        }
+        heapBefore = usedHeap();
+        BlocklistFile blocklist = BlocklistFile.open(file);
+        long fileHeap = usedHeap() - heapBefore;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int hits = 0;
+        for (int i = 0; i < LOOKUPS; i++) if (blocklist.matches(queries[i & 4095])) hits++; // Warm up
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) if (blocklist.matches(queries[i & 4095])) hits++;
+        long lookupNanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        int linearLookups = (int) Math.max(50, Math.min(LOOKUPS, 1_000_000_000L / size / 50));
+        for (int i = 0; i < linearLookups / 4; i++) if (linearMatch(domains, queries[i & 4095])) hits++;
+        start = System.nanoTime();
+        for (int i = 0; i < linearLookups; i++) if (linearMatch(domains, queries[i & 4095])) hits++;
+        long linearNanos = System.nanoTime() - start;
+
+        System.out.printf("%,9d domains: write %6.0f ms, file %5.1f MB, open %5.2f ms, heap %6.3f MB (List<String>: %6.1f MB)"
+                        + " | file %6.3f us/lookup, %d B/lookup | List scan %9.1f us/lookup  (hits %d)%n",
+                size, writeNanos / 1e6, blocklist.getFileSize() / 1e6, openNanos / 1e6, fileHeap / 1e6, listHeap / 1e6,
+                lookupNanos / 1e3 / LOOKUPS, allocated / LOOKUPS, linearNanos / 1e3 / linearLookups, hits);
+    }
+
+    private static boolean linearMatch(List<String> domains, String host) {
+        for (String domain : domains) {
+            if (host.equals(domain) || host.endsWith("." + domain)) return true;
+        }
+        return false;
+    }
+
+    private static String randomDomain(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) == 0) sb.append(randomLabel(random, 3, 6)).append('.');
+        sb.append(randomLabel(random, 4, 12)).append('.').append(TLDS[random.nextInt(TLDS.length)]);
+        return sb.toString();
+    }
+
+    private static String randomLabel(Random random, int min, int max) {
+        int length = min + random.nextInt(max - min + 1);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static boolean verify(Path dir) throws IOException {
+        boolean ok = true;
+        ok &= expectLine("0.0.0.0 ads.example.com", "ads.example.com");
+        ok &= expectLine("127.0.0.1\tlocalhost", null);
+        ok &= expectLine("tracker.net  # comment", "tracker.net");
+        ok &= expectLine("! adblock header", null);
+        ok &= expectLine("   ", null);
+
+        Path file = dir.resolve("verify.cmmsbl");
+        int written = BlocklistFile.write(file, Arrays.asList("Example.com", "https://www.news.org/world?x=1",
+                "*.cdn.net", "co.uk.", "example.com", "*.both.tv", "both.tv", "bad..name", "bücher.de"));
+        if (written != 6) {
+            System.err.println("Expected 6 rules written but got " + written);
+            ok = false;
+        }
+        BlocklistFile set = BlocklistFile.open(file);
+        ok &= expect(set, "example.com", true);
+        ok &= expect(set, "WWW.EXAMPLE.COM.", true);
+        ok &= expect(set, "a.b.example.com", true);
+        ok &= expect(set, "badexample.com", false);
+        ok &= expect(set, "com", false);
+        ok &= expect(set, "www.news.org", true);
+        ok &= expect(set, "news.org", false);
+        ok &= expect(set, "img.cdn.net", true);
+        ok &= expect(set, "cdn.net", false);
+        ok &= expect(set, "anything.co.uk", true);
+        ok &= expect(set, "both.tv", true);
+        ok &= expect(set, "x.both.tv", true);
+        ok &= expect(set, "xn--bcher-kva.de", true);
+        ok &= expect(set, "", false);
+
+        List<String> listed = new ArrayList<>();
+        set.forEach((domain, type) -> listed.add(type == DomainSet.MatchType.SUBDOMAINS ? "*." + domain : domain));
+        if (!DomainSet.of(listed).domains().containsAll(Arrays.asList("example.com", "cdn.net", "both.tv"))
+                || listed.size() != 7) {
+            System.err.println("forEach returned " + listed);
+            ok = false;
+        }
+
+        // Random cross-check against the in-memory trie
+        Random random = new Random(7);
+        List<String> domains = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            String domain = randomDomain(random);
+            domains.add(i % 10 == 0 ? "*." + domain : domain);
+        }
+        file = dir.resolve("cross.cmmsbl");
+        BlocklistFile.write(file, domains);
+        BlocklistFile mapped = BlocklistFile.open(file);
+        DomainSet trie = DomainSet.of(domains);
+        for (int i = 0; i < 50_000; i++) {
+            String base = domains.get(random.nextInt(domains.size())).replace("*.", "");
+            String host = i % 3 == 0 ? base : i % 3 == 1 ? "x" + i + "." + base : randomDomain(random);
+            if (mapped.matches(host) != trie.matches(host)) {
+                System.err.println("Mismatch with DomainSet for " + host + ": file says " + mapped.matches(host));
+                ok = false;
+                break;
+            }
+        }
+        return ok;
+    }
+
+    private static boolean expectLine(String line, String expected) {
+        String actual = BlocklistFile.parseListLine(line);
+        boolean ok = expected == null ? actual == null : expected.equals(actual);
+        if (!ok) System.err.println("parseListLine(\"" + line + "\"): expected " + expected + " but got " + actual);
+        return ok;
+    }
+
+    private static boolean expect(BlocklistFile set, String host, boolean expected) {
+        boolean actual = set.matches(host);
+        if (actual != expected) {
+            System.err.println("matches(\"" + host + "\"): expected " + expected + " but got " + actual);
+        }
+        return actual == expected;
+    }
+}
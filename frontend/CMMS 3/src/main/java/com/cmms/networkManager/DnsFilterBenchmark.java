@@ -0,0 +1,281 @@
+package com.cmms.networkManager;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Manual check and throughput benchmark for {@link DnsFilterResolver}, entirely on loopback.
+ * <p>
+ * Starts a stub upstream server (UDP and TCP) and a resolver in front of it, verifies blocking, forwarding,
+ * positive and negative caching, TTL capping, TCP and live policy changes (exits with status 1 on a failure),
+ * then measures queries per second for blocked names, cache hits and forwarded cache misses.
+ * Run with: java com.cmms.networkManager.DnsFilterBenchmark [queries-per-run]
+ */
+public class DnsFilterBenchmark {
+
+    private static final int WINDOW = 64; // Queries in flight during the throughput runs
+
+    public static void main(String[] args) throws Exception {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 200_000;
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+
+        try (StubUpstream stub = new StubUpstream(loopback)) {
+            DomainSet blockedDomains = DomainSet.of(Arrays.asList("blocked.test", "*.ads.test"));
+            DnsFilterResolver resolver = new DnsFilterResolver(new InetSocketAddress(loopback, 0), stub.getAddress(),
+                    blockedDomains::matches, 100_000, 30);
+            resolver.start();
+            try (DatagramSocket client = new DatagramSocket()) {
+                client.connect(resolver.getLocalAddress());
+                client.setSoTimeout(3000);
+                if (!verify(resolver, stub, client, blockedDomains)) {
+                    System.err.println("DnsFilterResolver verification FAILED");
+                    System.exit(1);
+                }
+                System.out.println("Resolver checks OK");
+
+                run("blocked", client, count, i -> "www.blocked.test");
+                run("cache hit", client, count, i -> "site" + (i & 1023) + ".example");
+                int[] unique = {0};
+                run("forwarded (miss)", client, count / 4, i -> "miss" + (unique[0]++) + ".example");
+                System.out.println(resolver + ", stub answered " + stub.getQueryCount());
+            } finally {
+                resolver.close();
+            }
+        }
+    }
+
+    private static boolean verify(DnsFilterResolver resolver, StubUpstream stub, DatagramSocket client,
+                                  DomainSet blockedDomains) throws IOException {
+        boolean ok = true;
+        byte[] reply = exchange(client, query(1, "www.Blocked.test", DnsMessages.TYPE_A));
+        ok &= expect("blocked A is the sinkhole", Arrays.equals(firstRdata(reply), new byte[4]));
+        reply = exchange(client, query(2, "x.ads.test", DnsMessages.TYPE_AAAA));
+        ok &= expect("blocked AAAA is the sinkhole", Arrays.equals(firstRdata(reply), new byte[16]));
+        ok &= expect("wildcard parent is not blocked", !blockedDomains.matches("ads.test"));
+        ok &= expect("blocked names never reach upstream", stub.getQueryCount() == 0);
+
+        reply = exchange(client, query(3, "allowed.example", DnsMessages.TYPE_A));
+        ok &= expect("allowed name is forwarded", stub.getQueryCount() == 1 && DnsMessages.id(reply) == 3
+                && Arrays.equals(firstRdata(reply), new byte[]{10, 0, 0, 1}));
+        ok &= expect("client TTL is capped", firstAnswerTtl(reply) == 30);
+        reply = exchange(client, query(4, "allowed.example", DnsMessages.TYPE_A));
+        ok &= expect("second lookup is a cache hit", stub.getQueryCount() == 1 && DnsMessages.id(reply) == 4
+                && resolver.getCacheHitCount() == 1);
+
+        reply = exchange(client, query(5, "nx.example", DnsMessages.TYPE_A));
+        ok &= expect("NXDOMAIN is forwarded", DnsMessages.rcode(reply) == DnsMessages.RCODE_NXDOMAIN);
+        exchange(client, query(6, "nx.example", DnsMessages.TYPE_A));
+        ok &= expect("NXDOMAIN is cached", stub.getQueryCount() == 2);
+
+        reply = tcpExchange(resolver.getLocalAddress(), query(7, "tcp.example", DnsMessages.TYPE_A));
+        ok &= expect("TCP query is forwarded over TCP", DnsMessages.id(reply) == 7 && stub.getTcpQueryCount() == 1
+                && Arrays.equals(firstRdata(reply), new byte[]{10, 0, 0, 1}));
+
+        // Policy change applies to the very next query, cached answer or not
+        resolver.setBlockPolicy(name -> blockedDomains.matches(name) || name.equals("allowed.example"));
+        reply = exchange(client, query(8, "allowed.example", DnsMessages.TYPE_A));
+        ok &= expect("policy change is immediate", Arrays.equals(firstRdata(reply), new byte[4]));
+        resolver.setBlockPolicy(blockedDomains::matches);
+
+        byte[] garbage = {1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12, 13};
+        reply = exchange(client, garbage);
+        ok &= expect("malformed query gets FORMERR", DnsMessages.rcode(reply) == DnsMessages.RCODE_FORMERR);
+        return ok;
+    }
+
+    private static void run(String label, DatagramSocket client, int count, Function<Integer, String> names) throws IOException {
+        DatagramPacket in = new DatagramPacket(new byte[4096], 4096);
+        long start = System.nanoTime();
+        int sent = 0;
+        int received = 0;
+        int lost = 0;
+        while (received + lost < count) {
+            while (sent < count && sent - received - lost < WINDOW) {
+                byte[] query = query(sent & 0xFFFF, names.apply(sent), DnsMessages.TYPE_A);
+                client.send(new DatagramPacket(query, query.length));
+                sent++;
+            }
+            try {
+                client.receive(in);
+                received++;
+            } catch (SocketTimeoutException e) {
+                lost += sent - received - lost; // Give up on what is in flight
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%-18s %,10.0f queries/s  (%,d answered, %d lost)%n", label, received / seconds, received, lost);
+    }
+
+    // --- Client helpers ---
+
+    private static byte[] query(int id, String name, int type) {
+        byte[] nameBytes = name.getBytes(StandardCharsets.US_ASCII);
+        byte[] msg = new byte[DnsMessages.HEADER_LENGTH + nameBytes.length + 2 + 4];
+        DnsMessages.put16(msg, 0, id);
+        msg[2] = 0x01; // RD
+        DnsMessages.put16(msg, 4, 1);
+        int p = DnsMessages.HEADER_LENGTH;
+        for (String label : name.split("\\.")) {
+            msg[p++] = (byte) label.length();
+            for (int i = 0; i < label.length(); i++) msg[p++] = (byte) label.charAt(i);
+        }
+        msg[p++] = 0;
+        p = DnsMessages.put16(msg, p, type);
+        DnsMessages.put16(msg, p, DnsMessages.CLASS_IN);
+        return msg;
+    }
+
+    private static byte[] exchange(DatagramSocket client, byte[] query) throws IOException {
+        client.send(new DatagramPacket(query, query.length));
+        DatagramPacket in = new DatagramPacket(new byte[4096], 4096);
+        client.receive(in);
+        return Arrays.copyOf(in.getData(), in.getLength());
+    }
+
+    private static byte[] tcpExchange(InetSocketAddress address, byte[] query) throws IOException {
+        try (Socket socket = new Socket()) {
+            socket.connect(address, 3000);
+            socket.setSoTimeout(3000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeShort(query.length);
+            out.write(query);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] reply = new byte[in.readUnsignedShort()];
+            in.readFully(reply);
+            return reply;
+        }
+    }
+
+    /**
+     * @return RDATA of the first answer, assuming its owner name is a compression pointer (as in our replies).
+     */
+    private static byte[] firstRdata(byte[] reply) {
+        DnsMessages.Question question = DnsMessages.parseQuestion(reply, reply.length);
+        if (question == null || DnsMessages.u16(reply, 6) == 0) return null;
+        int rdata = question.end + 12;
+        return Arrays.copyOfRange(reply, rdata, rdata + DnsMessages.u16(reply, rdata - 2));
+    }
+
+    private static long firstAnswerTtl(byte[] reply) {
+        DnsMessages.Question question = DnsMessages.parseQuestion(reply, reply.length);
+        return DnsMessages.u32(reply, question.end + 6);
+    }
+
+    private static boolean expect(String what, boolean condition) {
+        if (!condition) System.err.println("FAILED: " + what);
+        return condition;
+    }
+
+    /**
+     * Upstream stand-in: answers every A/AAAA query with 10.0.0.1 / ::1 (TTL 300), and names starting with "nx"
+     * with NXDOMAIN plus an SOA (negative TTL 120).
+     */
+    private static final class StubUpstream implements AutoCloseable {
+        private final DatagramChannel udp;
+        private final ServerSocket tcp;
+        private final AtomicInteger queries = new AtomicInteger();
+        private final AtomicInteger tcpQueries = new AtomicInteger();
+        private volatile boolean running = true;
+
+        StubUpstream(InetAddress address) throws IOException {
+            udp = DatagramChannel.open().bind(new InetSocketAddress(address, 0));
+            tcp = new ServerSocket(((InetSocketAddress) udp.getLocalAddress()).getPort(), 50, address);
+            Thread udpThread = new Thread(this::serveUdp, "stub-dns-udp");
+            udpThread.setDaemon(true);
+            udpThread.start();
+            Thread tcpThread = new Thread(this::serveTcp, "stub-dns-tcp");
+            tcpThread.setDaemon(true);
+            tcpThread.start();
+        }
+
+        InetSocketAddress getAddress() throws IOException {
+            return (InetSocketAddress) udp.getLocalAddress();
+        }
+
+        int getQueryCount() {
+            return queries.get();
+        }
+
+        int getTcpQueryCount() {
+            return tcpQueries.get();
+        }
+
+        private void serveUdp() {
+            ByteBuffer buffer = ByteBuffer.allocate(4096);
+            while (running) {
+                try {
+                    buffer.clear();
+                    SocketAddress from = udp.receive(buffer);
+                    buffer.flip();
+                    byte[] query = new byte[buffer.remaining()];
+                    buffer.get(query);
+                    queries.incrementAndGet();
+                    udp.send(ByteBuffer.wrap(answer(query)), from);
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }
+
+        private void serveTcp() {
+            while (running) {
+                try (Socket socket = tcp.accept()) {
+                    DataInputStream in = new DataInputStream(socket.getInputStream());
+                    byte[] query = new byte[in.readUnsignedShort()];
+                    in.readFully(query);
+                    tcpQueries.incrementAndGet();
+                    byte[] reply = answer(query);
+                    DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+                    out.writeShort(reply.length);
+                    out.write(reply);
+                    out.flush();
+                } catch (IOException e) {
+                    if (!running) return;
+                }
+            }
+        }
+
+        private static byte[] answer(byte[] query) {
+            DnsMessages.Question question = DnsMessages.parseQuestion(query, query.length);
+            if (question.name.startsWith("nx")) {
+                byte[] soa = {
+                        (byte) 0xC0, 12, 0, 6, 0, 1, 0, 0, 0x0E, 0x10, 0, 22, // Owner, SOA, IN, TTL 3600, RDLENGTH 22
+                        0, 0,                                              // MNAME and RNAME: root
+                        0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 1, 0, 0, 0, 120 // Serial..minimum (120)
+                };
+                byte[] reply = Arrays.copyOf(query, question.end + soa.length);
+                System.arraycopy(soa, 0, reply, question.end, soa.length);
+                reply[2] = (byte) (0x80 | (reply[2] & 0x01));
+                reply[3] = (byte) (0x80 | DnsMessages.RCODE_NXDOMAIN);
+                DnsMessages.put16(reply, 8, 1);
+                return reply;
+            }
+            byte[] ipv6Loopback = new byte[16];
+            ipv6Loopback[15] = 1;
+            return DnsMessages.sinkholeReply(query, question, new byte[]{10, 0, 0, 1}, ipv6Loopback, 300);
+        }
+
+        @Override
+        public void close() throws IOException {
+            running = false;
+            udp.close();
+            tcp.close();
+        }
+    }
+}
@@ -0,0 +1,598 @@
+package com.cmms.networkManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Small DNS forwarder that enforces the website policy at name resolution time, as an alternative to writing
+ * every blocked site into the hosts file.
+ * <p>
+ * UDP queries are served by one NIO selector thread: names the policy blocks get a sinkhole A/AAAA answer,
+ * everything else is answered from a TTL-respecting cache (positive and negative, RFC 2308) or forwarded to the
+ * upstream server. TCP queries (clients retrying a truncated answer) are handled by a small worker pool.
+ * Forwarded queries get a random ID and go out from one of a few sockets on random ports, each replaced after a
+ * limited number of queries, so an off-path attacker has to guess both to slip a forged answer into the cache.
+ * The policy is consulted before the cache on every query, so a policy change applies to the next lookup with no
+ * file rewrite or cache flush. TTLs handed to clients are capped so their own caches do not outlive a change by much.
+ * <p>
+ * Both the listen and upstream addresses are constructor arguments, so the resolver can run unprivileged on a
+ * loopback port against a local stub server.
+ */
+public class DnsFilterResolver implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(DnsFilterResolver.class);
+
+    private static final int MAX_UDP_MESSAGE = 4096;
+    private static final long UPSTREAM_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final int DEFAULT_CACHE_ENTRIES = 10_000;
+    private static final int DEFAULT_CLIENT_TTL_CAP = 30;
+    private static final int SINKHOLE_TTL = 10;
+    private static final int NEGATIVE_TTL_DEFAULT = 60;
+    private static final long MAX_CACHE_TTL = 24 * 3600;
+    private static final byte[] SINKHOLE_V4 = {0, 0, 0, 0};
+    private static final byte[] SINKHOLE_V6 = new byte[16];
+    private static final int UPSTREAM_SOCKETS = 4;
+    private static final int QUERIES_PER_UPSTREAM_SOCKET = 256;
+    private static final int MAX_PENDING_PER_SOCKET = 4096;
+
+    private final InetSocketAddress listenAddress;
+    private final InetSocketAddress upstream;
+    private final int clientTtlCap;
+    private final Map<String, CacheEntry> cache;
+    private volatile Predicate<String> blockPolicy;
+
+    // Selector thread state
+    private Selector selector;
+    private DatagramChannel clientChannel;
+    private UpstreamSocket[] upstreamSockets;
+    private final List<UpstreamSocket> retiringSockets = new ArrayList<>(); // Replaced, waiting for their answers
+    private final SecureRandom random = new SecureRandom();
+    private ServerSocketChannel tcpChannel;
+    private ThreadPoolExecutor tcpWorkers;
+    private Thread selectorThread;
+    private volatile boolean running;
+
+    private final AtomicLong queries = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong forwarded = new AtomicLong();
+    private final AtomicLong upstreamFailures = new AtomicLong();
+
+    public DnsFilterResolver(InetSocketAddress listenAddress, InetSocketAddress upstream, Predicate<String> blockPolicy) {
+        this(listenAddress, upstream, blockPolicy, DEFAULT_CACHE_ENTRIES, DEFAULT_CLIENT_TTL_CAP);
+    }
+
+    /**
+     * @param cacheEntries Maximum number of cached answers (least recently used are evicted).
+     * @param clientTtlCap Upper bound, in seconds, for TTLs returned to clients.
+     */
+    public DnsFilterResolver(InetSocketAddress listenAddress, InetSocketAddress upstream, Predicate<String> blockPolicy,
+                             int cacheEntries, int clientTtlCap) {
+        this.listenAddress = listenAddress;
+        this.upstream = upstream;
+        this.blockPolicy = blockPolicy;
+        this.clientTtlCap = clientTtlCap;
+        this.cache = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > cacheEntries;
+            }
+        };
+    }
+
+    /**
+     * Replaces the policy. Takes effect for the next query.
+     */
+    public void setBlockPolicy(Predicate<String> blockPolicy) {
+        this.blockPolicy = blockPolicy;
+    }
+
+    /**
+     * Binds the UDP and TCP listeners and starts serving.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        clientChannel = DatagramChannel.open();
+        clientChannel.bind(listenAddress);
+        clientChannel.configureBlocking(false);
+        clientChannel.register(selector, SelectionKey.OP_READ);
+
+        upstreamSockets = new UpstreamSocket[UPSTREAM_SOCKETS];
+        for (int i = 0; i < upstreamSockets.length; i++) {
+            upstreamSockets[i] = openUpstreamSocket();
+        }
+
+        InetSocketAddress bound = getLocalAddress();
+        try {
+            tcpChannel = ServerSocketChannel.open();
+            tcpChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            tcpChannel.bind(bound);
+            tcpChannel.configureBlocking(false);
+            tcpChannel.register(selector, SelectionKey.OP_ACCEPT);
+            tcpWorkers = new ThreadPoolExecutor(1, 4, 30, TimeUnit.SECONDS, new LinkedBlockingQueue<>(64), r -> {
+                Thread t = new Thread(r, "cmms-dns-tcp");
+                t.setDaemon(true);
+                return t;
+            }, (task, pool) -> {
+                // Full: drop the connection rather than leave it open with nobody serving it
+                closeQuietly(((TcpClient) task).socket);
+                log.debug("DnsFilterResolver: TCP workers busy, closed a connection.");
+            });
+        } catch (IOException e) {
+            log.warn("DnsFilterResolver: TCP listener unavailable on {}, serving UDP only: {}", bound, e.getMessage());
+            if (tcpChannel != null) tcpChannel.close();
+            tcpChannel = null;
+        }
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "cmms-dns-filter");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("DnsFilterResolver: Listening on {} (upstream {})", bound, upstream);
+    }
+
+    /**
+     * @return The bound UDP address (useful when listening on port 0).
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) clientChannel.getLocalAddress();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeQuietly(clientChannel);
+        for (UpstreamSocket socket : upstreamSockets) closeQuietly(socket.channel);
+        for (UpstreamSocket socket : retiringSockets) closeQuietly(socket.channel);
+        retiringSockets.clear();
+        closeQuietly(tcpChannel);
+        closeQuietly(selector);
+        if (tcpWorkers != null) {
+            for (Runnable queued : tcpWorkers.shutdownNow()) closeQuietly(((TcpClient) queued).socket);
+        }
+        log.info("DnsFilterResolver: Stopped. {}", this);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public void clearCache() {
+        synchronized (cache) {
+            cache.clear();
+        }
+    }
+
+    public long getQueryCount() {
+        return queries.get();
+    }
+
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    public long getCacheHitCount() {
+        return cacheHits.get();
+    }
+
+    public long getForwardedCount() {
+        return forwarded.get();
+    }
+
+    public long getUpstreamFailureCount() {
+        return upstreamFailures.get();
+    }
+
+    @Override
+    public String toString() {
+        return "DnsFilterResolver{queries=" + queries + ", blocked=" + blocked + ", cacheHits=" + cacheHits
+                + ", forwarded=" + forwarded + ", upstreamFailures=" + upstreamFailures + '}';
+    }
+
+    // --- Selector thread ---
+
+    private void selectLoop() {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(MAX_UDP_MESSAGE);
+        long nextSweep = System.nanoTime() + UPSTREAM_TIMEOUT_NANOS / 4;
+        while (running) {
+            try {
+                selector.select(250);
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.channel() == clientChannel) {
+                        drainClients(buffer);
+                    } else if (key.attachment() instanceof UpstreamSocket) {
+                        drainUpstream((UpstreamSocket) key.attachment(), buffer);
+                    } else if (key.isAcceptable()) {
+                        acceptTcp();
+                    }
+                }
+                long now = System.nanoTime();
+                if (now >= nextSweep) {
+                    expirePending(now);
+                    nextSweep = now + UPSTREAM_TIMEOUT_NANOS / 4;
+                }
+            } catch (IOException e) {
+                if (running) log.warn("DnsFilterResolver: Selector error: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("DnsFilterResolver: Unexpected error: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void drainClients(ByteBuffer buffer) throws IOException {
+        SocketAddress client;
+        while ((client = receive(clientChannel, buffer)) != null) {
+            byte[] query = new byte[buffer.remaining()];
+            buffer.get(query);
+            byte[] reply = answerLocally(query, query.length);
+            if (reply != null) {
+                clientChannel.send(ByteBuffer.wrap(reply), client);
+            } else {
+                forwardUdp(query, client);
+            }
+        }
+    }
+
+    private void forwardUdp(byte[] query, SocketAddress client) throws IOException {
+        DnsMessages.Question question = DnsMessages.parseQuestion(query, query.length);
+        UpstreamSocket socket = pickUpstreamSocket();
+        int upstreamId = socket.allocateId(random);
+        if (upstreamId < 0) {
+            upstreamFailures.incrementAndGet();
+            clientChannel.send(ByteBuffer.wrap(DnsMessages.errorReply(query, query.length, question, DnsMessages.RCODE_SERVFAIL)), client);
+            return;
+        }
+        socket.pending.put(upstreamId, new Pending(client, DnsMessages.id(query), question, query, System.nanoTime()));
+        socket.sent++;
+        DnsMessages.setId(query, upstreamId);
+        forwarded.incrementAndGet();
+        socket.channel.send(ByteBuffer.wrap(query), upstream);
+    }
+
+    /**
+     * @return A random upstream socket, replacing it first if it has sent its share of queries.
+     */
+    private UpstreamSocket pickUpstreamSocket() {
+        int slot = random.nextInt(upstreamSockets.length);
+        UpstreamSocket socket = upstreamSockets[slot];
+        if (socket.sent < QUERIES_PER_UPSTREAM_SOCKET) return socket;
+        try {
+            upstreamSockets[slot] = openUpstreamSocket();
+        } catch (IOException e) {
+            log.warn("DnsFilterResolver: Could not open a new upstream socket, reusing the old one: {}", e.getMessage());
+            socket.sent = 0;
+            return socket;
+        }
+        retire(socket);
+        return upstreamSockets[slot];
+    }
+
+    // Bound to port 0: the OS picks a random ephemeral port
+    private UpstreamSocket openUpstreamSocket() throws IOException {
+        DatagramChannel channel = DatagramChannel.open();
+        try {
+            channel.bind(null);
+            channel.configureBlocking(false);
+            UpstreamSocket socket = new UpstreamSocket(channel);
+            channel.register(selector, SelectionKey.OP_READ, socket);
+            return socket;
+        } catch (IOException e) {
+            closeQuietly(channel);
+            throw e;
+        }
+    }
+
+    // Kept open until the queries it sent are answered or expire
+    private void retire(UpstreamSocket socket) {
+        if (socket.pending.isEmpty()) {
+            closeQuietly(socket.channel);
+        } else {
+            retiringSockets.add(socket);
+        }
+    }
+
+    private void drainUpstream(UpstreamSocket socket, ByteBuffer buffer) throws IOException {
+        SocketAddress from;
+        while ((from = receive(socket.channel, buffer)) != null) {
+            if (!from.equals(upstream) || buffer.remaining() < DnsMessages.HEADER_LENGTH) continue;
+            byte[] response = new byte[buffer.remaining()];
+            buffer.get(response);
+            Pending request = socket.pending.remove(DnsMessages.id(response));
+            if (request == null) continue; // Late or spoofed
+            DnsMessages.Question answered = DnsMessages.parseQuestion(response, response.length);
+            if (answered == null || !answered.cacheKey().equals(request.question.cacheKey())) {
+                upstreamFailures.incrementAndGet();
+                continue; // Not the answer to our question; let the client time out and retry
+            }
+            store(request.question, response);
+            DnsMessages.setId(response, request.clientId);
+            capTtls(response);
+            clientChannel.send(ByteBuffer.wrap(response), request.client);
+        }
+        if (socket.pending.isEmpty() && retiringSockets.remove(socket)) {
+            closeQuietly(socket.channel);
+        }
+    }
+
+    private void expirePending(long now) throws IOException {
+        for (UpstreamSocket socket : upstreamSockets) {
+            expirePending(socket, now);
+        }
+        Iterator<UpstreamSocket> retiring = retiringSockets.iterator();
+        while (retiring.hasNext()) {
+            UpstreamSocket socket = retiring.next();
+            expirePending(socket, now);
+            if (socket.pending.isEmpty()) {
+                retiring.remove();
+                closeQuietly(socket.channel);
+            }
+        }
+    }
+
+    private void expirePending(UpstreamSocket socket, long now) throws IOException {
+        Iterator<Pending> it = socket.pending.values().iterator();
+        while (it.hasNext()) {
+            Pending request = it.next();
+            if (now - request.sentNanos < UPSTREAM_TIMEOUT_NANOS) continue;
+            it.remove();
+            upstreamFailures.incrementAndGet();
+            DnsMessages.setId(request.query, request.clientId);
+            byte[] reply = DnsMessages.errorReply(request.query, request.query.length, request.question, DnsMessages.RCODE_SERVFAIL);
+            clientChannel.send(ByteBuffer.wrap(reply), request.client);
+        }
+    }
+
+    private static SocketAddress receive(DatagramChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.clear();
+        SocketAddress from = channel.receive(buffer);
+        buffer.flip();
+        return from;
+    }
+
+    private void acceptTcp() throws IOException {
+        SocketChannel connection;
+        while ((connection = tcpChannel.accept()) != null) {
+            tcpWorkers.execute(new TcpClient(connection.socket()));
+        }
+    }
+
+    // --- TCP (blocking, on worker threads) ---
+
+    private void serveTcp(Socket socket) {
+        try (Socket s = socket) {
+            s.setSoTimeout(5000);
+            DataInputStream in = new DataInputStream(s.getInputStream());
+            DataOutputStream out = new DataOutputStream(s.getOutputStream());
+            while (running) {
+                int length;
+                try {
+                    length = in.readUnsignedShort();
+                } catch (EOFException e) {
+                    return;
+                }
+                byte[] query = new byte[length];
+                in.readFully(query);
+                byte[] reply = answerLocally(query, length);
+                if (reply == null) reply = forwardTcp(query);
+                out.writeShort(reply.length);
+                out.write(reply);
+                out.flush();
+            }
+        } catch (IOException e) {
+            log.debug("DnsFilterResolver: TCP client error: {}", e.getMessage());
+        }
+    }
+
+    private byte[] forwardTcp(byte[] query) {
+        DnsMessages.Question question = DnsMessages.parseQuestion(query, query.length);
+        forwarded.incrementAndGet();
+        try (Socket socket = new Socket()) {
+            socket.connect(upstream, (int) TimeUnit.NANOSECONDS.toMillis(UPSTREAM_TIMEOUT_NANOS));
+            socket.setSoTimeout((int) TimeUnit.NANOSECONDS.toMillis(UPSTREAM_TIMEOUT_NANOS));
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeShort(query.length);
+            out.write(query);
+            out.flush();
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            byte[] response = new byte[in.readUnsignedShort()];
+            in.readFully(response);
+            if (response.length >= DnsMessages.HEADER_LENGTH && DnsMessages.id(response) == DnsMessages.id(query)) {
+                store(question, response);
+                capTtls(response);
+                return response;
+            }
+        } catch (IOException e) {
+            log.debug("DnsFilterResolver: TCP upstream error: {}", e.getMessage());
+        }
+        upstreamFailures.incrementAndGet();
+        return DnsMessages.errorReply(query, query.length, question, DnsMessages.RCODE_SERVFAIL);
+    }
+
+    // --- Shared by both transports ---
+
+    /**
+     * Answers from policy or cache.
+     *
+     * @return The reply, or null if the query has to go upstream.
+     */
+    private byte[] answerLocally(byte[] query, int length) {
+        queries.incrementAndGet();
+        if (length < DnsMessages.HEADER_LENGTH || DnsMessages.isResponse(query)) {
+            return DnsMessages.errorReply(query, length, null, DnsMessages.RCODE_FORMERR);
+        }
+        DnsMessages.Question question = DnsMessages.parseQuestion(query, length);
+        if (question == null) {
+            return DnsMessages.errorReply(query, length, null, DnsMessages.RCODE_FORMERR);
+        }
+
+        Predicate<String> policy = blockPolicy;
+        if (policy != null && !question.name.isEmpty() && policy.test(question.name)) {
+            blocked.incrementAndGet();
+            return DnsMessages.sinkholeReply(query, question, SINKHOLE_V4, SINKHOLE_V6, SINKHOLE_TTL);
+        }
+
+        CacheEntry entry;
+        synchronized (cache) {
+            entry = cache.get(question.cacheKey());
+        }
+        if (entry == null) return null;
+        long now = System.nanoTime();
+        if (now >= entry.expiresNanos) {
+            synchronized (cache) {
+                cache.remove(question.cacheKey(), entry);
+            }
+            return null;
+        }
+        cacheHits.incrementAndGet();
+        byte[] reply = entry.response.clone();
+        DnsMessages.setId(reply, DnsMessages.id(query));
+        DnsMessages.ageTtls(reply, entry.ttlOffsets, TimeUnit.NANOSECONDS.toSeconds(now - entry.storedNanos), clientTtlCap);
+        return reply;
+    }
+
+    private void store(DnsMessages.Question question, byte[] response) {
+        if (question == null) return;
+        DnsMessages.ResponseInfo info = DnsMessages.analyze(response, response.length, NEGATIVE_TTL_DEFAULT);
+        if (info == null || info.ttlSeconds <= 0) return;
+        long now = System.nanoTime();
+        long ttl = Math.min(info.ttlSeconds, MAX_CACHE_TTL);
+        CacheEntry entry = new CacheEntry(response.clone(), info.ttlOffsets, now, now + TimeUnit.SECONDS.toNanos(ttl));
+        synchronized (cache) {
+            cache.put(question.cacheKey(), entry);
+        }
+    }
+
+    private void capTtls(byte[] response) {
+        DnsMessages.ResponseInfo info = DnsMessages.analyze(response, response.length, NEGATIVE_TTL_DEFAULT);
+        if (info != null) DnsMessages.ageTtls(response, info.ttlOffsets, 0, clientTtlCap);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Shutting down anyway
+        }
+    }
+
+    /**
+     * Loopback resolver on the standard port, for pointing the system's DNS setting at.
+     */
+    public static InetSocketAddress defaultListenAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), 53);
+    }
+
+    /**
+     * One socket for forwarding UDP queries, with the queries it is waiting on by upstream ID.
+     * Used only on the selector thread.
+     */
+    private static final class UpstreamSocket {
+        final DatagramChannel channel;
+        final Map<Integer, Pending> pending = new HashMap<>();
+        int sent;
+
+        UpstreamSocket(DatagramChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * @return A random ID not in use on this socket, or -1 if too many queries are waiting.
+         */
+        int allocateId(SecureRandom random) {
+            if (pending.size() >= MAX_PENDING_PER_SOCKET) return -1;
+            int id;
+            do {
+                id = random.nextInt(0x10000);
+            } while (pending.containsKey(id)); // At most 1 in 16 taken, so this rarely loops
+            return id;
+        }
+    }
+
+    /**
+     * An accepted TCP connection waiting for a worker; a named class so a rejected one can be closed.
+     */
+    private final class TcpClient implements Runnable {
+        final Socket socket;
+
+        TcpClient(Socket socket) {
+            this.socket = socket;
+        }
+
+        @Override
+        public void run() {
+            serveTcp(socket);
+        }
+    }
+
+    private static final class Pending {
+        final SocketAddress client;
+        final int clientId;
+        final DnsMessages.Question question;
+        final byte[] query;
+        final long sentNanos;
+
+        Pending(SocketAddress client, int clientId, DnsMessages.Question question, byte[] query, long sentNanos) {
+            this.client = client;
+            this.clientId = clientId;
+            this.question = question;
+            this.query = query;
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    private static final class CacheEntry {
+        final byte[] response;
+        final int[] ttlOffsets;
+        final long storedNanos;
+        final long expiresNanos;
+
+        CacheEntry(byte[] response, int[] ttlOffsets, long storedNanos, long expiresNanos) {
+            this.response = response;
+            this.ttlOffsets = ttlOffsets;
+            this.storedNanos = storedNanos;
+            this.expiresNanos = expiresNanos;
+        }
+    }
+}
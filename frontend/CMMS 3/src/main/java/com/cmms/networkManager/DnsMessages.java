@@ -0,0 +1,261 @@
+package com.cmms.networkManager;
+
+import java.util.Arrays;
+
+/**
+ * Just enough of the DNS wire format (RFC 1035) for {@link DnsFilterResolver}: reading the question, building
+ * sinkhole and error replies, and locating the TTL fields of a response so a cached copy can be aged.
+ */
+final class DnsMessages {
+
+    static final int HEADER_LENGTH = 12;
+    static final int TYPE_A = 1;
+    static final int TYPE_SOA = 6;
+    static final int TYPE_AAAA = 28;
+    static final int TYPE_OPT = 41;
+    static final int CLASS_IN = 1;
+    static final int RCODE_NOERROR = 0;
+    static final int RCODE_FORMERR = 1;
+    static final int RCODE_SERVFAIL = 2;
+    static final int RCODE_NXDOMAIN = 3;
+
+    private DnsMessages() {
+    }
+
+    /**
+     * The single question of a query.
+     */
+    static final class Question {
+        final String name; // Lower case, no trailing dot ("" for the root)
+        final int type;
+        final int qclass;
+        final int end; // Offset just past the question section
+
+        Question(String name, int type, int qclass, int end) {
+            this.name = name;
+            this.type = type;
+            this.qclass = qclass;
+            this.end = end;
+        }
+
+        String cacheKey() {
+            return name + '/' + type + '/' + qclass;
+        }
+    }
+
+    static int id(byte[] msg) {
+        return u16(msg, 0);
+    }
+
+    static void setId(byte[] msg, int id) {
+        msg[0] = (byte) (id >>> 8);
+        msg[1] = (byte) id;
+    }
+
+    static boolean isResponse(byte[] msg) {
+        return (msg[2] & 0x80) != 0;
+    }
+
+    static boolean isTruncated(byte[] msg) {
+        return (msg[2] & 0x02) != 0;
+    }
+
+    static int rcode(byte[] msg) {
+        return msg[3] & 0x0F;
+    }
+
+    /**
+     * @return The question of a standard query with exactly one question, or null if the message is malformed
+     * or is not such a query.
+     */
+    static Question parseQuestion(byte[] msg, int length) {
+        if (length < HEADER_LENGTH || u16(msg, 4) != 1) return null;
+        StringBuilder name = new StringBuilder(64);
+        int end = readName(msg, length, HEADER_LENGTH, name);
+        if (end < 0 || end + 4 > length) return null;
+        return new Question(name.toString(), u16(msg, end), u16(msg, end + 2), end + 4);
+    }
+
+    /**
+     * Builds the reply to a blocked query: an A or AAAA record pointing at the sinkhole, or an empty NOERROR
+     * answer for any other type.
+     */
+    static byte[] sinkholeReply(byte[] query, Question question, byte[] sinkholeV4, byte[] sinkholeV6, int ttl) {
+        byte[] address = question.type == TYPE_A ? sinkholeV4 : question.type == TYPE_AAAA ? sinkholeV6 : null;
+        int answerLength = address != null ? 12 + address.length : 0;
+        byte[] reply = Arrays.copyOf(query, question.end + answerLength);
+        setReplyHeader(reply, RCODE_NOERROR, address != null ? 1 : 0);
+        if (address != null) {
+            int p = question.end;
+            reply[p++] = (byte) 0xC0; // Name: pointer to the question name
+            reply[p++] = HEADER_LENGTH;
+            p = put16(reply, p, question.type);
+            p = put16(reply, p, question.qclass);
+            p = put32(reply, p, ttl);
+            p = put16(reply, p, address.length);
+            System.arraycopy(address, 0, reply, p, address.length);
+        }
+        return reply;
+    }
+
+    /**
+     * Builds an empty reply with the given response code, echoing the question if there is one.
+     */
+    static byte[] errorReply(byte[] query, int length, Question question, int rcode) {
+        byte[] reply = Arrays.copyOf(query, question != null ? question.end : Math.min(length, HEADER_LENGTH));
+        if (reply.length < HEADER_LENGTH) reply = Arrays.copyOf(reply, HEADER_LENGTH);
+        setReplyHeader(reply, rcode, 0);
+        if (question == null) put16(reply, 4, 0);
+        return reply;
+    }
+
+    /**
+     * Records where the TTL fields of a response are and how long it may be cached.
+     *
+     * @return null if the response cannot be parsed or should not be cached.
+     */
+    static ResponseInfo analyze(byte[] msg, int length, int negativeTtlDefault) {
+        if (length < HEADER_LENGTH || isTruncated(msg)) return null;
+        int rcode = rcode(msg);
+        if (rcode != RCODE_NOERROR && rcode != RCODE_NXDOMAIN) return null;
+
+        int questions = u16(msg, 4);
+        int answers = u16(msg, 6);
+        int authority = u16(msg, 8);
+        int additional = u16(msg, 10);
+        int p = HEADER_LENGTH;
+        for (int i = 0; i < questions; i++) {
+            p = skipName(msg, length, p);
+            if (p < 0 || p + 4 > length) return null;
+            p += 4;
+        }
+
+        int records = answers + authority + additional;
+        int[] ttlOffsets = new int[records];
+        int ttlCount = 0;
+        long minAnswerTtl = Long.MAX_VALUE;
+        long negativeTtl = -1;
+        for (int i = 0; i < records; i++) {
+            p = skipName(msg, length, p);
+            if (p < 0 || p + 10 > length) return null;
+            int type = u16(msg, p);
+            long ttl = u32(msg, p + 4);
+            int rdLength = u16(msg, p + 8);
+            int rdata = p + 10;
+            if (rdata + rdLength > length) return null;
+            if (type != TYPE_OPT) { // The OPT pseudo-record uses the TTL field for flags
+                ttlOffsets[ttlCount++] = p + 4;
+            }
+            if (i < answers) {
+                minAnswerTtl = Math.min(minAnswerTtl, ttl);
+            } else if (i < answers + authority && type == TYPE_SOA) {
+                // RFC 2308: negative answers live for min(SOA TTL, SOA MINIMUM)
+                int minimum = skipName(msg, length, skipName(msg, length, rdata));
+                if (minimum > 0 && minimum + 20 <= rdata + rdLength) {
+                    negativeTtl = Math.min(ttl, u32(msg, minimum + 16));
+                }
+            }
+            p = rdata + rdLength;
+        }
+
+        boolean negative = rcode == RCODE_NXDOMAIN || answers == 0;
+        long ttl = negative ? (negativeTtl >= 0 ? negativeTtl : negativeTtlDefault) : minAnswerTtl;
+        return new ResponseInfo(Arrays.copyOf(ttlOffsets, ttlCount), ttl, negative);
+    }
+
+    static final class ResponseInfo {
+        final int[] ttlOffsets;
+        final long ttlSeconds;
+        final boolean negative;
+
+        ResponseInfo(int[] ttlOffsets, long ttlSeconds, boolean negative) {
+            this.ttlOffsets = ttlOffsets;
+            this.ttlSeconds = ttlSeconds;
+            this.negative = negative;
+        }
+    }
+
+    /**
+     * Lowers every TTL in the message: each becomes min(original - elapsed, cap), never below zero.
+     */
+    static void ageTtls(byte[] msg, int[] ttlOffsets, long elapsedSeconds, long capSeconds) {
+        for (int offset : ttlOffsets) {
+            long ttl = Math.max(0, u32(msg, offset) - elapsedSeconds);
+            put32(msg, offset, (int) Math.min(ttl, capSeconds));
+        }
+    }
+
+    static int u16(byte[] b, int p) {
+        return ((b[p] & 0xFF) << 8) | (b[p + 1] & 0xFF);
+    }
+
+    static long u32(byte[] b, int p) {
+        return ((long) u16(b, p) << 16) | u16(b, p + 2);
+    }
+
+    static int put16(byte[] b, int p, int v) {
+        b[p] = (byte) (v >>> 8);
+        b[p + 1] = (byte) v;
+        return p + 2;
+    }
+
+    static int put32(byte[] b, int p, int v) {
+        put16(b, p, v >>> 16);
+        put16(b, p + 2, v);
+        return p + 4;
+    }
+
+    private static void setReplyHeader(byte[] reply, int rcode, int answers) {
+        reply[2] = (byte) (0x80 | (reply[2] & 0x79)); // QR=1, keep opcode and RD, clear AA and TC
+        reply[3] = (byte) (0x80 | rcode);             // RA=1
+        put16(reply, 6, answers);
+        put16(reply, 8, 0);
+        put16(reply, 10, 0);
+    }
+
+    /**
+     * Decodes a possibly compressed name into out (lower case, dot separated).
+     *
+     * @return Offset just past the name at start, or -1 if it is malformed.
+     */
+    private static int readName(byte[] msg, int length, int start, StringBuilder out) {
+        int p = start;
+        int end = -1;
+        int jumps = 0;
+        while (true) {
+            if (p >= length) return -1;
+            int len = msg[p] & 0xFF;
+            if (len == 0) {
+                return end >= 0 ? end : p + 1;
+            }
+            if ((len & 0xC0) == 0xC0) {
+                if (p + 1 >= length || ++jumps > 16) return -1;
+                if (end < 0) end = p + 2;
+                p = ((len & 0x3F) << 8) | (msg[p + 1] & 0xFF);
+                continue;
+            }
+            if ((len & 0xC0) != 0 || p + 1 + len > length) return -1;
+            if (out.length() > 0) out.append('.');
+            for (int i = p + 1; i <= p + len; i++) {
+                char c = (char) (msg[i] & 0xFF);
+                out.append(c >= 'A' && c <= 'Z' ? (char) (c + 32) : c);
+            }
+            p += 1 + len;
+        }
+    }
+
+    /**
+     * @return Offset just past the name at p, or -1 if it is malformed.
+     */
+    private static int skipName(byte[] msg, int length, int p) {
+        if (p < 0) return -1;
+        while (p < length) {
+            int len = msg[p] & 0xFF;
+            if (len == 0) return p + 1;
+            if ((len & 0xC0) == 0xC0) return p + 2 <= length ? p + 2 : -1;
+            if ((len & 0xC0) != 0) return -1;
+            p += 1 + len;
+        }
+        return -1;
+    }
+}
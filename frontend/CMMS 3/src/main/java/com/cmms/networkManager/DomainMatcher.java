@@ -0,0 +1,14 @@
+package com.cmms.networkManager;
+
+/**
+ * Anything that can tell whether a host name is covered by a set of domain rules, such as an in-memory
+ * {@link DomainSet} or a memory-mapped {@link BlocklistFile}.
+ */
+public interface DomainMatcher {
+
+    /**
+     * @param host A plain host name (no scheme, port or path), in any case.
+     * @return true if any rule matches the host.
+     */
+    boolean matches(CharSequence host);
+}
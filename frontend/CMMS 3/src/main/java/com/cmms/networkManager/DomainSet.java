@@ -0,0 +1,416 @@
+package com.cmms.networkManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.function.BiConsumer;
+
+/**
+ * Set of domain rules matched label by label from the right ("www.example.com" is looked up as com, example, www).
+ * <p>
+ * The trie is stored in flat arrays: every distinct label is interned once into a shared char pool and gets an
+ * int id, nodes are ints, and the edges are a single open-addressing table keyed by (parent node, label id).
+ * A lookup costs one hash probe per label, independent of how many rules are loaded, and does not allocate.
+ * <p>
+ * Three kinds of rules are supported:
+ * <ul>
+ *   <li>{@link MatchType#DOMAIN}: "example.com" matches example.com and every subdomain (the default for {@link #add})</li>
+ *   <li>{@link MatchType#SUBDOMAINS}: "*.example.com" matches the subdomains but not example.com itself</li>
+ *   <li>{@link MatchType#EXACT}: matches only that exact name ({@link #addExact})</li>
+ * </ul>
+ * Lookups are case-insensitive and ignore a trailing dot. The set is not synchronized: build it on one thread,
+ * then publish it (e.g. through a volatile field) and only read it afterwards. To change a published set, build
+ * a new one and swap the reference.
+ */
+public class DomainSet implements DomainMatcher {
+
+    public enum MatchType {
+        EXACT,
+        DOMAIN,
+        SUBDOMAINS
+    }
+
+    private static final byte FLAG_EXACT = 1;
+    private static final byte FLAG_DOMAIN = 2;
+    private static final byte FLAG_SUBDOMAINS = 4;
+    private static final int ROOT = 0;
+
+    // Interned labels, stored back to back in one char pool; label i is labelChars[labelStart[i], labelStart[i + 1]).
+    // labelTable holds label id + 1 (0 = empty slot)
+    private char[] labelChars = new char[256];
+    private int[] labelStart = new int[17];
+    private int[] labelHashes = new int[16];
+    private int labelCount;
+    private int[] labelTable = new int[32];
+
+    // Nodes
+    private int[] nodeParent = new int[16];
+    private int[] nodeLabel = new int[16];
+    private byte[] nodeFlags = new byte[16];
+    private int nodeCount = 1; // Root
+
+    // Edges: key = parent << 32 | label id, -1 = empty slot
+    private long[] edgeKeys = newEdgeKeys(32);
+    private int[] edgeChildren = new int[32];
+    private int edgeCount;
+
+    private int ruleCount;
+
+    public DomainSet() {
+        nodeParent[ROOT] = -1;
+        nodeLabel[ROOT] = -1;
+    }
+
+    /**
+     * Builds a set from entries as accepted by {@link #add}.
+     */
+    public static DomainSet of(Collection<String> entries) {
+        DomainSet set = new DomainSet();
+        if (entries != null) {
+            for (String entry : entries) {
+                set.add(entry);
+            }
+        }
+        return set;
+    }
+
+    /**
+     * Adds a rule. "*.example.com" adds a {@link MatchType#SUBDOMAINS} rule, anything else a {@link MatchType#DOMAIN}
+     * rule. URLs are reduced to their host first ("https://www.example.com/path" becomes "www.example.com").
+     *
+     * @return true if the rule was not present yet. Blank or malformed entries are ignored.
+     */
+    public boolean add(String entry) {
+        String host = normalize(entry);
+        if (host == null) return false;
+        if (host.startsWith("*.")) {
+            return addRule(host.substring(2), FLAG_SUBDOMAINS);
+        }
+        return addRule(host, FLAG_DOMAIN);
+    }
+
+    /**
+     * Adds a rule matching only this exact name.
+     *
+     * @return true if the rule was not present yet.
+     */
+    public boolean addExact(String entry) {
+        String host = normalize(entry);
+        if (host == null || host.startsWith("*.")) return false;
+        return addRule(host, FLAG_EXACT);
+    }
+
+    /**
+     * Removes a rule previously added with {@link #add} (the same entry string).
+     *
+     * @return true if it was present.
+     */
+    public boolean remove(String entry) {
+        String host = normalize(entry);
+        if (host == null) return false;
+        boolean wildcard = host.startsWith("*.");
+        int node = findNode(wildcard ? host.substring(2) : host);
+        return node >= 0 && clearFlag(node, wildcard ? FLAG_SUBDOMAINS : FLAG_DOMAIN);
+    }
+
+    /**
+     * Removes a rule previously added with {@link #addExact}.
+     *
+     * @return true if it was present.
+     */
+    public boolean removeExact(String entry) {
+        String host = normalize(entry);
+        if (host == null) return false;
+        int node = findNode(host);
+        return node >= 0 && clearFlag(node, FLAG_EXACT);
+    }
+
+    @Override
+    public boolean matches(CharSequence host) {
+        int end = host.length();
+        if (end > 0 && host.charAt(end - 1) == '.') end--;
+        if (end == 0) return false;
+
+        int node = ROOT;
+        while (true) {
+            int start = end - 1;
+            while (start >= 0 && host.charAt(start) != '.') start--;
+            start++;
+            // start..end is the next label from the right; more labels follow if start > 0
+
+            int label = findLabel(host, start, end);
+            int child = label < 0 ? -1 : findChild(node, label);
+            if (child < 0) return false;
+            node = child;
+            byte flags = nodeFlags[node];
+            if ((flags & FLAG_DOMAIN) != 0) return true;
+            if (start == 0) return (flags & FLAG_EXACT) != 0;
+            if ((flags & FLAG_SUBDOMAINS) != 0) return true;
+            end = start - 1;
+        }
+    }
+
+    /**
+     * @return Number of rules in the set.
+     */
+    public int size() {
+        return ruleCount;
+    }
+
+    public boolean isEmpty() {
+        return ruleCount == 0;
+    }
+
+    /**
+     * @return Number of distinct labels interned (for sizing and benchmarks).
+     */
+    public int getLabelCount() {
+        return labelCount;
+    }
+
+    /**
+     * Calls the visitor once per rule with the domain (without a "*." prefix) and the rule's type.
+     * Names come in the order they were first added to the trie.
+     */
+    public void forEach(BiConsumer<String, MatchType> visitor) {
+        StringBuilder sb = new StringBuilder();
+        for (int node = 1; node < nodeCount; node++) {
+            byte flags = nodeFlags[node];
+            if (flags == 0) continue;
+            String domain = nameOf(node, sb);
+            if ((flags & FLAG_DOMAIN) != 0) visitor.accept(domain, MatchType.DOMAIN);
+            if ((flags & FLAG_SUBDOMAINS) != 0) visitor.accept(domain, MatchType.SUBDOMAINS);
+            if ((flags & FLAG_EXACT) != 0) visitor.accept(domain, MatchType.EXACT);
+        }
+    }
+
+    /**
+     * @return The domain of every rule, each name once.
+     */
+    public List<String> domains() {
+        List<String> result = new ArrayList<>(ruleCount);
+        StringBuilder sb = new StringBuilder();
+        for (int node = 1; node < nodeCount; node++) {
+            if (nodeFlags[node] != 0) result.add(nameOf(node, sb));
+        }
+        return result;
+    }
+
+    /**
+     * Reduces a website entry to a lower-case host name: strips the scheme, user info, port, path, surrounding
+     * whitespace and a trailing dot. A leading "." is read as "*.".
+     *
+     * @return The host, or null if nothing usable is left.
+     */
+    public static String normalize(String entry) {
+        if (entry == null) return null;
+        String host = entry.trim().toLowerCase(Locale.ROOT);
+        int scheme = host.indexOf("://");
+        if (scheme >= 0) host = host.substring(scheme + 3);
+        int at = host.indexOf('@');
+        if (at >= 0) host = host.substring(at + 1);
+        for (int i = 0; i < host.length(); i++) {
+            char c = host.charAt(i);
+            if (c == '/' || c == ':' || c == '?' || c == '#') {
+                host = host.substring(0, i);
+                break;
+            }
+        }
+        while (host.endsWith(".")) host = host.substring(0, host.length() - 1);
+        if (host.startsWith(".")) host = "*" + host;
+        if (host.isEmpty() || host.equals("*") || host.contains("..") || host.indexOf('*', 1) >= 0) return null;
+        if (host.startsWith("*") && !host.startsWith("*.")) return null;
+        return host;
+    }
+
+    @Override
+    public String toString() {
+        return "DomainSet{rules=" + ruleCount + ", labels=" + labelCount + ", nodes=" + nodeCount + '}';
+    }
+
+    // --- Trie ---
+
+    private boolean addRule(String host, byte flag) {
+        int node = ROOT;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            int label = internLabel(host, start, end);
+            int child = findChild(node, label);
+            if (child < 0) child = addChild(node, label);
+            node = child;
+            end = start - 1;
+        }
+        if ((nodeFlags[node] & flag) != 0) return false;
+        if (nodeFlags[node] == 0) ruleCount++;
+        nodeFlags[node] |= flag;
+        return true;
+    }
+
+    private boolean clearFlag(int node, byte flag) {
+        if ((nodeFlags[node] & flag) == 0) return false;
+        nodeFlags[node] &= (byte) ~flag;
+        if (nodeFlags[node] == 0) ruleCount--;
+        return true;
+    }
+
+    private int findNode(String host) {
+        int node = ROOT;
+        int end = host.length();
+        while (end > 0) {
+            int start = host.lastIndexOf('.', end - 1) + 1;
+            int label = findLabel(host, start, end);
+            node = label < 0 ? -1 : findChild(node, label);
+            if (node < 0) return -1;
+            end = start - 1;
+        }
+        return node;
+    }
+
+    private String nameOf(int node, StringBuilder sb) {
+        sb.setLength(0);
+        for (int n = node; n != ROOT; n = nodeParent[n]) {
+            if (sb.length() > 0) sb.append('.');
+            int label = nodeLabel[n];
+            sb.append(labelChars, labelStart[label], labelStart[label + 1] - labelStart[label]);
+        }
+        return sb.toString();
+    }
+
+    private int addChild(int parent, int label) {
+        if (nodeCount == nodeFlags.length) {
+            int capacity = nodeFlags.length * 2;
+            nodeParent = Arrays.copyOf(nodeParent, capacity);
+            nodeLabel = Arrays.copyOf(nodeLabel, capacity);
+            nodeFlags = Arrays.copyOf(nodeFlags, capacity);
+        }
+        int child = nodeCount++;
+        nodeParent[child] = parent;
+        nodeLabel[child] = label;
+
+        if ((edgeCount + 1) * 4 > edgeKeys.length * 3) { // Load factor 0.75
+            growEdges();
+        }
+        insertEdge(edgeKeys, edgeChildren, edgeKey(parent, label), child);
+        edgeCount++;
+        return child;
+    }
+
+    private int findChild(int parent, int label) {
+        long key = edgeKey(parent, label);
+        int mask = edgeKeys.length - 1;
+        for (int slot = mix(key) & mask; ; slot = (slot + 1) & mask) {
+            long k = edgeKeys[slot];
+            if (k == key) return edgeChildren[slot];
+            if (k == -1) return -1;
+        }
+    }
+
+    private void growEdges() {
+        long[] keys = newEdgeKeys(edgeKeys.length * 2);
+        int[] children = new int[keys.length];
+        for (int i = 0; i < edgeKeys.length; i++) {
+            if (edgeKeys[i] != -1) insertEdge(keys, children, edgeKeys[i], edgeChildren[i]);
+        }
+        edgeKeys = keys;
+        edgeChildren = children;
+    }
+
+    private static void insertEdge(long[] keys, int[] children, long key, int child) {
+        int mask = keys.length - 1;
+        int slot = mix(key) & mask;
+        while (keys[slot] != -1) slot = (slot + 1) & mask;
+        keys[slot] = key;
+        children[slot] = child;
+    }
+
+    private static long edgeKey(int parent, int label) {
+        return ((long) parent << 32) | (label & 0xFFFFFFFFL);
+    }
+
+    private static long[] newEdgeKeys(int capacity) {
+        long[] keys = new long[capacity];
+        Arrays.fill(keys, -1);
+        return keys;
+    }
+
+    private static int mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    // --- Label interning ---
+
+    private int internLabel(String host, int start, int end) {
+        int found = findLabel(host, start, end);
+        if (found >= 0) return found;
+
+        if (labelCount == labelHashes.length) {
+            labelHashes = Arrays.copyOf(labelHashes, labelHashes.length * 2);
+            labelStart = Arrays.copyOf(labelStart, labelHashes.length + 1);
+        }
+        int id = labelCount++;
+        int offset = labelStart[id];
+        int length = end - start;
+        if (offset + length > labelChars.length) {
+            labelChars = Arrays.copyOf(labelChars, Math.max(labelChars.length * 2, offset + length));
+        }
+        host.getChars(start, end, labelChars, offset);
+        labelStart[id + 1] = offset + length;
+        labelHashes[id] = labelHash(host, start, end);
+        if (labelCount * 4 > labelTable.length * 3) {
+            int[] table = new int[labelTable.length * 2];
+            for (int i = 0; i < labelCount - 1; i++) insertLabel(table, i);
+            labelTable = table;
+        }
+        insertLabel(labelTable, id);
+        return id;
+    }
+
+    private void insertLabel(int[] table, int id) {
+        int mask = table.length - 1;
+        int slot = labelHashes[id] & mask;
+        while (table[slot] != 0) slot = (slot + 1) & mask;
+        table[slot] = id + 1;
+    }
+
+    /**
+     * @return The id of the label host[start, end), compared case-insensitively, or -1.
+     */
+    private int findLabel(CharSequence host, int start, int end) {
+        if (start >= end) return -1;
+        int hash = labelHash(host, start, end);
+        int mask = labelTable.length - 1;
+        for (int slot = hash & mask; ; slot = (slot + 1) & mask) {
+            int entry = labelTable[slot];
+            if (entry == 0) return -1;
+            int id = entry - 1;
+            if (labelHashes[id] == hash && labelEquals(id, host, start, end)) return id;
+        }
+    }
+
+    private static int labelHash(CharSequence s, int start, int end) {
+        int h = 0;
+        for (int i = start; i < end; i++) {
+            h = 31 * h + lower(s.charAt(i));
+        }
+        h *= 0x9E3779B9; // Spread short-string hashes before they are masked
+        return h ^ (h >>> 16);
+    }
+
+    private boolean labelEquals(int id, CharSequence s, int start, int end) {
+        int offset = labelStart[id];
+        int length = labelStart[id + 1] - offset;
+        if (length != end - start) return false;
+        for (int i = 0; i < length; i++) {
+            if (labelChars[offset + i] != lower(s.charAt(start + i))) return false;
+        }
+        return true;
+    }
+
+    private static char lower(char c) {
+        return c >= 'A' && c <= 'Z' ? (char) (c + 32) : (c < 128 ? c : Character.toLowerCase(c));
+    }
+}
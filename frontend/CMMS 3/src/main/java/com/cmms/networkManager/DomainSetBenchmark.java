@@ -0,0 +1,147 @@
+package com.cmms.networkManager;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Manual check and benchmark for {@link DomainSet}.
+ * <p>
+ * Checks the matching rules on a few hand-written cases (exits with status 1 on a mismatch), then builds sets of
+ * synthetic domains and measures build time, retained heap and lookup cost for a mix of exact, subdomain and
+ * missing names. The linear endsWith scan that NetworkManagerWin used before is measured as the baseline.
+ * Run with: java com.cmms.networkManager.DomainSetBenchmark [sizes...]   (default 1000 100000 1000000)
+ */
+public class DomainSetBenchmark {
+
+    private static final String[] TLDS = {"com", "net", "org", "io", "co.uk", "edu", "tv", "de"};
+    private static final int LOOKUPS = 200_000;
+
+    public static void main(String[] args) {
+        if (!verify()) {
+            System.err.println("DomainSet verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("Matching rules OK");
+
+        int[] sizes = args.length > 0 ? new int[args.length] : new int[]{1_000, 100_000, 1_000_000};
+        for (int i = 0; i < args.length; i++) sizes[i] = Integer.parseInt(args[i]);
+
+        for (int size : sizes) {
+            run(size);
+        }
+    }
+
+    private static void run(int size) {
+        Random random = new Random(42);
+        List<String> domains = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            domains.add(randomDomain(random));
+        }
+        String[] queries = new String[4096];
+        for (int i = 0; i < queries.length; i++) {
+            String base = domains.get(random.nextInt(size));
+            switch (i % 3) {
+                case 0: queries[i] = base; break;                         // Exact hit
+                case 1: queries[i] = "cdn" + i + ".static." + base; break; // Subdomain hit
+                default: queries[i] = randomDomain(random); break;         // Almost always a miss
+            }
+        }
+
+        long heapBefore = usedHeap();
+        long start = System.nanoTime();
+        DomainSet set = DomainSet.of(domains);
+        long buildNanos = System.nanoTime() - start;
+        long retained = usedHeap() - heapBefore;
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        int hits = 0;
+        for (int i = 0; i < LOOKUPS; i++) if (set.matches(queries[i & 4095])) hits++; // Warm up
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        start = System.nanoTime();
+        for (int i = 0; i < LOOKUPS; i++) if (set.matches(queries[i & 4095])) hits++;
+        long lookupNanos = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+
+        // The linear scan is O(n) per lookup, so give it fewer lookups on big sets
+        int linearLookups = (int) Math.max(100, Math.min(LOOKUPS, 2_000_000_000L / size / 50));
+        for (int i = 0; i < linearLookups / 4; i++) if (linearMatch(domains, queries[i & 4095])) hits++;
+        start = System.nanoTime();
+        for (int i = 0; i < linearLookups; i++) if (linearMatch(domains, queries[i & 4095])) hits++;
+        long linearNanos = System.nanoTime() - start;
+
+        System.out.printf("%,9d domains: build %7.1f ms, ~%6.1f MB retained (%,d labels) | trie %7.3f us/lookup, %d B/lookup | linear %10.3f us/lookup  (hits %d)%n",
+                size, buildNanos / 1e6, retained / 1e6, set.getLabelCount(),
+                lookupNanos / 1e3 / LOOKUPS, allocated / LOOKUPS, linearNanos / 1e3 / linearLookups, hits);
+    }
+
+    private static boolean linearMatch(List<String> domains, String host) {
+        for (String domain : domains) {
+            if (host.equals(domain) || host.endsWith("." + domain)) return true;
+        }
+        return false;
+    }
+
+    private static String randomDomain(Random random) {
+        StringBuilder sb = new StringBuilder();
+        if (random.nextInt(4) == 0) sb.append(randomLabel(random, 3, 6)).append('.');
+        sb.append(randomLabel(random, 4, 12)).append('.').append(TLDS[random.nextInt(TLDS.length)]);
+        return sb.toString();
+    }
+
+    private static String randomLabel(Random random, int min, int max) {
+        int length = min + random.nextInt(max - min + 1);
+        char[] chars = new char[length];
+        for (int i = 0; i < length; i++) chars[i] = (char) ('a' + random.nextInt(26));
+        return new String(chars);
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    private static boolean verify() {
+        DomainSet set = new DomainSet();
+        set.add("Example.com");
+        set.add("https://www.news.org/world?x=1");
+        set.add("*.cdn.net");
+        set.addExact("exact.io");
+        set.add("co.uk.");
+
+        boolean ok = true;
+        ok &= expect(set, "example.com", true);
+        ok &= expect(set, "WWW.EXAMPLE.COM.", true);
+        ok &= expect(set, "a.b.example.com", true);
+        ok &= expect(set, "badexample.com", false);
+        ok &= expect(set, "com", false);
+        ok &= expect(set, "www.news.org", true);
+        ok &= expect(set, "news.org", false);
+        ok &= expect(set, "img.cdn.net", true);
+        ok &= expect(set, "cdn.net", false);
+        ok &= expect(set, "exact.io", true);
+        ok &= expect(set, "sub.exact.io", false);
+        ok &= expect(set, "anything.co.uk", true);
+        ok &= expect(set, "", false);
+        ok &= expect(set, "example..com", false);
+
+        set.remove("example.com");
+        ok &= expect(set, "www.example.com", false);
+        if (set.size() != 4) {
+            System.err.println("Expected 4 rules after remove but got " + set.size());
+            ok = false;
+        }
+        return ok;
+    }
+
+    private static boolean expect(DomainSet set, String host, boolean expected) {
+        boolean actual = set.matches(host);
+        if (actual != expected) {
+            System.err.println("matches(\"" + host + "\"): expected " + expected + " but got " + actual);
+        }
+        return actual == expected;
+    }
+}
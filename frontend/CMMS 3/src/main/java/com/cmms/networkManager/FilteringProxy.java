@@ -0,0 +1,610 @@
+package com.cmms.networkManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Forward proxy on loopback that enforces the website policy per connection, which also covers sites reached by
+ * IP address or through DNS-over-HTTPS, where the hosts file and the DNS resolver never see the name.
+ * <p>
+ * Plain HTTP is filtered by the request target and Host header. HTTPS is filtered by the CONNECT target and,
+ * without decrypting anything, by the server name (SNI) the browser sends in its TLS ClientHello: the proxy
+ * answers the CONNECT, waits for the ClientHello, and only then opens the upstream connection. Blocked HTTP
+ * requests get a 403 page; blocked tunnels are closed.
+ * <p>
+ * Everything runs on one NIO selector thread. Relayed bytes go from one socket into a pooled direct buffer and
+ * from there straight into the other socket, so payload is never copied into the Java heap; only request heads
+ * and ClientHellos are inspected. Names are resolved through the shared {@link HostResolver}, off the selector
+ * thread, and each resolved address is tried in turn (IPv4 first) until one accepts. A connection limit (excess clients get a 503) and idle timeouts bound what a misbehaving client can
+ * hold on to.
+ * <p>
+ * Browsers must use the listen address as their proxy. The listen address is a constructor argument, so the
+ * proxy can run on any loopback port against a local origin server.
+ */
+public class FilteringProxy implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(FilteringProxy.class);
+
+    private static final int DEFAULT_PORT = 3128;
+    private static final int DEFAULT_MAX_CONNECTIONS = 256;
+    private static final int BUFFER_SIZE = 32 * 1024;
+    private static final int MAX_HEAD_SIZE = 16 * 1024;
+    private static final int MAX_POOLED_BUFFERS = 64;
+    private static final long RESOLVE_TIMEOUT_MS = 10_000;
+    private static final long HEAD_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(15);
+    private static final long HELLO_WAIT_NANOS = TimeUnit.SECONDS.toNanos(2);
+    private static final long CONNECT_ATTEMPT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long IDLE_TIMEOUT_NANOS = TimeUnit.MINUTES.toNanos(5);
+    private static final byte[] CONNECT_ESTABLISHED = "HTTP/1.1 200 Connection Established\r\n\r\n".getBytes(StandardCharsets.ISO_8859_1);
+
+    private enum State {
+        /** Reading the request head. */
+        HEAD,
+        /** CONNECT answered, waiting for the TLS ClientHello. */
+        HELLO,
+        /** Waiting for the name lookup or the upstream connection. */
+        CONNECTING,
+        /** Both sides connected, copying bytes. */
+        RELAY,
+        /** Writing a final response to the client, then closing. */
+        CLOSING
+    }
+
+    private final InetSocketAddress listenAddress;
+    private final int maxConnections;
+    private final HostResolver resolver;
+    private volatile Predicate<String> blockPolicy;
+
+    // Selector thread state
+    private Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread selectorThread;
+    private volatile boolean running;
+    private final Set<Connection> connections = new HashSet<>();
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    private final ArrayDeque<ByteBuffer> bufferPool = new ArrayDeque<>();
+
+    private final AtomicLong accepted = new AtomicLong();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong blocked = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final AtomicLong bytesUp = new AtomicLong();
+    private final AtomicLong bytesDown = new AtomicLong();
+    private volatile int active;
+
+    public FilteringProxy(InetSocketAddress listenAddress, Predicate<String> blockPolicy) {
+        this(listenAddress, blockPolicy, DEFAULT_MAX_CONNECTIONS, HostResolver.getShared());
+    }
+
+    /**
+     * @param maxConnections Clients served at once; further clients get a 503 until one finishes.
+     * @param resolver       Resolver for upstream names.
+     */
+    public FilteringProxy(InetSocketAddress listenAddress, Predicate<String> blockPolicy, int maxConnections, HostResolver resolver) {
+        this.listenAddress = listenAddress;
+        this.blockPolicy = blockPolicy;
+        this.maxConnections = maxConnections;
+        this.resolver = resolver;
+    }
+
+    /**
+     * Replaces the policy. Takes effect for the next request or tunnel; established tunnels are not cut.
+     */
+    public void setBlockPolicy(Predicate<String> blockPolicy) {
+        this.blockPolicy = blockPolicy;
+    }
+
+    /**
+     * Binds the listener and starts serving.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        serverChannel.bind(listenAddress, 128);
+        serverChannel.configureBlocking(false);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        running = true;
+        selectorThread = new Thread(this::selectLoop, "cmms-proxy");
+        selectorThread.setDaemon(true);
+        selectorThread.start();
+        log.info("FilteringProxy: Listening on {} (max {} connections)", getLocalAddress(), maxConnections);
+    }
+
+    /**
+     * @return The bound address (useful when listening on port 0).
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    @Override
+    public synchronized void close() {
+        if (!running) return;
+        running = false;
+        selector.wakeup();
+        try {
+            selectorThread.join(1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        for (Connection connection : new ArrayList<>(connections)) {
+            connection.close();
+        }
+        closeQuietly(serverChannel);
+        closeQuietly(selector);
+        log.info("FilteringProxy: Stopped. {}", this);
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public long getAcceptedCount() {
+        return accepted.get();
+    }
+
+    /**
+     * @return Clients turned away because the connection limit was reached.
+     */
+    public long getRejectedCount() {
+        return rejected.get();
+    }
+
+    public long getBlockedCount() {
+        return blocked.get();
+    }
+
+    /**
+     * @return Requests that could not be forwarded because the host did not resolve or was unreachable.
+     */
+    public long getFailedCount() {
+        return failed.get();
+    }
+
+    public int getActiveConnections() {
+        return active;
+    }
+
+    /**
+     * @return Bytes relayed from clients to servers and from servers to clients.
+     */
+    public long getBytesUp() {
+        return bytesUp.get();
+    }
+
+    public long getBytesDown() {
+        return bytesDown.get();
+    }
+
+    @Override
+    public String toString() {
+        return "FilteringProxy{accepted=" + accepted + ", rejected=" + rejected + ", blocked=" + blocked
+                + ", failed=" + failed + ", active=" + active + ", bytesUp=" + bytesUp + ", bytesDown=" + bytesDown + '}';
+    }
+
+    /**
+     * Loopback proxy on the customary proxy port, for pointing the system's proxy setting at.
+     */
+    public static InetSocketAddress defaultListenAddress() {
+        return new InetSocketAddress(InetAddress.getLoopbackAddress(), DEFAULT_PORT);
+    }
+
+    // --- Selector thread ---
+
+    private void selectLoop() {
+        long nextSweep = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (running) {
+            try {
+                selector.select(500);
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) continue;
+                    if (key.isAcceptable()) {
+                        accept();
+                    } else {
+                        ((Connection) key.attachment()).handle(key);
+                    }
+                }
+                long now = System.nanoTime();
+                if (now >= nextSweep) {
+                    sweep(now);
+                    nextSweep = now + TimeUnit.SECONDS.toNanos(1);
+                }
+            } catch (IOException e) {
+                if (running) log.warn("FilteringProxy: Selector error: {}", e.getMessage());
+            } catch (RuntimeException e) {
+                log.error("FilteringProxy: Unexpected error: " + e.getMessage(), e);
+            }
+        }
+    }
+
+    private void accept() throws IOException {
+        SocketChannel channel;
+        while ((channel = serverChannel.accept()) != null) {
+            channel.configureBlocking(false);
+            channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+            if (connections.size() >= maxConnections) {
+                rejected.incrementAndGet();
+                try {
+                    channel.write(ByteBuffer.wrap(ProxyProtocol.response(503, "Too Many Connections")));
+                } catch (IOException ignored) {
+                    // Closing anyway
+                }
+                closeQuietly(channel);
+                continue;
+            }
+            accepted.incrementAndGet();
+            Connection connection = new Connection(channel);
+            connection.clientKey = channel.register(selector, SelectionKey.OP_READ, connection);
+            connections.add(connection);
+            active = connections.size();
+        }
+    }
+
+    private void sweep(long now) {
+        for (Connection connection : new ArrayList<>(connections)) {
+            long idle = now - connection.lastActivity;
+            if (connection.state == State.HELLO && idle > HELLO_WAIT_NANOS) {
+                connection.resolveAndConnect(); // The client waits for the server to speak first; no SNI to check
+            } else if (connection.state == State.CONNECTING && connection.upstream != null
+                    && now - connection.connectStarted > CONNECT_ATTEMPT_NANOS) {
+                connection.connectNext(); // No answer from this address
+            } else if ((connection.state == State.HEAD && idle > HEAD_TIMEOUT_NANOS) || idle > IDLE_TIMEOUT_NANOS) {
+                connection.close();
+            }
+        }
+    }
+
+    private ByteBuffer takeBuffer() {
+        ByteBuffer buffer = bufferPool.poll();
+        return buffer != null ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+    }
+
+    private void returnBuffer(ByteBuffer buffer) {
+        if (buffer != null && bufferPool.size() < MAX_POOLED_BUFFERS) {
+            buffer.clear();
+            bufferPool.add(buffer);
+        }
+    }
+
+    private boolean isBlocked(String host) {
+        Predicate<String> policy = blockPolicy;
+        return host != null && policy != null && policy.test(host);
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        if (closeable == null) return;
+        try {
+            closeable.close();
+        } catch (IOException ignored) {
+            // Shutting down anyway
+        }
+    }
+
+    /**
+     * One client connection and, once it is allowed, its upstream connection. Only touched by the selector thread.
+     * Both buffers are kept in fill mode: bytes in [0, position) are waiting to be written to the other side.
+     */
+    private final class Connection {
+        final SocketChannel client;
+        SocketChannel upstream;
+        SelectionKey clientKey;
+        SelectionKey upstreamKey;
+        ByteBuffer up = takeBuffer();   // Client to upstream
+        ByteBuffer down = takeBuffer(); // Upstream to client
+        State state = State.HEAD;
+        String host;
+        int port;
+        boolean clientEof;
+        boolean upstreamEof;
+        boolean upstreamShut;
+        boolean clientShut;
+        boolean tunnelAnswered; // The client got "200 Connection Established", so no other status can follow
+        boolean closed;
+        long lastActivity = System.nanoTime();
+        List<String> addresses = Collections.emptyList(); // Upstream candidates, IPv4 first
+        int nextAddress;
+        long connectStarted;
+
+        Connection(SocketChannel client) {
+            this.client = client;
+        }
+
+        void handle(SelectionKey key) {
+            try {
+                lastActivity = System.nanoTime();
+                if (key == upstreamKey && key.isConnectable()) {
+                    if (!upstream.finishConnect()) return;
+                    state = State.RELAY;
+                    flush(up, upstream, bytesUp);
+                }
+                if (key == clientKey) {
+                    if (key.isReadable()) readClient();
+                    if (key.isValid() && key.isWritable()) flush(down, client, bytesDown);
+                } else {
+                    if (key.isReadable()) readUpstream();
+                    if (key.isValid() && key.isWritable()) flush(up, upstream, bytesUp);
+                }
+                if (!closed) updateInterest();
+            } catch (IOException e) {
+                if (state == State.CONNECTING) {
+                    connectNext(); // Upstream refused or unreachable
+                } else {
+                    close();
+                }
+            }
+        }
+
+        private void readClient() throws IOException {
+            if (client.read(up) < 0) {
+                clientEof = true;
+                if (state != State.RELAY) {
+                    close();
+                    return;
+                }
+            }
+            switch (state) {
+                case HEAD:
+                    inspectHead();
+                    break;
+                case HELLO:
+                    inspectHello();
+                    break;
+                case RELAY:
+                    flush(up, upstream, bytesUp); // Pass it on right away rather than on the next select
+                    break;
+                default:
+                    break;
+            }
+        }
+
+        private void readUpstream() throws IOException {
+            if (upstream.read(down) < 0) {
+                upstreamEof = true;
+            }
+            flush(down, client, bytesDown);
+        }
+
+        private void inspectHead() throws IOException {
+            byte[] data = copy(up);
+            if (ProxyProtocol.isTlsHandshake(data, data.length)) {
+                fail(400, "Bad Request"); // TLS without CONNECT: the proxy setting is wrong for this client
+                return;
+            }
+            int headEnd = ProxyProtocol.findHeadEnd(data, data.length);
+            if (headEnd < 0) {
+                if (data.length >= MAX_HEAD_SIZE) fail(431, "Request Header Fields Too Large");
+                return;
+            }
+            ProxyProtocol.RequestHead head = ProxyProtocol.parseHead(data, headEnd);
+            if (head == null) {
+                fail(400, "Bad Request");
+                return;
+            }
+            host = head.host;
+            port = head.port;
+            if (isBlocked(head.host) || isBlocked(head.hostHeader)) {
+                block();
+                return;
+            }
+
+            // Keep anything the client already sent after the head (a request body, or an early ClientHello)
+            up.clear();
+            if (head.connect) {
+                up.put(data, headEnd, data.length - headEnd);
+                down.put(CONNECT_ESTABLISHED);
+                tunnelAnswered = true;
+                flush(down, client, bytesDown);
+                state = State.HELLO;
+                inspectHello();
+            } else {
+                up.put(head.forward);
+                up.put(data, headEnd, data.length - headEnd);
+                resolveAndConnect();
+            }
+        }
+
+        private void inspectHello() {
+            if (up.position() == 0) return;
+            byte[] data = copy(up);
+            if (ProxyProtocol.isTlsHandshake(data, data.length)) {
+                int recordLength = ProxyProtocol.tlsRecordLength(data, data.length);
+                if ((recordLength < 0 || data.length < recordLength) && up.hasRemaining()) {
+                    return; // Wait for the rest of the record
+                }
+                if (isBlocked(ProxyProtocol.serverName(data, data.length))) {
+                    blocked.incrementAndGet();
+                    close();
+                    return;
+                }
+            }
+            resolveAndConnect();
+        }
+
+        void resolveAndConnect() {
+            state = State.CONNECTING;
+            resolver.resolveAsync(host).copy() // The resolver shares its futures, so time out on a copy
+                    .completeOnTimeout(Collections.emptyList(), RESOLVE_TIMEOUT_MS, TimeUnit.MILLISECONDS)
+                    .whenComplete((addresses, error) -> {
+                        tasks.add(() -> connect(error == null ? addresses : null));
+                        selector.wakeup();
+                    });
+        }
+
+        private void connect(List<String> resolved) {
+            if (closed) return;
+            addresses = resolved != null ? ipv4First(resolved) : Collections.emptyList();
+            nextAddress = 0;
+            connectNext();
+        }
+
+        /**
+         * Starts connecting to the next candidate address, dropping any attempt in progress; 502 when none are left.
+         */
+        void connectNext() {
+            closeQuietly(upstream);
+            upstream = null;
+            upstreamKey = null;
+            while (nextAddress < addresses.size()) {
+                String candidate = addresses.get(nextAddress++);
+                try {
+                    upstream = SocketChannel.open();
+                    upstream.configureBlocking(false);
+                    upstream.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    connectStarted = System.nanoTime();
+                    InetAddress address = InetAddress.getByName(candidate); // A literal, so no lookup
+                    boolean connected = upstream.connect(new InetSocketAddress(address, port));
+                    upstreamKey = upstream.register(selector, connected ? 0 : SelectionKey.OP_CONNECT, this);
+                    if (connected) state = State.RELAY;
+                    updateInterest();
+                    return;
+                } catch (IOException e) {
+                    log.debug("FilteringProxy: Could not connect to {} ({}:{}): {}", candidate, host, port, e.getMessage());
+                    closeQuietly(upstream);
+                    upstream = null;
+                    upstreamKey = null;
+                }
+            }
+            failed.incrementAndGet();
+            fail(502, "Bad Gateway");
+        }
+
+        private void block() throws IOException {
+            blocked.incrementAndGet();
+            log.debug("FilteringProxy: Blocked {}:{}", host, port);
+            respondAndClose(ProxyProtocol.response(403, "Forbidden"));
+        }
+
+        private void fail(int status, String reason) {
+            try {
+                respondAndClose(ProxyProtocol.response(status, reason));
+            } catch (IOException e) {
+                close();
+            }
+        }
+
+        private void respondAndClose(byte[] response) throws IOException {
+            if (tunnelAnswered) {
+                close();
+                return;
+            }
+            state = State.CLOSING;
+            closeQuietly(upstream);
+            upstream = null;
+            upstreamKey = null;
+            down.clear();
+            down.put(response);
+            flush(down, client, null);
+            updateInterest();
+        }
+
+        private void flush(ByteBuffer buffer, SocketChannel target, AtomicLong counter) throws IOException {
+            if (buffer.position() == 0 || target == null || (target == upstream && state != State.RELAY)) return;
+            buffer.flip();
+            int written = target.write(buffer);
+            buffer.compact();
+            if (counter != null && state == State.RELAY) counter.addAndGet(written);
+        }
+
+        private void updateInterest() throws IOException {
+            if (state == State.CLOSING) {
+                if (down.position() == 0) {
+                    close();
+                } else {
+                    clientKey.interestOps(SelectionKey.OP_WRITE);
+                }
+                return;
+            }
+
+            // Pass on a half-close once everything before it has been delivered
+            if (state == State.RELAY) {
+                if (clientEof && up.position() == 0 && !upstreamShut) {
+                    upstream.shutdownOutput();
+                    upstreamShut = true;
+                }
+                if (upstreamEof && down.position() == 0 && !clientShut) {
+                    client.shutdownOutput();
+                    clientShut = true;
+                }
+                if (upstreamShut && clientShut) {
+                    close();
+                    return;
+                }
+            }
+
+            boolean readClient = !clientEof && up.hasRemaining() && state != State.CONNECTING;
+            clientKey.interestOps((readClient ? SelectionKey.OP_READ : 0) | (down.position() > 0 ? SelectionKey.OP_WRITE : 0));
+            if (upstreamKey != null && upstreamKey.isValid()) {
+                if (state == State.RELAY) {
+                    boolean readUpstream = !upstreamEof && down.hasRemaining();
+                    upstreamKey.interestOps((readUpstream ? SelectionKey.OP_READ : 0) | (up.position() > 0 ? SelectionKey.OP_WRITE : 0));
+                } else {
+                    upstreamKey.interestOps(SelectionKey.OP_CONNECT);
+                }
+            }
+        }
+
+        void close() {
+            if (closed) return;
+            closed = true;
+            closeQuietly(client);
+            closeQuietly(upstream);
+            returnBuffer(up);
+            returnBuffer(down);
+            up = null;
+            down = null;
+            connections.remove(this);
+            active = connections.size();
+        }
+
+        private List<String> ipv4First(List<String> resolved) {
+            List<String> ordered = new ArrayList<>(resolved.size());
+            for (String address : resolved) {
+                if (address.indexOf(':') < 0) ordered.add(address);
+            }
+            for (String address : resolved) {
+                if (address.indexOf(':') >= 0) ordered.add(address);
+            }
+            return ordered;
+        }
+
+        private byte[] copy(ByteBuffer buffer) {
+            byte[] data = new byte[buffer.position()];
+            buffer.get(0, data);
+            return data;
+        }
+    }
+}
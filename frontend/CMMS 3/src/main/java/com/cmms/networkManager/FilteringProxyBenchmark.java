@@ -0,0 +1,401 @@
+package com.cmms.networkManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Manual check and benchmark for {@link FilteringProxy}, entirely on loopback.
+ * <p>
+ * Starts a local HTTP origin and a raw TCP server standing in for a TLS site (it reads a fake ClientHello, then
+ * either streams a requested number of bytes or echoes). Checks blocking by URL, Host header, CONNECT target and
+ * SNI, forwarding, falling back to the next address when one refuses, the 502 for unknown hosts and the connection limit (exits with status 1 on a mismatch).
+ * Then compares proxied with direct connections: bulk throughput through a tunnel, round-trip latency of small
+ * messages, and the time for complete small HTTP requests including connection setup.
+ * Run with: java com.cmms.networkManager.FilteringProxyBenchmark
+ */
+public class FilteringProxyBenchmark {
+
+    private static final Set<String> BLOCKED = Set.of("blocked.example", "evil.test");
+    private static final int BULK_BYTES = 256 * 1024 * 1024;
+    private static final int ROUND_TRIPS = 20_000;
+    private static final int HTTP_REQUESTS = 2_000;
+
+    private static int originPort;
+    private static int tunnelPort;
+
+    public static void main(String[] args) throws Exception {
+        originPort = startServer(FilteringProxyBenchmark::serveHttp);
+        tunnelPort = startServer(FilteringProxyBenchmark::serveTunnel);
+        HostResolver resolver = new HostResolver(2, 60_000, 60_000, FilteringProxyBenchmark::lookup);
+
+        try (FilteringProxy proxy = new FilteringProxy(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                BLOCKED::contains, 64, resolver)) {
+            proxy.start();
+            int proxyPort = proxy.getLocalAddress().getPort();
+            if (!verify(proxyPort)) {
+                System.err.println("FilteringProxy verification FAILED");
+                System.exit(1);
+            }
+            if (!verifyLimit(resolver)) {
+                System.err.println("FilteringProxy connection limit verification FAILED");
+                System.exit(1);
+            }
+            System.out.println("Filtering and forwarding OK");
+
+            benchmarkThroughput(proxyPort);
+            benchmarkRoundTrips(proxyPort);
+            benchmarkRequests(proxyPort);
+            System.out.println(proxy);
+        }
+    }
+
+    // --- Checks ---
+
+    private static boolean verify(int proxyPort) throws IOException {
+        boolean ok = true;
+        ok &= expectStatus(proxyPort, "GET http://blocked.example/ HTTP/1.1\r\nHost: blocked.example\r\n\r\n", 403);
+        ok &= expectStatus(proxyPort, "GET http://127.0.0.1:" + originPort + "/ HTTP/1.1\r\nHost: evil.test\r\n\r\n", 403);
+        ok &= expectStatus(proxyPort, "GET http://nowhere.invalid/ HTTP/1.1\r\nHost: nowhere.invalid\r\n\r\n", 502);
+        ok &= expectStatus(proxyPort, "CONNECT blocked.example:443 HTTP/1.1\r\nHost: blocked.example:443\r\n\r\n", 403);
+        ok &= expectStatus(proxyPort, "garbage\r\n\r\n", 400);
+
+        byte[] response = httpGet(proxyPort, "http://localhost:" + originPort + "/bytes/1000");
+        String text = new String(response, StandardCharsets.ISO_8859_1);
+        if (!text.startsWith("HTTP/1.1 200") || !text.endsWith("x".repeat(1000))) {
+            System.err.println("Proxied GET returned " + text.substring(0, Math.min(80, text.length())));
+            ok = false;
+        }
+
+        // The first address refuses (nothing listens on 127.0.0.2), the second one is the origin
+        String fallback = new String(httpGet(proxyPort, "http://fallback.test:" + originPort + "/bytes/10"), StandardCharsets.ISO_8859_1);
+        if (!fallback.startsWith("HTTP/1.1 200")) {
+            System.err.println("Proxied GET with a refusing first address returned " + fallback.substring(0, Math.min(80, fallback.length())));
+            ok = false;
+        }
+
+        // Tunnel to an allowed address whose ClientHello names a blocked site: answered, then closed without data
+        try (Socket socket = openTunnel(proxyPort, "127.0.0.1", tunnelPort, "evil.test")) {
+            if (socket.getInputStream().read() != -1) {
+                System.err.println("Tunnel with a blocked SNI was not closed");
+                ok = false;
+            }
+        }
+
+        try (Socket socket = openTunnel(proxyPort, "localhost", tunnelPort, "localhost")) {
+            new DataOutputStream(socket.getOutputStream()).writeLong(1 << 20);
+            long received = drain(socket.getInputStream());
+            if (received != 1 << 20) {
+                System.err.println("Tunnel delivered " + received + " bytes instead of " + (1 << 20));
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static boolean verifyLimit(HostResolver resolver) throws IOException {
+        try (FilteringProxy small = new FilteringProxy(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0),
+                BLOCKED::contains, 2, resolver)) {
+            small.start();
+            int port = small.getLocalAddress().getPort();
+            List<Socket> idle = new ArrayList<>();
+            try {
+                for (int i = 0; i < 2; i++) idle.add(new Socket(InetAddress.getLoopbackAddress(), port));
+                waitFor(() -> small.getActiveConnections() == 2);
+                boolean ok = expectStatus(port, "GET http://localhost/ HTTP/1.1\r\n\r\n", 503);
+                if (small.getRejectedCount() != 1) {
+                    System.err.println("Expected 1 rejected connection but got " + small.getRejectedCount());
+                    ok = false;
+                }
+                return ok;
+            } finally {
+                for (Socket socket : idle) socket.close();
+            }
+        }
+    }
+
+    private static boolean expectStatus(int proxyPort, String request, int expected) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxyPort)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            String statusLine = readLine(socket.getInputStream());
+            boolean ok = statusLine.startsWith("HTTP/1.1 " + expected + " ");
+            if (!ok) {
+                System.err.println(request.split("\r\n")[0] + ": expected " + expected + " but got \"" + statusLine + "\"");
+            }
+            return ok;
+        }
+    }
+
+    // --- Benchmarks ---
+
+    private static void benchmarkThroughput(int proxyPort) throws IOException {
+        double direct = 0;
+        double proxied = 0;
+        for (int run = 0; run < 3; run++) {
+            direct = Math.max(direct, bulk(openDirect("localhost")));
+            proxied = Math.max(proxied, bulk(openTunnel(proxyPort, "localhost", tunnelPort, "localhost")));
+        }
+        System.out.printf("Throughput, %d MB download:     direct %7.0f MB/s | via proxy %7.0f MB/s (%.0f%%)%n",
+                BULK_BYTES >> 20, direct, proxied, 100 * proxied / direct);
+    }
+
+    private static double bulk(Socket socket) throws IOException {
+        try (socket) {
+            long start = System.nanoTime();
+            new DataOutputStream(socket.getOutputStream()).writeLong(BULK_BYTES);
+            long received = drain(socket.getInputStream());
+            double seconds = (System.nanoTime() - start) / 1e9;
+            if (received != BULK_BYTES) throw new IOException("Short transfer: " + received);
+            return received / 1e6 / seconds;
+        }
+    }
+
+    private static void benchmarkRoundTrips(int proxyPort) throws IOException {
+        long[] direct = roundTrips(openDirect("localhost"));
+        long[] proxied = roundTrips(openTunnel(proxyPort, "localhost", tunnelPort, "localhost"));
+        System.out.printf("Round trip, 64 B message:          direct p50 %6.1f us, p99 %6.1f us | via proxy p50 %6.1f us, p99 %6.1f us%n",
+                percentile(direct, 50) / 1e3, percentile(direct, 99) / 1e3, percentile(proxied, 50) / 1e3, percentile(proxied, 99) / 1e3);
+    }
+
+    private static long[] roundTrips(Socket socket) throws IOException {
+        try (socket) {
+            socket.setTcpNoDelay(true);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            DataInputStream in = new DataInputStream(socket.getInputStream());
+            out.writeLong(0); // Echo mode
+            byte[] message = new byte[64];
+            long[] nanos = new long[ROUND_TRIPS];
+            for (int i = -ROUND_TRIPS / 10; i < ROUND_TRIPS; i++) {
+                long start = System.nanoTime();
+                out.write(message);
+                in.readFully(message);
+                if (i >= 0) nanos[i] = System.nanoTime() - start;
+            }
+            return nanos;
+        }
+    }
+
+    private static void benchmarkRequests(int proxyPort) throws IOException {
+        long[] direct = new long[HTTP_REQUESTS];
+        long[] proxied = new long[HTTP_REQUESTS];
+        String url = "http://localhost:" + originPort + "/bytes/100";
+        for (int i = -HTTP_REQUESTS / 10; i < HTTP_REQUESTS; i++) {
+            long start = System.nanoTime();
+            httpGet(-1, url);
+            long middle = System.nanoTime();
+            httpGet(proxyPort, url);
+            long end = System.nanoTime();
+            if (i >= 0) {
+                direct[i] = middle - start;
+                proxied[i] = end - middle;
+            }
+        }
+        System.out.printf("HTTP request with new connection:  direct p50 %6.1f us, p99 %6.1f us | via proxy p50 %6.1f us, p99 %6.1f us%n",
+                percentile(direct, 50) / 1e3, percentile(direct, 99) / 1e3, percentile(proxied, 50) / 1e3, percentile(proxied, 99) / 1e3);
+    }
+
+    private static double percentile(long[] values, int percent) {
+        long[] sorted = values.clone();
+        Arrays.sort(sorted);
+        return sorted[Math.min(sorted.length - 1, sorted.length * percent / 100)];
+    }
+
+    // --- Clients ---
+
+    /**
+     * GET through the proxy, or directly when proxyPort is -1. Returns the whole response.
+     */
+    private static byte[] httpGet(int proxyPort, String url) throws IOException {
+        String path = url.substring(url.indexOf('/', 7));
+        String request = proxyPort < 0
+                ? "GET " + path + " HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n"
+                : "GET " + url + " HTTP/1.1\r\nHost: localhost\r\nProxy-Connection: keep-alive\r\n\r\n";
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxyPort < 0 ? originPort : proxyPort)) {
+            socket.setSoTimeout(5000);
+            socket.getOutputStream().write(request.getBytes(StandardCharsets.ISO_8859_1));
+            return socket.getInputStream().readAllBytes();
+        }
+    }
+
+    private static Socket openDirect(String serverName) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), tunnelPort);
+        socket.setSoTimeout(10_000);
+        socket.getOutputStream().write(clientHello(serverName));
+        return socket;
+    }
+
+    private static Socket openTunnel(int proxyPort, String host, int port, String serverName) throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), proxyPort);
+        socket.setSoTimeout(10_000);
+        OutputStream out = socket.getOutputStream();
+        out.write(("CONNECT " + host + ":" + port + " HTTP/1.1\r\nHost: " + host + ":" + port + "\r\n\r\n")
+                .getBytes(StandardCharsets.ISO_8859_1));
+        InputStream in = socket.getInputStream();
+        String statusLine = readLine(in);
+        if (!statusLine.startsWith("HTTP/1.1 200")) throw new IOException("CONNECT failed: " + statusLine);
+        while (!readLine(in).isEmpty()) {
+            // Skip the rest of the head
+        }
+        out.write(clientHello(serverName));
+        return socket;
+    }
+
+    /**
+     * Minimal TLS 1.2-style ClientHello record carrying only a server name extension.
+     */
+    static byte[] clientHello(String serverName) {
+        byte[] name = serverName.getBytes(StandardCharsets.US_ASCII);
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        body.write(3);
+        body.write(3);                              // Client version
+        body.write(new byte[32], 0, 32);            // Random
+        body.write(0);                              // Session id
+        writeU16(body, 2);
+        writeU16(body, 0x1301);                     // One cipher suite
+        body.write(1);
+        body.write(0);                              // Null compression
+        int sniLength = 2 + 3 + name.length;
+        writeU16(body, 4 + sniLength);              // Extensions
+        writeU16(body, 0);                          // server_name
+        writeU16(body, sniLength);
+        writeU16(body, 3 + name.length);
+        body.write(0);                              // host_name
+        writeU16(body, name.length);
+        body.write(name, 0, name.length);
+
+        byte[] hello = body.toByteArray();
+        ByteArrayOutputStream record = new ByteArrayOutputStream();
+        record.write(0x16);
+        record.write(3);
+        record.write(1);
+        writeU16(record, 4 + hello.length);
+        record.write(1);                            // ClientHello
+        record.write(0);
+        writeU16(record, hello.length);
+        record.write(hello, 0, hello.length);
+        return record.toByteArray();
+    }
+
+    private static void writeU16(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value & 0xFF);
+    }
+
+    private static long drain(InputStream in) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        long total = 0;
+        int n;
+        while ((n = in.read(buffer)) > 0) total += n;
+        return total;
+    }
+
+    private static String readLine(InputStream in) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        int c;
+        while ((c = in.read()) >= 0 && c != '\n') {
+            if (c != '\r') sb.append((char) c);
+        }
+        return sb.toString();
+    }
+
+    private static void waitFor(java.util.function.BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!condition.getAsBoolean() && System.currentTimeMillis() < deadline) {
+            Thread.onSpinWait();
+        }
+    }
+
+    // --- Local servers ---
+
+    private interface Handler {
+        void serve(Socket socket) throws IOException;
+    }
+
+    private static int startServer(Handler handler) throws IOException {
+        ServerSocket server = new ServerSocket(0, 128, InetAddress.getLoopbackAddress());
+        Thread acceptor = new Thread(() -> {
+            while (true) {
+                try {
+                    Socket socket = server.accept();
+                    Thread worker = new Thread(() -> {
+                        try (socket) {
+                            socket.setTcpNoDelay(true);
+                            handler.serve(socket);
+                        } catch (IOException ignored) {
+                            // Client went away
+                        }
+                    });
+                    worker.setDaemon(true);
+                    worker.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        }, "origin-" + server.getLocalPort());
+        acceptor.setDaemon(true);
+        acceptor.start();
+        return server.getLocalPort();
+    }
+
+    private static void serveHttp(Socket socket) throws IOException {
+        InputStream in = socket.getInputStream();
+        String requestLine = readLine(in);
+        while (!readLine(in).isEmpty()) {
+            // Headers are not needed
+        }
+        String path = requestLine.split(" ")[1];
+        int size = path.startsWith("/bytes/") ? Integer.parseInt(path.substring(7)) : 5;
+        OutputStream out = socket.getOutputStream();
+        out.write(("HTTP/1.1 200 OK\r\nContent-Length: " + size + "\r\nConnection: close\r\n\r\n").getBytes(StandardCharsets.ISO_8859_1));
+        out.write("x".repeat(size).getBytes(StandardCharsets.ISO_8859_1));
+        out.flush();
+    }
+
+    /**
+     * Reads a ClientHello record and a length. A length of 0 means echo everything, otherwise send that many bytes.
+     */
+    private static void serveTunnel(Socket socket) throws IOException {
+        DataInputStream in = new DataInputStream(socket.getInputStream());
+        byte[] header = new byte[5];
+        in.readFully(header);
+        in.readFully(new byte[((header[3] & 0xFF) << 8) | (header[4] & 0xFF)]);
+        long length = in.readLong();
+        OutputStream out = socket.getOutputStream();
+        byte[] buffer = new byte[64 * 1024];
+        if (length == 0) {
+            int n;
+            while ((n = in.read(buffer)) > 0) out.write(buffer, 0, n);
+            return;
+        }
+        while (length > 0) {
+            int n = (int) Math.min(buffer.length, length);
+            out.write(buffer, 0, n);
+            length -= n;
+        }
+        socket.shutdownOutput();
+    }
+
+    private static InetAddress[] lookup(String host) throws UnknownHostException {
+        if (host.equals("fallback.test")) {
+            return new InetAddress[]{InetAddress.getByName("127.0.0.2"), InetAddress.getByName("127.0.0.1")};
+        }
+        if (host.equals("localhost") || Character.isDigit(host.charAt(0))) {
+            return new InetAddress[]{InetAddress.getByName(host.equals("localhost") ? "127.0.0.1" : host)};
+        }
+        throw new UnknownHostException(host);
+    }
+}
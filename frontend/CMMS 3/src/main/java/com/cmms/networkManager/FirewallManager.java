@@ -4,293 +4,221 @@ import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 /**
  * Manages Windows Firewall rules for website restrictions
  * Provides a more robust blocking mechanism than hosts file alone
+ * <p>
+ * Rules are applied through a {@link FirewallReconciler}, so an update only touches the rules that changed and
+ * costs at most one powershell launch.
  */
 public class FirewallManager {
     private static final Logger LOGGER = Logger.getLogger(FirewallManager.class.getName());
     private static final String FIREWALL_RULE_GROUP = "CMMS_WebRestrictions";
     private static final String CRITICAL_SERVICES_RULE_GROUP = "CMMS_CriticalServices";
-    
+    private static final HostResolver RESOLVER = HostResolver.getShared();
+    private static final long RESOLVE_TIMEOUT_MS = 10_000;
+
+    private static FirewallReconciler webRules = new FirewallReconciler(new FirewallScriptRunner.PowerShell(), FIREWALL_RULE_GROUP);
+    private static FirewallReconciler criticalRules = new FirewallReconciler(new FirewallScriptRunner.PowerShell(), CRITICAL_SERVICES_RULE_GROUP);
+    private static Boolean administrator; // Cached, it cannot change while the process runs
+    private static boolean skipAdministratorCheck;
+
+    /**
+     * Replaces how firewall scripts are run, e.g. with a fake runner to exercise the rule logic off Windows.
+     * Also skips the administrator check, which would launch powershell itself.
+     */
+    public static synchronized void setScriptRunner(FirewallScriptRunner runner) {
+        webRules = new FirewallReconciler(runner, FIREWALL_RULE_GROUP);
+        criticalRules = new FirewallReconciler(runner, CRITICAL_SERVICES_RULE_GROUP);
+        skipAdministratorCheck = true;
+    }
+
     /**
      * Ensures critical system services have outbound network access.
+     * After the first call this is answered from the reconciler's tracked state without launching anything.
      */
     private static void ensureCriticalServicesAllowed() {
         try {
-            if (!isAdministrator()) {
-                LOGGER.warning("Cannot ensure critical services allowed without administrator privileges.");
-                return;
-            }
-
             // Rule for System Process (PID 4) - handles many low-level network tasks
-            String systemRuleName = CRITICAL_SERVICES_RULE_GROUP + "_System";
             // Allowing 'System' pseudo-process might require different approaches or might be implicitly allowed.
             // Let's focus on svchost first as it's more directly controllable via firewall rules by path.
-            // String systemCommand = String.format("powershell -Command \"New-NetFirewallRule -DisplayName '%s' -Direction Outbound -Action Allow -Program 'System' -Group '%s'\"", systemRuleName, CRITICAL_SERVICES_RULE_GROUP);
-            // executeCommand(systemCommand); // Commented out for now
 
             // Rule for svchost.exe (hosts many essential Windows services)
             String svchostRuleName = CRITICAL_SERVICES_RULE_GROUP + "_Svchost";
             String svchostPath = System.getenv("SystemRoot") + "\\System32\\svchost.exe"; // Get dynamic path
-            String svchostCommand = String.format(
-                "powershell -Command \"New-NetFirewallRule -DisplayName '%s' -Direction Outbound -Action Allow -Program '%s' -Group '%s' -ErrorAction SilentlyContinue\"", // Added SilentlyContinue if rule exists
-                svchostRuleName, svchostPath, CRITICAL_SERVICES_RULE_GROUP
-            );
-            executeCommand(svchostCommand);
 
             // Potentially add rules for other critical processes like Windows Update Agent if needed
             // e.g., wuauclt.exe, UsoClient.exe
 
-            LOGGER.info("Ensured critical services firewall rules are present.");
-
+            FirewallReconciler.Result result = criticalRules.reconcile(Collections.singletonList(
+                    FirewallRule.forAddress(svchostRuleName, FirewallRule.Action.Allow, svchostPath, null)), null);
+            if (result.isScriptRun()) {
+                LOGGER.info("Ensured critical services firewall rules are present.");
+            }
         } catch (Exception e) {
             LOGGER.severe("Error ensuring critical services firewall rules: " + e.getMessage());
         }
     }
-    
+
     /**
      * Enables internet restrictions by:
      * 1. Setting default outbound policy to block
      * 2. Creating specific allow rules for the browser to access allowed websites
-     * 
+     *
      * @param allowedWebsites list of websites that should be accessible
      * @param browserPath path to the browser executable (e.g., chrome.exe)
      * @return true if successful, false otherwise
      */
-    public static boolean enableFirewallRestrictions(List<String> allowedWebsites, String browserPath) {
+    public static synchronized boolean enableFirewallRestrictions(List<String> allowedWebsites, String browserPath) {
         try {
             if (!isAdministrator()) {
                 LOGGER.warning("Firewall configuration requires administrator privileges");
                 return false;
             }
-            
+
             // Ensure critical services are allowed *before* potentially blocking everything else
             ensureCriticalServicesAllowed();
-            
-            // Clear any existing CMMS rules first
-            disableFirewallRestrictions();
-            
-            // Create new rules for each allowed website
-            for (String website : allowedWebsites) {
-                // Resolve domain to IP addresses
-                List<String> ipAddresses = resolveWebsiteIPs(website);
-                
-                if (ipAddresses.isEmpty()) {
-                    LOGGER.warning("Could not resolve IP addresses for: " + website);
-                    continue;
-                }
-                
-                // Create a firewall rule for each IP address
-                for (String ip : ipAddresses) {
-                    String ruleName = String.format("%s_Allow_%s", FIREWALL_RULE_GROUP, website);
-                    String command = String.format(
-                        "powershell -Command \"New-NetFirewallRule -DisplayName '%s' " +
-                        "-Direction Outbound -Action Allow -Program '%s' " +
-                        "-RemoteAddress '%s' -Group '%s'\"",
-                        ruleName, browserPath, ip, FIREWALL_RULE_GROUP
-                    );
-                    
-                    executeCommand(command);
-                }
-            }
-            
+
+            // Resolve all websites at once, then build a rule for each IP address
+            List<FirewallRule> rules = buildWebsiteRules(allowedWebsites, browserPath, FirewallRule.Action.Allow);
+
             // Allow DNS resolution (port 53) for the browser to resolve domains
-            String dnsRuleName = FIREWALL_RULE_GROUP + "_DNS";
-            String dnsCommand = String.format(
-                "powershell -Command \"New-NetFirewallRule -DisplayName '%s' " +
-                "-Direction Outbound -Action Allow -Program '%s' " +
-                "-Protocol UDP -RemotePort 53 -Group '%s'\"",
-                dnsRuleName, browserPath, FIREWALL_RULE_GROUP
-            );
-            executeCommand(dnsCommand);
-            
-            // Set default outbound policy to block
-            String blockCommand = "powershell -Command \"Set-NetFirewallProfile -Profile Domain,Public,Private -DefaultOutboundAction Block\"";
-            executeCommand(blockCommand);
-            
+            rules.add(new FirewallRule(FIREWALL_RULE_GROUP + "_DNS", FirewallRule.Action.Allow, browserPath, null, "UDP", "53"));
+
+            // Apply the difference and set default outbound policy to block, in one script
+            FirewallReconciler.Result result = webRules.reconcile(rules, FirewallRule.Action.Block);
+            LOGGER.info("Firewall whitelist applied: " + result);
             return true;
         } catch (Exception e) {
             LOGGER.severe("Error enabling firewall restrictions: " + e.getMessage());
             return false;
         }
     }
-    
+
     /**
      * Disables internet restrictions by removing all CMMS firewall rules
      * and resetting outbound policy to allow
-     * 
+     *
      * @return true if successful, false otherwise
      */
-    public static boolean disableFirewallRestrictions() {
+    public static synchronized boolean disableFirewallRestrictions() {
         try {
             if (!isAdministrator()) {
                 LOGGER.warning("Firewall configuration requires administrator privileges");
                 return false;
             }
-            
-            // Remove only the web restriction rules, leave critical services rules intact
-            String removeCommand = String.format(
-                "powershell -Command \"Remove-NetFirewallRule -Group '%s' -ErrorAction SilentlyContinue\"",
-                FIREWALL_RULE_GROUP // Use the specific group for web restrictions
-            );
-            executeCommand(removeCommand);
-            
-            // Reset default outbound policy to allow
-            String allowCommand = "powershell -Command \"Set-NetFirewallProfile -Profile Domain,Public,Private -DefaultOutboundAction Allow\"";
-            executeCommand(allowCommand);
-            
+
+            // Remove only the web restriction rules, leave critical services rules intact,
+            // and reset default outbound policy to allow
+            webRules.clear(FirewallRule.Action.Allow);
             return true;
         } catch (Exception e) {
             LOGGER.severe("Error disabling firewall restrictions: " + e.getMessage());
             return false;
         }
     }
-    
+
     /**
-     * Resolves a website domain to IP addresses
-     * 
-     * @param website the website domain to resolve
-     * @return list of IP addresses for the website
+     * Builds one rule per resolved IP address of each website, named so that every rule is unique.
      */
-    private static List<String> resolveWebsiteIPs(String website) {
-        List<String> ipAddresses = new ArrayList<>();
-        
-        try {
-            // Use nslookup to resolve the domain
-            String command = "nslookup " + website;
-            Process process = Runtime.getRuntime().exec(command);
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                if (line.contains("Address:") && !line.contains("Address: #")) {
-                    String ip = line.split("Address:")[1].trim();
-                    ipAddresses.add(ip);
-                }
+    private static List<FirewallRule> buildWebsiteRules(List<String> websites, String browserPath, FirewallRule.Action action) {
+        Map<String, List<String>> resolved = resolveWebsiteIPs(websites);
+        List<FirewallRule> rules = new ArrayList<>();
+        for (String website : websites) {
+            List<String> ipAddresses = resolved.getOrDefault(website, Collections.emptyList());
+
+            if (ipAddresses.isEmpty()) {
+                LOGGER.warning("Could not resolve IP addresses for: " + website);
+                continue;
+            }
+
+            for (String ip : ipAddresses) {
+                String ruleName = String.format("%s_%s_%s_%s", FIREWALL_RULE_GROUP, action, website, ip.replace(":", "_"));
+                rules.add(FirewallRule.forAddress(ruleName, action, browserPath, ip));
             }
-            
-            process.waitFor();
-            reader.close();
-        } catch (IOException | InterruptedException e) {
-            LOGGER.warning("Error resolving IP for " + website + ": " + e.getMessage());
         }
-        
-        return ipAddresses;
+        return rules;
     }
-    
+
     /**
-     * Executes a system command and returns the output
-     * 
-     * @param command the command to execute
-     * @return the output of the command
+     * Resolves website domains to IP addresses, concurrently and through the shared cache
+     *
+     * @param websites the website domains to resolve
+     * @return each website mapped to its IP addresses (empty if it could not be resolved)
      */
-    private static String executeCommand(String command) {
-        StringBuilder output = new StringBuilder();
-        
-        try {
-            Process process = Runtime.getRuntime().exec(command);
-            
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            
-            while ((line = reader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-            
-            process.waitFor();
-            reader.close();
-        } catch (IOException | InterruptedException e) {
-            LOGGER.warning("Error executing command: " + e.getMessage());
-        }
-        
-        return output.toString();
+    private static Map<String, List<String>> resolveWebsiteIPs(List<String> websites) {
+        long start = System.nanoTime();
+        Map<String, List<String>> resolved = RESOLVER.resolveAll(websites, RESOLVE_TIMEOUT_MS);
+        LOGGER.info(String.format("Resolved %d websites in %.1f ms (%s)",
+                resolved.size(), (System.nanoTime() - start) / 1e6, RESOLVER.getStats()));
+        return resolved;
     }
-    
+
     /**
-     * Checks if the application is running with administrator privileges
-     * 
+     * Checks if the application is running with administrator privileges.
+     * The answer is cached after the first successful check.
+     *
      * @return true if running as administrator, false otherwise
      */
     private static boolean isAdministrator() {
+        if (skipAdministratorCheck) {
+            return true;
+        }
+        if (administrator != null) {
+            return administrator;
+        }
         try {
             String command = "powershell -Command \"([Security.Principal.WindowsPrincipal] [Security.Principal.WindowsIdentity]::GetCurrent()).IsInRole([Security.Principal.WindowsBuiltInRole]::Administrator)\"";
             Process process = Runtime.getRuntime().exec(command);
-            
+
             BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
             String result = reader.readLine();
-            
+
             process.waitFor();
             reader.close();
-            
-            return "True".equalsIgnoreCase(result);
-        } catch (Exception e) {
+
+            administrator = "True".equalsIgnoreCase(result);
+            return administrator;
+        } catch (IOException | InterruptedException e) {
             LOGGER.warning("Error checking administrator privileges: " + e.getMessage());
             return false;
         }
     }
-    
+
     /**
      * Enables internet restrictions using a blacklist approach:
      * 1. Ensures default outbound policy is Allow
      * 2. Creates specific block rules for the browser accessing blacklisted websites
-     * 
+     *
      * @param blockedWebsites list of websites that should be blocked
      * @param browserPath path to the browser executable (e.g., chrome.exe)
      * @return true if successful, false otherwise
      */
-    public static boolean enableFirewallRestrictionsBlacklist(List<String> blockedWebsites, String browserPath) {
+    public static synchronized boolean enableFirewallRestrictionsBlacklist(List<String> blockedWebsites, String browserPath) {
         try {
             if (!isAdministrator()) {
                 LOGGER.warning("Firewall configuration requires administrator privileges");
                 return false;
             }
-            
+
             // Ensure critical services are allowed
             ensureCriticalServicesAllowed();
-            
-            // Clear any existing CMMS rules first (covers both allow/block modes)
-            disableFirewallRestrictions(); // Reuse the existing cleanup for web rules
-            
-            // Ensure default outbound policy is Allow (it might have been set to Block previously)
-            String allowCommand = "powershell -Command \\\"Set-NetFirewallProfile -Profile Domain,Public,Private -DefaultOutboundAction Allow\\\"";
-            executeCommand(allowCommand);
 
-            // Create block rules for each blacklisted website
-            for (String website : blockedWebsites) {
-                List<String> ipAddresses = resolveWebsiteIPs(website);
-                
-                if (ipAddresses.isEmpty()) {
-                    LOGGER.warning("Could not resolve IP addresses for blacklisted site: " + website);
-                    continue;
-                }
-                
-                for (String ip : ipAddresses) {
-                    // Use a slightly different name pattern for block rules if needed, or reuse
-                    String ruleName = String.format("%s_Block_%s_%s", FIREWALL_RULE_GROUP, website, ip.replace(":", "_")); // Ensure unique names per IP
-                    // Correct escaping for String.format: Use single quotes for PowerShell arguments where possible,
-                    // and escape the outer double quotes for the powershell -Command argument.
-                    String command = String.format(
-                        "powershell -Command \\\"New-NetFirewallRule -DisplayName '%s' " + // Use single quotes for PowerShell string args
-                        "-Direction Outbound -Action Block -Program '%s' " +               // Use single quotes
-                        "-RemoteAddress '%s' -Group '%s'\\\"",                              // Use single quotes and escape final quote
-                        ruleName, browserPath, ip, FIREWALL_RULE_GROUP
-                    );
-                    
-                    executeCommand(command);
-                }
-            }
-            
+            // Create block rules for each blacklisted website. Reconciling replaces any whitelist rules,
+            // and the default outbound policy goes back to Allow (it might have been set to Block previously).
             // Note: We don't need a specific DNS rule here as the default policy is Allow.
-            
+            List<FirewallRule> rules = buildWebsiteRules(blockedWebsites, browserPath, FirewallRule.Action.Block);
+            FirewallReconciler.Result result = webRules.reconcile(rules, FirewallRule.Action.Allow);
+            LOGGER.info("Firewall blacklist applied: " + result);
             return true;
         } catch (Exception e) {
             LOGGER.severe("Error enabling firewall blacklist restrictions: " + e.getMessage());
             return false;
         }
     }
-} 
\ No newline at end of file
+}
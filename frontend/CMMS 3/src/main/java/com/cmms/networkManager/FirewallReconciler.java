@@ -0,0 +1,226 @@
+package com.cmms.networkManager;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.logging.Logger;
+
+/**
+ * Brings the rules of one firewall group to a desired set with as few process launches as possible.
+ * <p>
+ * {@link #reconcile} compares the desired rules with the rules currently in the group and writes a single script
+ * that removes only the rules that are gone and creates only the new ones (plus the default outbound action, if
+ * it changes). The group's contents are listed from the firewall once and then tracked in memory, so after the
+ * first call each update costs one script run, or none if nothing changed. If a script fails, the tracked state
+ * is dropped and re-read on the next call.
+ */
+public class FirewallReconciler {
+
+    private static final Logger LOGGER = Logger.getLogger(FirewallReconciler.class.getName());
+    private static final String FIELD_SEPARATOR = "\t";
+
+    private final FirewallScriptRunner runner;
+    private final String group;
+
+    private Set<FirewallRule> knownRules; // null until listed
+    private FirewallRule.Action knownDefaultOutbound; // null when unknown
+
+    public FirewallReconciler(FirewallScriptRunner runner, String group) {
+        this.runner = runner;
+        this.group = group;
+    }
+
+    /**
+     * Makes the group contain exactly the desired rules and sets the default outbound action of all profiles.
+     *
+     * @param defaultOutbound Default outbound action, or null to leave it alone.
+     * @return What was changed.
+     * @throws IOException If listing or applying failed; the next call starts from a fresh listing.
+     */
+    public synchronized Result reconcile(Collection<FirewallRule> desired, FirewallRule.Action defaultOutbound) throws IOException {
+        if (knownRules == null) {
+            knownRules = listRules();
+        }
+
+        Set<FirewallRule> wanted = new LinkedHashSet<>(desired);
+        Set<FirewallRule> toRemove = new LinkedHashSet<>(knownRules);
+        toRemove.removeAll(wanted);
+        Set<FirewallRule> toAdd = new LinkedHashSet<>(wanted);
+        toAdd.removeAll(knownRules);
+        boolean setDefault = defaultOutbound != null && defaultOutbound != knownDefaultOutbound;
+
+        if (toRemove.isEmpty() && toAdd.isEmpty() && !setDefault) {
+            return new Result(0, 0, false);
+        }
+
+        // Rules are removed by display name, which also takes out a kept rule with the same name; re-add those
+        Set<String> removedNames = new LinkedHashSet<>();
+        for (FirewallRule rule : toRemove) {
+            removedNames.add(rule.getDisplayName());
+        }
+        for (FirewallRule rule : wanted) {
+            if (removedNames.contains(rule.getDisplayName())) toAdd.add(rule);
+        }
+
+        StringBuilder script = scriptHeader();
+        if (!removedNames.isEmpty()) {
+            script.append("Remove-NetFirewallRule -ErrorAction SilentlyContinue -DisplayName @(");
+            String separator = "";
+            for (String name : removedNames) {
+                script.append(separator).append(quote(name));
+                separator = ", ";
+            }
+            script.append(")\r\n");
+        }
+        for (FirewallRule rule : toAdd) {
+            script.append(newRuleCommand(rule)).append("\r\n");
+        }
+        if (setDefault) {
+            script.append("Set-NetFirewallProfile -Profile Domain,Public,Private -DefaultOutboundAction ")
+                    .append(defaultOutbound).append("\r\n");
+        }
+        script.append(scriptFooter());
+
+        try {
+            runner.run(script.toString());
+        } catch (IOException e) {
+            forget();
+            throw e;
+        }
+
+        knownRules = wanted;
+        if (defaultOutbound != null) knownDefaultOutbound = defaultOutbound;
+        LOGGER.info(String.format("Firewall group %s reconciled: %d added, %d removed%s",
+                group, toAdd.size(), toRemove.size(), setDefault ? ", default outbound " + defaultOutbound : ""));
+        return new Result(toAdd.size(), toRemove.size(), true);
+    }
+
+    /**
+     * Removes every rule in the group (whether tracked or not) and optionally sets the default outbound action,
+     * in one script run.
+     */
+    public synchronized void clear(FirewallRule.Action defaultOutbound) throws IOException {
+        StringBuilder script = scriptHeader();
+        script.append("Get-NetFirewallRule -Group ").append(quote(group))
+                .append(" -ErrorAction SilentlyContinue | Remove-NetFirewallRule\r\n");
+        if (defaultOutbound != null) {
+            script.append("Set-NetFirewallProfile -Profile Domain,Public,Private -DefaultOutboundAction ")
+                    .append(defaultOutbound).append("\r\n");
+        }
+        script.append(scriptFooter());
+        try {
+            runner.run(script.toString());
+        } catch (IOException e) {
+            forget();
+            throw e;
+        }
+        knownRules = new LinkedHashSet<>();
+        knownDefaultOutbound = defaultOutbound;
+    }
+
+    /**
+     * Drops the tracked state, e.g. after something else edited the group. The next call lists it again.
+     */
+    public synchronized void forget() {
+        knownRules = null;
+        knownDefaultOutbound = null;
+    }
+
+    private Set<FirewallRule> listRules() throws IOException {
+        StringBuilder script = scriptHeader();
+        script.append("Get-NetFirewallRule -Group ").append(quote(group)).append(" -ErrorAction SilentlyContinue | ForEach-Object {\r\n")
+                .append("  $app = $_ | Get-NetFirewallApplicationFilter\r\n")
+                .append("  $addr = $_ | Get-NetFirewallAddressFilter\r\n")
+                .append("  $port = $_ | Get-NetFirewallPortFilter\r\n")
+                .append("  @($_.DisplayName, $_.Action, $app.Program, ($addr.RemoteAddress -join ','), $port.Protocol, ($port.RemotePort -join ',')) -join \"`t\"\r\n")
+                .append("}\r\n");
+        script.append(scriptFooter());
+        return parseRules(runner.run(script.toString()));
+    }
+
+    static Set<FirewallRule> parseRules(String output) {
+        Set<FirewallRule> rules = new LinkedHashSet<>();
+        Map<String, FirewallRule.Action> actions = new HashMap<>();
+        for (FirewallRule.Action action : FirewallRule.Action.values()) {
+            actions.put(action.name().toLowerCase(), action);
+        }
+        for (String line : output.split("\r?\n")) {
+            String[] fields = line.split(FIELD_SEPARATOR, -1);
+            if (fields.length != 6) continue; // Not one of our lines
+            FirewallRule.Action action = actions.get(fields[1].trim().toLowerCase());
+            if (action == null) continue;
+            rules.add(new FirewallRule(fields[0], action, blankToAny(fields[2]), blankToAny(fields[3]),
+                    blankToAny(fields[4]), blankToAny(fields[5])));
+        }
+        return rules;
+    }
+
+    private String newRuleCommand(FirewallRule rule) {
+        StringBuilder command = new StringBuilder("New-NetFirewallRule -DisplayName ").append(quote(rule.getDisplayName()))
+                .append(" -Group ").append(quote(group))
+                .append(" -Direction Outbound -Action ").append(rule.getAction());
+        if (!"Any".equalsIgnoreCase(rule.getProgram())) command.append(" -Program ").append(quote(rule.getProgram()));
+        if (!"Any".equalsIgnoreCase(rule.getRemoteAddress())) command.append(" -RemoteAddress ").append(quote(rule.getRemoteAddress()));
+        if (!"Any".equalsIgnoreCase(rule.getProtocol())) command.append(" -Protocol ").append(quote(rule.getProtocol()));
+        if (!"Any".equalsIgnoreCase(rule.getRemotePort())) command.append(" -RemotePort ").append(quote(rule.getRemotePort()));
+        return command.append(" | Out-Null").toString();
+    }
+
+    private static StringBuilder scriptHeader() {
+        return new StringBuilder("$ErrorActionPreference = 'Stop'\r\ntry {\r\n");
+    }
+
+    private static String scriptFooter() {
+        return "} catch {\r\n  Write-Output (\"CMMS firewall script failed: \" + $_)\r\n  exit 1\r\n}\r\n";
+    }
+
+    /**
+     * Single-quoted PowerShell string literal.
+     */
+    static String quote(String value) {
+        return "'" + value.replace("'", "''") + "'";
+    }
+
+    private static String blankToAny(String value) {
+        String trimmed = value.trim();
+        return trimmed.isEmpty() ? "Any" : trimmed;
+    }
+
+    /**
+     * Outcome of one {@link #reconcile} call.
+     */
+    public static class Result {
+        private final int added;
+        private final int removed;
+        private final boolean scriptRun;
+
+        Result(int added, int removed, boolean scriptRun) {
+            this.added = added;
+            this.removed = removed;
+            this.scriptRun = scriptRun;
+        }
+
+        public int getAdded() {
+            return added;
+        }
+
+        public int getRemoved() {
+            return removed;
+        }
+
+        /**
+         * @return false if the group was already up to date and nothing was launched.
+         */
+        public boolean isScriptRun() {
+            return scriptRun;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{added=" + added + ", removed=" + removed + ", scriptRun=" + scriptRun + '}';
+        }
+    }
+}
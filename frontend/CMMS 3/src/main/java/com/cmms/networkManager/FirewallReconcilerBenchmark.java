@@ -0,0 +1,137 @@
+package com.cmms.networkManager;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual check for {@link FirewallReconciler}, {@link SystemDnsSettings} and {@link FirewallScriptRunner.PowerShell},
+ * runnable off Windows.
+ * <p>
+ * A recording runner stands in for powershell and counts what would be launched: the first update lists the
+ * group once and applies once, repeating it launches nothing, and changing one site launches one script with only
+ * that removal and addition. The DNS scripts stop at the first error, and the saved DNS servers survive a failed
+ * restore and are only discarded by one that succeeded. Where {@code sh} exists, the process handling is checked too: a script that never
+ * exits is killed at the timeout, and UTF-8 output is decoded intact. Exits with status 1 if a check fails.
+ * Run with: java com.cmms.networkManager.FirewallReconcilerBenchmark
+ */
+public class FirewallReconcilerBenchmark {
+
+    private static final String BROWSER = "C:\\Program Files\\Browser\\browser.exe";
+
+    public static void main(String[] args) throws Exception {
+        List<String> scripts = new ArrayList<>();
+        FirewallScriptRunner recording = script -> {
+            scripts.add(script);
+            return ""; // An empty group on the first listing
+        };
+        FirewallReconciler reconciler = new FirewallReconciler(recording, "CMMS_Check");
+
+        boolean ok = true;
+        reconciler.reconcile(rules("a.test", "b.test"), FirewallRule.Action.Block);
+        ok &= check(scripts.size() == 2 && scripts.get(0).contains("Get-NetFirewallRule"), "first update lists once and applies once");
+        ok &= check(count(scripts.get(1), "New-NetFirewallRule") == 2 && scripts.get(1).contains("-DefaultOutboundAction Block"),
+                "first update adds both rules and sets the default");
+
+        scripts.clear();
+        FirewallReconciler.Result repeat = reconciler.reconcile(rules("a.test", "b.test"), FirewallRule.Action.Block);
+        ok &= check(scripts.isEmpty() && !repeat.isScriptRun(), "repeating the update launches nothing");
+
+        scripts.clear();
+        reconciler.reconcile(rules("a.test", "c.test"), FirewallRule.Action.Block);
+        ok &= check(scripts.size() == 1, "changing one site launches one script");
+        String change = scripts.isEmpty() ? "" : scripts.get(0);
+        ok &= check(count(change, "Remove-NetFirewallRule") == 1 && change.contains("CMMS_b.test")
+                && count(change, "New-NetFirewallRule") == 1 && change.contains("CMMS_c.test")
+                && !change.contains("DefaultOutboundAction"), "the script holds only that removal and addition");
+
+        ok &= checkDnsSettings();
+
+        if (!System.getProperty("os.name").toLowerCase().contains("win")) {
+            long start = System.nanoTime();
+            try {
+                FirewallScriptRunner.PowerShell.runProcess(List.of("sleep", "30"), 1, TimeUnit.SECONDS);
+                ok &= check(false, "a hung script times out");
+            } catch (IOException e) {
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                ok &= check(millis < 3_000, "a hung script is killed at the timeout (took " + millis + " ms)");
+            }
+            String output = FirewallScriptRunner.PowerShell.runProcess(List.of("sh", "-c", "printf 'Zugriff verweigert: \\303\\244\\303\\266'"),
+                    10, TimeUnit.SECONDS);
+            ok &= check(output.equals("Zugriff verweigert: \u00e4\u00f6"), "UTF-8 output is decoded intact");
+        }
+
+        if (!ok) {
+            System.err.println("FirewallReconciler verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("FirewallReconciler checks OK");
+    }
+
+    private static boolean checkDnsSettings() throws IOException {
+        Path backup = Files.createTempFile("cmms-dns", ".txt");
+        Files.delete(backup);
+        List<String> scripts = new ArrayList<>();
+        boolean[] failing = {false};
+        FirewallScriptRunner runner = script -> {
+            scripts.add(script);
+            if (script.contains("Get-DnsClientServerAddress")) return "12|False|192.0.2.53\r\n";
+            if (failing[0]) throw new IOException("PowerShell exited with code 1");
+            return "";
+        };
+        SystemDnsSettings dns = new SystemDnsSettings(runner, backup);
+        boolean ok = true;
+        try {
+            dns.pointAt(InetAddress.getLoopbackAddress());
+            ok &= check(Files.exists(backup), "pointing DNS at the resolver saves the servers");
+            ok &= check(scripts.stream().allMatch(script -> script.startsWith("$ErrorActionPreference = 'Stop'") && script.contains("exit 1")),
+                    "every DNS script stops at the first error");
+
+            failing[0] = true;
+            try {
+                dns.restore();
+                ok &= check(false, "a failed restore is reported");
+            } catch (IOException e) {
+                ok &= check(Files.exists(backup), "a failed restore keeps the saved servers");
+            }
+            failing[0] = false;
+            dns.restore();
+            ok &= check(!Files.exists(backup), "a restore that succeeded discards them");
+
+            failing[0] = true;
+            try {
+                dns.pointAt(InetAddress.getLoopbackAddress());
+                ok &= check(false, "a failed change is reported");
+            } catch (IOException e) {
+                ok &= check(Files.exists(backup) && e.getSuppressed().length == 1,
+                        "a failed change is rolled back, and the servers kept when that fails too");
+            }
+        } finally {
+            Files.deleteIfExists(backup);
+        }
+        return ok;
+    }
+
+    private static List<FirewallRule> rules(String... sites) {
+        List<FirewallRule> rules = new ArrayList<>();
+        for (String site : sites) {
+            rules.add(FirewallRule.forAddress("CMMS_" + site, FirewallRule.Action.Allow, BROWSER, "192.0.2." + (site.charAt(0) - 'a' + 1)));
+        }
+        return rules;
+    }
+
+    private static int count(String text, String needle) {
+        int count = 0;
+        for (int i = text.indexOf(needle); i >= 0; i = text.indexOf(needle, i + 1)) count++;
+        return count;
+    }
+
+    private static boolean check(boolean condition, String what) {
+        if (!condition) System.err.println("FAILED: " + what);
+        return condition;
+    }
+}
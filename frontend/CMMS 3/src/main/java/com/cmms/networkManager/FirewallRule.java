@@ -0,0 +1,101 @@
+package com.cmms.networkManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.Objects;
+
+/**
+ * One outbound Windows Firewall rule as CMMS creates it. Two rules are equal when every field matches, which is
+ * what {@link FirewallReconciler} uses to decide whether an existing rule can stay.
+ */
+public final class FirewallRule {
+
+    public enum Action {
+        Allow,
+        Block
+    }
+
+    private final String displayName;
+    private final Action action;
+    private final String program;
+    private final String remoteAddress; // "Any" when not restricted
+    private final String protocol;      // "Any", "TCP" or "UDP"
+    private final String remotePort;    // "Any" or a port
+
+    public FirewallRule(String displayName, Action action, String program, String remoteAddress, String protocol, String remotePort) {
+        this.displayName = displayName;
+        this.action = action;
+        this.program = program != null ? program : "Any";
+        this.remoteAddress = remoteAddress != null ? canonicalAddress(remoteAddress) : "Any";
+        this.protocol = protocol != null ? protocol : "Any";
+        this.remotePort = remotePort != null ? remotePort : "Any";
+    }
+
+    /**
+     * Rule for one program talking to one remote address, on any protocol and port.
+     */
+    public static FirewallRule forAddress(String displayName, Action action, String program, String remoteAddress) {
+        return new FirewallRule(displayName, action, program, remoteAddress, null, null);
+    }
+
+    /**
+     * Writes IPv6 literals in one form, since the firewall lists them compressed ("::1") while Java prints them
+     * in full ("0:0:0:0:0:0:0:1"). Anything else is returned unchanged.
+     */
+    private static String canonicalAddress(String address) {
+        if (address.indexOf(':') < 0 || !address.matches("[0-9A-Fa-f:.%]+")) return address;
+        try {
+            return InetAddress.getByName(address).getHostAddress(); // A literal, so no DNS lookup
+        } catch (UnknownHostException e) {
+            return address;
+        }
+    }
+
+    public String getDisplayName() {
+        return displayName;
+    }
+
+    public Action getAction() {
+        return action;
+    }
+
+    public String getProgram() {
+        return program;
+    }
+
+    public String getRemoteAddress() {
+        return remoteAddress;
+    }
+
+    public String getProtocol() {
+        return protocol;
+    }
+
+    public String getRemotePort() {
+        return remotePort;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof FirewallRule)) return false;
+        FirewallRule other = (FirewallRule) o;
+        return displayName.equals(other.displayName)
+                && action == other.action
+                && program.equalsIgnoreCase(other.program)
+                && remoteAddress.equalsIgnoreCase(other.remoteAddress)
+                && protocol.equalsIgnoreCase(other.protocol)
+                && remotePort.equalsIgnoreCase(other.remotePort);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(displayName, action, program.toLowerCase(), remoteAddress.toLowerCase(), protocol.toLowerCase(), remotePort.toLowerCase());
+    }
+
+    @Override
+    public String toString() {
+        return "FirewallRule{" + displayName + ", " + action + ", program=" + program + ", remote=" + remoteAddress
+                + ", " + protocol + "/" + remotePort + '}';
+    }
+}
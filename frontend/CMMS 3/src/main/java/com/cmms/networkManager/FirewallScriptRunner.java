@@ -0,0 +1,100 @@
+package com.cmms.networkManager;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Runs a firewall script and returns its standard output. {@link FirewallReconciler} talks to the firewall only
+ * through this interface, so its logic can be exercised with a fake runner on any OS.
+ */
+public interface FirewallScriptRunner {
+
+    /**
+     * @return The script's standard output.
+     * @throws IOException If the script could not be run or exited with an error.
+     */
+    String run(String script) throws IOException;
+
+    /**
+     * Runs scripts with one {@code powershell} process per call. The script is written to a temporary .ps1 file,
+     * so its length is not limited by the command line and it needs no extra quoting.
+     * <p>
+     * Redirected output would be in the OEM code page, so each script first switches it to UTF-8. The output is read
+     * on its own thread while the caller waits with a timeout, so a hung script is killed instead of blocking the
+     * caller (and FirewallManager, which holds its lock while a script runs).
+     */
+    class PowerShell implements FirewallScriptRunner {
+
+        private static final long TIMEOUT_SECONDS = 120;
+        private static final long OUTPUT_GRACE_MILLIS = 5_000;
+        private static final String UTF8_OUTPUT = "[Console]::OutputEncoding = [System.Text.Encoding]::UTF8\r\n";
+
+        private long launches;
+
+        @Override
+        public String run(String script) throws IOException {
+            Path file = Files.createTempFile("cmms-firewall-", ".ps1");
+            try {
+                // With a BOM so Windows PowerShell reads the file as UTF-8
+                Files.write(file, ("\uFEFF" + UTF8_OUTPUT + script).getBytes(StandardCharsets.UTF_8));
+                synchronized (this) {
+                    launches++;
+                }
+                return runProcess(List.of("powershell", "-NoProfile", "-NonInteractive", "-ExecutionPolicy", "Bypass",
+                        "-File", file.toString()), TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            } finally {
+                Files.deleteIfExists(file);
+            }
+        }
+
+        /**
+         * Runs a command with stdout and stderr merged, decoded as UTF-8.
+         *
+         * @throws IOException If it could not be started, exited with an error or ran longer than the timeout
+         *                     (it is then killed).
+         */
+        static String runProcess(List<String> command, long timeout, TimeUnit unit) throws IOException {
+            Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+            process.getOutputStream().close();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            Thread reader = new Thread(() -> {
+                try (InputStream in = process.getInputStream()) {
+                    in.transferTo(output);
+                } catch (IOException ignored) {
+                    // The process was killed, or closed its output
+                }
+            }, "cmms-script-output");
+            reader.setDaemon(true);
+            reader.start();
+            try {
+                if (!process.waitFor(timeout, unit)) {
+                    process.destroyForcibly();
+                    throw new IOException(command.get(0) + " did not finish within " + unit.toSeconds(timeout) + " s");
+                }
+                reader.join(OUTPUT_GRACE_MILLIS); // A child process may still hold the pipe open
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                process.destroyForcibly();
+                throw new IOException("Interrupted while waiting for " + command.get(0), e);
+            }
+            String text = output.toString(StandardCharsets.UTF_8); // Synchronized against the reader
+            if (process.exitValue() != 0) {
+                throw new IOException(command.get(0) + " exited with " + process.exitValue() + ": " + text.trim());
+            }
+            return text;
+        }
+
+        /**
+         * @return How many powershell processes this runner has started.
+         */
+        public synchronized long getLaunchCount() {
+            return launches;
+        }
+    }
+}
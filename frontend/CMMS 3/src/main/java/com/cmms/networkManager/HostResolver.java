@@ -0,0 +1,252 @@
+package com.cmms.networkManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Logger;
+
+/**
+ * Resolves host names to IP addresses for firewall rules, concurrently and with a cache.
+ * <p>
+ * Lookups run on a small bounded pool, so resolving a whole policy takes about as long as its slowest name instead
+ * of the sum of all of them. Results are cached for a fixed time (failures for a shorter one), and concurrent
+ * requests for the same name share one lookup, so re-applying or refreshing a policy is served from memory.
+ * Lookup latency is tracked for {@link #getStats()}.
+ * <p>
+ * The cache time is not the record's DNS TTL: {@link InetAddress} does not expose TTLs. A site that moves to new
+ * addresses sooner keeps its old ones in the firewall rules until the entry expires; pass a shorter ttlMillis, or
+ * call {@link #clearCache()}, where that matters. See HostResolverBenchmark for a check of the behaviour.
+ */
+public class HostResolver {
+
+    /**
+     * The actual lookup, replaceable for testing.
+     */
+    public interface Lookup {
+        InetAddress[] lookup(String host) throws UnknownHostException;
+    }
+
+    private static final Logger LOGGER = Logger.getLogger(HostResolver.class.getName());
+    private static final long DEFAULT_TTL_MS = 5 * 60_000;
+    private static final long DEFAULT_NEGATIVE_TTL_MS = 30_000;
+    private static final int DEFAULT_THREADS = 8;
+    private static HostResolver shared;
+
+    private final Lookup lookup;
+    private final long ttlMillis;
+    private final long negativeTtlMillis;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CacheEntry> cache = new ConcurrentHashMap<>();
+    private final Map<String, CompletableFuture<List<String>>> inFlight = new ConcurrentHashMap<>();
+
+    private final AtomicLong requests = new AtomicLong();
+    private final AtomicLong cacheHits = new AtomicLong();
+    private final AtomicLong lookups = new AtomicLong();
+    private final AtomicLong failures = new AtomicLong();
+    private final AtomicLong totalLookupNanos = new AtomicLong();
+    private final AtomicLong maxLookupNanos = new AtomicLong();
+
+    /**
+     * @return Resolver shared by the firewall code: 8 threads, 5 minute cache, 30 second negative cache
+     * (fixed times, whatever TTL the DNS records have).
+     */
+    public static synchronized HostResolver getShared() {
+        if (shared == null) {
+            shared = new HostResolver(DEFAULT_THREADS, DEFAULT_TTL_MS, DEFAULT_NEGATIVE_TTL_MS, InetAddress::getAllByName);
+        }
+        return shared;
+    }
+
+    public HostResolver(int threads, long ttlMillis, long negativeTtlMillis, Lookup lookup) {
+        this.lookup = lookup;
+        this.ttlMillis = ttlMillis;
+        this.negativeTtlMillis = negativeTtlMillis;
+        AtomicLong threadCount = new AtomicLong();
+        this.executor = new ThreadPoolExecutor(threads, threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "cmms-resolver-" + threadCount.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Resolves one name, from the cache if possible.
+     *
+     * @return The addresses as strings, or an empty list if the name does not resolve.
+     */
+    public List<String> resolve(String host, long timeoutMillis) {
+        return resolveAll(Collections.singletonList(host), timeoutMillis).get(host);
+    }
+
+    /**
+     * Resolves all names concurrently and waits up to timeoutMillis in total.
+     *
+     * @return Every requested name mapped to its addresses (empty for names that failed or timed out),
+     * in the order given.
+     */
+    public Map<String, List<String>> resolveAll(Collection<String> hosts, long timeoutMillis) {
+        Map<String, CompletableFuture<List<String>>> futures = new LinkedHashMap<>();
+        for (String host : hosts) {
+            if (host != null && !futures.containsKey(host)) {
+                futures.put(host, resolveAsync(host));
+            }
+        }
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        Map<String, List<String>> result = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<List<String>>> entry : futures.entrySet()) {
+            List<String> addresses = Collections.emptyList();
+            try {
+                long remaining = Math.max(0, deadline - System.nanoTime());
+                addresses = entry.getValue().get(remaining, TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                LOGGER.warning("HostResolver: Timed out resolving " + entry.getKey());
+            } catch (ExecutionException e) {
+                // Already counted and logged by the lookup
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            result.put(entry.getKey(), addresses);
+        }
+        return result;
+    }
+
+    /**
+     * Resolves a name in the background. Served from the cache without a thread hop when possible.
+     */
+    public CompletableFuture<List<String>> resolveAsync(String host) {
+        requests.incrementAndGet();
+        String key = host.trim().toLowerCase();
+        CacheEntry cached = cache.get(key);
+        if (cached != null && System.currentTimeMillis() < cached.expiresAtMillis) {
+            cacheHits.incrementAndGet();
+            return CompletableFuture.completedFuture(cached.addresses);
+        }
+        CompletableFuture<List<String>> started = new CompletableFuture<>();
+        CompletableFuture<List<String>> future = inFlight.putIfAbsent(key, started);
+        if (future != null) {
+            return future; // Someone is already looking this name up
+        }
+        executor.execute(() -> {
+            try {
+                started.complete(lookupAndCache(key));
+            } catch (RuntimeException e) {
+                started.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, started);
+            }
+        });
+        return started;
+    }
+
+    /**
+     * Drops all cached results.
+     */
+    public void clearCache() {
+        cache.clear();
+    }
+
+    public ResolverStats getStats() {
+        long count = lookups.get();
+        return new ResolverStats(requests.get(), cacheHits.get(), count, failures.get(),
+                count > 0 ? totalLookupNanos.get() / count : 0, maxLookupNanos.get());
+    }
+
+    private List<String> lookupAndCache(String host) {
+        lookups.incrementAndGet();
+        long start = System.nanoTime();
+        List<String> addresses = new ArrayList<>();
+        try {
+            for (InetAddress address : lookup.lookup(host)) {
+                String ip = address.getHostAddress();
+                if (!addresses.contains(ip)) addresses.add(ip);
+            }
+        } catch (UnknownHostException e) {
+            failures.incrementAndGet();
+            LOGGER.warning("HostResolver: Could not resolve " + host + ": " + e.getMessage());
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            totalLookupNanos.addAndGet(elapsed);
+            maxLookupNanos.accumulateAndGet(elapsed, Math::max);
+        }
+        List<String> result = Collections.unmodifiableList(addresses);
+        long ttl = result.isEmpty() ? negativeTtlMillis : ttlMillis;
+        cache.put(host, new CacheEntry(result, System.currentTimeMillis() + ttl));
+        return result;
+    }
+
+    private static final class CacheEntry {
+        final List<String> addresses;
+        final long expiresAtMillis;
+
+        CacheEntry(List<String> addresses, long expiresAtMillis) {
+            this.addresses = addresses;
+            this.expiresAtMillis = expiresAtMillis;
+        }
+    }
+
+    /**
+     * Counters since the resolver was created. Latencies cover actual lookups only, not cache hits.
+     */
+    public static class ResolverStats {
+        private final long requests;
+        private final long cacheHits;
+        private final long lookups;
+        private final long failures;
+        private final long averageLookupNanos;
+        private final long maxLookupNanos;
+
+        ResolverStats(long requests, long cacheHits, long lookups, long failures, long averageLookupNanos, long maxLookupNanos) {
+            this.requests = requests;
+            this.cacheHits = cacheHits;
+            this.lookups = lookups;
+            this.failures = failures;
+            this.averageLookupNanos = averageLookupNanos;
+            this.maxLookupNanos = maxLookupNanos;
+        }
+
+        public long getRequests() {
+            return requests;
+        }
+
+        public long getCacheHits() {
+            return cacheHits;
+        }
+
+        public long getLookups() {
+            return lookups;
+        }
+
+        public long getFailures() {
+            return failures;
+        }
+
+        public long getAverageLookupNanos() {
+            return averageLookupNanos;
+        }
+
+        public long getMaxLookupNanos() {
+            return maxLookupNanos;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ResolverStats{requests=%d, cacheHits=%d, lookups=%d, failures=%d, avg=%.1fms, max=%.1fms}",
+                    requests, cacheHits, lookups, failures, averageLookupNanos / 1e6, maxLookupNanos / 1e6);
+        }
+    }
+}
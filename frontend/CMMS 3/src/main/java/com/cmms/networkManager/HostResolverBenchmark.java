@@ -0,0 +1,78 @@
+package com.cmms.networkManager;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Manual check for {@link HostResolver}, with a fake lookup that takes 200 ms per name.
+ * <p>
+ * Resolves 51 names (one of which fails) as FirewallManager does, compares the time with resolving them one after
+ * another, then repeats the call to show it is served from the cache. Also checks that concurrent requests for
+ * one name share a lookup and that entries expire. Exits with status 1 if a check fails.
+ * Run with: java com.cmms.networkManager.HostResolverBenchmark
+ */
+public class HostResolverBenchmark {
+
+    private static final long LOOKUP_MILLIS = 200;
+    private static final int NAMES = 51;
+
+    public static void main(String[] args) throws Exception {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < NAMES - 1; i++) names.add("site" + i + ".test");
+        names.add("missing.test");
+
+        HostResolver resolver = new HostResolver(8, 5 * 60_000, 30_000, HostResolverBenchmark::slowLookup);
+        long start = System.nanoTime();
+        Map<String, List<String>> first = resolver.resolveAll(names, 10_000);
+        long firstNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        Map<String, List<String>> repeat = resolver.resolveAll(names, 10_000);
+        long repeatNanos = System.nanoTime() - start;
+
+        boolean ok = true;
+        ok &= check(first.size() == NAMES, "every name has an entry");
+        ok &= check(first.get("site7.test").equals(List.of("10.0.0.7")), "addresses come from the lookup");
+        ok &= check(first.get("missing.test").isEmpty(), "a failed name maps to an empty list");
+        ok &= check(first.equals(repeat), "the repeat gives the same answers");
+        ok &= check(firstNanos < NAMES * LOOKUP_MILLIS * 1_000_000L / 4, "names are resolved concurrently");
+        ok &= check(resolver.getStats().getLookups() == NAMES, "the repeat is served from the cache");
+
+        HostResolver shortLived = new HostResolver(2, 100, 100, HostResolverBenchmark::slowLookup);
+        CompletableFuture<List<String>> a = shortLived.resolveAsync("site1.test");
+        CompletableFuture<List<String>> b = shortLived.resolveAsync("site1.test");
+        CompletableFuture.allOf(a, b).join();
+        ok &= check(shortLived.getStats().getLookups() == 1, "concurrent requests share one lookup");
+        Thread.sleep(150);
+        shortLived.resolve("site1.test", 1_000);
+        ok &= check(shortLived.getStats().getLookups() == 2, "an expired entry is looked up again");
+
+        System.out.printf("%d names: %.0f ms concurrently (%d ms one after another), repeat %.2f ms%n",
+                NAMES, firstNanos / 1e6, NAMES * LOOKUP_MILLIS, repeatNanos / 1e6);
+        System.out.println(resolver.getStats());
+        if (!ok) {
+            System.err.println("HostResolver verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("HostResolver checks OK");
+    }
+
+    private static InetAddress[] slowLookup(String host) throws UnknownHostException {
+        try {
+            Thread.sleep(LOOKUP_MILLIS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (!host.startsWith("site")) throw new UnknownHostException(host);
+        int n = Integer.parseInt(host.substring(4, host.indexOf('.')));
+        return new InetAddress[]{InetAddress.getByAddress(host, new byte[]{10, 0, 0, (byte) n})};
+    }
+
+    private static boolean check(boolean condition, String what) {
+        if (!condition) System.err.println("FAILED: " + what);
+        return condition;
+    }
+}
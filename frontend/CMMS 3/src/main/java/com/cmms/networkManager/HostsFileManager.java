@@ -0,0 +1,250 @@
+package com.cmms.networkManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Owns the single CMMS block in the hosts file.
+ * <p>
+ * {@link #applyBlock} compares the SHA-256 of the requested block with the block currently in the file and only
+ * rewrites the file when they differ. If the file has not been touched since our last write (same size and
+ * modification time) it is not even read. Writes go to a temp file in the same directory which is then moved
+ * over the hosts file, so other readers never see a half-written file. Blocks left behind by older versions
+ * ("# CMMS Restrictions Start ...") are removed on the next write.
+ * <p>
+ * Callers should flush the DNS cache only when a method reports a change.
+ */
+public class HostsFileManager {
+
+    public static final Path DEFAULT_HOSTS_PATH = Paths.get("C:", "Windows", "System32", "drivers", "etc", "hosts");
+
+    static final String MARKER_START = "# CMMS Start - Do not edit below this line";
+    static final String MARKER_END = "# CMMS End - Do not edit above this line";
+    private static final String LEGACY_MARKER_START = "# CMMS Restrictions Start";
+    private static final String LEGACY_MARKER_END = "# CMMS Restrictions End";
+
+    private static final Logger log = LoggerFactory.getLogger(HostsFileManager.class);
+    private static HostsFileManager defaultInstance;
+
+    private final Path hostsPath;
+
+    // What the file looked like after our last read or write, to skip re-reading an untouched file
+    private byte[] knownBlockHash;
+    private long knownSize = -1;
+    private long knownModifiedMillis = -1;
+
+    private long writes;
+    private long skips;
+
+    /**
+     * @return The manager for the system hosts file, shared by everything that edits it.
+     */
+    public static synchronized HostsFileManager getDefault() {
+        if (defaultInstance == null) {
+            defaultInstance = new HostsFileManager(DEFAULT_HOSTS_PATH);
+        }
+        return defaultInstance;
+    }
+
+    public HostsFileManager(Path hostsPath) {
+        this.hostsPath = hostsPath;
+    }
+
+    public Path getHostsPath() {
+        return hostsPath;
+    }
+
+    /**
+     * Makes the CMMS block contain exactly the given lines (an empty list removes the block).
+     *
+     * @return true if the file was rewritten, false if it already had this block.
+     * @throws IOException If the file is missing or cannot be read or written.
+     */
+    public synchronized boolean applyBlock(List<String> entries) throws IOException {
+        byte[] desiredHash = hash(entries);
+
+        BasicFileAttributes attributes = Files.readAttributes(hostsPath, BasicFileAttributes.class);
+        if (knownBlockHash != null && Arrays.equals(knownBlockHash, desiredHash)
+                && attributes.size() == knownSize && attributes.lastModifiedTime().toMillis() == knownModifiedMillis) {
+            skips++;
+            return false;
+        }
+
+        String content = new String(Files.readAllBytes(hostsPath), StandardCharsets.UTF_8);
+        String lineSeparator = content.contains("\r\n") ? "\r\n" : "\n";
+        List<String> lines = splitLines(content);
+
+        List<String> outside = new ArrayList<>(lines.size());
+        List<String> currentBlock = new ArrayList<>();
+        int blockIndex = -1;
+        boolean foreignBlock = false; // Legacy markers or a second block: rewrite to clean up
+        boolean inBlock = false;
+        boolean legacy = false;
+        for (String line : lines) {
+            String trimmed = line.trim();
+            if (!inBlock && (trimmed.equals(MARKER_START) || trimmed.startsWith(LEGACY_MARKER_START))) {
+                inBlock = true;
+                legacy = !trimmed.equals(MARKER_START);
+                if (legacy || blockIndex >= 0) {
+                    foreignBlock = true;
+                }
+                if (blockIndex < 0) {
+                    // Drop the blank separator line we put before the block
+                    if (!outside.isEmpty() && outside.get(outside.size() - 1).trim().isEmpty()) {
+                        outside.remove(outside.size() - 1);
+                    }
+                    blockIndex = outside.size();
+                }
+                continue;
+            }
+            if (inBlock && (legacy ? trimmed.startsWith(LEGACY_MARKER_END) : trimmed.equals(MARKER_END))) {
+                inBlock = false;
+                continue;
+            }
+            if (inBlock) {
+                if (!legacy) currentBlock.add(line);
+            } else {
+                outside.add(line);
+            }
+        }
+
+        if (!foreignBlock && !inBlock && Arrays.equals(hash(currentBlock), desiredHash)
+                && (entries.isEmpty() ? blockIndex < 0 : blockIndex >= 0)) {
+            remember(desiredHash, attributes);
+            skips++;
+            return false;
+        }
+
+        List<String> newLines = new ArrayList<>(outside);
+        if (!entries.isEmpty()) {
+            int at = blockIndex >= 0 ? blockIndex : newLines.size();
+            List<String> block = new ArrayList<>(entries.size() + 3);
+            block.add("");
+            block.add(MARKER_START);
+            block.addAll(entries);
+            block.add(MARKER_END);
+            newLines.addAll(at, block);
+        }
+        write(newLines, lineSeparator);
+        remember(desiredHash, Files.readAttributes(hostsPath, BasicFileAttributes.class));
+        writes++;
+        log.info("HostsFileManager: Wrote CMMS block with {} entries to {}", entries.size(), hostsPath);
+        return true;
+    }
+
+    /**
+     * Removes the CMMS block (and any legacy block).
+     *
+     * @return true if the file was rewritten.
+     */
+    public boolean clearBlock() throws IOException {
+        return applyBlock(Collections.emptyList());
+    }
+
+    /**
+     * @return How many calls actually rewrote the file.
+     */
+    public synchronized long getWriteCount() {
+        return writes;
+    }
+
+    /**
+     * @return How many calls found the block already up to date.
+     */
+    public synchronized long getSkipCount() {
+        return skips;
+    }
+
+    /**
+     * Runs {@code ipconfig /flushdns}. Only worth calling after {@link #applyBlock} returned true.
+     */
+    public static void flushDnsCache() {
+        log.info("HostsFileManager: Flushing DNS cache...");
+        Process process = null;
+        try {
+            process = Runtime.getRuntime().exec("ipconfig /flushdns");
+            int exitCode = process.waitFor();
+            if (exitCode == 0) {
+                log.info("HostsFileManager: DNS cache flushed successfully.");
+            } else {
+                log.error("HostsFileManager: ipconfig /flushdns exited with code: " + exitCode);
+                try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
+                    String line;
+                    while ((line = errorReader.readLine()) != null) {
+                        log.error("FlushDNS Error Stream: " + line);
+                    }
+                }
+            }
+        } catch (IOException e) {
+            log.error("HostsFileManager: IOException while flushing DNS: " + e.getMessage());
+        } catch (InterruptedException e) {
+            log.error("HostsFileManager: DNS flush interrupted.");
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) {
+                process.destroy();
+            }
+        }
+    }
+
+    private void write(List<String> lines, String lineSeparator) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (String line : lines) {
+            sb.append(line).append(lineSeparator);
+        }
+        Path temp = hostsPath.resolveSibling(hostsPath.getFileName() + ".cmms.tmp");
+        Files.write(temp, sb.toString().getBytes(StandardCharsets.UTF_8));
+        try {
+            Files.move(temp, hostsPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temp, hostsPath, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    private void remember(byte[] blockHash, BasicFileAttributes attributes) {
+        knownBlockHash = blockHash;
+        knownSize = attributes.size();
+        knownModifiedMillis = attributes.lastModifiedTime().toMillis();
+    }
+
+    private static List<String> splitLines(String content) {
+        List<String> lines = new ArrayList<>(Arrays.asList(content.split("\r?\n", -1)));
+        if (!lines.isEmpty() && lines.get(lines.size() - 1).isEmpty()) {
+            lines.remove(lines.size() - 1); // Trailing newline
+        }
+        return lines;
+    }
+
+    private static byte[] hash(List<String> block) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String line : block) {
+                digest.update(line.getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) '\n');
+            }
+            return digest.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
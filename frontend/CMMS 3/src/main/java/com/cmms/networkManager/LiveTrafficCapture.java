@@ -0,0 +1,169 @@
+package com.cmms.networkManager;
+
+import org.pcap4j.core.BpfProgram;
+import org.pcap4j.core.NotOpenException;
+import org.pcap4j.core.PcapHandle;
+import org.pcap4j.core.PcapNativeException;
+import org.pcap4j.core.PcapNetworkInterface;
+import org.pcap4j.core.PcapPacket;
+import org.pcap4j.core.PcapStat;
+import org.pcap4j.core.Pcaps;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * Captures DNS queries and TLS handshakes on a network interface with pcap4j and feeds them to a
+ * {@link TrafficObserver}. Needs libpcap (Npcap on Windows) and, usually, administrator rights; use
+ * {@link PcapFileReader} to run the same observer over a capture file instead.
+ * <p>
+ * A BPF filter in the kernel passes only DNS traffic and TCP segments that start with a TLS handshake record, so
+ * the capture thread sees a small fraction of the traffic. pcap4j hands every packet over as a new object; the
+ * observer adds no allocation of its own.
+ */
+public class LiveTrafficCapture implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveTrafficCapture.class);
+
+    private static final int SNAP_LENGTH = 65_536;
+    private static final int READ_TIMEOUT_MS = 250;
+    // DNS to any server, or TCP whose payload starts with 0x16 (TLS handshake). tcp[] only works over IPv4, so for
+    // IPv6 the same test is written against ip6[]: TCP right after the 40-byte header (packets with extension
+    // headers are not matched), payload at 40 + data offset
+    private static final String FILTER = "udp dst port 53 or (ip and tcp and tcp[((tcp[12] & 0xf0) >> 2)] = 0x16)"
+            + " or (ip6 and ip6[6] = 6 and ip6[40 + ((ip6[52] & 0xf0) >> 2)] = 0x16)";
+    // For a libpcap that cannot compile the IPv6 offset expression: IPv6 TLS to the usual port only
+    private static final String FALLBACK_FILTER = "udp dst port 53 or (ip and tcp and tcp[((tcp[12] & 0xf0) >> 2)] = 0x16)"
+            + " or (ip6 and tcp dst port 443)";
+
+    private final String interfaceName;
+    private final TrafficObserver observer;
+    private volatile PcapHandle handle; // Closed by the capture thread once it leaves getNextPacket
+    private Thread captureThread;
+    private volatile boolean running;
+
+    /**
+     * @param interfaceName Interface to capture on, or null for the first interface that is up, has an address
+     *                      and is not a loopback.
+     */
+    public LiveTrafficCapture(String interfaceName, TrafficObserver observer) {
+        this.interfaceName = interfaceName;
+        this.observer = observer;
+    }
+
+    /**
+     * Opens the interface and starts the capture thread.
+     *
+     * @throws IOException If packet capture is not available or the interface cannot be opened.
+     */
+    public synchronized void start() throws IOException {
+        if (running) return;
+        try {
+            PcapNetworkInterface device = findInterface();
+            PcapHandle opened = device.openLive(SNAP_LENGTH, PcapNetworkInterface.PromiscuousMode.NONPROMISCUOUS, READ_TIMEOUT_MS);
+            handle = opened;
+            try {
+                opened.setFilter(FILTER, BpfProgram.BpfCompileMode.OPTIMIZE);
+            } catch (PcapNativeException e) {
+                log.warn("LiveTrafficCapture: IPv6 handshake filter rejected ({}), using port 443 for IPv6", e.getMessage());
+                opened.setFilter(FALLBACK_FILTER, BpfProgram.BpfCompileMode.OPTIMIZE);
+            }
+            int linkType = opened.getDlt().value();
+
+            running = true;
+            captureThread = new Thread(() -> captureLoop(opened, linkType), "cmms-traffic-capture");
+            captureThread.setDaemon(true);
+            captureThread.start();
+            log.info("LiveTrafficCapture: Capturing on {} ({})", device.getName(), device.getDescription());
+        } catch (PcapNativeException | NotOpenException e) {
+            closeHandle();
+            throw new IOException("Could not start packet capture: " + e.getMessage(), e);
+        } catch (LinkageError e) {
+            // pcap4j loads libpcap through JNA on first use
+            throw new IOException("Packet capture unavailable (is libpcap/Npcap installed?): " + e.getMessage(), e);
+        }
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * @return Packets received and dropped by the capture so far, or null if not available.
+     */
+    public synchronized String getCaptureStats() {
+        PcapHandle current = handle;
+        if (current == null || !current.isOpen()) return null;
+        try {
+            PcapStat stats = current.getStats();
+            return "received=" + stats.getNumPacketsReceived() + ", dropped=" + stats.getNumPacketsDropped()
+                    + ", droppedByInterface=" + stats.getNumPacketsDroppedByIf();
+        } catch (PcapNativeException | NotOpenException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Stops the capture. The handle is closed by the capture thread itself, never under a pending read; if that
+     * read outlasts the wait here, the handle is closed as soon as it returns.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        synchronized (this) {
+            if (!running) return;
+            running = false;
+            thread = captureThread;
+        }
+        try {
+            thread.join(READ_TIMEOUT_MS * 4L);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (thread.isAlive()) {
+            log.warn("LiveTrafficCapture: Capture thread still reading; it closes the handle when the read returns.");
+        }
+        log.info("LiveTrafficCapture: Stopped. {}", observer);
+    }
+
+    private void captureLoop(PcapHandle own, int linkType) {
+        try {
+            while (running && handle == own) { // A restart replaces the handle, which also ends this loop
+                try {
+                    PcapPacket packet = own.getNextPacket(); // null when the read timeout expires
+                    if (packet == null) continue;
+                    byte[] data = packet.getRawData();
+                    observer.observe(data, 0, data.length, linkType, packet.getTimestamp().toEpochMilli());
+                } catch (NotOpenException e) {
+                    break;
+                } catch (RuntimeException e) {
+                    log.warn("LiveTrafficCapture: Error handling packet: {}", e.getMessage());
+                }
+            }
+        } finally {
+            synchronized (this) {
+                if (own.isOpen()) own.close();
+                if (handle == own) handle = null;
+            }
+        }
+    }
+
+    private PcapNetworkInterface findInterface() throws PcapNativeException, IOException {
+        if (interfaceName != null) {
+            PcapNetworkInterface device = Pcaps.getDevByName(interfaceName);
+            if (device == null) throw new IOException("No such capture interface: " + interfaceName);
+            return device;
+        }
+        for (PcapNetworkInterface device : Pcaps.findAllDevs()) {
+            if (device.isUp() && !device.isLoopBack() && !device.getAddresses().isEmpty()) return device;
+        }
+        throw new IOException("No capture interface found");
+    }
+
+    private void closeHandle() {
+        if (handle != null && handle.isOpen()) handle.close();
+        handle = null;
+    }
+}
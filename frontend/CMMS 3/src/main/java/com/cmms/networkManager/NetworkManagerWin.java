@@ -5,18 +5,12 @@ import java.util.*;
 import java.util.regex.Pattern;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 
 public class NetworkManagerWin implements NetworkManager {
     private static final Logger LOGGER = Logger.getLogger(NetworkManagerWin.class.getName());
     private static final Pattern PROTOCOL_PATTERN = Pattern.compile("^(https?://)");
-    private static final String HOSTS_FILE_PATH = "C:\\Windows\\System32\\drivers\\etc\\hosts";
-    private static final String HOSTS_MARKER_START = "# CMMS Restrictions Start";
-    private static final String HOSTS_MARKER_END = "# CMMS Restrictions End";
     private static final String REDIRECT_IP = "127.0.0.1";
     private static boolean isTeacherMachine = false;
     private static String browserPath = "C:\\Program Files\\Google\\Chrome\\Application\\chrome.exe";
@@ -92,44 +86,34 @@ public class NetworkManagerWin implements NetworkManager {
      */
     private static void enableHostsFileRestrictions(String sessionCode, List<String> allowedWebsites) {
         try {
-            // Remove any existing CMMS entries first
-            disableHostsFileRestrictions(sessionCode);
-            
             // Pre-process website list - strip protocols, www prefixes, etc.
-            Set<String> processedWebsites = processWebsites(allowedWebsites);
-            
-            // Read current hosts file
-            List<String> hostsContent = Files.readAllLines(Paths.get(HOSTS_FILE_PATH), StandardCharsets.UTF_8);
+            DomainSet allowed = DomainSet.of(processWebsites(allowedWebsites));
             
-            // Add our markers and entries
-            List<String> newHostsContent = new ArrayList<>();
-            newHostsContent.addAll(hostsContent);
-            newHostsContent.add(HOSTS_MARKER_START + " " + sessionCode);
+            List<String> entries = new ArrayList<>();
+            entries.add("# Session " + sessionCode);
             
             // Add entries for common domains that should be blocked
             // This is not comprehensive, but provides basic blocking
             for (String website : getCommonDomains()) {
                 // Skip if this website is in the allowlist
-                if (isWebsiteAllowed(website, processedWebsites)) {
+                if (allowed.matches(website)) {
                     continue;
                 }
                 
-                newHostsContent.add(REDIRECT_IP + " " + website);
+                entries.add(REDIRECT_IP + " " + website);
                 // Also block www version
                 if (!website.startsWith("www.")) {
-                    newHostsContent.add(REDIRECT_IP + " www." + website);
+                    entries.add(REDIRECT_IP + " www." + website);
                 }
             }
             
-            newHostsContent.add(HOSTS_MARKER_END + " " + sessionCode);
-            
-            // Write the updated hosts file
-            Files.write(Paths.get(HOSTS_FILE_PATH), newHostsContent, StandardCharsets.UTF_8);
-            
-            // Flush DNS cache to apply changes immediately
-            Runtime.getRuntime().exec("ipconfig /flushdns");
-            
-            LOGGER.info("Hosts file restrictions enabled");
+            // Only rewrite the file and flush DNS if the block actually changed
+            if (HostsFileManager.getDefault().applyBlock(entries)) {
+                HostsFileManager.flushDnsCache();
+                LOGGER.info("Hosts file restrictions enabled");
+            } else {
+                LOGGER.info("Hosts file restrictions already up to date");
+            }
         } catch (Exception e) {
             LOGGER.severe("Error modifying hosts file: " + e.getMessage());
         }
@@ -141,36 +125,24 @@ public class NetworkManagerWin implements NetworkManager {
      */
     private static void enableHostsFileRestrictionsBlacklist(String sessionCode, List<String> blockedWebsites) {
         try {
-            // Remove any existing CMMS entries first
-            disableHostsFileRestrictions(sessionCode);
-            
             // Pre-process website list
             Set<String> processedBlockedWebsites = processWebsites(blockedWebsites);
             
-            // Read current hosts file
-            List<String> hostsContent = Files.readAllLines(Paths.get(HOSTS_FILE_PATH), StandardCharsets.UTF_8);
+            List<String> entries = new ArrayList<>();
+            entries.add("# Session " + sessionCode + " (Blacklist)"); // Indicate mode
             
-            // Add our markers and entries for blocked sites
-            List<String> newHostsContent = new ArrayList<>();
-            newHostsContent.addAll(hostsContent);
-            newHostsContent.add(HOSTS_MARKER_START + " " + sessionCode + " (Blacklist)"); // Indicate mode
-            
-            for (String website : processedBlockedWebsites) {
-                // Add redirect entry for the processed domain (e.g., example.com)
-                // and its www version (e.g., www.example.com)
-                // processWebsites already handles adding both variants to the set
-                newHostsContent.add(REDIRECT_IP + " " + website);
+            // Sorted so the same list always produces the same block
+            for (String website : new TreeSet<>(processedBlockedWebsites)) {
+                // processWebsites already adds both the base and the www variant
+                entries.add(REDIRECT_IP + " " + website);
             }
             
-            newHostsContent.add(HOSTS_MARKER_END + " " + sessionCode + " (Blacklist)");
-            
-            // Write the updated hosts file
-            Files.write(Paths.get(HOSTS_FILE_PATH), newHostsContent, StandardCharsets.UTF_8);
-            
-            // Flush DNS cache
-            Runtime.getRuntime().exec("ipconfig /flushdns");
-            
-            LOGGER.info("Hosts file blacklist restrictions enabled");
+            if (HostsFileManager.getDefault().applyBlock(entries)) {
+                HostsFileManager.flushDnsCache();
+                LOGGER.info("Hosts file blacklist restrictions enabled");
+            } else {
+                LOGGER.info("Hosts file blacklist restrictions already up to date");
+            }
         } catch (Exception e) {
             LOGGER.severe("Error modifying hosts file for blacklist: " + e.getMessage());
         }
@@ -223,39 +195,10 @@ public class NetworkManagerWin implements NetworkManager {
      */
     private static void disableHostsFileRestrictions(String sessionCode) {
         try {
-            // Read current hosts file
-            List<String> hostsContent = Files.readAllLines(Paths.get(HOSTS_FILE_PATH), StandardCharsets.UTF_8);
-            
-            // Find our section and remove it
-            List<String> newHostsContent = new ArrayList<>();
-            boolean skipping = false;
-            
-            for (String line : hostsContent) {
-                // Check for start marker
-                if (line.startsWith(HOSTS_MARKER_START)) {
-                    skipping = true;
-                    continue;
-                }
-                
-                // Check for end marker
-                if (line.startsWith(HOSTS_MARKER_END)) {
-                    skipping = false;
-                    continue;
-                }
-                
-                // Add line if not in our section
-                if (!skipping) {
-                    newHostsContent.add(line);
-                }
+            if (HostsFileManager.getDefault().clearBlock()) {
+                HostsFileManager.flushDnsCache();
+                LOGGER.info("Hosts file restrictions disabled");
             }
-            
-            // Write the updated hosts file
-            Files.write(Paths.get(HOSTS_FILE_PATH), newHostsContent, StandardCharsets.UTF_8);
-            
-            // Flush DNS cache to apply changes immediately
-            Runtime.getRuntime().exec("ipconfig /flushdns");
-            
-            LOGGER.info("Hosts file restrictions disabled");
         } catch (Exception e) {
             LOGGER.severe("Error modifying hosts file: " + e.getMessage());
         }
@@ -304,25 +247,6 @@ public class NetworkManagerWin implements NetworkManager {
         return processed;
     }
     
-    /**
-     * Check if a website is in the allowed list
-     */
-    private static boolean isWebsiteAllowed(String website, Set<String> allowedWebsites) {
-        // Direct match
-        if (allowedWebsites.contains(website)) {
-            return true;
-        }
-        
-        // Check if it's a subdomain of an allowed domain
-        for (String allowed : allowedWebsites) {
-            if (website.endsWith("." + allowed)) {
-                return true;
-            }
-        }
-        
-        return false;
-    }
-    
     /**
      * Get a list of common domains to block
      * This is not comprehensive, but provides basic coverage
@@ -0,0 +1,119 @@
+package com.cmms.networkManager;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Reads classic .pcap capture files (as written by tcpdump, Wireshark with "pcap" format, or pcap4j's dumper) and
+ * feeds each packet to a {@link TrafficObserver}. Offline replay needs no native library and no privileges, so
+ * captures can be analysed and the observer tested and benchmarked anywhere.
+ * <p>
+ * The file is read in large chunks into one reused buffer and every packet is passed as a slice of it, so reading
+ * does not allocate per packet. Both byte orders and the microsecond and nanosecond timestamp variants are
+ * supported; pcapng files are not.
+ */
+public class PcapFileReader implements Closeable {
+
+    private static final int MAGIC_MICROS = 0xA1B2C3D4;
+    private static final int MAGIC_NANOS = 0xA1B23C4D;
+    private static final int FILE_HEADER_SIZE = 24;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int CHUNK_SIZE = 1 << 20;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private final int linkType;
+    private final boolean nanos;
+    private final int snapLength;
+
+    public PcapFileReader(Path file) throws IOException {
+        this.channel = FileChannel.open(file, StandardOpenOption.READ);
+        try {
+            ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_SIZE);
+            while (header.hasRemaining()) {
+                if (channel.read(header) < 0) throw new EOFException("Truncated pcap header: " + file);
+            }
+            header.flip();
+            int magic = header.getInt(0);
+            if (magic != MAGIC_MICROS && magic != MAGIC_NANOS) {
+                header.order(ByteOrder.LITTLE_ENDIAN);
+                magic = header.getInt(0);
+                if (magic != MAGIC_MICROS && magic != MAGIC_NANOS) {
+                    throw new IOException("Not a pcap file (pcapng is not supported): " + file);
+                }
+            }
+            this.nanos = magic == MAGIC_NANOS;
+            this.snapLength = header.getInt(16);
+            this.linkType = header.getInt(20) & 0x0FFFFFFF; // The top bits may carry FCS information
+            this.buffer = ByteBuffer.allocate(Math.max(CHUNK_SIZE, snapLength + RECORD_HEADER_SIZE)).order(header.order());
+            this.buffer.flip(); // Empty, in read mode
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * @return The data link type of every packet in the file (a TrafficObserver LINKTYPE_ value).
+     */
+    public int getLinkType() {
+        return linkType;
+    }
+
+    /**
+     * Feeds every remaining packet to the observer.
+     *
+     * @return Number of packets read.
+     * @throws IOException If the file cannot be read or a record is corrupt. A record cut short at the end of the
+     *                     file (an interrupted capture) just ends the replay.
+     */
+    public long readAll(TrafficObserver observer) throws IOException {
+        long count = 0;
+        byte[] array = buffer.array();
+        while (fill(RECORD_HEADER_SIZE)) {
+            int p = buffer.position();
+            long seconds = buffer.getInt(p) & 0xFFFFFFFFL;
+            long fraction = buffer.getInt(p + 4) & 0xFFFFFFFFL;
+            int captured = buffer.getInt(p + 8);
+            if (captured < 0 || captured > buffer.capacity() - RECORD_HEADER_SIZE) {
+                throw new IOException("Corrupt pcap record length " + captured);
+            }
+            if (!fill(RECORD_HEADER_SIZE + captured)) break;
+            p = buffer.position(); // Filling may have moved the record to the start of the buffer
+            long timestamp = seconds * 1000 + (nanos ? fraction / 1_000_000 : fraction / 1000);
+            observer.observe(array, buffer.arrayOffset() + p + RECORD_HEADER_SIZE, captured, linkType, timestamp);
+            buffer.position(p + RECORD_HEADER_SIZE + captured);
+            count++;
+        }
+        return count;
+    }
+
+    /**
+     * Makes at least the given number of bytes available from the current position.
+     *
+     * @return false if the file ends first.
+     */
+    private boolean fill(int needed) throws IOException {
+        if (buffer.remaining() >= needed) return true;
+        buffer.compact();
+        while (buffer.position() < needed) {
+            if (channel.read(buffer) < 0) {
+                buffer.flip();
+                return false;
+            }
+        }
+        buffer.flip();
+        return true;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
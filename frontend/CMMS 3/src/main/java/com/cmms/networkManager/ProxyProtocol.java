@@ -0,0 +1,261 @@
+package com.cmms.networkManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+
+/**
+ * Parsing helpers for {@link FilteringProxy} and {@link TrafficObserver}: HTTP proxy request heads and the server
+ * name (SNI) in a TLS ClientHello. Only as much of each protocol is understood as is needed to find the destination
+ * host.
+ */
+final class ProxyProtocol {
+
+    private static final int TLS_HANDSHAKE = 0x16;
+    private static final int TLS_CLIENT_HELLO = 1;
+    private static final int TLS_EXTENSION_SERVER_NAME = 0;
+
+    private ProxyProtocol() {
+    }
+
+    /**
+     * A parsed proxy request. For CONNECT only the target is filled in; for plain HTTP {@link #forward} holds the
+     * head rewritten for the origin server.
+     */
+    static final class RequestHead {
+        final boolean connect;
+        final String host;
+        final int port;
+        final String hostHeader; // Host header without the port, may be null
+        final byte[] forward;
+
+        RequestHead(boolean connect, String host, int port, String hostHeader, byte[] forward) {
+            this.connect = connect;
+            this.host = host;
+            this.port = port;
+            this.hostHeader = hostHeader;
+            this.forward = forward;
+        }
+    }
+
+    /**
+     * @return The index just past the blank line ending the head in data[0, length), or -1 if it is incomplete.
+     */
+    static int findHeadEnd(byte[] data, int length) {
+        for (int i = 3; i < length; i++) {
+            if (data[i] == '\n' && data[i - 1] == '\r' && data[i - 2] == '\n' && data[i - 3] == '\r') return i + 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Parses a request head ending with a blank line. Accepts CONNECT host:port, absolute-form requests
+     * ("GET http://host/path") and origin-form requests with a Host header.
+     * Plain HTTP requests are rewritten to origin form with "Connection: close", so every request on a
+     * connection goes through the filter (a kept-alive connection could otherwise be reused for another host).
+     *
+     * @return The request, or null if it is malformed or not something the proxy can forward.
+     */
+    static RequestHead parseHead(byte[] data, int length) {
+        String head = new String(data, 0, length, StandardCharsets.ISO_8859_1);
+        String[] lines = head.split("\r\n");
+        String[] requestLine = lines[0].split(" ");
+        if (requestLine.length != 3 || !requestLine[2].startsWith("HTTP/")) return null;
+        String method = requestLine[0];
+        String target = requestLine[1];
+
+        String hostHeader = null;
+        for (int i = 1; i < lines.length; i++) {
+            int colon = lines[i].indexOf(':');
+            if (colon > 0 && lines[i].substring(0, colon).trim().equalsIgnoreCase("Host")) {
+                hostHeader = lines[i].substring(colon + 1).trim();
+            }
+        }
+
+        if (method.equalsIgnoreCase("CONNECT")) {
+            HostPort hostPort = HostPort.parse(target, -1);
+            if (hostPort == null) return null;
+            return new RequestHead(true, hostPort.host, hostPort.port, hostOnly(hostHeader), null);
+        }
+
+        HostPort destination;
+        String path;
+        if (target.regionMatches(true, 0, "http://", 0, 7)) {
+            int slash = target.indexOf('/', 7);
+            destination = HostPort.parse(slash < 0 ? target.substring(7) : target.substring(7, slash), 80);
+            path = slash < 0 ? "/" : target.substring(slash);
+        } else if (target.startsWith("/") && hostHeader != null) {
+            destination = HostPort.parse(hostHeader, 80);
+            path = target;
+        } else {
+            return null; // e.g. "https://" in a plain request, which proxies do not handle without CONNECT
+        }
+        if (destination == null) return null;
+
+        StringBuilder forward = new StringBuilder(length + 32);
+        forward.append(method).append(' ').append(path).append(' ').append(requestLine[2]).append("\r\n");
+        boolean hasHost = false;
+        for (int i = 1; i < lines.length; i++) {
+            String line = lines[i];
+            int colon = line.indexOf(':');
+            if (colon <= 0) continue;
+            String name = line.substring(0, colon).trim().toLowerCase(Locale.ROOT);
+            if (name.equals("connection") || name.equals("proxy-connection") || name.equals("keep-alive")
+                    || name.equals("proxy-authorization")) {
+                continue;
+            }
+            if (name.equals("host")) hasHost = true;
+            forward.append(line).append("\r\n");
+        }
+        if (!hasHost) {
+            forward.append("Host: ").append(destination.authority()).append("\r\n");
+        }
+        forward.append("Connection: close\r\n\r\n");
+        return new RequestHead(false, destination.host, destination.port, hostOnly(hostHeader),
+                forward.toString().getBytes(StandardCharsets.ISO_8859_1));
+    }
+
+    private static String hostOnly(String hostHeader) {
+        HostPort parsed = hostHeader != null ? HostPort.parse(hostHeader, 0) : null;
+        return parsed != null ? parsed.host : null;
+    }
+
+    /**
+     * @return true if data starts like a TLS handshake record.
+     */
+    static boolean isTlsHandshake(byte[] data, int length) {
+        return length >= 1 && (data[0] & 0xFF) == TLS_HANDSHAKE && (length < 2 || data[1] == 3);
+    }
+
+    /**
+     * @return Length of the first TLS record including its header, or -1 if the header is not complete yet.
+     */
+    static int tlsRecordLength(byte[] data, int length) {
+        if (length < 5) return -1;
+        return 5 + (((data[3] & 0xFF) << 8) | (data[4] & 0xFF));
+    }
+
+    /**
+     * Finds the host name a TLS client asks for, as sent in the clear in its ClientHello.
+     *
+     * @return The server name, lower-case, or null if there is none in data[0, length) or it is not a ClientHello.
+     */
+    static String serverName(byte[] data, int length) {
+        long found = findServerName(data, 0, length);
+        if (found < 0) return null;
+        return new String(data, (int) (found >>> 32), (int) found, StandardCharsets.US_ASCII).toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Locates the server name in a ClientHello record starting at data[start], without allocating.
+     *
+     * @param end End of the available bytes; a record cut short only yields a name if it lies before the cut.
+     * @return The name's offset in the high 32 bits and its length in the low 32 bits, or -1 if there is none.
+     */
+    static long findServerName(byte[] data, int start, int end) {
+        int length = end - start;
+        if (length < 9 || (data[start] & 0xFF) != TLS_HANDSHAKE || data[start + 1] != 3
+                || (data[start + 5] & 0xFF) != TLS_CLIENT_HELLO) {
+            return -1;
+        }
+        end = Math.min(end, start + 5 + u16(data, start + 3));
+        int p = start + 9;    // Record header (5) + handshake type and length (4)
+        p += 2 + 32;          // Client version and random
+        if (p >= end) return -1;
+        p += 1 + (data[p] & 0xFF);  // Session id
+        if (p + 2 > end) return -1;
+        p += 2 + u16(data, p);      // Cipher suites
+        if (p >= end) return -1;
+        p += 1 + (data[p] & 0xFF);  // Compression methods
+        if (p + 2 > end) return -1;
+        int extensionsEnd = Math.min(end, p + 2 + u16(data, p));
+        p += 2;
+        while (p + 4 <= extensionsEnd) {
+            int type = u16(data, p);
+            int size = u16(data, p + 2);
+            p += 4;
+            if (type == TLS_EXTENSION_SERVER_NAME) {
+                // Server name list: list length (2), then entries of name type (1), length (2), name
+                int q = p + 2;
+                int listEnd = Math.min(p + size, extensionsEnd);
+                while (q + 3 <= listEnd) {
+                    int nameType = data[q] & 0xFF;
+                    int nameLength = u16(data, q + 1);
+                    q += 3;
+                    if (q + nameLength > listEnd) return -1;
+                    if (nameType == 0) {
+                        return ((long) q << 32) | nameLength;
+                    }
+                    q += nameLength;
+                }
+                return -1;
+            }
+            p += size;
+        }
+        return -1;
+    }
+
+    /**
+     * @return A complete response that tells the client why the proxy is closing the connection.
+     */
+    static byte[] response(int status, String reason) {
+        String body = status + " " + reason + "\n";
+        String response = "HTTP/1.1 " + status + " " + reason + "\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "Content-Length: " + body.length() + "\r\n"
+                + "Connection: close\r\n\r\n" + body;
+        return response.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+
+    private static final class HostPort {
+        final String host;
+        final int port;
+
+        HostPort(String host, int port) {
+            this.host = host;
+            this.port = port;
+        }
+
+        /**
+         * Parses "host", "host:port", "[v6]" or "[v6]:port".
+         *
+         * @param defaultPort Port when none is given, or -1 if a port is required.
+         */
+        static HostPort parse(String authority, int defaultPort) {
+            String host;
+            String port = null;
+            if (authority.startsWith("[")) {
+                int close = authority.indexOf(']');
+                if (close < 0) return null;
+                host = authority.substring(1, close);
+                if (close + 1 < authority.length()) {
+                    if (authority.charAt(close + 1) != ':') return null;
+                    port = authority.substring(close + 2);
+                }
+            } else {
+                int colon = authority.lastIndexOf(':');
+                host = colon < 0 ? authority : authority.substring(0, colon);
+                if (colon >= 0) port = authority.substring(colon + 1);
+            }
+            if (host.isEmpty()) return null;
+            int number = defaultPort;
+            if (port != null) {
+                try {
+                    number = Integer.parseInt(port);
+                } catch (NumberFormatException e) {
+                    return null;
+                }
+            }
+            if (number < 0 || number > 65535) return null;
+            return new HostPort(host.toLowerCase(Locale.ROOT), number);
+        }
+
+        String authority() {
+            String name = host.indexOf(':') >= 0 ? "[" + host + "]" : host;
+            return port == 80 ? name : name + ":" + port;
+        }
+    }
+}
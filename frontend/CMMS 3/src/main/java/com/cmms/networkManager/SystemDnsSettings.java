@@ -0,0 +1,145 @@
+package com.cmms.networkManager;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Points the Windows DNS client at the local {@link DnsFilterResolver} and puts the previous servers back.
+ * <p>
+ * The previous IPv4 servers of every interface are saved to disk before anything is changed, so a client that
+ * crashed with DNS pointing at itself restores them on its next {@link #pointAt}. Interfaces whose servers came
+ * from DHCP are reset to DHCP rather than pinned to the addresses they had. Like FirewallReconciler's, each script
+ * stops at the first error and exits with a failure, so a change that did not happen is never taken for done and
+ * the saved servers are only discarded once they are really back.
+ */
+public class SystemDnsSettings {
+
+    private static final Logger log = LoggerFactory.getLogger(SystemDnsSettings.class);
+    private static final Path DEFAULT_BACKUP_FILE = Paths.get(System.getProperty("user.home"), ".cmms", "dns-servers.txt");
+
+    // One line per interface: index|static|server,server
+    private static final String LIST_SCRIPT = stopOnError(String.join("\n",
+            "Get-DnsClientServerAddress -AddressFamily IPv4 | Where-Object { $_.ServerAddresses.Count -gt 0 } | ForEach-Object {",
+            "  $guid = (Get-NetAdapter -InterfaceIndex $_.InterfaceIndex -ErrorAction SilentlyContinue).InterfaceGuid",
+            "  $static = $false",
+            "  if ($guid) { $static = [bool](Get-ItemProperty \"HKLM:\\SYSTEM\\CurrentControlSet\\Services\\Tcpip\\Parameters\\Interfaces\\$guid\" -Name NameServer -ErrorAction SilentlyContinue).NameServer }",
+            "  \"$($_.InterfaceIndex)|$static|$($_.ServerAddresses -join ',')\"",
+            "}\n"));
+
+    private final FirewallScriptRunner runner;
+    private final Path backupFile;
+
+    public SystemDnsSettings() {
+        this(new FirewallScriptRunner.PowerShell(), DEFAULT_BACKUP_FILE);
+    }
+
+    public SystemDnsSettings(FirewallScriptRunner runner, Path backupFile) {
+        this.runner = runner;
+        this.backupFile = backupFile;
+    }
+
+    /**
+     * @return The first IPv4 DNS server the system uses now, ignoring loopback ones, or null if there is none.
+     */
+    public synchronized InetAddress currentServer() throws IOException {
+        List<String> lines = Files.isRegularFile(backupFile) ? Files.readAllLines(backupFile, StandardCharsets.UTF_8) : listInterfaces();
+        for (String line : lines) {
+            String[] parts = line.split("\\|", 3);
+            if (parts.length < 3) continue;
+            for (String server : parts[2].split(",")) {
+                InetAddress address = InetAddress.getByName(server.trim()); // A literal, never looked up
+                if (!address.isLoopbackAddress()) return address;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Saves the current servers and points every interface that has DNS servers at the given address.
+     */
+    public synchronized void pointAt(InetAddress resolver) throws IOException {
+        restore(); // Left over from a client that did not shut down cleanly
+        List<String> lines = listInterfaces();
+        if (lines.isEmpty()) throw new IOException("No interface has a DNS server to replace");
+        Files.createDirectories(backupFile.getParent());
+        Files.write(backupFile, lines, StandardCharsets.UTF_8);
+        StringBuilder script = new StringBuilder();
+        for (String line : lines) {
+            script.append("Set-DnsClientServerAddress -InterfaceIndex ").append(interfaceIndex(line))
+                    .append(" -ServerAddresses ('").append(resolver.getHostAddress()).append("')\n");
+        }
+        script.append("Clear-DnsClientCache\n");
+        try {
+            runner.run(stopOnError(script.toString()));
+        } catch (IOException e) {
+            try {
+                restore(); // Interfaces changed before the failure would point at a resolver that is not coming
+            } catch (IOException restoreError) {
+                e.addSuppressed(restoreError);
+            }
+            throw e;
+        }
+        log.info("SystemDnsSettings: DNS of {} interface(s) now points at {}.", lines.size(), resolver.getHostAddress());
+    }
+
+    /**
+     * Puts back the servers saved by {@link #pointAt}. Does nothing if none are saved.
+     */
+    public synchronized void restore() throws IOException {
+        if (!Files.isRegularFile(backupFile)) return;
+        StringBuilder script = new StringBuilder();
+        for (String line : Files.readAllLines(backupFile, StandardCharsets.UTF_8)) {
+            String[] parts = line.split("\\|", 3);
+            if (parts.length < 3) continue;
+            // An adapter removed meanwhile has nothing to restore
+            int index = interfaceIndex(line);
+            script.append("if (Get-NetAdapter -InterfaceIndex ").append(index).append(" -ErrorAction SilentlyContinue) { ")
+                    .append("Set-DnsClientServerAddress -InterfaceIndex ").append(index);
+            if (Boolean.parseBoolean(parts[1])) {
+                List<String> servers = new ArrayList<>();
+                for (String server : parts[2].split(",")) {
+                    servers.add("'" + InetAddress.getByName(server.trim()).getHostAddress() + "'");
+                }
+                script.append(" -ServerAddresses (").append(String.join(",", servers)).append(") }\n");
+            } else {
+                script.append(" -ResetServerAddresses }\n");
+            }
+        }
+        script.append("Clear-DnsClientCache\n");
+        runner.run(stopOnError(script.toString())); // Throws if any interface was not restored, keeping the file
+        Files.delete(backupFile);
+        log.info("SystemDnsSettings: Restored the previous DNS servers.");
+    }
+
+    // Without this, a failing cmdlet only writes an error and powershell still exits with 0
+    private static String stopOnError(String script) {
+        return "$ErrorActionPreference = 'Stop'\ntry {\n" + script
+                + "} catch {\n  Write-Output (\"CMMS DNS script failed: \" + $_)\n  exit 1\n}\n";
+    }
+
+    private List<String> listInterfaces() throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (String line : runner.run(LIST_SCRIPT).split("\\R")) {
+            if (line.split("\\|", 3).length == 3) lines.add(line.trim());
+        }
+        return lines;
+    }
+
+    // Only digits reach the script
+    private static int interfaceIndex(String line) throws IOException {
+        try {
+            return Integer.parseInt(line.substring(0, line.indexOf('|')).trim());
+        } catch (NumberFormatException e) {
+            throw new IOException("Unexpected interface line: " + line, e);
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.cmms.networkManager;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Turns captured packets into per-domain visit events, from DNS queries and from the server name (SNI) in TLS
+ * ClientHellos, without decrypting anything.
+ * <p>
+ * Frames are handed in as (array, offset, length) so a capture source can reuse one buffer for every packet.
+ * Ethernet (with VLAN tags), Linux cooked, BSD loopback and raw IP link types are understood, over IPv4 and IPv6.
+ * Parsing does not allocate: names are decoded into a scratch buffer and looked up in a table of domains seen
+ * before, so a String is only created the first time a domain shows up. Each domain is reported at most once per
+ * repeat window; the window runs on packet timestamps, so replaying a capture file gives the same events as the
+ * live traffic did.
+ * <p>
+ * Not covered: ClientHellos split across TCP segments, QUIC (its ClientHello is encrypted with per-connection
+ * keys) and DNS-over-HTTPS (encrypted; its server's own name still shows up). Not thread-safe: feed it from one
+ * capture thread. The counters may be read from any thread.
+ */
+public class TrafficObserver {
+
+    /**
+     * Where a visit was seen.
+     */
+    public enum Source {
+        DNS,
+        TLS_SNI
+    }
+
+    /**
+     * Receives visit events, on the capture thread.
+     */
+    public interface VisitListener {
+        void onVisit(String domain, Source source, long timestampMillis);
+    }
+
+    /** pcap link types (LINKTYPE_* in the pcap file format). */
+    public static final int LINKTYPE_NULL = 0;
+    public static final int LINKTYPE_ETHERNET = 1;
+    public static final int LINKTYPE_RAW = 101;
+    public static final int LINKTYPE_LINUX_SLL = 113;
+    public static final int LINKTYPE_IPV4 = 228;
+    public static final int LINKTYPE_IPV6 = 229;
+    private static final int DLT_RAW_BSD = 12;
+    private static final int DLT_RAW_OPENBSD = 14;
+
+    private static final long DEFAULT_REPEAT_WINDOW_MS = 60_000;
+    private static final int MAX_DOMAINS = 1 << 16;
+    private static final int DNS_TYPE_A = 1;
+    private static final int DNS_TYPE_AAAA = 28;
+    private static final int DNS_TYPE_HTTPS = 65;
+
+    private final VisitListener listener;
+    private final long repeatWindowMillis;
+    private final byte[] name = new byte[256];
+
+    // Domains seen so far: open addressing on the name's hash, each slot holding the name bytes and its String
+    private byte[][] keys = new byte[1024][];
+    private String[] domains = new String[1024];
+    private long[] lastReported = new long[1024];
+    private int[] hashes = new int[1024];
+    private int domainCount;
+
+    private long packets;
+    private long dnsQueries;
+    private long clientHellos;
+    private long visits;
+    private long undecoded;
+
+    public TrafficObserver(VisitListener listener) {
+        this(listener, DEFAULT_REPEAT_WINDOW_MS);
+    }
+
+    /**
+     * @param repeatWindowMillis A domain seen again within this time after being reported is not reported again.
+     */
+    public TrafficObserver(VisitListener listener, long repeatWindowMillis) {
+        this.listener = listener;
+        this.repeatWindowMillis = repeatWindowMillis;
+    }
+
+    /**
+     * Decodes one captured frame.
+     *
+     * @param linkType One of the LINKTYPE_ constants (the capture's data link type).
+     */
+    public void observe(byte[] frame, int offset, int length, int linkType, long timestampMillis) {
+        packets++;
+        int end = offset + length;
+        int p = offset;
+        int etherType;
+        switch (linkType) {
+            case LINKTYPE_ETHERNET:
+                if (length < 14) return;
+                etherType = u16(frame, p + 12);
+                p += 14;
+                while ((etherType == 0x8100 || etherType == 0x88A8) && p + 4 <= end) { // VLAN tags
+                    etherType = u16(frame, p + 2);
+                    p += 4;
+                }
+                break;
+            case LINKTYPE_LINUX_SLL:
+                if (length < 16) return;
+                etherType = u16(frame, p + 14);
+                p += 16;
+                break;
+            case LINKTYPE_NULL:
+                if (length < 4) return;
+                // Address family in the capturing host's byte order; IPv4 is 2 everywhere, IPv6 varies by OS
+                int family = frame[p] != 0 ? frame[p] & 0xFF : frame[p + 3] & 0xFF;
+                etherType = family == 2 ? 0x0800 : 0x86DD;
+                p += 4;
+                break;
+            case LINKTYPE_RAW:
+            case LINKTYPE_IPV4:
+            case LINKTYPE_IPV6:
+            case DLT_RAW_BSD:
+            case DLT_RAW_OPENBSD:
+                if (length < 1) return;
+                etherType = (frame[p] & 0xF0) == 0x60 ? 0x86DD : 0x0800;
+                break;
+            default:
+                undecoded++;
+                return;
+        }
+        if (etherType == 0x0800) {
+            ipv4(frame, p, end, timestampMillis);
+        } else if (etherType == 0x86DD) {
+            ipv6(frame, p, end, timestampMillis);
+        }
+    }
+
+    /**
+     * Forgets which domains were reported, so each is reported again on its next visit.
+     */
+    public void reset() {
+        Arrays.fill(keys, null);
+        Arrays.fill(domains, null);
+        domainCount = 0;
+    }
+
+    public long getPacketCount() {
+        return packets;
+    }
+
+    public long getDnsQueryCount() {
+        return dnsQueries;
+    }
+
+    public long getClientHelloCount() {
+        return clientHellos;
+    }
+
+    /**
+     * @return Visit events delivered to the listener.
+     */
+    public long getVisitCount() {
+        return visits;
+    }
+
+    /**
+     * @return Packets on a link type that is not understood.
+     */
+    public long getUndecodedCount() {
+        return undecoded;
+    }
+
+    @Override
+    public String toString() {
+        return "TrafficObserver{packets=" + packets + ", dnsQueries=" + dnsQueries + ", clientHellos=" + clientHellos
+                + ", visits=" + visits + ", domains=" + domainCount + '}';
+    }
+
+    // --- Layers ---
+
+    private void ipv4(byte[] frame, int p, int end, long timestampMillis) {
+        if (p + 20 > end || (frame[p] & 0xF0) != 0x40) return;
+        int headerLength = (frame[p] & 0x0F) * 4;
+        int totalLength = u16(frame, p + 2);
+        if ((u16(frame, p + 6) & 0x1FFF) != 0) return; // Not the first fragment
+        int protocol = frame[p + 9] & 0xFF;
+        transport(frame, protocol, p + headerLength, Math.min(end, p + totalLength), timestampMillis);
+    }
+
+    private void ipv6(byte[] frame, int p, int end, long timestampMillis) {
+        if (p + 40 > end || (frame[p] & 0xF0) != 0x60) return;
+        int next = frame[p + 6] & 0xFF;
+        end = Math.min(end, p + 40 + u16(frame, p + 4));
+        p += 40;
+        while (true) { // Skip extension headers
+            if (next == 0 || next == 43 || next == 60) {
+                if (p + 8 > end) return;
+                next = frame[p] & 0xFF;
+                p += ((frame[p + 1] & 0xFF) + 1) * 8;
+            } else if (next == 44) {
+                if (p + 8 > end || (u16(frame, p + 2) & 0xFFF8) != 0) return; // Not the first fragment
+                next = frame[p] & 0xFF;
+                p += 8;
+            } else {
+                break;
+            }
+        }
+        transport(frame, next, p, end, timestampMillis);
+    }
+
+    private void transport(byte[] frame, int protocol, int p, int end, long timestampMillis) {
+        if (protocol == 17) { // UDP
+            if (p + 8 > end) return;
+            if (u16(frame, p + 2) == 53) dnsQuery(frame, p + 8, end, timestampMillis);
+        } else if (protocol == 6) { // TCP
+            if (p + 20 > end) return;
+            int payload = p + ((frame[p + 12] & 0xF0) >>> 2);
+            if (payload + 9 <= end && frame[payload] == 0x16) {
+                long found = ProxyProtocol.findServerName(frame, payload, end);
+                if (found >= 0) {
+                    clientHellos++;
+                    int nameOffset = (int) (found >>> 32);
+                    int nameLength = (int) found;
+                    if (nameLength > 0 && nameLength < name.length) {
+                        for (int i = 0; i < nameLength; i++) name[i] = lower(frame[nameOffset + i]);
+                        visit(nameLength, Source.TLS_SNI, timestampMillis);
+                    }
+                }
+            }
+        }
+    }
+
+    private void dnsQuery(byte[] frame, int p, int end, long timestampMillis) {
+        if (p + 12 > end) return;
+        if ((frame[p + 2] & 0xF8) != 0 || u16(frame, p + 4) == 0) return; // A response, not QUERY, or no question
+        int q = p + 12;
+        int length = 0;
+        while (true) {
+            if (q >= end) return;
+            int labelLength = frame[q++] & 0xFF;
+            if (labelLength == 0) break;
+            if (labelLength > 63 || q + labelLength > end || length + labelLength + 1 >= name.length) return;
+            if (length > 0) name[length++] = '.';
+            for (int i = 0; i < labelLength; i++) name[length++] = lower(frame[q + i]);
+            q += labelLength;
+        }
+        if (q + 2 > end) return;
+        int type = u16(frame, q);
+        if (type != DNS_TYPE_A && type != DNS_TYPE_AAAA && type != DNS_TYPE_HTTPS) return;
+        dnsQueries++;
+        if (indexOf(name, length, (byte) '.') < 0) return; // Single-label names are local lookups
+        visit(length, Source.DNS, timestampMillis);
+    }
+
+    // --- Domain table ---
+
+    private void visit(int length, Source source, long timestampMillis) {
+        int hash = hash(name, length);
+        int mask = keys.length - 1;
+        int slot = hash & mask;
+        while (keys[slot] != null) {
+            if (hashes[slot] == hash && keys[slot].length == length && Arrays.equals(keys[slot], 0, length, name, 0, length)) {
+                if (timestampMillis - lastReported[slot] >= repeatWindowMillis) {
+                    lastReported[slot] = timestampMillis;
+                    report(domains[slot], source, timestampMillis);
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+
+        if (domainCount >= MAX_DOMAINS) {
+            reset(); // Bounded memory; at worst some domains are reported a little early
+            visit(length, source, timestampMillis);
+            return;
+        }
+        keys[slot] = Arrays.copyOf(name, length);
+        domains[slot] = new String(name, 0, length, StandardCharsets.US_ASCII);
+        hashes[slot] = hash;
+        lastReported[slot] = timestampMillis;
+        if (++domainCount * 4 > keys.length * 3) grow();
+        report(domains[slot], source, timestampMillis);
+    }
+
+    private void report(String domain, Source source, long timestampMillis) {
+        visits++;
+        listener.onVisit(domain, source, timestampMillis);
+    }
+
+    private void grow() {
+        byte[][] oldKeys = keys;
+        String[] oldDomains = domains;
+        long[] oldLast = lastReported;
+        int[] oldHashes = hashes;
+        int capacity = oldKeys.length * 2;
+        keys = new byte[capacity][];
+        domains = new String[capacity];
+        lastReported = new long[capacity];
+        hashes = new int[capacity];
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] == null) continue;
+            int slot = oldHashes[i] & (capacity - 1);
+            while (keys[slot] != null) slot = (slot + 1) & (capacity - 1);
+            keys[slot] = oldKeys[i];
+            domains[slot] = oldDomains[i];
+            lastReported[slot] = oldLast[i];
+            hashes[slot] = oldHashes[i];
+        }
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int h = 0x811C9DC5;
+        for (int i = 0; i < length; i++) h = (h ^ bytes[i]) * 0x01000193;
+        return h ^ (h >>> 16);
+    }
+
+    private static int indexOf(byte[] bytes, int length, byte b) {
+        for (int i = 0; i < length; i++) if (bytes[i] == b) return i;
+        return -1;
+    }
+
+    private static byte lower(byte b) {
+        return b >= 'A' && b <= 'Z' ? (byte) (b + ('a' - 'A')) : b;
+    }
+
+    private static int u16(byte[] data, int offset) {
+        return ((data[offset] & 0xFF) << 8) | (data[offset + 1] & 0xFF);
+    }
+}
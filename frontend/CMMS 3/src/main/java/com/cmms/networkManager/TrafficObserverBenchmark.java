@@ -0,0 +1,234 @@
+package com.cmms.networkManager;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual check and benchmark for {@link TrafficObserver} and {@link PcapFileReader}; needs no native library.
+ * <p>
+ * Writes small capture files with DNS queries and TLS ClientHellos over Ethernet (with and without VLAN tags),
+ * Linux cooked and raw IPv6 links, mixed with packets that must be ignored (DNS responses, single-label and PTR
+ * lookups, non-TLS TCP), and checks the visit events that come out, including the repeat window
+ * (exits with status 1 on a mismatch). Then replays a large capture and reports packets per second and the bytes
+ * allocated per packet once every domain has been seen.
+ * Run with: java com.cmms.networkManager.TrafficObserverBenchmark [packets]
+ */
+public class TrafficObserverBenchmark {
+
+    private static final int DOMAINS = 5_000;
+
+    public static void main(String[] args) throws Exception {
+        int packets = args.length > 0 ? Integer.parseInt(args[0]) : 500_000;
+        Path dir = Files.createTempDirectory("cmms-pcap");
+        try {
+            if (!verify(dir)) {
+                System.err.println("TrafficObserver verification FAILED");
+                System.exit(1);
+            }
+            System.out.println("DNS/SNI decoding OK");
+            benchmark(dir.resolve("bulk.pcap"), packets);
+        } finally {
+            try (var files = Files.list(dir)) {
+                for (Path file : (Iterable<Path>) files::iterator) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(dir);
+        }
+    }
+
+    private static boolean verify(Path dir) throws IOException {
+        Path ethernet = dir.resolve("ethernet.pcap");
+        try (PcapWriter out = new PcapWriter(ethernet, TrafficObserver.LINKTYPE_ETHERNET, ByteOrder.LITTLE_ENDIAN)) {
+            out.write(0, ethernet(0x0800, ipv4(17, udp(53, dnsQuery("WWW.Example.COM", 1, false)))));
+            out.write(1_000, vlan(ipv4(6, tcp(FilteringProxyBenchmark.clientHello("www.example.com")))));
+            out.write(2_000, ethernet(0x0800, ipv4(6, tcp(FilteringProxyBenchmark.clientHello("News.Test")))));
+            out.write(3_000, ethernet(0x0800, ipv4(17, udp(53, dnsQuery("answer.test", 1, true)))));
+            out.write(4_000, ethernet(0x0800, ipv4(17, udp(53, dnsQuery("printer", 1, false)))));
+            out.write(5_000, ethernet(0x0800, ipv4(17, udp(53, dnsQuery("4.3.2.1.in-addr.arpa", 12, false)))));
+            out.write(6_000, ethernet(0x0800, ipv4(6, tcp("GET / HTTP/1.1\r\n\r\n".getBytes(StandardCharsets.US_ASCII)))));
+            out.write(7_000, ethernet(0x0800, ipv4(17, udp(5353, dnsQuery("mdns.test", 1, false)))));
+            out.write(70_000, ethernet(0x0800, ipv4(17, udp(53, dnsQuery("www.example.com", 28, false)))));
+        }
+        Path raw = dir.resolve("raw6.pcap");
+        try (PcapWriter out = new PcapWriter(raw, TrafficObserver.LINKTYPE_RAW, ByteOrder.BIG_ENDIAN)) {
+            out.write(0, ipv6(6, tcp(FilteringProxyBenchmark.clientHello("v6.example.org"))));
+            out.write(10, ipv6(17, udp(53, dnsQuery("six.test", 65, false))));
+        }
+        Path sll = dir.resolve("sll.pcap");
+        try (PcapWriter out = new PcapWriter(sll, TrafficObserver.LINKTYPE_LINUX_SLL, ByteOrder.LITTLE_ENDIAN)) {
+            out.write(0, sll(ipv4(17, udp(53, dnsQuery("cooked.test", 1, false)))));
+        }
+
+        boolean ok = true;
+        ok &= expect(ethernet, List.of("www.example.com DNS 0", "news.test TLS_SNI 2000", "www.example.com DNS 70000"), 9);
+        ok &= expect(raw, List.of("v6.example.org TLS_SNI 0", "six.test DNS 10"), 2);
+        ok &= expect(sll, List.of("cooked.test DNS 0"), 1);
+        return ok;
+    }
+
+    private static boolean expect(Path file, List<String> expected, long expectedPackets) throws IOException {
+        List<String> events = new ArrayList<>();
+        TrafficObserver observer = new TrafficObserver(
+                (domain, source, timestamp) -> events.add(domain + " " + source + " " + timestamp));
+        long read;
+        try (PcapFileReader reader = new PcapFileReader(file)) {
+            read = reader.readAll(observer);
+        }
+        if (!events.equals(expected) || read != expectedPackets) {
+            System.err.println(file.getFileName() + ": expected " + expected + " (" + expectedPackets + " packets), got "
+                    + events + " (" + read + " packets)");
+            return false;
+        }
+        return true;
+    }
+
+    private static void benchmark(Path file, int packets) throws IOException {
+        byte[][] frames = new byte[DOMAINS * 3][];
+        for (int i = 0; i < DOMAINS; i++) {
+            String domain = "host" + i + ".site" + (i % 97) + ".example";
+            frames[i * 3] = ethernet(0x0800, ipv4(17, udp(53, dnsQuery(domain, 1, false))));
+            frames[i * 3 + 1] = vlan(ipv4(6, tcp(FilteringProxyBenchmark.clientHello(domain))));
+            frames[i * 3 + 2] = ethernet(0x0800, ipv4(6, tcp(new byte[1200]))); // Bulk data the filter would pass
+        }
+        long bytes = 0;
+        try (PcapWriter out = new PcapWriter(file, TrafficObserver.LINKTYPE_ETHERNET, ByteOrder.LITTLE_ENDIAN)) {
+            for (int i = 0; i < packets; i++) {
+                byte[] frame = frames[(int) ((i * 7919L) % frames.length)];
+                out.write(i / 10, frame); // 10 packets per millisecond of capture time
+                bytes += frame.length;
+            }
+        }
+
+        long[] visits = new long[1];
+        TrafficObserver observer = new TrafficObserver((domain, source, timestamp) -> visits[0]++);
+        try (PcapFileReader reader = new PcapFileReader(file)) {
+            reader.readAll(observer); // Warm up; every domain gets its String here
+        }
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long read;
+        long nanos;
+        long allocated;
+        try (PcapFileReader reader = new PcapFileReader(file)) {
+            long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+            long start = System.nanoTime();
+            read = reader.readAll(observer);
+            nanos = System.nanoTime() - start;
+            allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        }
+        System.out.printf("Replayed %,d packets (%,d MB): %,.0f packets/s, %.1f MB/s, %.2f B allocated per packet%n",
+                read, bytes >> 20, read * 1e9 / nanos, bytes / 1e6 / (nanos / 1e9), (double) allocated / read);
+        System.out.println(observer);
+    }
+
+    // --- Packet builders ---
+
+    private static byte[] dnsQuery(String name, int type, boolean response) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        writeU16(out, 0x1234);
+        writeU16(out, response ? 0x8180 : 0x0100);
+        writeU16(out, 1);
+        writeU16(out, response ? 1 : 0);
+        writeU16(out, 0);
+        writeU16(out, 0);
+        for (String label : name.split("\\.")) {
+            out.write(label.length());
+            out.writeBytes(label.getBytes(StandardCharsets.US_ASCII));
+        }
+        out.write(0);
+        writeU16(out, type);
+        writeU16(out, 1);
+        return out.toByteArray();
+    }
+
+    private static byte[] udp(int destinationPort, byte[] payload) {
+        ByteBuffer udp = ByteBuffer.allocate(8 + payload.length);
+        udp.putShort((short) 50_000).putShort((short) destinationPort).putShort((short) (8 + payload.length)).putShort((short) 0);
+        return udp.put(payload).array();
+    }
+
+    private static byte[] tcp(byte[] payload) {
+        ByteBuffer tcp = ByteBuffer.allocate(20 + payload.length);
+        tcp.putShort((short) 50_000).putShort((short) 443).putInt(1).putInt(0);
+        tcp.put((byte) 0x50).put((byte) 0x18).putShort((short) 65_535).putInt(0);
+        return tcp.put(payload).array();
+    }
+
+    private static byte[] ipv4(int protocol, byte[] payload) {
+        ByteBuffer ip = ByteBuffer.allocate(20 + payload.length);
+        ip.put((byte) 0x45).put((byte) 0).putShort((short) (20 + payload.length));
+        ip.putInt(0).put((byte) 64).put((byte) protocol).putShort((short) 0);
+        ip.put(new byte[] {10, 0, 0, 2}).put(new byte[] {10, 0, 0, 1});
+        return ip.put(payload).array();
+    }
+
+    private static byte[] ipv6(int nextHeader, byte[] payload) {
+        ByteBuffer ip = ByteBuffer.allocate(40 + payload.length);
+        ip.putInt(0x60000000).putShort((short) payload.length).put((byte) nextHeader).put((byte) 64);
+        ip.put(new byte[16]).put(new byte[16]);
+        return ip.put(payload).array();
+    }
+
+    private static byte[] ethernet(int etherType, byte[] payload) {
+        ByteBuffer frame = ByteBuffer.allocate(14 + payload.length);
+        frame.put(new byte[12]).putShort((short) etherType);
+        return frame.put(payload).array();
+    }
+
+    private static byte[] vlan(byte[] ipv4) {
+        ByteBuffer frame = ByteBuffer.allocate(18 + ipv4.length);
+        frame.put(new byte[12]).putShort((short) 0x8100).putShort((short) 42).putShort((short) 0x0800);
+        return frame.put(ipv4).array();
+    }
+
+    private static byte[] sll(byte[] ipv4) {
+        ByteBuffer frame = ByteBuffer.allocate(16 + ipv4.length);
+        frame.putShort((short) 4).putShort((short) 1).putShort((short) 6).put(new byte[8]).putShort((short) 0x0800);
+        return frame.put(ipv4).array();
+    }
+
+    private static void writeU16(ByteArrayOutputStream out, int value) {
+        out.write(value >>> 8);
+        out.write(value & 0xFF);
+    }
+
+    /**
+     * Writes a classic pcap file with microsecond timestamps.
+     */
+    private static final class PcapWriter implements AutoCloseable {
+        private final OutputStream out;
+        private final ByteBuffer header;
+
+        PcapWriter(Path file, int linkType, ByteOrder order) throws IOException {
+            out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+            header = ByteBuffer.allocate(24).order(order);
+            header.putInt(0xA1B2C3D4).putShort((short) 2).putShort((short) 4).putInt(0).putInt(0)
+                    .putInt(65_535).putInt(linkType);
+            out.write(header.array());
+            header.clear().limit(16);
+        }
+
+        void write(long timestampMillis, byte[] frame) throws IOException {
+            header.clear();
+            header.putInt((int) (timestampMillis / 1000)).putInt((int) (timestampMillis % 1000 * 1000))
+                    .putInt(frame.length).putInt(frame.length);
+            out.write(header.array(), 0, 16);
+            out.write(frame);
+        }
+
+        @Override
+        public void close() throws IOException {
+            out.close();
+        }
+    }
+}
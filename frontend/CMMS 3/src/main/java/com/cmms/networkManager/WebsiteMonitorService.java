@@ -1,17 +1,14 @@
 package com.cmms.networkManager;
 
 import com.cmms.Main;
+import com.cmms.service.ViolationReporter;
 import com.cmms.service.WebSocketService;
+import com.cmms.util.OSValidator;
 
-import java.io.BufferedReader;
-import java.io.BufferedWriter;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.nio.charset.StandardCharsets;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.nio.file.Files;
-import java.nio.file.Path;
-import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -29,25 +26,95 @@ import org.slf4j.LoggerFactory;
 public class WebsiteMonitorService {
 
     private final WebSocketService webSocketService;
+    private final ViolationReporter violationReporter;
     private final String studentId;
     private volatile String currentMode = "";
     private volatile List<String> currentBlacklist = Collections.emptyList();
     private volatile List<String> currentWhitelist = Collections.emptyList();
+    private volatile DomainSet blockedDomains = new DomainSet();
+    private volatile DomainSet allowedDomains = new DomainSet();
+    private volatile DomainMatcher importedBlocklist; // e.g. a BlocklistFile with a category list, may be null
     private volatile boolean isRunning = false;
-    private final Object hostsFileLock = new Object(); // Lock for file access
+    private final HostsFileManager hostsFileManager;
+    private EnforcementMode enforcementMode = EnforcementMode.HOSTS_FILE;
+    private InetSocketAddress dnsListenAddress;
+    private InetSocketAddress dnsUpstream;
+    private DnsFilterResolver dnsResolver;
+    private SystemDnsSettings systemDns; // Set while Windows DNS points at the resolver
+    private InetSocketAddress proxyListenAddress;
+    private FilteringProxy proxy;
+
+    /**
+     * How blocked websites are kept unreachable.
+     */
+    public enum EnforcementMode {
+        /** Blocked names are written into the hosts file (the default). */
+        HOSTS_FILE,
+        /**
+         * A local {@link DnsFilterResolver} answers blocked names with a sinkhole. On Windows the system's DNS
+         * servers are pointed at it while monitoring; elsewhere that has to be done by hand. List updates then
+         * apply to the next lookup without touching any file.
+         */
+        DNS_RESOLVER,
+        /**
+         * A local {@link FilteringProxy} checks every HTTP request and HTTPS tunnel, including sites reached by IP
+         * address or DNS-over-HTTPS. Browsers must use its listen address as their proxy.
+         */
+        PROXY
+    }
 
     // TODO: Derive backend host from API URL if possible/needed
-    private static final Path HOSTS_FILE_PATH = Paths.get("C:", "Windows", "System32", "drivers", "etc", "hosts");
     private static final String REDIRECT_IP_V4 = "127.0.0.1";
     private static final String REDIRECT_IP_V6 = "::1"; // Added IPv6 loopback
-    private static final String CMMS_MARKER_START = "# CMMS Start - Do not edit below this line";
-    private static final String CMMS_MARKER_END = "# CMMS End - Do not edit above this line";
 
     private static final Logger log = LoggerFactory.getLogger(WebsiteMonitorService.class);
 
     public WebsiteMonitorService(WebSocketService webSocketService, String studentId) {
+        this(webSocketService, studentId, HostsFileManager.getDefault());
+    }
+
+    /**
+     * @param hostsFileManager Manager for the hosts file to edit (a temp file when testing).
+     */
+    public WebsiteMonitorService(WebSocketService webSocketService, String studentId, HostsFileManager hostsFileManager) {
         this.webSocketService = webSocketService;
+        this.violationReporter = new ViolationReporter(webSocketService);
         this.studentId = studentId;
+        this.hostsFileManager = hostsFileManager;
+    }
+
+    /**
+     * Switches to {@link EnforcementMode#DNS_RESOLVER}. Must be called before {@link #startMonitoring}.
+     *
+     * @param listenAddress Where the resolver listens (see {@link DnsFilterResolver#defaultListenAddress()}).
+     * @param upstream      Server that allowed queries are forwarded to, or null for the one the system used.
+     */
+    public synchronized void useDnsResolver(InetSocketAddress listenAddress, InetSocketAddress upstream) {
+        if (isRunning) {
+            log.warn("WebsiteMonitorService: Cannot change enforcement mode while running.");
+            return;
+        }
+        this.enforcementMode = EnforcementMode.DNS_RESOLVER;
+        this.dnsListenAddress = listenAddress;
+        this.dnsUpstream = upstream;
+    }
+
+    /**
+     * Switches to {@link EnforcementMode#PROXY}. Must be called before {@link #startMonitoring}.
+     *
+     * @param listenAddress Where the proxy listens (see {@link FilteringProxy#defaultListenAddress()}).
+     */
+    public synchronized void useProxy(InetSocketAddress listenAddress) {
+        if (isRunning) {
+            log.warn("WebsiteMonitorService: Cannot change enforcement mode while running.");
+            return;
+        }
+        this.enforcementMode = EnforcementMode.PROXY;
+        this.proxyListenAddress = listenAddress;
+    }
+
+    public synchronized EnforcementMode getEnforcementMode() {
+        return enforcementMode;
     }
 
     public synchronized void startMonitoring(String sessionType, List<String> initialBlacklist, List<String> initialWhitelist) {
@@ -59,8 +126,15 @@ public class WebsiteMonitorService {
         log.info("WebsiteMonitorService: Starting monitoring... Mode: {}, Blacklist: {}, Whitelist: {}", sessionType, initialBlacklist, initialWhitelist);
         updateListsInternal(sessionType, initialBlacklist, initialWhitelist);
         
-        log.info("WebsiteMonitorService: Calling applyHostsFileChanges from startMonitoring...");
-        if (!applyHostsFileChanges()) {
+        if (enforcementMode == EnforcementMode.DNS_RESOLVER) {
+            if (!startDnsResolver()) {
+                log.error("WebsiteMonitorService: Failed to start DNS resolver. Monitoring may not be effective.");
+            }
+        } else if (enforcementMode == EnforcementMode.PROXY) {
+            if (!startProxy()) {
+                log.error("WebsiteMonitorService: Failed to start filtering proxy. Monitoring may not be effective.");
+            }
+        } else if (!applyHostsFileChanges()) {
              log.error("WebsiteMonitorService: Failed to apply initial hosts file changes. Monitoring may not be effective.");
              // Consider how to handle this failure - maybe stop?
         }
@@ -76,8 +150,15 @@ public class WebsiteMonitorService {
         }
         log.info("WebsiteMonitorService: Stopping monitoring and reverting hosts file...");
         
-        log.info("WebsiteMonitorService: Calling revertHostsFileChanges from stopMonitoring...");
-        revertHostsFileChanges();
+        if (dnsResolver != null) {
+            stopDnsResolver();
+        } else if (proxy != null) {
+            proxy.close();
+            proxy = null;
+        } else if (enforcementMode == EnforcementMode.HOSTS_FILE) {
+            log.info("WebsiteMonitorService: Calling revertHostsFileChanges from stopMonitoring...");
+            revertHostsFileChanges();
+        }
         isRunning = false;
         log.info("WebsiteMonitorService: Monitoring stopped, isRunning set to false.");
     }
@@ -91,8 +172,10 @@ public class WebsiteMonitorService {
         log.info("WebsiteMonitorService: Updating mode and lists... Mode: {}, Blacklist: {}, Whitelist: {}", sessionType, newBlacklist, newWhitelist);
         updateListsInternal(sessionType, newBlacklist, newWhitelist);
         
-        log.info("WebsiteMonitorService: Calling applyHostsFileChanges from updateMonitoringMode...");
-        if (!applyHostsFileChanges()) {
+        if (enforcementMode != EnforcementMode.HOSTS_FILE) {
+            // The resolver or proxy reads the new lists on its next query
+            log.info("WebsiteMonitorService: {} picked up the new lists.", enforcementMode);
+        } else if (!applyHostsFileChanges()) {
              log.error("WebsiteMonitorService: Failed to apply updated hosts file changes. Monitoring may not be effective.");
         }
         log.info("WebsiteMonitorService: updateMonitoringMode finished.");
@@ -106,6 +189,103 @@ public class WebsiteMonitorService {
         this.currentWhitelist = whitelist != null ? 
                                 whitelist.stream().map(String::trim).map(String::toLowerCase).filter(s -> !s.isEmpty()).collect(Collectors.toList()) : 
                                 Collections.emptyList();
+        this.blockedDomains = DomainSet.of(this.currentBlacklist);
+        this.allowedDomains = DomainSet.of(this.currentWhitelist);
+    }
+
+    /**
+     * Adds an imported category list (usually a memory-mapped {@link BlocklistFile}) to the blacklist modes.
+     * Such lists are far too large for the hosts file, so they are only enforced through {@link #isBlocked},
+     * i.e. in {@link EnforcementMode#DNS_RESOLVER} and {@link EnforcementMode#PROXY} mode.
+     *
+     * @param blocklist The list, or null to remove it.
+     */
+    public synchronized void setImportedBlocklist(DomainMatcher blocklist) {
+        this.importedBlocklist = blocklist;
+        if (blocklist != null && enforcementMode == EnforcementMode.HOSTS_FILE) {
+            log.warn("WebsiteMonitorService: Imported blocklist is not enforced in hosts file mode.");
+        }
+    }
+
+    /**
+     * Checks a host name against the current mode and lists without touching the hosts file.
+     *
+     * @return true if the host should not be reachable.
+     */
+    public boolean isBlocked(String host) {
+        if (isBackendHost(host)) {
+            return false; // Never cut the client off from its own server
+        }
+        String mode = currentMode;
+        if ("BLOCK_APPS_WEBSITES".equals(mode) || "BLOCK_WEBSITES".equals(mode)) {
+            DomainMatcher imported = importedBlocklist;
+            boolean blocked = blockedDomains.matches(host) || (imported != null && imported.matches(host));
+            return blocked && !allowedDomains.matches(host);
+        }
+        if ("ALLOW_WEBSITES".equals(mode)) {
+            return !allowedDomains.matches(host);
+        }
+        return false;
+    }
+
+    private static boolean isBackendHost(String host) {
+        String apiDomain = Main.getBackendApiDomain();
+        String wsDomain = Main.getBackendWebSocketDomain();
+        return (apiDomain != null && host.equalsIgnoreCase(apiDomain)) || (wsDomain != null && host.equalsIgnoreCase(wsDomain));
+    }
+
+    private boolean startDnsResolver() {
+        SystemDnsSettings windowsDns = OSValidator.isWindows() ? new SystemDnsSettings() : null;
+        try {
+            InetSocketAddress upstream = dnsUpstream;
+            if (upstream == null) {
+                InetAddress server = windowsDns != null ? windowsDns.currentServer() : null;
+                if (server == null) throw new IOException("no upstream DNS server configured");
+                upstream = new InetSocketAddress(server, 53);
+            }
+            dnsResolver = new DnsFilterResolver(dnsListenAddress, upstream, this::isBlocked);
+            dnsResolver.start();
+            if (windowsDns != null) {
+                windowsDns.pointAt(dnsListenAddress.getAddress());
+                systemDns = windowsDns;
+            } else {
+                log.warn("WebsiteMonitorService: Point the system DNS at {} for the resolver to take effect.", dnsListenAddress);
+            }
+            return true;
+        } catch (IOException e) {
+            log.error("WebsiteMonitorService: Could not start DNS resolver on " + dnsListenAddress + ": " + e.getMessage());
+            reportHostsFileError("DNS resolver unavailable: " + e.getMessage());
+            if (dnsResolver != null) dnsResolver.close();
+            dnsResolver = null;
+            return false;
+        }
+    }
+
+    private void stopDnsResolver() {
+        if (systemDns != null) {
+            try {
+                systemDns.restore(); // Before the resolver goes, so lookups never hit a dead server
+            } catch (IOException e) {
+                log.error("WebsiteMonitorService: Could not restore the system DNS servers: " + e.getMessage());
+            }
+            systemDns = null;
+        }
+        dnsResolver.close();
+        dnsResolver = null;
+    }
+
+    private boolean startProxy() {
+        try {
+            proxy = new FilteringProxy(proxyListenAddress, this::isBlocked);
+            proxy.start();
+            log.warn("WebsiteMonitorService: Browsers must use {} as their proxy for it to take effect.", proxyListenAddress);
+            return true;
+        } catch (IOException e) {
+            log.error("WebsiteMonitorService: Could not start filtering proxy on " + proxyListenAddress + ": " + e.getMessage());
+            reportHostsFileError("Filtering proxy unavailable: " + e.getMessage());
+            proxy = null;
+            return false;
+        }
     }
 
     private boolean applyHostsFileChanges() {
@@ -114,14 +294,14 @@ public class WebsiteMonitorService {
         log.info("WebsiteMonitorService: Current Blacklist: " + currentBlacklist);
         log.info("WebsiteMonitorService: Current Whitelist: " + currentWhitelist);
 
-        if (!Files.exists(HOSTS_FILE_PATH)) {
-            log.error("WebsiteMonitorService: ERROR - Hosts file does not exist at: " + HOSTS_FILE_PATH);
+        if (!Files.exists(hostsFileManager.getHostsPath())) {
+            log.error("WebsiteMonitorService: ERROR - Hosts file does not exist at: " + hostsFileManager.getHostsPath());
             reportHostsFileError("Hosts file not found.");
             return false;
         }
         
-        if (!Files.isWritable(HOSTS_FILE_PATH)) {
-            log.error("WebsiteMonitorService: ERROR - Hosts file is not writable (Check Admin Permissions!): " + HOSTS_FILE_PATH);
+        if (!Files.isWritable(hostsFileManager.getHostsPath())) {
+            log.error("WebsiteMonitorService: ERROR - Hosts file is not writable (Check Admin Permissions!): " + hostsFileManager.getHostsPath());
             reportHostsFileError("Hosts file not writable.");
              // Even if not writable here, proceed to see if write fails later (might be admin run)
              // return false; // Decided to proceed and let the write operation fail if needed
@@ -137,9 +317,8 @@ public class WebsiteMonitorService {
                  log.info("WebsiteMonitorService: Blacklist is empty, no hosts entries to add.");
             } else {
                  log.info("WebsiteMonitorService: Adding blacklist entries: " + currentBlacklist);
-                 for (String site : currentBlacklist) {
-                    if (site == null || site.trim().isEmpty()) continue;
-                    String normalizedSite = site.trim().toLowerCase();
+                 // The domain set has already reduced URLs to host names and dropped duplicates
+                 for (String normalizedSite : blockedDomains.domains()) {
 
                     // Remove www. prefix if it exists for the base domain check
                     String baseSite = normalizedSite.startsWith("www.") ? normalizedSite.substring(4) : normalizedSite;
@@ -176,141 +355,47 @@ public class WebsiteMonitorService {
             }
         }
 
-        log.info("WebsiteMonitorService: Acquiring lock for hosts file access...");
-        synchronized (hostsFileLock) {
-            log.info("WebsiteMonitorService: Lock acquired.");
-            List<String> originalLines = null;
-            try {
-                log.info("WebsiteMonitorService: Reading original hosts file...");
-                originalLines = Files.readAllLines(HOSTS_FILE_PATH, StandardCharsets.UTF_8);
-                log.info("WebsiteMonitorService: Original hosts file read (" + originalLines.size() + " lines).");
-
-                List<String> newLines = new ArrayList<>();
-                boolean inCmmsBlock = false;
-
-                 log.info("WebsiteMonitorService: Processing original lines to remove old CMMS block...");
-                // Copy lines, excluding the old CMMS block
-                for (String line : originalLines) {
-                    if (line.trim().equals(CMMS_MARKER_START)) {
-                        inCmmsBlock = true;
-                        continue; // Skip start marker
-                    }
-                    if (line.trim().equals(CMMS_MARKER_END)) {
-                        inCmmsBlock = false;
-                        continue; // Skip end marker
-                    }
-                    if (!inCmmsBlock) {
-                        newLines.add(line);
-                    }
-                }
-                log.info("WebsiteMonitorService: Finished processing original lines.");
-                
-                // Add new CMMS block if there are entries to add
-                if (!hostsEntriesToAdd.isEmpty()) {
-                    log.info("WebsiteMonitorService: Adding new CMMS block with entries: " + hostsEntriesToAdd);
-                    newLines.add(""); // Add a blank line for separation
-                    newLines.add(CMMS_MARKER_START);
-                    newLines.addAll(hostsEntriesToAdd);
-                    newLines.add(CMMS_MARKER_END);
-                } else {
-                    log.info("WebsiteMonitorService: No specific hosts entries to add for mode " + currentMode);
-                    // Ensure old block is removed even if no new entries are added (handled by loop above)
-                }
-                
-                log.info("WebsiteMonitorService: Preparing to write " + newLines.size() + " lines to hosts file.");
-                // Write the modified content back
-                // Using WRITE, CREATE, TRUNCATE_EXISTING to overwrite the file
-                try (BufferedWriter writer = Files.newBufferedWriter(HOSTS_FILE_PATH, StandardCharsets.UTF_8,
-                                                                  StandardOpenOption.WRITE,
-                                                                  StandardOpenOption.CREATE,
-                                                                  StandardOpenOption.TRUNCATE_EXISTING)) {
-                    log.info("WebsiteMonitorService: BufferedWriter opened. Writing lines...");
-                    for (String line : newLines) {
-                        writer.write(line);
-                        writer.newLine();
-                    }
-                     log.info("WebsiteMonitorService: Finished writing lines to buffer.");
-                }
-                log.info("WebsiteMonitorService: BufferedWriter closed. Hosts file updated successfully.");
-                flushDnsCache();
-                log.info("WebsiteMonitorService: Exiting applyHostsFileChanges (Success).");
-                return true;
-
-            } catch (IOException e) {
-                log.error("WebsiteMonitorService: ERROR updating hosts file (IOException - Permissions?): " + e.getMessage());
-                 log.error("WebsiteMonitorService: Stack trace for IOException:");
-                 e.printStackTrace();
-                // Report error?
-                reportHostsFileError(e.getMessage());
-                 log.info("WebsiteMonitorService: Exiting applyHostsFileChanges (IOException).");
-                return false;
-            } catch (Exception e) {
-                 log.error("WebsiteMonitorService: UNEXPECTED ERROR updating hosts file: " + e.getMessage());
-                 e.printStackTrace();
-                 reportHostsFileError("Unexpected error: " + e.getMessage());
-                 log.info("WebsiteMonitorService: Exiting applyHostsFileChanges (Unexpected Error).");
-                 return false;
-            } finally {
-                 log.info("WebsiteMonitorService: Releasing lock for hosts file access.");
+        try {
+            if (hostsFileManager.applyBlock(hostsEntriesToAdd)) {
+                log.info("WebsiteMonitorService: Hosts file updated with {} entries for mode {}.", hostsEntriesToAdd.size(), currentMode);
+                HostsFileManager.flushDnsCache();
+            } else {
+                log.info("WebsiteMonitorService: Hosts file already up to date, skipping write and DNS flush.");
             }
+            return true;
+        } catch (IOException e) {
+            log.error("WebsiteMonitorService: ERROR updating hosts file (IOException - Permissions?): " + e.getMessage());
+            reportHostsFileError(e.getMessage());
+            return false;
+        } catch (Exception e) {
+            log.error("WebsiteMonitorService: UNEXPECTED ERROR updating hosts file: " + e.getMessage());
+            e.printStackTrace();
+            reportHostsFileError("Unexpected error: " + e.getMessage());
+            return false;
         }
     }
 
     private boolean revertHostsFileChanges(boolean flushDns) {
         log.info("WebsiteMonitorService: Reverting hosts file changes...");
-         synchronized (hostsFileLock) {
-            try {
-                List<String> originalLines = Files.readAllLines(HOSTS_FILE_PATH, StandardCharsets.UTF_8);
-                List<String> newLines = new ArrayList<>();
-                boolean inCmmsBlock = false;
-                boolean changed = false;
-
-                // Copy lines, excluding the CMMS block
-                for (String line : originalLines) {
-                    if (line.trim().equals(CMMS_MARKER_START)) {
-                        inCmmsBlock = true;
-                        changed = true; // Mark that we found and are removing the block
-                        continue; 
-                    }
-                    if (line.trim().equals(CMMS_MARKER_END)) {
-                        inCmmsBlock = false;
-                        continue; 
-                    }
-                    if (!inCmmsBlock) {
-                        newLines.add(line);
-                    }
-                }
-
-                // Only write back if changes were made
-                if (changed) {
-                    try (BufferedWriter writer = Files.newBufferedWriter(HOSTS_FILE_PATH, StandardCharsets.UTF_8,
-                                                                      StandardOpenOption.WRITE, 
-                                                                      StandardOpenOption.CREATE, 
-                                                                      StandardOpenOption.TRUNCATE_EXISTING)) {
-                        for (String line : newLines) {
-                            writer.write(line);
-                            writer.newLine();
-                        }
-                    }
-                    log.info("WebsiteMonitorService: Hosts file reverted successfully.");
-                    if(flushDns) {
-                         flushDnsCache();
-                    }
-                } else {
-                    log.info("WebsiteMonitorService: No CMMS entries found in hosts file to revert.");
+        try {
+            if (hostsFileManager.clearBlock()) {
+                log.info("WebsiteMonitorService: Hosts file reverted successfully.");
+                if (flushDns) {
+                    HostsFileManager.flushDnsCache();
                 }
-                return true;
-
-            } catch (IOException e) {
-                log.error("WebsiteMonitorService: ERROR reverting hosts file (Permissions?): " + e.getMessage());
-                reportHostsFileError("Error reverting: " + e.getMessage());
-                return false;
-            } catch (Exception e) {
-                 log.error("WebsiteMonitorService: UNEXPECTED ERROR reverting hosts file: " + e.getMessage());
-                 e.printStackTrace();
-                 reportHostsFileError("Unexpected error reverting: " + e.getMessage());
-                 return false;
+            } else {
+                log.info("WebsiteMonitorService: No CMMS entries found in hosts file to revert.");
             }
+            return true;
+        } catch (IOException e) {
+            log.error("WebsiteMonitorService: ERROR reverting hosts file (Permissions?): " + e.getMessage());
+            reportHostsFileError("Error reverting: " + e.getMessage());
+            return false;
+        } catch (Exception e) {
+            log.error("WebsiteMonitorService: UNEXPECTED ERROR reverting hosts file: " + e.getMessage());
+            e.printStackTrace();
+            reportHostsFileError("Unexpected error reverting: " + e.getMessage());
+            return false;
         }
     }
 
@@ -318,44 +403,13 @@ public class WebsiteMonitorService {
         return revertHostsFileChanges(true);
     }
 
-    private void flushDnsCache() {
-        log.info("WebsiteMonitorService: Flushing DNS cache...");
-        Process process = null;
-        try {
-            process = Runtime.getRuntime().exec("ipconfig /flushdns");
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
-                log.info("WebsiteMonitorService: DNS cache flushed successfully.");
-            } else {
-                log.error("WebsiteMonitorService: ipconfig /flushdns exited with code: " + exitCode);
-                // Read error stream?
-                 try (BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()))) {
-                     String line; while ((line = errorReader.readLine()) != null) { log.error("FlushDNS Error Stream: " + line); }
-                 }
-            }
-        } catch (IOException e) {
-            log.error("WebsiteMonitorService: IOException while flushing DNS: " + e.getMessage());
-        } catch (InterruptedException e) {
-             log.error("WebsiteMonitorService: DNS flush interrupted.");
-             Thread.currentThread().interrupt();
-        } catch (Exception e) {
-            log.error("WebsiteMonitorService: Unexpected error flushing DNS: " + e.getMessage());
-        } finally {
-            if (process != null) {
-                process.destroy();
-            }
-        }
-    }
-    
     private void reportHostsFileError(String errorMessage) {
-         if (webSocketService != null && webSocketService.isAuthenticated()) {
-             Map<String, Object> payload = new HashMap<>();
-             payload.put("type", "hosts_file_error"); 
+         if (webSocketService != null) {
              Map<String, Object> data = new HashMap<>();
              data.put("error", errorMessage);
-             payload.put("data", data);
-             webSocketService.sendMessage("student_update", payload);
-             log.info("WebsiteMonitorService: Reported hosts file error to teacher.");
+             if (violationReporter.report("hosts_file_error", errorMessage, data)) {
+                 log.info("WebsiteMonitorService: Reported hosts file error to teacher.");
+             }
         }
     }
 
@@ -0,0 +1,108 @@
+package com.cmms.networkManager;
+
+import com.cmms.EnforcementScheduler;
+import com.cmms.analytics.DomainActivity;
+import com.cmms.service.ViolationReporter;
+import com.cmms.service.WebSocketService;
+
+import java.io.Closeable;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Sends the visits a {@link TrafficObserver} sees to the teacher as "student_update" messages of type
+ * "website_visit". Visits to sites the current policy blocks go through the {@link ViolationReporter} as
+ * "blocked_website_visit" instead, so repeats are coalesced like other violations.
+ * Plain visits seen while the socket is not authenticated are dropped and counted.
+ * <p>
+ * Every visit is also recorded in a {@link DomainActivity}, sent once a minute after {@link #start()} as a
+ * "domain_stats" update so the teacher can merge class-wide top domains without keeping every visit.
+ */
+public class WebsiteVisitReporter implements TrafficObserver.VisitListener, Closeable {
+
+    private static final long STATS_PERIOD_MS = 60_000;
+
+    private final WebSocketService webSocketService;
+    private final ViolationReporter violationReporter;
+    private final Predicate<String> blockPolicy;
+    private final AtomicLong dropped = new AtomicLong();
+    private final DomainActivity activity = new DomainActivity();
+    private EnforcementScheduler.TaskHandle statsTask;
+
+    /**
+     * @param blockPolicy Tells whether a domain is blocked, e.g. WebsiteMonitorService::isBlocked (may be null).
+     */
+    public WebsiteVisitReporter(WebSocketService webSocketService, Predicate<String> blockPolicy) {
+        this.webSocketService = webSocketService;
+        this.violationReporter = new ViolationReporter(webSocketService);
+        this.blockPolicy = blockPolicy;
+    }
+
+    @Override
+    public void onVisit(String domain, TrafficObserver.Source source, long timestampMillis) {
+        activity.record(domain);
+        Map<String, Object> data = new HashMap<>();
+        data.put("domain", domain);
+        data.put("source", source.name().toLowerCase());
+        data.put("timestamp", timestampMillis);
+        if (blockPolicy != null && blockPolicy.test(domain)) {
+            violationReporter.report("blocked_website_visit", domain, data);
+            return;
+        }
+        if (!webSocketService.isAuthenticated()) {
+            dropped.incrementAndGet();
+            return;
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "website_visit");
+        payload.put("data", data);
+        webSocketService.sendTelemetry("student_update", payload);
+    }
+
+    /**
+     * Starts sending "domain_stats" snapshots periodically.
+     */
+    public synchronized void start() {
+        if (statsTask != null) return;
+        statsTask = EnforcementScheduler.getShared().register("domain-stats", () -> {
+            sendStats();
+            return false; // Telemetry, never a violation
+        }, STATS_PERIOD_MS, 0.1);
+    }
+
+    /**
+     * Sends the visit counts gathered since the last snapshot, if there are any and the socket is authenticated;
+     * otherwise they keep accumulating for the next one.
+     */
+    public void sendStats() {
+        if (activity.getPendingVisits() == 0 || !webSocketService.isAuthenticated()) return;
+        Map<String, Object> data = new HashMap<>();
+        data.put("distinct_domains", activity.getDistinctDomains());
+        data.put("visits", activity.getPendingVisits());
+        data.put("sketch", activity.takeSnapshot());
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "domain_stats");
+        payload.put("data", data);
+        webSocketService.sendTelemetry("student_update", payload);
+    }
+
+    /**
+     * Stops the periodic snapshots after sending a last one.
+     */
+    @Override
+    public synchronized void close() {
+        if (statsTask == null) return;
+        statsTask.cancel();
+        statsTask = null;
+        sendStats();
+    }
+
+    /**
+     * @return Visits not sent because the socket was not authenticated.
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
@@ -0,0 +1,95 @@
+package com.cmms.policy;
+
+import okhttp3.OkHttpClient;
+import okhttp3.Request;
+import okhttp3.Response;
+import okhttp3.ResponseBody;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Newline-separated list served over HTTP. Uses conditional requests (If-None-Match / If-Modified-Since), so an
+ * unchanged list costs one 304 response. Servers that send neither header are versioned by a hash of the body.
+ */
+public class HttpPolicySource implements PolicySource {
+
+    // One client for all sources: OkHttp clients own a connection pool and dispatcher threads
+    private static final OkHttpClient CLIENT = new OkHttpClient.Builder()
+            .connectTimeout(10, TimeUnit.SECONDS)
+            .readTimeout(10, TimeUnit.SECONDS)
+            .build();
+
+    private static final String ETAG_PREFIX = "etag:";
+    private static final String LAST_MODIFIED_PREFIX = "lm:";
+    private static final String HASH_PREFIX = "sha256:";
+
+    private final String name;
+    private final String url;
+
+    public HttpPolicySource(String name, String url) {
+        this.name = name;
+        this.url = url;
+    }
+
+    @Override
+    public Policy fetchIfChanged(String currentVersion) throws IOException {
+        Request.Builder request = new Request.Builder().url(url);
+        if (currentVersion != null && currentVersion.startsWith(ETAG_PREFIX)) {
+            request.header("If-None-Match", currentVersion.substring(ETAG_PREFIX.length()));
+        } else if (currentVersion != null && currentVersion.startsWith(LAST_MODIFIED_PREFIX)) {
+            request.header("If-Modified-Since", currentVersion.substring(LAST_MODIFIED_PREFIX.length()));
+        }
+
+        try (Response response = CLIENT.newCall(request.build()).execute()) {
+            if (response.code() == 304) {
+                return null;
+            }
+            if (!response.isSuccessful()) {
+                throw new IOException("HTTP " + response.code() + " from " + url);
+            }
+            ResponseBody body = response.body();
+            String text = body != null ? body.string() : "";
+
+            String version;
+            if (response.header("ETag") != null) {
+                version = ETAG_PREFIX + response.header("ETag");
+            } else if (response.header("Last-Modified") != null) {
+                version = LAST_MODIFIED_PREFIX + response.header("Last-Modified");
+            } else {
+                version = HASH_PREFIX + sha256(text);
+            }
+            if (version.equals(currentVersion)) {
+                return null; // Same content, server just doesn't support conditional requests
+            }
+
+            List<String> entries = new ArrayList<>();
+            for (String line : text.split("\n")) {
+                String trimmed = line.trim();
+                if (!trimmed.isEmpty()) entries.add(trimmed);
+            }
+            return new Policy(version, entries, System.currentTimeMillis());
+        }
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    private static String sha256(String text) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(text.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(digest.length * 2);
+            for (byte b : digest) hex.append(String.format("%02x", b));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+}
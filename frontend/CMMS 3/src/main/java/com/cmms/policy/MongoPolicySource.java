@@ -0,0 +1,62 @@
+package com.cmms.policy;
+
+import com.cmms.utils.MongoDBHelper;
+import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.Projections;
+import com.mongodb.client.model.Sorts;
+import org.bson.Document;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Policy list stored one document per entry in a MongoDB collection (e.g. "blacklisted_apps").
+ * <p>
+ * The version is the collection's estimated document count plus the newest _id, which needs no collection scan.
+ * It changes on every insert or delete; in-place updates are picked up by the cache's periodic full refresh.
+ */
+public class MongoPolicySource implements PolicySource {
+
+    private final String collectionName;
+    private final String field;
+    private final String suffix;
+
+    /**
+     * @param field  Document field holding the entry.
+     * @param suffix Appended to every entry (e.g. ".exe"), or "" for none.
+     */
+    public MongoPolicySource(String collectionName, String field, String suffix) {
+        this.collectionName = collectionName;
+        this.field = field;
+        this.suffix = suffix;
+    }
+
+    @Override
+    public Policy fetchIfChanged(String currentVersion) throws IOException {
+        try {
+            MongoCollection<Document> collection = MongoDBHelper.getCollection(collectionName);
+            long count = collection.estimatedDocumentCount();
+            Document newest = collection.find().projection(Projections.include("_id")).sort(Sorts.descending("_id")).limit(1).first();
+            String version = count + ":" + (newest != null ? String.valueOf(newest.get("_id")) : "-");
+            if (version.equals(currentVersion)) {
+                return null;
+            }
+
+            List<String> entries = new ArrayList<>();
+            for (Document doc : collection.find().projection(Projections.include(field))) {
+                String value = doc.getString(field);
+                if (value != null) entries.add(value + suffix);
+            }
+            return new Policy(version, entries, System.currentTimeMillis());
+        } catch (RuntimeException e) {
+            // The driver reports connectivity problems as unchecked exceptions
+            throw new IOException("MongoDB " + collectionName + ": " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String getName() {
+        return "mongo-" + collectionName;
+    }
+}
@@ -0,0 +1,42 @@
+package com.cmms.policy;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Immutable copy of one policy list (e.g. the app blacklist) together with the version it was fetched at.
+ */
+public class Policy {
+    private final String version;
+    private final List<String> entries;
+    private final long fetchedAtMillis;
+
+    public Policy(String version, List<String> entries, long fetchedAtMillis) {
+        this.version = version;
+        this.entries = Collections.unmodifiableList(entries);
+        this.fetchedAtMillis = fetchedAtMillis;
+    }
+
+    /**
+     * @return Opaque version tag (ETag, Mongo change marker, push version), or null if unknown.
+     */
+    public String getVersion() {
+        return version;
+    }
+
+    /**
+     * @return The list entries (read-only).
+     */
+    public List<String> getEntries() {
+        return entries;
+    }
+
+    public long getFetchedAtMillis() {
+        return fetchedAtMillis;
+    }
+
+    @Override
+    public String toString() {
+        return "Policy{version='" + version + "', entries=" + entries.size() + '}';
+    }
+}
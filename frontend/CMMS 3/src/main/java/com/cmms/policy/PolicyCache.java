@@ -0,0 +1,224 @@
+package com.cmms.policy;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonSyntaxException;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Local copy of a {@link PolicySource} list.
+ * <p>
+ * Readers get the cached list without I/O. The source is asked "changed since version X?" at most once per check
+ * interval, and the list is only downloaded when the answer is yes (plus a full refresh every
+ * fullRefreshIntervalMillis as a safety net). WebSocket pushes replace or patch the list directly.
+ * The last good copy is persisted to disk so a cold start has a list before the network is up.
+ */
+public class PolicyCache {
+
+    private static final String BASE_CACHE_DIR = System.getProperty("user.home") + "/.cmms/policy";
+    private static final long DEFAULT_FULL_REFRESH_INTERVAL_MS = 10 * 60_000;
+    private static final Gson GSON = new Gson();
+
+    private final PolicySource source;
+    private final Path cacheFile;
+    private final long checkIntervalMillis;
+    private final long fullRefreshIntervalMillis;
+    private final List<Consumer<Policy>> listeners = new CopyOnWriteArrayList<>();
+
+    private volatile Policy current;
+    private long lastCheckMillis = -1;
+    private long lastFullRefreshMillis = -1;
+    private long checks;
+    private long downloads;
+
+    public PolicyCache(PolicySource source, long checkIntervalMillis) {
+        this(source, Paths.get(BASE_CACHE_DIR, source.getName() + ".json"), checkIntervalMillis, DEFAULT_FULL_REFRESH_INTERVAL_MS);
+    }
+
+    public PolicyCache(PolicySource source, Path cacheFile, long checkIntervalMillis, long fullRefreshIntervalMillis) {
+        this.source = source;
+        this.cacheFile = cacheFile;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.fullRefreshIntervalMillis = fullRefreshIntervalMillis;
+        Policy persisted = loadFromDisk();
+        this.current = persisted != null ? persisted : new Policy(null, new ArrayList<>(), 0);
+    }
+
+    /**
+     * @return The cached entries, after a version check if one is due. Never null.
+     */
+    public List<String> getEntries() {
+        refreshIfDue();
+        return current.getEntries();
+    }
+
+    /**
+     * @return The cached policy without contacting the source.
+     */
+    public Policy getPolicy() {
+        return current;
+    }
+
+    /**
+     * Checks the source if the check interval has elapsed.
+     *
+     * @return true if the list changed.
+     */
+    public synchronized boolean refreshIfDue() {
+        long now = System.currentTimeMillis();
+        if (lastCheckMillis >= 0 && now - lastCheckMillis < checkIntervalMillis) {
+            return false;
+        }
+        boolean full = lastFullRefreshMillis < 0 || now - lastFullRefreshMillis >= fullRefreshIntervalMillis;
+        return refresh(full);
+    }
+
+    /**
+     * Checks the source now.
+     *
+     * @param full true to download the list even if the version did not change.
+     * @return true if the list changed.
+     */
+    public synchronized boolean refresh(boolean full) {
+        long now = System.currentTimeMillis();
+        lastCheckMillis = now; // Also on failure, so an unreachable source is not hammered
+        checks++;
+        try {
+            Policy fetched = source.fetchIfChanged(full ? null : current.getVersion());
+            if (full) lastFullRefreshMillis = now;
+            if (fetched == null) {
+                return false;
+            }
+            downloads++;
+            if (fetched.getEntries().equals(current.getEntries())) {
+                // Same content under a new version: remember the version, nothing to apply
+                current = fetched;
+                saveToDisk(fetched);
+                return false;
+            }
+            System.out.println("PolicyCache: " + source.getName() + " updated to " + fetched);
+            replace(fetched);
+            return true;
+        } catch (IOException e) {
+            System.err.println("PolicyCache: Could not refresh " + source.getName() + ", keeping " + current + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * Replaces the list with one pushed over WebSocket. The next version check against the source will then
+     * download once, since a push version never matches a source version.
+     */
+    public void applyPush(List<String> entries, String version) {
+        replace(new Policy("push:" + version, new ArrayList<>(entries), System.currentTimeMillis()));
+    }
+
+    /**
+     * Adds one pushed entry (e.g. "app_added").
+     */
+    public synchronized void applyAdd(String entry) {
+        if (entry == null || current.getEntries().contains(entry)) return;
+        List<String> entries = new ArrayList<>(current.getEntries());
+        entries.add(entry);
+        applyPush(entries, String.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Removes one pushed entry (e.g. "app_removed").
+     */
+    public synchronized void applyRemove(String entry) {
+        if (entry == null || !current.getEntries().contains(entry)) return;
+        List<String> entries = new ArrayList<>(current.getEntries());
+        entries.remove(entry);
+        applyPush(entries, String.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Registers a callback invoked (on the updating thread) whenever the list changes.
+     */
+    public void addListener(Consumer<Policy> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Policy> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * @return How many version checks have been sent to the source.
+     */
+    public synchronized long getCheckCount() {
+        return checks;
+    }
+
+    /**
+     * @return How many of those checks actually downloaded a list.
+     */
+    public synchronized long getDownloadCount() {
+        return downloads;
+    }
+
+    private synchronized void replace(Policy policy) {
+        current = policy;
+        saveToDisk(policy);
+        for (Consumer<Policy> listener : listeners) {
+            try {
+                listener.accept(policy);
+            } catch (Exception e) {
+                System.err.println("PolicyCache: Listener failed: " + e.getMessage());
+            }
+        }
+    }
+
+    private Policy loadFromDisk() {
+        if (!Files.isRegularFile(cacheFile)) return null;
+        try {
+            PersistedPolicy persisted = GSON.fromJson(new String(Files.readAllBytes(cacheFile), StandardCharsets.UTF_8), PersistedPolicy.class);
+            if (persisted == null || persisted.entries == null) return null;
+            Policy policy = new Policy(persisted.version, persisted.entries, persisted.fetchedAt);
+            System.out.println("PolicyCache: Loaded " + source.getName() + " from disk: " + policy);
+            return policy;
+        } catch (IOException | JsonSyntaxException e) {
+            System.err.println("PolicyCache: Ignoring unreadable cache file " + cacheFile + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private void saveToDisk(Policy policy) {
+        PersistedPolicy persisted = new PersistedPolicy();
+        persisted.version = policy.getVersion();
+        persisted.entries = new ArrayList<>(policy.getEntries());
+        persisted.fetchedAt = policy.getFetchedAtMillis();
+        try {
+            Files.createDirectories(cacheFile.getParent());
+            Path temp = cacheFile.resolveSibling(cacheFile.getFileName() + ".tmp");
+            Files.write(temp, GSON.toJson(persisted).getBytes(StandardCharsets.UTF_8));
+            try {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, cacheFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            System.err.println("PolicyCache: Could not persist " + source.getName() + ": " + e.getMessage());
+        }
+    }
+
+    /**
+     * On-disk JSON form.
+     */
+    private static class PersistedPolicy {
+        String version;
+        List<String> entries;
+        long fetchedAt;
+    }
+}
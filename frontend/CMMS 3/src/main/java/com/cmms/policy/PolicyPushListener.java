@@ -0,0 +1,72 @@
+package com.cmms.policy;
+
+import com.cmms.dto.WebSocketMessage;
+import com.cmms.service.MessageDispatcher;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Feeds list updates pushed over the WebSocket into a {@link PolicyCache}:
+ * full lists from "initial_settings"/"settings_update" (under listKey), and single entries from the
+ * addedType/removedType messages (under entryKey). See {@link #register}.
+ */
+public class PolicyPushListener {
+
+    private final PolicyCache cache;
+    private final String listKey;
+    private final String addedType;
+    private final String removedType;
+    private final String entryKey;
+    private final String entrySuffix;
+
+    /**
+     * @param entrySuffix Appended to pushed entries so they match the source's format (e.g. ".exe"), or "".
+     */
+    public PolicyPushListener(PolicyCache cache, String listKey, String addedType, String removedType, String entryKey,
+                              String entrySuffix) {
+        this.cache = cache;
+        this.listKey = listKey;
+        this.addedType = addedType;
+        this.removedType = removedType;
+        this.entryKey = entryKey;
+        this.entrySuffix = entrySuffix;
+    }
+
+    /**
+     * Registers for the list and entry messages; the cache is updated on the dispatch thread, in message order.
+     * @return The registrations, to remove when the pushes should stop.
+     */
+    public List<MessageDispatcher.Registration> register(MessageDispatcher dispatcher) {
+        return List.of(
+                dispatcher.on("initial_settings", MessageDispatcher.Affinity.IO, this::onList),
+                dispatcher.on("settings_update", MessageDispatcher.Affinity.IO, this::onList),
+                dispatcher.on(addedType, MessageDispatcher.Affinity.IO, message -> {
+                    Object entry = message.getPayload() != null ? message.getPayload().get(entryKey) : null;
+                    if (entry != null) cache.applyAdd(withSuffix(entry.toString()));
+                }),
+                dispatcher.on(removedType, MessageDispatcher.Affinity.IO, message -> {
+                    Object entry = message.getPayload() != null ? message.getPayload().get(entryKey) : null;
+                    if (entry != null) cache.applyRemove(withSuffix(entry.toString()));
+                }));
+    }
+
+    private void onList(WebSocketMessage message) {
+        Map<String, Object> payload = message.getPayload();
+        if (payload == null) return;
+        Object list = payload.get(listKey);
+        if (list instanceof List) {
+            List<String> entries = new ArrayList<>();
+            for (Object entry : (List<?>) list) {
+                if (entry != null) entries.add(withSuffix(entry.toString()));
+            }
+            Object version = payload.get("version");
+            cache.applyPush(entries, version != null ? version.toString() : String.valueOf(System.currentTimeMillis()));
+        }
+    }
+
+    private String withSuffix(String entry) {
+        return entry.endsWith(entrySuffix) ? entry : entry + entrySuffix;
+    }
+}
@@ -0,0 +1,24 @@
+package com.cmms.policy;
+
+import java.io.IOException;
+
+/**
+ * Remote origin of a policy list. Implementations should make the "unchanged" case as cheap as the backend allows
+ * (a conditional HTTP request, a metadata-only database query) since it is what runs in steady state.
+ */
+public interface PolicySource {
+
+    /**
+     * Fetches the list if it changed since the given version.
+     *
+     * @param currentVersion The version of the cached copy, or null to force a full fetch.
+     * @return The new policy, or null if the source reports no change.
+     * @throws IOException If the source could not be reached; the caller keeps its cached copy.
+     */
+    Policy fetchIfChanged(String currentVersion) throws IOException;
+
+    /**
+     * @return Short name used in logs and as the on-disk cache file name.
+     */
+    String getName();
+}
@@ -0,0 +1,24 @@
+package com.cmms.policy;
+
+/**
+ * Source for a list that only arrives as WebSocket pushes, such as the session teacher's app blacklist.
+ * It has no remote copy, so version checks never report a change and a pushed list is never overwritten.
+ */
+public class PushedPolicySource implements PolicySource {
+
+    private final String name;
+
+    public PushedPolicySource(String name) {
+        this.name = name;
+    }
+
+    @Override
+    public Policy fetchIfChanged(String currentVersion) {
+        return null;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+}
@@ -0,0 +1,289 @@
+package com.cmms.service;
+
+import com.cmms.dto.WebSocketMessage;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Manual check and benchmark for {@link MessageDispatcher} in {@link WebSocketService}, against a local
+ * {@link WireFormatTestServer}. A single-thread executor stands in for the FX thread.
+ * <p>
+ * Checks that a blocked FX handler holds up neither replies to requests nor other handlers, that a blocked dispatch
+ * thread does not stop frames being read, that IO and FX handlers see messages in order and WORKER handlers see all
+ * of them, that handlers can be registered and removed while messages are routed, and that a listener can remove
+ * itself while being notified (exits with status 1 on a mismatch). Then measures request latency while the server
+ * pushes settings that a handler takes a while over, with that handler on each affinity, and the cost of
+ * dispatching on the calling thread.
+ * Run with: java com.cmms.service.DispatcherBenchmark
+ */
+public class DispatcherBenchmark {
+
+    private static final int ORDERED_MESSAGES = 20_000;
+    private static final int CHURN_MESSAGES = 50_000;
+    private static final int QUEUED_PUSHES = 50;
+    private static final int LATENCY_REQUESTS = 300;
+    private static final int PUSHES_PER_REQUEST = 4;
+    private static final long SLOW_HANDLER_MS = 2;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The service logs every connection and reconnect attempt
+        WireFormatTestServer server = new WireFormatTestServer(new InetSocketAddress("127.0.0.1", 0), true);
+        server.start();
+        server.awaitStart();
+        String url = "ws://127.0.0.1:" + server.getPort();
+        try {
+            boolean ok = verifyOrdering();
+            ok &= verifyChurn();
+            ok &= verifyOffReadThread(url);
+            if (!ok) {
+                System.err.println("Dispatcher verification FAILED");
+                System.exit(1);
+            }
+            out.println("Ordering, registration churn and off-read-thread delivery OK");
+            benchmark(url, out);
+        } finally {
+            server.stop(1000);
+        }
+    }
+
+    private static boolean verifyOrdering() throws InterruptedException {
+        boolean ok = true;
+        ExecutorService fxThread = newFxThread();
+        MessageDispatcher dispatcher = new MessageDispatcher(fxThread);
+        AtomicInteger ioLast = new AtomicInteger(-1);
+        AtomicInteger fxLast = new AtomicInteger(-1);
+        AtomicInteger outOfOrder = new AtomicInteger();
+        CountDownLatch done = new CountDownLatch(3 * ORDERED_MESSAGES);
+        dispatcher.on("seq", MessageDispatcher.Affinity.IO, message -> {
+            if (Integer.parseInt(message.getRequestId()) != ioLast.get() + 1) outOfOrder.incrementAndGet();
+            ioLast.set(Integer.parseInt(message.getRequestId()));
+            done.countDown();
+        });
+        dispatcher.on("seq", MessageDispatcher.Affinity.FX, message -> {
+            if (Integer.parseInt(message.getRequestId()) != fxLast.get() + 1) outOfOrder.incrementAndGet();
+            fxLast.set(Integer.parseInt(message.getRequestId()));
+            done.countDown();
+        });
+        dispatcher.on("seq", MessageDispatcher.Affinity.WORKER, message -> done.countDown());
+        for (int i = 0; i < ORDERED_MESSAGES; i++) dispatcher.dispatch(new WebSocketMessage("seq", null, String.valueOf(i)));
+        if (!done.await(10, TimeUnit.SECONDS)) ok = fail(done.getCount() + " deliveries missing");
+        if (outOfOrder.get() != 0) ok = fail(outOfOrder.get() + " messages out of order on IO or FX");
+        fxThread.shutdown();
+        return ok;
+    }
+
+    private static boolean verifyChurn() throws InterruptedException {
+        boolean ok = true;
+        MessageDispatcher dispatcher = new MessageDispatcher(Runnable::run);
+        AtomicInteger stable = new AtomicInteger();
+        AtomicLong churned = new AtomicLong();
+        dispatcher.on("t", MessageDispatcher.Affinity.IO, message -> stable.incrementAndGet());
+        List<Thread> churners = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            MessageDispatcher.Affinity affinity = MessageDispatcher.Affinity.values()[t % 3];
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < 10_000; i++) {
+                    MessageDispatcher.Registration typed = dispatcher.on("t", affinity, message -> churned.incrementAndGet());
+                    MessageDispatcher.Registration any = dispatcher.onAny(affinity, message -> churned.incrementAndGet());
+                    typed.remove();
+                    any.remove();
+                    any.remove(); // Twice is harmless
+                }
+            });
+            churners.add(thread);
+            thread.start();
+        }
+        for (int i = 0; i < CHURN_MESSAGES; i++) dispatcher.dispatch(new WebSocketMessage("t", null));
+        for (Thread thread : churners) thread.join();
+        drain(dispatcher);
+        Thread.sleep(100); // WORKER deliveries of the churned handlers
+        long churnedAfter = churned.get();
+        dispatcher.dispatch(new WebSocketMessage("t", null));
+        drain(dispatcher);
+        Thread.sleep(50);
+        if (stable.get() != CHURN_MESSAGES + 1) ok = fail("stable handler saw " + stable.get() + " of " + (CHURN_MESSAGES + 1));
+        if (churned.get() != churnedAfter) ok = fail("a removed handler still received messages");
+        if (dispatcher.getHandlerErrors() != 0) ok = fail(dispatcher.getHandlerErrors() + " handler errors during churn");
+        return ok;
+    }
+
+    private static boolean verifyOffReadThread(String url) throws Exception {
+        boolean ok = true;
+        ExecutorService fxThread = newFxThread();
+        MessageDispatcher dispatcher = new MessageDispatcher(fxThread);
+        WebSocketService service = connect(url, dispatcher);
+        if (!service.isAuthenticated()) {
+            fxThread.shutdownNow();
+            return fail("did not authenticate");
+        }
+
+        // A stuck FX thread: replies and IO handlers carry on
+        CountDownLatch fxRelease = new CountDownLatch(1);
+        CountDownLatch ioSeen = new CountDownLatch(1);
+        MessageDispatcher.Registration stuck = dispatcher.on("settings_update", MessageDispatcher.Affinity.FX, message -> await(fxRelease));
+        MessageDispatcher.Registration seen = dispatcher.on("settings_update", MessageDispatcher.Affinity.IO, message -> ioSeen.countDown());
+        service.sendMessage("push_settings", Map.of("sites", 10));
+        try {
+            service.sendRequest("echo", Map.of("n", 1)).get(1, TimeUnit.SECONDS);
+        } catch (Exception e) {
+            ok = fail("request stalled behind a blocked FX handler: " + e);
+        }
+        if (!ioSeen.await(1, TimeUnit.SECONDS)) ok = fail("IO handler stalled behind a blocked FX handler");
+        fxRelease.countDown();
+        stuck.remove();
+        seen.remove();
+
+        // A stuck dispatch thread: frames are still read and queued, and the connection stays up
+        CountDownLatch ioRelease = new CountDownLatch(1);
+        AtomicInteger handled = new AtomicInteger();
+        MessageDispatcher.Registration blocking = dispatcher.on("settings_update", MessageDispatcher.Affinity.IO, message -> {
+            await(ioRelease);
+            handled.incrementAndGet();
+        });
+        for (int i = 0; i < QUEUED_PUSHES; i++) service.sendMessage("push_settings", Map.of("sites", 10));
+        long deadline = System.currentTimeMillis() + 2000;
+        while (dispatcher.getQueued() < QUEUED_PUSHES - 1 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        if (dispatcher.getQueued() < QUEUED_PUSHES - 1) ok = fail("only " + dispatcher.getQueued() + " messages read while the dispatch thread was blocked");
+        if (!service.isConnected()) ok = fail("connection dropped while the dispatch thread was blocked");
+        ioRelease.countDown();
+        drain(dispatcher);
+        if (handled.get() != QUEUED_PUSHES) ok = fail("blocked handler saw " + handled.get() + " of " + QUEUED_PUSHES);
+        blocking.remove();
+
+        // A listener removing itself while notified; listeners used to be a plain list
+        AtomicInteger other = new AtomicInteger();
+        service.addListener(new QuietListener() {
+            @Override
+            public void onWebSocketMessage(WebSocketMessage message) {
+                service.removeListener(this);
+            }
+        });
+        service.addListener(new QuietListener() {
+            @Override
+            public void onWebSocketMessage(WebSocketMessage message) {
+                other.incrementAndGet();
+            }
+        });
+        service.sendMessage("push_settings", Map.of("sites", 1));
+        deadline = System.currentTimeMillis() + 2000;
+        while (other.get() == 0 && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        if (other.get() != 1) ok = fail("second listener saw " + other.get() + " messages after the first removed itself");
+        if (dispatcher.getHandlerErrors() != 0) ok = fail(dispatcher.getHandlerErrors() + " handler errors");
+
+        service.disconnect();
+        fxThread.shutdown();
+        return ok;
+    }
+
+    private static void benchmark(String url, PrintStream out) throws Exception {
+        out.printf("%d requests, each answered after %d pushed settings updates that a handler takes %d ms over:%n",
+                LATENCY_REQUESTS, PUSHES_PER_REQUEST, SLOW_HANDLER_MS);
+        for (MessageDispatcher.Affinity affinity : MessageDispatcher.Affinity.values()) {
+            ExecutorService fxThread = newFxThread();
+            MessageDispatcher dispatcher = new MessageDispatcher(fxThread);
+            WebSocketService service = connect(url, dispatcher);
+            dispatcher.on("settings_update", affinity, message -> sleep(SLOW_HANDLER_MS));
+            LatencyHistogram latency = new LatencyHistogram();
+            for (int i = 0; i < LATENCY_REQUESTS; i++) {
+                long start = System.nanoTime();
+                // The server pushes the updates, then replies
+                CompletableFuture<WebSocketMessage> reply = service.sendRequest("push_settings",
+                        Map.of("sites", 10, "count", PUSHES_PER_REQUEST));
+                reply.get(10, TimeUnit.SECONDS);
+                latency.record(System.nanoTime() - start);
+            }
+            out.printf("  handler on %-6s request p50 %,8d µs, p99 %,8d µs; %s%n", affinity,
+                    latency.getPercentileMicros(50), latency.getPercentileMicros(99), service.getDispatchStats());
+            service.disconnect();
+            fxThread.shutdownNow();
+        }
+        out.println("  (IO stands for the old behaviour, handler work in line with reading and replies; before, it");
+        out.println("   also held up the socket itself)");
+
+        MessageDispatcher dispatcher = new MessageDispatcher(Runnable::run);
+        AtomicLong handled = new AtomicLong();
+        dispatcher.on("t", MessageDispatcher.Affinity.IO, message -> handled.incrementAndGet());
+        WebSocketMessage message = new WebSocketMessage("t", null);
+        for (int i = 0; i < 200_000; i++) dispatcher.dispatch(message);
+        drain(dispatcher);
+        int count = 1_000_000;
+        long start = System.nanoTime();
+        for (int i = 0; i < count; i++) dispatcher.dispatch(message);
+        long enqueueNanos = System.nanoTime() - start;
+        drain(dispatcher);
+        long totalNanos = System.nanoTime() - start;
+        out.printf("Dispatching %,d messages: %,.0f ns each on the read thread, %,.1f M messages/s routed%n",
+                count, (double) enqueueNanos / count, count / (totalNanos / 1e3));
+    }
+
+    private static WebSocketService connect(String url, MessageDispatcher dispatcher) throws InterruptedException {
+        WebSocketService service = new WebSocketService(url, new ReconnectBackoff(), dispatcher);
+        service.connectAndAuthenticate("token");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!service.isAuthenticated() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        return service;
+    }
+
+    private static ExecutorService newFxThread() {
+        return Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-fx");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Everything queued before this has been routed
+    private static void drain(MessageDispatcher dispatcher) throws InterruptedException {
+        CountDownLatch drained = new CountDownLatch(1);
+        dispatcher.execute(drained::countDown);
+        if (!drained.await(30, TimeUnit.SECONDS)) throw new IllegalStateException("Dispatcher did not drain");
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+
+    private abstract static class QuietListener implements WebSocketService.WebSocketListener {
+        @Override
+        public void onWebSocketOpen() {
+        }
+
+        @Override
+        public void onWebSocketClose(int code, String reason) {
+        }
+
+        @Override
+        public void onWebSocketError(String message, Exception ex) {
+        }
+    }
+}
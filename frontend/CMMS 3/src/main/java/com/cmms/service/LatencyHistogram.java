@@ -0,0 +1,86 @@
+package com.cmms.service;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of latencies with a relative error of at most 12.5%, from 1 µs to about 12 days.
+ * <p>
+ * Values are counted in log-linear buckets: exact below 16 µs, then eight buckets per power of two, so recording
+ * is a few bit operations and an atomic increment, and the memory use is fixed (under 3 KB) however many values
+ * are recorded. Percentiles report the middle of the bucket they fall in.
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 16;       // Values below this many microseconds get their own bucket
+    private static final int SUB_BUCKET_BITS = 3;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int MAX_EXPONENT = 40; // 2^40 µs, about 12.7 days
+    private static final int FIRST_EXPONENT = 4; // log2(LINEAR)
+
+    private final AtomicLongArray counts = new AtomicLongArray(LINEAR + (MAX_EXPONENT - FIRST_EXPONENT) * SUB_BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong totalMicros = new AtomicLong();
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+        long micros = Math.max(0, TimeUnit.NANOSECONDS.toMicros(nanos));
+        counts.incrementAndGet(bucketOf(micros));
+        count.incrementAndGet();
+        totalMicros.addAndGet(micros);
+        maxMicros.accumulateAndGet(micros, Math::max);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    /**
+     * @param percentile From 0 to 100.
+     * @return The latency in microseconds below which that share of the recorded values lie; 0 if none recorded.
+     */
+    public long getPercentileMicros(double percentile) {
+        long total = count.get();
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100.0));
+        long seen = 0;
+        for (int i = 0; i < counts.length(); i++) {
+            seen += counts.get(i);
+            if (seen >= rank) return Math.min(middleOf(i), maxMicros.get());
+        }
+        return maxMicros.get();
+    }
+
+    public long getMeanMicros() {
+        long total = count.get();
+        return total == 0 ? 0 : totalMicros.get() / total;
+    }
+
+    public long getMaxMicros() {
+        return maxMicros.get();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("n=%d, mean=%.1f ms, p50=%.1f ms, p90=%.1f ms, p99=%.1f ms, max=%.1f ms", getCount(),
+                getMeanMicros() / 1e3, getPercentileMicros(50) / 1e3, getPercentileMicros(90) / 1e3,
+                getPercentileMicros(99) / 1e3, getMaxMicros() / 1e3);
+    }
+
+    private static int bucketOf(long micros) {
+        if (micros < LINEAR) return (int) micros;
+        int exponent = 63 - Long.numberOfLeadingZeros(micros);
+        if (exponent >= MAX_EXPONENT) return LINEAR + (MAX_EXPONENT - FIRST_EXPONENT) * SUB_BUCKETS - 1;
+        int sub = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return LINEAR + (exponent - FIRST_EXPONENT) * SUB_BUCKETS + sub;
+    }
+
+    private static long middleOf(int bucket) {
+        if (bucket < LINEAR) return bucket;
+        int exponent = (bucket - LINEAR) / SUB_BUCKETS + FIRST_EXPONENT;
+        int sub = (bucket - LINEAR) % SUB_BUCKETS;
+        long width = 1L << (exponent - SUB_BUCKET_BITS);
+        return (1L << exponent) + sub * width + width / 2;
+    }
+}
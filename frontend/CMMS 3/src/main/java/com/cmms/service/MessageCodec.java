@@ -0,0 +1,384 @@
+package com.cmms.service;
+
+import com.cmms.dto.MessagePayloads;
+import com.cmms.dto.StudentInfo;
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Decodes inbound WebSocket frames in one streaming pass with a {@link JsonReader}.
+ * <p>
+ * The backend writes "type" before "payload", so by the time the payload starts the codec knows what it holds and
+ * reads the messages listed in {@link MessagePayloads} straight into their records: no intermediate tree, no
+ * LinkedTreeMap per object, no Double per number. Other types get the same Map payload Gson would have produced.
+ * A typed message still answers {@link WebSocketMessage#getPayload()}, with a map built on first use, so code
+ * that has not moved to {@link WebSocketMessage#getBody} keeps working. If a payload comes before the type, it is
+ * buffered and decoded afterwards. Stateless and thread-safe.
+ */
+public class MessageCodec {
+
+    private final TypeAdapter<Object> genericAdapter = new Gson().getAdapter(Object.class);
+
+    /**
+     * @throws JsonParseException If the frame is not a JSON object or a typed payload is not an object.
+     */
+    public WebSocketMessage decode(String frame) {
+        try (JsonReader reader = new JsonReader(new StringReader(frame))) {
+            return readMessage(reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonParseException("Malformed message: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Decodes a payload map as the typed body of the given message type, for payloads that arrived untyped,
+     * such as the reply to a request.
+     * @return The body, or null if the type has none.
+     */
+    public Object decodeBody(String type, Map<String, Object> payload) {
+        if (payload == null || !isTyped(type)) return null;
+        try (JsonReader reader = new JsonReader(new StringReader(new Gson().toJson(payload)))) {
+            return readBody(type, reader);
+        } catch (IOException | IllegalStateException | NumberFormatException e) {
+            throw new JsonParseException("Malformed " + type + " payload: " + e.getMessage(), e);
+        }
+    }
+
+    private WebSocketMessage readMessage(JsonReader reader) throws IOException {
+        String type = null;
+        String requestId = null;
+        String status = null;
+        Object body = null;
+        Map<String, Object> payload = null;
+        JsonElement early = null; // A payload that came before the type
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "type":
+                    type = nextString(reader);
+                    break;
+                case "requestId":
+                    requestId = nextString(reader);
+                    break;
+                case "status":
+                    status = nextString(reader);
+                    break;
+                case "payload":
+                    if (reader.peek() == JsonToken.NULL) {
+                        reader.nextNull();
+                    } else if (type == null) {
+                        early = JsonParser.parseReader(reader);
+                    } else if (isTyped(type)) {
+                        body = readBody(type, reader);
+                    } else {
+                        payload = readGenericObject(reader);
+                    }
+                    break;
+                default:
+                    reader.skipValue();
+            }
+        }
+        reader.endObject();
+
+        if (early != null) {
+            try (JsonReader buffered = new JsonReader(new StringReader(early.toString()))) {
+                if (isTyped(type)) {
+                    body = readBody(type, buffered);
+                } else {
+                    payload = readGenericObject(buffered);
+                }
+            }
+        }
+        if (body != null) {
+            Object typedBody = body;
+            return WebSocketMessage.withBody(type, typedBody, () -> toMap(typedBody), requestId, status);
+        }
+        WebSocketMessage message = new WebSocketMessage(type, payload, requestId);
+        message.setStatus(status);
+        return message;
+    }
+
+    private static boolean isTyped(String type) {
+        if (type == null) return false;
+        switch (type) {
+            case "initial_settings":
+            case "settings_update":
+            case "app_added":
+            case "app_removed":
+            case "initial_student_list":
+            case "student_joined":
+            case "student_left":
+            case "student_data":
+            case "batch":
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private Object readBody(String type, JsonReader reader) throws IOException {
+        switch (type) {
+            case "initial_settings":
+            case "settings_update":
+                return readSettings(reader);
+            case "app_added":
+            case "app_removed":
+                return readAppChange(reader);
+            case "initial_student_list":
+                return readStudentList(reader);
+            case "student_joined":
+                return readStudent(reader);
+            case "student_left":
+                return readStudentLeft(reader);
+            case "student_data":
+                return readStudentData(reader);
+            case "batch":
+                return readBatch(reader);
+            default:
+                throw new IllegalStateException("No typed payload for " + type);
+        }
+    }
+
+    private static MessagePayloads.Settings readSettings(JsonReader reader) throws IOException {
+        String sessionType = null;
+        Boolean blockUsb = null;
+        List<String> websiteBlacklist = null;
+        List<String> websiteWhitelist = null;
+        List<String> appBlacklist = null;
+        long settingsVersion = -1;
+        String settingsEpoch = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "sessionType": sessionType = nextString(reader); break;
+                case "blockUsb": blockUsb = nextBoolean(reader); break;
+                case "websiteBlacklist": websiteBlacklist = nextStringList(reader); break;
+                case "websiteWhitelist": websiteWhitelist = nextStringList(reader); break;
+                case "appBlacklist": appBlacklist = nextStringList(reader); break;
+                case "settingsVersion": settingsVersion = nextLong(reader, -1); break;
+                case "settingsEpoch": settingsEpoch = nextString(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.Settings(sessionType, blockUsb, websiteBlacklist, websiteWhitelist, appBlacklist,
+                settingsVersion, settingsEpoch);
+    }
+
+    private static MessagePayloads.AppChange readAppChange(JsonReader reader) throws IOException {
+        String appName = null;
+        long settingsVersion = -1;
+        String settingsEpoch = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "app_name": appName = nextString(reader); break;
+                case "settingsVersion": settingsVersion = nextLong(reader, -1); break;
+                case "settingsEpoch": settingsEpoch = nextString(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.AppChange(appName, settingsVersion, settingsEpoch);
+    }
+
+    private static MessagePayloads.StudentList readStudentList(JsonReader reader) throws IOException {
+        List<StudentInfo> students = Collections.emptyList();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("students") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                students = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) students.add(readStudent(reader));
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.StudentList(students);
+    }
+
+    private static StudentInfo readStudent(JsonReader reader) throws IOException {
+        String studentId = null;
+        String studentName = null;
+        String rollNo = null;
+        String studentClass = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "studentId": studentId = nextString(reader); break;
+                case "studentName": studentName = nextString(reader); break;
+                case "rollNo": rollNo = nextString(reader); break;
+                case "class": studentClass = nextString(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new StudentInfo(studentId, studentName, rollNo, studentClass);
+    }
+
+    private static MessagePayloads.StudentLeft readStudentLeft(JsonReader reader) throws IOException {
+        String studentId = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("studentId")) {
+                studentId = nextString(reader);
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.StudentLeft(studentId);
+    }
+
+    private MessagePayloads.StudentData readStudentData(JsonReader reader) throws IOException {
+        String studentId = null;
+        String updateType = null;
+        Object data = null;
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "studentId": studentId = nextString(reader); break;
+                case "updateType": updateType = nextString(reader); break;
+                case "data": data = genericAdapter.read(reader); break;
+                default: reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.StudentData(studentId, updateType, data);
+    }
+
+    private MessagePayloads.Batch readBatch(JsonReader reader) throws IOException {
+        List<WebSocketMessage> messages = new ArrayList<>();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            if (reader.nextName().equals("messages") && reader.peek() == JsonToken.BEGIN_ARRAY) {
+                reader.beginArray();
+                while (reader.hasNext()) messages.add(readMessage(reader));
+                reader.endArray();
+            } else {
+                reader.skipValue();
+            }
+        }
+        reader.endObject();
+        return new MessagePayloads.Batch(messages);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> readGenericObject(JsonReader reader) throws IOException {
+        Object value = genericAdapter.read(reader);
+        if (value instanceof Map) return (Map<String, Object>) value;
+        throw new IllegalStateException("Payload is not an object");
+    }
+
+    private static String nextString(JsonReader reader) throws IOException {
+        JsonToken token = reader.peek();
+        if (token != JsonToken.STRING && token != JsonToken.NUMBER) {
+            reader.skipValue();
+            return null;
+        }
+        return reader.nextString(); // Numbers as their text
+    }
+
+    // A field of the wrong kind is skipped and read as absent, as a failed cast only lost that field before
+
+    private static Boolean nextBoolean(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BOOLEAN) {
+            reader.skipValue();
+            return null;
+        }
+        return reader.nextBoolean();
+    }
+
+    private static long nextLong(JsonReader reader, long absent) throws IOException {
+        if (reader.peek() != JsonToken.NUMBER) {
+            reader.skipValue();
+            return absent;
+        }
+        return (long) reader.nextDouble();
+    }
+
+    private static List<String> nextStringList(JsonReader reader) throws IOException {
+        if (reader.peek() != JsonToken.BEGIN_ARRAY) {
+            reader.skipValue();
+            return null;
+        }
+        List<String> values = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            String value = nextString(reader);
+            if (value != null) values.add(value);
+        }
+        reader.endArray();
+        return values;
+    }
+
+    // The payload map Gson would have produced for a typed body, for code still reading getPayload()
+    private static Map<String, Object> toMap(Object body) {
+        Map<String, Object> map = new LinkedHashMap<>();
+        if (body instanceof MessagePayloads.Settings) {
+            MessagePayloads.Settings settings = (MessagePayloads.Settings) body;
+            putIfPresent(map, "sessionType", settings.sessionType());
+            putIfPresent(map, "blockUsb", settings.blockUsb());
+            putIfPresent(map, "websiteBlacklist", settings.websiteBlacklist());
+            putIfPresent(map, "websiteWhitelist", settings.websiteWhitelist());
+            putIfPresent(map, "appBlacklist", settings.appBlacklist());
+            putVersion(map, settings.settingsVersion(), settings.settingsEpoch());
+        } else if (body instanceof MessagePayloads.AppChange) {
+            MessagePayloads.AppChange change = (MessagePayloads.AppChange) body;
+            putIfPresent(map, "app_name", change.appName());
+            putVersion(map, change.settingsVersion(), change.settingsEpoch());
+        } else if (body instanceof MessagePayloads.StudentList) {
+            List<Map<String, Object>> students = new ArrayList<>();
+            for (StudentInfo student : ((MessagePayloads.StudentList) body).students()) students.add(toMap(student));
+            map.put("students", students);
+        } else if (body instanceof StudentInfo) {
+            StudentInfo student = (StudentInfo) body;
+            putIfPresent(map, "studentId", student.studentId());
+            putIfPresent(map, "studentName", student.studentName());
+            putIfPresent(map, "rollNo", student.rollNo());
+            putIfPresent(map, "class", student.studentClass());
+        } else if (body instanceof MessagePayloads.StudentLeft) {
+            putIfPresent(map, "studentId", ((MessagePayloads.StudentLeft) body).studentId());
+        } else if (body instanceof MessagePayloads.StudentData) {
+            MessagePayloads.StudentData data = (MessagePayloads.StudentData) body;
+            putIfPresent(map, "studentId", data.studentId());
+            putIfPresent(map, "updateType", data.updateType());
+            putIfPresent(map, "data", data.data());
+        } else if (body instanceof MessagePayloads.Batch) {
+            List<Map<String, Object>> messages = new ArrayList<>();
+            for (WebSocketMessage message : ((MessagePayloads.Batch) body).messages()) {
+                Map<String, Object> inner = new LinkedHashMap<>();
+                inner.put("type", message.getType());
+                putIfPresent(inner, "payload", message.getPayload());
+                messages.add(inner);
+            }
+            map.put("messages", messages);
+        }
+        return map;
+    }
+
+    private static void putIfPresent(Map<String, Object> map, String key, Object value) {
+        if (value != null) map.put(key, value);
+    }
+
+    private static void putVersion(Map<String, Object> map, long version, String epoch) {
+        if (version >= 0) map.put("settingsVersion", (double) version); // Numbers as Gson reads them
+        putIfPresent(map, "settingsEpoch", epoch);
+    }
+}
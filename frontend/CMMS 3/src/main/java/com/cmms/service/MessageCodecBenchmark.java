@@ -0,0 +1,181 @@
+package com.cmms.service;
+
+import com.cmms.dto.MessagePayloads;
+import com.cmms.dto.StudentInfo;
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Manual check and benchmark for {@link MessageCodec}.
+ * <p>
+ * Checks that every typed message decodes to the same type, request id, status and payload map as Gson's
+ * {@code fromJson(frame, WebSocketMessage.class)}, to the same body whatever order the fields come in, with unknown
+ * fields or with the payload before the type, and that a field of the wrong kind reads as absent (exits with
+ * status 1 on a mismatch). Then times both paths on a 500-student initial_student_list, taken as far as the
+ * teacher dashboard needs it (a list of {@link StudentInfo}), and reports the bytes each allocates.
+ * Run with: java com.cmms.service.MessageCodecBenchmark
+ */
+public class MessageCodecBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final int STUDENTS = 500;
+    private static final int WARMUP = 2_000;
+    private static final int ITERATIONS = 5_000;
+
+    public static void main(String[] args) {
+        MessageCodec codec = new MessageCodec();
+        if (!verify(codec)) {
+            System.err.println("Message codec verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("Typed decoding matches Gson for every message type and field order");
+
+        String frame = studentListFrame();
+        for (int i = 0; i < WARMUP; i++) {
+            viaGson(frame);
+            viaCodec(codec, frame);
+        }
+        Result gson = measure(() -> viaGson(frame));
+        Result typed = measure(() -> viaCodec(codec, frame));
+        System.out.printf("initial_student_list of %d students (%,d bytes), %,d decodes each:%n", STUDENTS,
+                frame.length(), ITERATIONS);
+        System.out.printf("  Gson to Map, then casts: %,8.1f µs/decode, %,9d bytes allocated/decode%n",
+                gson.nanosPerOp / 1e3, gson.bytesPerOp);
+        System.out.printf("  MessageCodec to records: %,8.1f µs/decode, %,9d bytes allocated/decode%n",
+                typed.nanosPerOp / 1e3, typed.bytesPerOp);
+        if (gson.bytesPerOp > 0 && typed.bytesPerOp > 0) {
+            System.out.printf("  %.1fx faster, %.1fx less allocation%n", gson.nanosPerOp / typed.nanosPerOp,
+                    (double) gson.bytesPerOp / typed.bytesPerOp);
+        }
+    }
+
+    private static boolean verify(MessageCodec codec) {
+        boolean ok = true;
+        List<String> frames = List.of(
+                "{\"type\":\"initial_settings\",\"payload\":{\"sessionType\":\"BLOCK_WEBSITES\",\"blockUsb\":true,"
+                        + "\"websiteBlacklist\":[\"a.com\",\"b.org\"],\"websiteWhitelist\":[],\"appBlacklist\":[\"x.exe\"],"
+                        + "\"settingsVersion\":7,\"settingsEpoch\":\"e1\"}}",
+                "{\"type\":\"settings_update\",\"payload\":{\"blockUsb\":false,\"settingsVersion\":8,\"settingsEpoch\":\"e1\"}}",
+                "{\"type\":\"app_added\",\"payload\":{\"app_name\":\"game.exe\",\"settingsVersion\":9,\"settingsEpoch\":\"e1\"}}",
+                "{\"type\":\"app_removed\",\"payload\":{\"app_name\":\"game.exe\"}}",
+                "{\"type\":\"student_joined\",\"payload\":{\"studentId\":\"s1\",\"studentName\":\"Ann\",\"rollNo\":\"12\",\"class\":\"10B\"}}",
+                "{\"type\":\"student_left\",\"payload\":{\"studentId\":\"s1\"}}",
+                "{\"type\":\"student_data\",\"payload\":{\"studentId\":\"s1\",\"updateType\":\"website_visit\","
+                        + "\"data\":{\"url\":\"a.com\",\"count\":3,\"tags\":[\"x\",null,true]}}}",
+                "{\"type\":\"student_data\",\"payload\":{\"studentId\":\"s2\",\"updateType\":\"log\",\"data\":\"text\"}}",
+                "{\"type\":\"response\",\"requestId\":\"r1\",\"status\":\"success\",\"payload\":{\"message\":\"ok\",\"n\":1.5}}",
+                "{\"type\":\"batch\",\"payload\":{\"messages\":[{\"type\":\"student_left\",\"payload\":{\"studentId\":\"s3\"}},"
+                        + "{\"type\":\"command\",\"payload\":{\"commandType\":\"lock\"}}]}}",
+                "{\"type\":\"initial_student_list\",\"payload\":{\"students\":[]}}",
+                "{\"type\":\"session_ending\"}",
+                studentListFrame());
+        for (String frame : frames) {
+            WebSocketMessage expected = GSON.fromJson(frame, WebSocketMessage.class);
+            WebSocketMessage actual = codec.decode(frame);
+            if (!Objects.equals(expected.getType(), actual.getType())
+                    || !Objects.equals(expected.getRequestId(), actual.getRequestId())
+                    || !Objects.equals(expected.getStatus(), actual.getStatus())
+                    || !Objects.equals(expected.getPayload(), actual.getPayload())) {
+                ok = fail("differs from Gson: " + abbreviate(frame) + "\n  Gson:  " + expected.getPayload()
+                        + "\n  codec: " + actual.getPayload());
+            }
+        }
+
+        // Same content, fields reordered, unknown fields added, payload before type
+        String canonical = frames.get(0);
+        String reordered = "{\"payload\":{\"settingsEpoch\":\"e1\",\"_id\":{\"$oid\":\"abc\"},\"appBlacklist\":[\"x.exe\"],"
+                + "\"settingsVersion\":7.0,\"websiteWhitelist\":[],\"extra\":[1,{\"a\":null}],\"websiteBlacklist\":[\"a.com\",\"b.org\"],"
+                + "\"blockUsb\":true,\"sessionType\":\"BLOCK_WEBSITES\"},\"sent\":123,\"type\":\"initial_settings\"}";
+        Object expectedBody = codec.decode(canonical).getBody(MessagePayloads.Settings.class);
+        Object reorderedBody = codec.decode(reordered).getBody(MessagePayloads.Settings.class);
+        if (expectedBody == null || !expectedBody.equals(reorderedBody)) ok = fail("reordered settings: " + reorderedBody);
+
+        MessagePayloads.StudentList list = codec.decode(studentListFrame()).getBody(MessagePayloads.StudentList.class);
+        if (list == null || list.students().size() != STUDENTS || !list.students().equals(viaGson(studentListFrame()))) {
+            ok = fail("student list did not decode to the same StudentInfo records");
+        }
+        MessagePayloads.Batch batch = codec.decode(frames.get(9)).getBody(MessagePayloads.Batch.class);
+        if (batch == null || !new MessagePayloads.StudentLeft("s3").equals(batch.messages().get(0).getBody(MessagePayloads.StudentLeft.class))) {
+            ok = fail("batched message was not typed: " + batch);
+        }
+
+        MessagePayloads.Settings wrongKind = codec.decode("{\"type\":\"settings_update\",\"payload\":{\"websiteBlacklist\":\"a.com\","
+                + "\"blockUsb\":\"yes\",\"settingsVersion\":3}}").getBody(MessagePayloads.Settings.class);
+        if (wrongKind == null || wrongKind.websiteBlacklist() != null || wrongKind.blockUsb() != null || wrongKind.settingsVersion() != 3) {
+            ok = fail("a field of the wrong kind was not read as absent: " + wrongKind);
+        }
+
+        Map<String, Object> replyPayload = GSON.fromJson(frames.get(0), WebSocketMessage.class).getPayload();
+        if (!expectedBody.equals(codec.decodeBody("initial_settings", replyPayload))) ok = fail("decodeBody differs");
+
+        for (String malformed : List.of("[1,2]", "{\"type\":\"student_left\",\"payload\":[1]}", "{\"type\":")) {
+            try {
+                codec.decode(malformed);
+                ok = fail("accepted malformed frame " + malformed);
+            } catch (RuntimeException e) {
+                if (!(e instanceof com.google.gson.JsonParseException)) ok = fail(malformed + " threw " + e);
+            }
+        }
+        return ok;
+    }
+
+    // What TeacherDashboardController did before: a Map per student, then casts into StudentInfo
+    @SuppressWarnings("unchecked")
+    private static List<StudentInfo> viaGson(String frame) {
+        WebSocketMessage message = GSON.fromJson(frame, WebSocketMessage.class);
+        List<Map<String, Object>> students = (List<Map<String, Object>>) message.getPayload().get("students");
+        List<StudentInfo> result = new ArrayList<>(students.size());
+        for (Map<String, Object> student : students) {
+            result.add(new StudentInfo((String) student.get("studentId"), (String) student.get("studentName"),
+                    (String) student.get("rollNo"), (String) student.get("class")));
+        }
+        return result;
+    }
+
+    private static List<StudentInfo> viaCodec(MessageCodec codec, String frame) {
+        return codec.decode(frame).getBody(MessagePayloads.StudentList.class).students();
+    }
+
+    private static Result measure(Runnable decode) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+        long bytesBefore = threads.getThreadAllocatedBytes(thread);
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) decode.run();
+        long nanos = System.nanoTime() - start;
+        long bytes = threads.getThreadAllocatedBytes(thread) - bytesBefore;
+        return new Result((double) nanos / ITERATIONS, bytes < 0 ? -1 : bytes / ITERATIONS);
+    }
+
+    private static String studentListFrame() {
+        List<Map<String, Object>> students = new ArrayList<>();
+        for (int i = 0; i < STUDENTS; i++) {
+            Map<String, Object> student = new LinkedHashMap<>();
+            student.put("studentId", "student-" + i);
+            student.put("studentName", "Student Number " + i);
+            student.put("rollNo", String.valueOf(1000 + i));
+            student.put("class", "Class " + (i % 12 + 1));
+            students.add(student);
+        }
+        return GSON.toJson(new WebSocketMessage("initial_student_list", Map.of("students", students)));
+    }
+
+    private static String abbreviate(String frame) {
+        return frame.length() <= 120 ? frame : frame.substring(0, 120) + "...";
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+
+    private record Result(double nanosPerOp, long bytesPerOp) {
+    }
+}
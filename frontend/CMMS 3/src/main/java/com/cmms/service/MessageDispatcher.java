@@ -0,0 +1,259 @@
+package com.cmms.service;
+
+import com.cmms.dto.WebSocketMessage;
+import javafx.application.Platform;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Routes incoming messages of a {@link WebSocketService} to the handlers registered for their type, off the
+ * socket's read thread: the read thread only decodes a message and queues it here, so a slow handler never holds
+ * up reading frames, heartbeats or replies to requests.
+ * <p>
+ * Each handler is registered with an {@link Affinity} saying where it runs. Messages are routed in arrival order
+ * by one dispatch thread; {@link Affinity#IO} handlers run right there, so they see messages in order and must
+ * be quick, {@link Affinity#WORKER} handlers run on a small pool, in no particular order, and {@link Affinity#FX}
+ * handlers on the JavaFX application thread, in order.
+ * <p>
+ * Registrations are copy-on-write: registering or removing a handler replaces the handler table, so routing reads
+ * it without locking and handlers may register or remove handlers (their own included) while messages arrive.
+ * A removed handler receives no further messages, including ones already queued for it.
+ */
+public class MessageDispatcher {
+
+    /**
+     * Where a handler runs.
+     */
+    public enum Affinity {
+        /** The dispatch thread, in message order; for quick work such as updating a cache. */
+        IO,
+        /** A background pool, in no particular order; for slow work such as sampling processes. */
+        WORKER,
+        /** The JavaFX application thread, in message order; for anything touching the UI. */
+        FX
+    }
+
+    @FunctionalInterface
+    public interface MessageHandler {
+        void handle(WebSocketMessage message);
+    }
+
+    /**
+     * A registered handler; see {@link #remove}.
+     */
+    public interface Registration {
+        /**
+         * Stops the handler receiving messages, including those already queued for it. Removing twice is harmless.
+         */
+        void remove();
+    }
+
+    private static final Entry[] NONE = new Entry[0];
+    private static final long IDLE_THREAD_SECONDS = 30;
+
+    private final Object registrationLock = new Object();
+    private volatile Map<String, Entry[]> handlersByType = Map.of(); // Replaced, never changed, under registrationLock
+    private volatile Entry[] anyHandlers = NONE;
+    private volatile Entry[] unhandledHandlers = NONE;
+
+    private final ThreadPoolExecutor dispatchThread;
+    private final ThreadPoolExecutor workers;
+    private final Executor fxExecutor;
+
+    private final AtomicLong dispatched = new AtomicLong();
+    private final AtomicLong handlerErrors = new AtomicLong();
+    private final AtomicInteger maxQueued = new AtomicInteger();
+
+    public MessageDispatcher() {
+        this(runnable -> Platform.runLater(runnable)); // Not a method reference: JavaFX is only loaded once needed
+    }
+
+    /**
+     * @param fxExecutor Runs {@link Affinity#FX} handlers, in order; Platform::runLater outside of checks.
+     */
+    MessageDispatcher(Executor fxExecutor) {
+        this.fxExecutor = fxExecutor;
+        this.dispatchThread = newPool(1, "cmms-ws-dispatch");
+        int workerThreads = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+        this.workers = newPool(workerThreads, "cmms-ws-worker");
+    }
+
+    // Threads stop after a while idle, so a service that is not connected holds none
+    private static ThreadPoolExecutor newPool(int threads, String name) {
+        AtomicInteger count = new AtomicInteger();
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(threads, threads, IDLE_THREAD_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, threads == 1 ? name : name + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        pool.allowCoreThreadTimeOut(true);
+        return pool;
+    }
+
+    /**
+     * Registers a handler for one message type.
+     */
+    public Registration on(String type, Affinity affinity, MessageHandler handler) {
+        if (type == null) throw new IllegalArgumentException("type is null");
+        Entry entry = new Entry(type, affinity, handler);
+        synchronized (registrationLock) {
+            Map<String, Entry[]> table = new HashMap<>(handlersByType);
+            table.put(type, append(table.getOrDefault(type, NONE), entry));
+            handlersByType = Map.copyOf(table);
+        }
+        return entry;
+    }
+
+    /**
+     * Registers a handler for every message, called before the handlers for its type.
+     */
+    public Registration onAny(Affinity affinity, MessageHandler handler) {
+        Entry entry = new Entry(null, affinity, handler);
+        synchronized (registrationLock) {
+            anyHandlers = append(anyHandlers, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Registers a handler for messages of a type no {@link #on} handler is registered for.
+     */
+    public Registration onUnhandled(Affinity affinity, MessageHandler handler) {
+        Entry entry = new Entry("", affinity, handler);
+        synchronized (registrationLock) {
+            unhandledHandlers = append(unhandledHandlers, entry);
+        }
+        return entry;
+    }
+
+    /**
+     * Queues a message for its handlers. Called on the read thread; returns at once.
+     */
+    void dispatch(WebSocketMessage message) {
+        execute(() -> route(message));
+    }
+
+    /**
+     * Runs a task on the dispatch thread, in order with the messages, e.g. a listener callback.
+     */
+    void execute(Runnable task) {
+        dispatchThread.execute(() -> {
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                handlerErrors.incrementAndGet();
+                System.err.println("Error in WebSocket dispatch task: " + e.getMessage());
+            }
+        });
+        int queued = dispatchThread.getQueue().size();
+        for (int max = maxQueued.get(); queued > max && !maxQueued.compareAndSet(max, queued); max = maxQueued.get()) {
+            // Retry until the larger size is recorded
+        }
+    }
+
+    /**
+     * @return Messages and tasks waiting for the dispatch thread.
+     */
+    int getQueued() {
+        return dispatchThread.getQueue().size();
+    }
+
+    /**
+     * @return Exceptions thrown by handlers and tasks, each logged and otherwise ignored.
+     */
+    long getHandlerErrors() {
+        return handlerErrors.get();
+    }
+
+    @Override
+    public String toString() {
+        return "MessageDispatcher{dispatched=" + dispatched + ", queued=" + getQueued() + ", maxQueued=" + maxQueued
+                + ", workersBusy=" + workers.getActiveCount() + ", handlerErrors=" + handlerErrors + '}';
+    }
+
+    private void route(WebSocketMessage message) {
+        dispatched.incrementAndGet();
+        for (Entry entry : anyHandlers) deliver(entry, message);
+        Entry[] typed = message.getType() != null ? handlersByType.getOrDefault(message.getType(), NONE) : NONE;
+        for (Entry entry : typed.length > 0 ? typed : unhandledHandlers) deliver(entry, message);
+    }
+
+    private void deliver(Entry entry, WebSocketMessage message) {
+        switch (entry.affinity) {
+            case IO:
+                entry.run(message);
+                break;
+            case WORKER:
+                workers.execute(() -> entry.run(message));
+                break;
+            case FX:
+                fxExecutor.execute(() -> entry.run(message));
+                break;
+        }
+    }
+
+    private void remove(Entry entry) {
+        synchronized (registrationLock) {
+            if (entry.type == null) {
+                anyHandlers = without(anyHandlers, entry);
+            } else if (entry.type.isEmpty()) {
+                unhandledHandlers = without(unhandledHandlers, entry);
+            } else {
+                Map<String, Entry[]> table = new HashMap<>(handlersByType);
+                Entry[] remaining = without(table.getOrDefault(entry.type, NONE), entry);
+                if (remaining.length == 0) table.remove(entry.type);
+                else table.put(entry.type, remaining);
+                handlersByType = Map.copyOf(table);
+            }
+        }
+    }
+
+    private static Entry[] append(Entry[] entries, Entry entry) {
+        Entry[] copy = Arrays.copyOf(entries, entries.length + 1);
+        copy[entries.length] = entry;
+        return copy;
+    }
+
+    private static Entry[] without(Entry[] entries, Entry entry) {
+        return Arrays.stream(entries).filter(e -> e != entry).toArray(Entry[]::new);
+    }
+
+    private final class Entry implements Registration {
+        final String type; // null for onAny, "" for onUnhandled
+        final Affinity affinity;
+        final MessageHandler handler;
+        volatile boolean removed;
+
+        Entry(String type, Affinity affinity, MessageHandler handler) {
+            if (affinity == null || handler == null) throw new IllegalArgumentException("affinity and handler are required");
+            this.type = type;
+            this.affinity = affinity;
+            this.handler = handler;
+        }
+
+        void run(WebSocketMessage message) {
+            if (removed) return;
+            try {
+                handler.handle(message);
+            } catch (RuntimeException e) {
+                handlerErrors.incrementAndGet();
+                System.err.println("Error in WebSocket handler (" + affinity + ", " + message.getType() + "): " + e.getMessage());
+            }
+        }
+
+        @Override
+        public void remove() {
+            removed = true;
+            MessageDispatcher.this.remove(this);
+        }
+    }
+}
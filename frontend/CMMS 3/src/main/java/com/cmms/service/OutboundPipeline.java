@@ -0,0 +1,348 @@
+package com.cmms.service;
+
+import java.io.Closeable;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Outbound frames of a {@link WebSocketService}, in two lanes sent by one background thread, so callers never wait
+ * for the network.
+ * <p>
+ * The critical lane (authentication, teacher actions, violations) is bounded by a frame count and is sent as soon as
+ * possible, in order. The telemetry lane (visits, statistics, resource usage) is bounded by bytes; its frames are
+ * held for up to a linger time or until a batch is full, then go out together as one "batch" frame
+ * ({"type":"batch","payload":{"messages":[...]}}). A batch is not started while the socket still has unsent
+ * data, so on a slow link telemetry backs up here, where the oldest frames are dropped once the lane is full,
+ * instead of in the socket's unbounded buffer. Every drop is counted.
+ */
+class OutboundPipeline implements Closeable {
+
+    /**
+     * Where frames go; implemented over the WebSocket client.
+     */
+    interface FrameSink {
+        boolean isOpen();
+
+        /**
+         * @return true while earlier frames are still waiting to be written to the network.
+         */
+        boolean isBackedUp();
+
+        void send(String frame);
+    }
+
+    static final int DEFAULT_CRITICAL_CAPACITY = 1024;
+    static final long DEFAULT_LINGER_MS = 200;
+    static final int DEFAULT_BATCH_BYTES = 32 * 1024;
+    static final int DEFAULT_TELEMETRY_CAPACITY_BYTES = 1024 * 1024;
+    private static final long BACKED_UP_POLL_MS = 10;
+    private static final String BATCH_PREFIX = "{\"type\":\"batch\",\"payload\":{\"messages\":[";
+    private static final String BATCH_SUFFIX = "]}}";
+
+    private final FrameSink sink;
+    private final int criticalCapacity;
+    private final long lingerNanos;
+    private final int batchBytes;
+    private final int telemetryCapacityBytes;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition wake = lock.newCondition();
+    private final Condition criticalTaken = lock.newCondition();
+    private final ArrayDeque<String> critical = new ArrayDeque<>();
+    private final ArrayDeque<String> telemetry = new ArrayDeque<>();
+    private int telemetryBytes;
+    private long oldestTelemetryNanos;
+    private Thread sender;
+    private boolean closed;
+
+    private final AtomicLong criticalSent = new AtomicLong();
+    private final AtomicLong telemetrySent = new AtomicLong();
+    private final AtomicLong framesSent = new AtomicLong();
+    private final AtomicLong criticalDropped = new AtomicLong();
+    private final AtomicLong telemetryDropped = new AtomicLong();
+    private final AtomicLong disconnectedDropped = new AtomicLong();
+
+    OutboundPipeline(FrameSink sink) {
+        this(sink, DEFAULT_CRITICAL_CAPACITY, DEFAULT_LINGER_MS, DEFAULT_BATCH_BYTES, DEFAULT_TELEMETRY_CAPACITY_BYTES);
+    }
+
+    /**
+     * @param criticalCapacity       Critical frames that may wait; further ones are rejected.
+     * @param lingerMillis           Longest time a telemetry frame waits for others to share its batch.
+     * @param batchBytes             A batch is sent as soon as this much telemetry is waiting.
+     * @param telemetryCapacityBytes Telemetry that may wait; beyond it the oldest frames are dropped.
+     */
+    OutboundPipeline(FrameSink sink, int criticalCapacity, long lingerMillis, int batchBytes, int telemetryCapacityBytes) {
+        this.sink = sink;
+        this.criticalCapacity = criticalCapacity;
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(lingerMillis);
+        this.batchBytes = batchBytes;
+        this.telemetryCapacityBytes = Math.max(batchBytes, telemetryCapacityBytes);
+    }
+
+    /**
+     * Queues a frame on the critical lane.
+     *
+     * @return false if the lane is full (or the pipeline closed) and the frame was dropped.
+     */
+    boolean sendCritical(String frame) {
+        lock.lock();
+        try {
+            if (closed || critical.size() >= criticalCapacity) {
+                criticalDropped.incrementAndGet();
+                return false;
+            }
+            critical.addLast(frame);
+            ensureSender();
+            wake.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a frame on the critical lane, waiting up to the timeout for room instead of dropping it.
+     * For bulk senders such as a journal replay, which must neither lose frames nor flood the lane.
+     *
+     * @return false if there was no room in time or the pipeline is closed; the frame is then not queued and
+     *         not counted as dropped.
+     */
+    boolean sendCritical(String frame, long timeoutMillis) throws InterruptedException {
+        long remaining = TimeUnit.MILLISECONDS.toNanos(timeoutMillis);
+        lock.lockInterruptibly();
+        try {
+            while (!closed && critical.size() >= criticalCapacity) {
+                if (remaining <= 0) return false;
+                remaining = criticalTaken.awaitNanos(remaining);
+            }
+            if (closed) return false;
+            critical.addLast(frame);
+            ensureSender();
+            wake.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Queues a frame on the telemetry lane, dropping the oldest waiting telemetry if there is no room.
+     *
+     * @return false if the pipeline is closed or the frame alone exceeds the lane's capacity.
+     */
+    boolean sendTelemetry(String frame) {
+        lock.lock();
+        try {
+            if (closed || frame.length() > telemetryCapacityBytes) {
+                telemetryDropped.incrementAndGet();
+                return false;
+            }
+            while (telemetryBytes + frame.length() > telemetryCapacityBytes) {
+                telemetryBytes -= telemetry.removeFirst().length();
+                telemetryDropped.incrementAndGet();
+            }
+            if (telemetry.isEmpty()) oldestTelemetryNanos = System.nanoTime();
+            telemetry.addLast(frame);
+            telemetryBytes += frame.length();
+            ensureSender();
+            if (telemetryBytes >= batchBytes) wake.signal();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Drops everything waiting, e.g. when the connection closes; frames are not carried over to the next one.
+     */
+    void discardPending() {
+        lock.lock();
+        try {
+            disconnectedDropped.addAndGet(critical.size() + telemetry.size());
+            critical.clear();
+            criticalTaken.signalAll();
+            telemetry.clear();
+            telemetryBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Sends waiting telemetry at the next opportunity instead of after the linger time.
+     */
+    void flush() {
+        lock.lock();
+        try {
+            oldestTelemetryNanos = System.nanoTime() - lingerNanos;
+            wake.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stops the sender thread after it has passed on the frames already queued.
+     */
+    @Override
+    public void close() {
+        Thread thread;
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            oldestTelemetryNanos = System.nanoTime() - lingerNanos;
+            wake.signal();
+            criticalTaken.signalAll();
+            thread = sender;
+        } finally {
+            lock.unlock();
+        }
+        if (thread != null) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    long getCriticalSent() {
+        return criticalSent.get();
+    }
+
+    /**
+     * @return Telemetry messages sent, alone or inside batches.
+     */
+    long getTelemetrySent() {
+        return telemetrySent.get();
+    }
+
+    /**
+     * @return WebSocket frames handed to the socket; with batching, fewer than the messages sent.
+     */
+    long getFramesSent() {
+        return framesSent.get();
+    }
+
+    long getCriticalDropped() {
+        return criticalDropped.get();
+    }
+
+    long getTelemetryDropped() {
+        return telemetryDropped.get();
+    }
+
+    /**
+     * @return Frames dropped because the connection was not open when their turn came.
+     */
+    long getDisconnectedDropped() {
+        return disconnectedDropped.get();
+    }
+
+    @Override
+    public String toString() {
+        return "OutboundPipeline{critical=" + criticalSent + ", telemetry=" + telemetrySent + ", frames=" + framesSent
+                + ", criticalDropped=" + criticalDropped + ", telemetryDropped=" + telemetryDropped
+                + ", disconnectedDropped=" + disconnectedDropped + '}';
+    }
+
+    // Called with the lock held
+    private void ensureSender() {
+        if (sender != null) return;
+        sender = new Thread(this::sendLoop, "cmms-ws-sender");
+        sender.setDaemon(true);
+        sender.start();
+    }
+
+    private void sendLoop() {
+        List<String> criticalBatch = new ArrayList<>();
+        List<String> telemetryBatch = new ArrayList<>();
+        StringBuilder frame = new StringBuilder(batchBytes + 256);
+        while (true) {
+            lock.lock();
+            try {
+                while (critical.isEmpty() && !telemetryDue()) {
+                    if (closed && telemetry.isEmpty()) return;
+                    long lingerLeft = lingerNanos - (System.nanoTime() - oldestTelemetryNanos);
+                    if (telemetry.isEmpty()) {
+                        wake.await(1, TimeUnit.SECONDS);
+                    } else if (lingerLeft > 0) {
+                        wake.awaitNanos(lingerLeft);
+                    } else {
+                        wake.await(BACKED_UP_POLL_MS, TimeUnit.MILLISECONDS); // Due, but the socket is still busy
+                    }
+                }
+                criticalBatch.addAll(critical);
+                critical.clear();
+                criticalTaken.signalAll();
+                if (telemetryDue()) {
+                    int bytes = 0;
+                    while (!telemetry.isEmpty() && (bytes == 0 || bytes + telemetry.peekFirst().length() <= batchBytes)) {
+                        String next = telemetry.removeFirst();
+                        bytes += next.length();
+                        telemetryBatch.add(next);
+                    }
+                    telemetryBytes -= bytes;
+                    if (!telemetry.isEmpty()) oldestTelemetryNanos = System.nanoTime();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } finally {
+                lock.unlock();
+            }
+
+            for (String message : criticalBatch) {
+                if (deliver(message)) criticalSent.incrementAndGet();
+            }
+            criticalBatch.clear();
+            if (!telemetryBatch.isEmpty()) {
+                String batch;
+                if (telemetryBatch.size() == 1) {
+                    batch = telemetryBatch.get(0);
+                } else {
+                    frame.setLength(0);
+                    frame.append(BATCH_PREFIX);
+                    for (int i = 0; i < telemetryBatch.size(); i++) {
+                        if (i > 0) frame.append(',');
+                        frame.append(telemetryBatch.get(i));
+                    }
+                    batch = frame.append(BATCH_SUFFIX).toString();
+                }
+                if (deliver(batch)) {
+                    telemetrySent.addAndGet(telemetryBatch.size());
+                } else {
+                    disconnectedDropped.addAndGet(telemetryBatch.size() - 1L);
+                }
+                telemetryBatch.clear();
+            }
+        }
+    }
+
+    // Called with the lock held
+    private boolean telemetryDue() {
+        if (telemetry.isEmpty()) return false;
+        if (!closed && telemetryBytes < batchBytes && System.nanoTime() - oldestTelemetryNanos < lingerNanos) return false;
+        return closed || !sink.isOpen() || !sink.isBackedUp(); // A closed socket drains (and counts) right away
+    }
+
+    private boolean deliver(String frame) {
+        try {
+            if (sink.isOpen()) {
+                sink.send(frame);
+                framesSent.incrementAndGet();
+                return true;
+            }
+        } catch (RuntimeException e) {
+            // The connection closed between the check and the send
+        }
+        disconnectedDropped.incrementAndGet();
+        return false;
+    }
+}
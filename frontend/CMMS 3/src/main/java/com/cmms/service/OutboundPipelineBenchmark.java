@@ -0,0 +1,216 @@
+package com.cmms.service;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual check and benchmark for {@link OutboundPipeline}, against a simulated network link of limited bandwidth.
+ * <p>
+ * Checks that critical messages go out in order and promptly, that telemetry arrives complete and in order inside
+ * batch frames, and that under overload the caller is never blocked, critical messages still get through and every
+ * telemetry message is either sent or counted as dropped (exits with status 1 on a mismatch). Then reports how many
+ * frames a student's typical telemetry needs with and without batching, and the cost of queueing a message.
+ * Run with: java com.cmms.service.OutboundPipelineBenchmark
+ */
+public class OutboundPipelineBenchmark {
+
+    private static final Gson GSON = new Gson();
+
+    public static void main(String[] args) throws Exception {
+        boolean ok = verifyOrderAndBatching();
+        ok &= verifyOverload();
+        if (!ok) {
+            System.err.println("OutboundPipeline verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("Ordering, batching and overload handling OK");
+        benchmarkFrames();
+        benchmarkEnqueue();
+    }
+
+    private static boolean verifyOrderAndBatching() throws InterruptedException {
+        boolean ok = true;
+        SimulatedLink link = new SimulatedLink(50_000_000);
+        try (OutboundPipeline pipeline = new OutboundPipeline(link, 64, 100, 32 * 1024, 1 << 20)) {
+            for (int i = 0; i < 1000; i++) pipeline.sendTelemetry(message("telemetry", i, 40));
+            long start = System.nanoTime();
+            for (int i = 0; i < 10; i++) pipeline.sendCritical(message("critical", i, 0));
+            List<JsonObject> received = link.await(1010, 2000);
+
+            long criticalMillis = TimeUnit.NANOSECONDS.toMillis(link.firstCriticalSent - start);
+            if (criticalMillis > 50) {
+                System.err.println("Critical message took " + criticalMillis + " ms");
+                ok = false;
+            }
+            ok &= expectSequence(received, "critical", 10);
+            ok &= expectSequence(received, "telemetry", 1000);
+            if (link.frames > 10 + 1000 / 100) {
+                System.err.println("Telemetry not batched: " + link.frames + " frames");
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private static boolean verifyOverload() throws InterruptedException {
+        boolean ok = true;
+        SimulatedLink link = new SimulatedLink(200_000); // 200 KB/s
+        int offered = 20_000;
+        long maxEnqueueNanos = 0;
+        try (OutboundPipeline pipeline = new OutboundPipeline(link, 64, 50, 16 * 1024, 64 * 1024)) {
+            for (int i = 0; i < offered; i++) {
+                long start = System.nanoTime();
+                pipeline.sendTelemetry(message("telemetry", i, 200));
+                if (i % 1000 == 0) pipeline.sendCritical(message("critical", i / 1000, 0));
+                maxEnqueueNanos = Math.max(maxEnqueueNanos, System.nanoTime() - start);
+            }
+            List<JsonObject> received = link.await(0, 3000);
+            ok &= expectSequence(received, "critical", offered / 1000);
+            long telemetry = received.stream().filter(m -> m.get("type").getAsString().equals("telemetry")).count();
+            if (telemetry + pipeline.getTelemetryDropped() != offered || pipeline.getTelemetryDropped() == 0) {
+                System.err.println("Overload: received " + telemetry + " + dropped " + pipeline.getTelemetryDropped()
+                        + ", offered " + offered);
+                ok = false;
+            }
+            if (TimeUnit.NANOSECONDS.toMillis(maxEnqueueNanos) > 20) {
+                System.err.println("Caller blocked for " + TimeUnit.NANOSECONDS.toMillis(maxEnqueueNanos) + " ms");
+                ok = false;
+            }
+            System.out.printf("Overload on a 200 KB/s link: %,d of %,d telemetry messages dropped, slowest enqueue %.2f ms%n",
+                    pipeline.getTelemetryDropped(), offered, maxEnqueueNanos / 1e6);
+        }
+        return ok;
+    }
+
+    /**
+     * A student's telemetry: visits, resource samples and statistics at about 50 messages per second.
+     */
+    private static void benchmarkFrames() throws InterruptedException {
+        int messages = 150;
+        SimulatedLink link = new SimulatedLink(10_000_000);
+        try (OutboundPipeline pipeline = new OutboundPipeline(link)) {
+            for (int i = 0; i < messages; i++) {
+                pipeline.sendTelemetry(message("telemetry", i, 120));
+                Thread.sleep(20);
+            }
+            pipeline.flush();
+            link.await(messages, 2000);
+            System.out.printf("%d telemetry messages over %.1f s: %d frames batched vs %d unbatched (%.1f vs %.1f frames/s)%n",
+                    messages, messages * 0.02, link.frames, messages, link.frames / (messages * 0.02), 1 / 0.02);
+        }
+    }
+
+    private static void benchmarkEnqueue() throws InterruptedException {
+        SimulatedLink link = new SimulatedLink(Long.MAX_VALUE);
+        String frame = message("telemetry", 0, 120);
+        int count = 2_000_000;
+        try (OutboundPipeline pipeline = new OutboundPipeline(link)) {
+            for (int i = 0; i < count / 10; i++) pipeline.sendTelemetry(frame); // Warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) pipeline.sendTelemetry(frame);
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Queueing a telemetry message: %.0f ns (%s)%n", (double) nanos / count, pipeline);
+        }
+    }
+
+    private static boolean expectSequence(List<JsonObject> received, String type, int count) {
+        int next = 0;
+        for (JsonObject message : received) {
+            if (!message.get("type").getAsString().equals(type)) continue;
+            int seq = message.getAsJsonObject("payload").get("seq").getAsInt();
+            if (seq != next) {
+                System.err.println(type + ": expected seq " + next + ", got " + seq);
+                return false;
+            }
+            next++;
+        }
+        if (next != count) {
+            System.err.println(type + ": received " + next + " of " + count);
+            return false;
+        }
+        return true;
+    }
+
+    private static String message(String type, int seq, int padding) {
+        return "{\"type\":\"" + type + "\",\"payload\":{\"seq\":" + seq + ",\"data\":\"" + "x".repeat(padding) + "\"}}";
+    }
+
+    /**
+     * Writes frames at a fixed rate on its own thread; backed up while frames are waiting, like a socket buffer.
+     * Records when the first critical frame was handed over, i.e. when it left the pipeline.
+     */
+    private static final class SimulatedLink implements OutboundPipeline.FrameSink {
+        private final LinkedBlockingQueue<String> buffer = new LinkedBlockingQueue<>();
+        private final List<JsonObject> received = new ArrayList<>();
+        private volatile long frames;
+        private volatile long firstCriticalSent;
+
+        SimulatedLink(long bytesPerSecond) {
+            Thread writer = new Thread(() -> {
+                try {
+                    while (true) {
+                        String frame = buffer.take();
+                        if (bytesPerSecond != Long.MAX_VALUE) {
+                            long nanos = frame.length() * 1_000_000_000L / bytesPerSecond;
+                            if (nanos > 0) TimeUnit.NANOSECONDS.sleep(nanos);
+                        }
+                        if (bytesPerSecond == Long.MAX_VALUE) continue; // Throughput run: nothing to record
+                        synchronized (received) {
+                            JsonObject message = GSON.fromJson(frame, JsonObject.class);
+                            if (message.get("type").getAsString().equals("batch")) {
+                                JsonArray inner = message.getAsJsonObject("payload").getAsJsonArray("messages");
+                                for (JsonElement element : inner) received.add(element.getAsJsonObject());
+                            } else {
+                                received.add(message);
+                            }
+                            received.notifyAll();
+                        }
+                    }
+                } catch (InterruptedException e) {
+                    // Exit
+                }
+            }, "simulated-link");
+            writer.setDaemon(true);
+            writer.start();
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public boolean isBackedUp() {
+            return !buffer.isEmpty();
+        }
+
+        @Override
+        public void send(String frame) {
+            frames++;
+            if (firstCriticalSent == 0 && frame.startsWith("{\"type\":\"critical\"")) firstCriticalSent = System.nanoTime();
+            buffer.add(frame);
+        }
+
+        /**
+         * Waits until the given number of messages arrived, or (for 0) until the link has been idle for a while.
+         */
+        List<JsonObject> await(int count, long timeoutMillis) throws InterruptedException {
+            long deadline = System.currentTimeMillis() + timeoutMillis;
+            synchronized (received) {
+                int last = -1;
+                while (System.currentTimeMillis() < deadline && (count > 0 ? received.size() < count : last != received.size())) {
+                    last = received.size();
+                    received.wait(count > 0 ? 50 : 500);
+                }
+                return new ArrayList<>(received);
+            }
+        }
+    }
+}
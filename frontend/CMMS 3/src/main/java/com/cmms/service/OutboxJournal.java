@@ -0,0 +1,398 @@
+package com.cmms.service;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Append-only store-and-forward journal for outgoing messages that must not be lost while the connection is down.
+ * <p>
+ * Every message gets the next sequence number and is written to a memory-mapped segment file, so an append is a
+ * memory copy and survives the process being killed. The receiver acknowledges sequence numbers; once every entry
+ * of a segment is acknowledged the segment is recycled. The journal is a fixed ring of segments created up front,
+ * which bounds its size on disk and means files are never deleted while mapped (which Windows does not allow).
+ * If unacknowledged entries fill every segment, the oldest segment is overwritten and its entries counted as
+ * dropped.
+ * <p>
+ * A journal closed with everything acknowledged deletes its directory. Where the files are still mapped and cannot
+ * be deleted yet, it leaves a marker instead, and {@link #openDefault} deletes such journals, along with ones
+ * nobody has written to for a week, before opening its own.
+ * <p>
+ * Segment layout (big-endian): a 16-byte header with a magic number and the first sequence number in the segment
+ * (0 when free), then records of length (4), sequence (8), CRC-32C of the sequence and message (4) and the UTF-8
+ * message. The length is written last, so a record torn by a crash reads as the end of the segment.
+ * A state file holds the journal id and the highest acknowledged sequence number. The journal id changes whenever
+ * a journal is created from scratch, so a receiver that de-duplicates on (journal id, sequence) is not confused when
+ * numbering starts over. Thread-safe.
+ */
+public class OutboxJournal implements Closeable {
+
+    /**
+     * An unacknowledged message.
+     */
+    public static final class Entry {
+        public final long sequence;
+        public final String message;
+
+        Entry(long sequence, String message) {
+            this.sequence = sequence;
+            this.message = message;
+        }
+    }
+
+    private static final String BASE_DIR = System.getProperty("user.home") + "/.cmms/outbox";
+    private static final int SEGMENT_MAGIC = 0x434D4F4A; // "CMOJ"
+    private static final int STATE_MAGIC = 0x434D4F53;   // "CMOS"
+    private static final int SEGMENT_HEADER_SIZE = 16;
+    private static final int RECORD_HEADER_SIZE = 16;
+    private static final int STATE_SIZE = 24;
+    private static final long DEFAULT_MAX_BYTES = 16L * 1024 * 1024;
+    private static final int DEFAULT_SEGMENT_COUNT = 16;
+    private static final String CLOSED_MARKER = "closed";
+    private static final long ABANDONED_AFTER_MS = 7L * 24 * 60 * 60 * 1000;
+
+    private final Path directory;
+    private final Segment[] segments;
+    private final FileChannel stateChannel;
+    private final MappedByteBuffer state;
+    private final CRC32C crc = new CRC32C();
+    private final long journalId;
+    private long acknowledged;
+    private long lastSequence;
+    private int active;      // Index of the segment being appended to
+    private long dropped;
+
+    /**
+     * Opens the journal in the default location for one student's session, creating it if needed.
+     */
+    public static OutboxJournal openDefault(String sessionCode, String studentId) throws IOException {
+        prune(Paths.get(BASE_DIR), ABANDONED_AFTER_MS);
+        String name = (sessionCode + "-" + studentId).replaceAll("[^A-Za-z0-9._-]", "_");
+        return new OutboxJournal(Paths.get(BASE_DIR, name), DEFAULT_SEGMENT_COUNT, (int) (DEFAULT_MAX_BYTES / DEFAULT_SEGMENT_COUNT));
+    }
+
+    /**
+     * Opens or creates a journal, recovering whatever a previous process left in it.
+     *
+     * @param segmentCount Number of segment files, at least 2.
+     * @param segmentBytes Size of each segment; the journal takes segmentCount * segmentBytes on disk.
+     */
+    public OutboxJournal(Path directory, int segmentCount, int segmentBytes) throws IOException {
+        if (segmentCount < 2) throw new IllegalArgumentException("segmentCount must be at least 2: " + segmentCount);
+        if (segmentBytes < 4096) throw new IllegalArgumentException("segmentBytes must be at least 4096: " + segmentBytes);
+        this.directory = directory;
+        Files.createDirectories(directory);
+        Files.deleteIfExists(directory.resolve(CLOSED_MARKER)); // In use again, so not to be pruned
+
+        stateChannel = FileChannel.open(directory.resolve("journal.state"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        boolean fresh = stateChannel.size() < STATE_SIZE;
+        state = stateChannel.map(FileChannel.MapMode.READ_WRITE, 0, STATE_SIZE);
+        if (fresh || state.getInt(0) != STATE_MAGIC) {
+            state.putLong(4, new SecureRandom().nextLong() & Long.MAX_VALUE);
+            state.putLong(12, 0);
+            state.putInt(0, STATE_MAGIC);
+        }
+        journalId = state.getLong(4);
+        acknowledged = state.getLong(12);
+        lastSequence = acknowledged;
+
+        segments = new Segment[segmentCount];
+        try {
+            for (int i = 0; i < segmentCount; i++) {
+                segments[i] = new Segment(directory.resolve(String.format("segment-%03d.log", i)), segmentBytes);
+            }
+        } catch (IOException e) {
+            closeFiles();
+            throw e;
+        }
+        recover();
+    }
+
+    /**
+     * Appends a message.
+     *
+     * @return Its sequence number, or -1 if it is larger than a segment and was not stored.
+     */
+    public synchronized long append(String message) {
+        byte[] bytes = message.getBytes(StandardCharsets.UTF_8);
+        Segment segment = segments[active];
+        if (RECORD_HEADER_SIZE + bytes.length > segment.capacity - SEGMENT_HEADER_SIZE) return -1;
+        if (segment.firstSequence == 0 || segment.writePosition + RECORD_HEADER_SIZE + bytes.length > segment.capacity) {
+            segment = roll();
+        }
+        long sequence = ++lastSequence;
+        int p = segment.writePosition;
+        MappedByteBuffer buffer = segment.buffer;
+        buffer.putLong(p + 4, sequence);
+        buffer.put(p + RECORD_HEADER_SIZE, bytes);
+        buffer.putInt(p + 12, checksum(sequence, bytes, bytes.length));
+        if (p + RECORD_HEADER_SIZE + bytes.length + 4 <= segment.capacity) {
+            buffer.putInt(p + RECORD_HEADER_SIZE + bytes.length, 0); // End marker over any stale record
+        }
+        buffer.putInt(p, bytes.length); // Commits the record
+        segment.writePosition = p + RECORD_HEADER_SIZE + bytes.length;
+        segment.lastSequence = sequence;
+        return sequence;
+    }
+
+    /**
+     * Reads unacknowledged entries in order.
+     *
+     * @return Up to maxEntries entries with sequence numbers above afterSequence.
+     */
+    public synchronized List<Entry> readAfter(long afterSequence, int maxEntries) {
+        List<Entry> entries = new ArrayList<>();
+        long from = Math.max(afterSequence, acknowledged) + 1;
+        for (int i = 1; i <= segments.length && entries.size() < maxEntries; i++) {
+            Segment segment = segments[(active + i) % segments.length]; // Oldest first, ending with the active one
+            if (segment.firstSequence == 0 || segment.lastSequence < from) continue;
+            int p = SEGMENT_HEADER_SIZE;
+            while (p < segment.writePosition && entries.size() < maxEntries) {
+                int length = segment.buffer.getInt(p);
+                long sequence = segment.buffer.getLong(p + 4);
+                if (sequence >= from) {
+                    byte[] bytes = new byte[length];
+                    segment.buffer.get(p + RECORD_HEADER_SIZE, bytes);
+                    entries.add(new Entry(sequence, new String(bytes, StandardCharsets.UTF_8)));
+                }
+                p += RECORD_HEADER_SIZE + length;
+            }
+        }
+        return entries;
+    }
+
+    /**
+     * Records that the receiver has every entry up to and including this sequence number, and recycles the
+     * segments that hold nothing newer.
+     */
+    public synchronized void acknowledge(long sequence) {
+        if (sequence <= acknowledged) return;
+        acknowledged = Math.min(sequence, lastSequence);
+        state.putLong(12, acknowledged);
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            if (i != active && segment.firstSequence != 0 && segment.lastSequence <= acknowledged) segment.free();
+        }
+    }
+
+    /**
+     * Writes the journal to the storage device, for callers that need entries to survive a power failure and
+     * not only a crash of the process.
+     */
+    public synchronized void sync() {
+        for (Segment segment : segments) segment.buffer.force();
+        state.force();
+    }
+
+    public long getJournalId() {
+        return journalId;
+    }
+
+    public synchronized long getAcknowledged() {
+        return acknowledged;
+    }
+
+    public synchronized long getLastSequence() {
+        return lastSequence;
+    }
+
+    /**
+     * @return Entries appended but not acknowledged and not dropped.
+     */
+    public synchronized long getPendingCount() {
+        long pending = 0;
+        for (Segment segment : segments) {
+            if (segment.firstSequence == 0 || segment.lastSequence <= acknowledged) continue;
+            pending += segment.lastSequence - Math.max(segment.firstSequence, acknowledged + 1) + 1;
+        }
+        return pending;
+    }
+
+    /**
+     * @return Unacknowledged entries overwritten because the journal was full.
+     */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    public Path getDirectory() {
+        return directory;
+    }
+
+    /**
+     * Closes the journal, and deletes it if every entry was acknowledged.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        closeFiles();
+        if (acknowledged != lastSequence || !Files.isDirectory(directory)) return; // Kept for the next run to send
+        Files.write(directory.resolve(CLOSED_MARKER), new byte[0]);
+        deleteJournal(directory);
+    }
+
+    /**
+     * Deletes the journals in a directory of journals that were closed with everything acknowledged, or whose files
+     * have not changed for the given time. Journals that cannot be deleted yet are left for the next call.
+     *
+     * @return The number of journals deleted.
+     */
+    static int prune(Path baseDirectory, long abandonedAfterMs) throws IOException {
+        if (!Files.isDirectory(baseDirectory)) return 0;
+        int deleted = 0;
+        long abandonedBefore = System.currentTimeMillis() - abandonedAfterMs;
+        try (Stream<Path> journals = Files.list(baseDirectory)) {
+            for (Path journal : (Iterable<Path>) journals.filter(Files::isDirectory)::iterator) {
+                if ((Files.exists(journal.resolve(CLOSED_MARKER)) || lastModified(journal) < abandonedBefore)
+                        && deleteJournal(journal)) {
+                    deleted++;
+                }
+            }
+        }
+        return deleted;
+    }
+
+    private static long lastModified(Path journal) throws IOException {
+        long newest = 0;
+        try (Stream<Path> files = Files.list(journal)) {
+            for (Path file : (Iterable<Path>) files::iterator) newest = Math.max(newest, Files.getLastModifiedTime(file).toMillis());
+        }
+        return newest;
+    }
+
+    // Fails on Windows while another journal object, or a buffer not yet garbage collected, maps the files
+    private static boolean deleteJournal(Path journal) {
+        try (Stream<Path> files = Files.list(journal)) {
+            for (Path file : (Iterable<Path>) files::iterator) {
+                if (!file.getFileName().toString().equals(CLOSED_MARKER)) Files.deleteIfExists(file);
+            }
+            Files.deleteIfExists(journal.resolve(CLOSED_MARKER));
+            Files.delete(journal);
+            return true;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private void closeFiles() throws IOException {
+        if (segments != null) {
+            for (Segment segment : segments) {
+                if (segment != null) segment.channel.close();
+            }
+        }
+        stateChannel.close();
+    }
+
+    /**
+     * Moves to the next segment, overwriting it if it still holds unacknowledged entries.
+     */
+    private Segment roll() {
+        Segment current = segments[active];
+        if (current.firstSequence != 0) active = (active + 1) % segments.length;
+        Segment next = segments[active];
+        if (next.firstSequence != 0 && next.lastSequence > acknowledged) {
+            dropped += next.lastSequence - Math.max(next.firstSequence, acknowledged + 1) + 1;
+        }
+        next.reset(lastSequence + 1);
+        return next;
+    }
+
+    /**
+     * Finds where each segment's valid records end and which segment was being appended to.
+     */
+    private void recover() {
+        long newestFirst = -1;
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            segment.scan();
+            if (segment.firstSequence == 0) continue;
+            lastSequence = Math.max(lastSequence, segment.lastSequence);
+            if (segment.firstSequence > newestFirst) {
+                newestFirst = segment.firstSequence;
+                active = i;
+            }
+        }
+        for (int i = 0; i < segments.length; i++) {
+            Segment segment = segments[i];
+            if (i != active && segment.firstSequence != 0 && segment.lastSequence <= acknowledged) segment.free();
+        }
+    }
+
+    private int checksum(long sequence, byte[] bytes, int length) {
+        crc.reset();
+        for (int shift = 56; shift >= 0; shift -= 8) crc.update((int) (sequence >>> shift));
+        crc.update(bytes, 0, length);
+        return (int) crc.getValue();
+    }
+
+    private final class Segment {
+        final FileChannel channel;
+        final MappedByteBuffer buffer;
+        final int capacity;
+        long firstSequence; // 0 when free
+        long lastSequence;
+        int writePosition;
+
+        Segment(Path file, int capacity) throws IOException {
+            this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            this.capacity = capacity;
+        }
+
+        void reset(long first) {
+            buffer.putInt(SEGMENT_HEADER_SIZE, 0);
+            buffer.putLong(8, first);
+            buffer.putInt(0, SEGMENT_MAGIC);
+            firstSequence = first;
+            lastSequence = first - 1;
+            writePosition = SEGMENT_HEADER_SIZE;
+        }
+
+        void free() {
+            buffer.putLong(8, 0);
+            firstSequence = 0;
+            lastSequence = 0;
+            writePosition = SEGMENT_HEADER_SIZE;
+        }
+
+        /**
+         * Reads the header and walks the records, stopping at the first one that is missing, torn or stale.
+         */
+        void scan() {
+            writePosition = SEGMENT_HEADER_SIZE;
+            firstSequence = buffer.getInt(0) == SEGMENT_MAGIC ? buffer.getLong(8) : 0;
+            if (firstSequence <= 0) {
+                firstSequence = 0;
+                return;
+            }
+            long expected = firstSequence;
+            int p = SEGMENT_HEADER_SIZE;
+            byte[] bytes = new byte[0];
+            while (p + RECORD_HEADER_SIZE <= capacity) {
+                int length = buffer.getInt(p);
+                if (length <= 0 || p + RECORD_HEADER_SIZE + length > capacity) break;
+                long sequence = buffer.getLong(p + 4);
+                if (sequence != expected) break;
+                if (bytes.length < length) bytes = new byte[length];
+                buffer.get(p + RECORD_HEADER_SIZE, bytes, 0, length);
+                if (checksum(sequence, bytes, length) != buffer.getInt(p + 12)) break;
+                expected++;
+                p += RECORD_HEADER_SIZE + length;
+            }
+            writePosition = p;
+            lastSequence = expected - 1;
+            if (p + 4 <= capacity) buffer.putInt(p, 0); // Cut off a torn record
+        }
+    }
+}
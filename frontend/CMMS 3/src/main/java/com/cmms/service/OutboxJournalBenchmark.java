@@ -0,0 +1,213 @@
+package com.cmms.service;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.Comparator;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Manual check and benchmark for {@link OutboxJournal}.
+ * <p>
+ * Checks ordering and content of replayed entries, recovery after reopening (including a torn last record),
+ * acknowledgement and segment recycling, that overflowing the journal drops the oldest entries and counts them, and
+ * that a journal closed fully acknowledged is deleted while pruning removes marked and week-old ones only (exits
+ * with status 1 on a mismatch). Then measures append throughput in a steady state where acknowledgements
+ * keep up, and the time to reopen and replay a full journal.
+ * Run with: java com.cmms.service.OutboxJournalBenchmark
+ */
+public class OutboxJournalBenchmark {
+
+    private static final int APPENDS = 1_000_000;
+
+    public static void main(String[] args) throws Exception {
+        Path root = Files.createTempDirectory("cmms-outbox");
+        try {
+            if (!verify(root.resolve("verify")) | !verifyCleanup(root.resolve("cleanup"))) {
+                System.err.println("OutboxJournal verification FAILED");
+                System.exit(1);
+            }
+            System.out.println("Append, replay, recovery, recycling and cleanup OK");
+            benchmark(root.resolve("bench"));
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+    }
+
+    private static boolean verify(Path dir) throws IOException {
+        boolean ok = true;
+        long journalId;
+        try (OutboxJournal journal = new OutboxJournal(dir, 4, 64 * 1024)) {
+            journalId = journal.getJournalId();
+            for (int i = 1; i <= 100; i++) {
+                if (journal.append(message(i)) != i) {
+                    System.err.println("Unexpected sequence for entry " + i);
+                    return false;
+                }
+            }
+            ok &= expectEntries(journal.readAfter(0, 1000), 1, 100, "fresh");
+            ok &= expectEntries(journal.readAfter(90, 5), 91, 95, "partial");
+            journal.acknowledge(60);
+            ok &= expectEntries(journal.readAfter(0, 1000), 61, 100, "acknowledged");
+            if (journal.append("élève – réseau") != 101) ok = fail("non-ASCII append");
+        }
+
+        tearLastRecord(dir);
+        try (OutboxJournal journal = new OutboxJournal(dir, 4, 64 * 1024)) {
+            if (journal.getJournalId() != journalId) ok = fail("journal id changed on reopen");
+            if (journal.getAcknowledged() != 60) ok = fail("acknowledgement lost: " + journal.getAcknowledged());
+            if (journal.getLastSequence() != 100) ok = fail("torn record not cut off: last " + journal.getLastSequence());
+            ok &= expectEntries(journal.readAfter(0, 1000), 61, 100, "reopened");
+            if (journal.append("élève – réseau") != 101) ok = fail("append after recovery");
+            List<OutboxJournal.Entry> last = journal.readAfter(100, 10);
+            if (last.size() != 1 || !last.get(0).message.equals("élève – réseau")) ok = fail("non-ASCII round trip");
+
+            // Overflow: 4 x 64 KB cannot hold 2000 entries of ~200 bytes without acknowledgements
+            for (int i = 0; i < 2000; i++) journal.append(message(102 + i));
+            long last2 = journal.getLastSequence();
+            if (journal.getDroppedCount() == 0
+                    || journal.getAcknowledged() + journal.getDroppedCount() + journal.getPendingCount() != last2) {
+                ok = fail("overflow accounting: acknowledged " + journal.getAcknowledged() + ", dropped "
+                        + journal.getDroppedCount() + ", pending " + journal.getPendingCount() + ", last " + last2);
+            }
+            List<OutboxJournal.Entry> tail = journal.readAfter(0, 100_000);
+            ok &= expectEntries(tail, last2 - tail.size() + 1, last2, "after overflow");
+
+            // Recycling: once everything is acknowledged, appends reuse segments without dropping anything
+            journal.acknowledge(last2);
+            long droppedBefore = journal.getDroppedCount();
+            for (int i = 0; i < 5000; i++) {
+                long sequence = journal.append(message(i));
+                if (i % 100 == 99) journal.acknowledge(sequence);
+            }
+            if (journal.getDroppedCount() != droppedBefore) ok = fail("recycling dropped entries");
+            if (journal.getPendingCount() != 0) ok = fail("pending after acknowledging all: " + journal.getPendingCount());
+        }
+        if (Files.exists(dir)) ok = fail("a journal closed with everything acknowledged was not deleted");
+        return ok;
+    }
+
+    private static boolean verifyCleanup(Path base) throws IOException {
+        boolean ok = true;
+        try (OutboxJournal pending = new OutboxJournal(base.resolve("pending"), 2, 4096)) {
+            pending.append(message(1));
+        }
+        if (!Files.isDirectory(base.resolve("pending"))) ok = fail("a journal with unacknowledged entries was deleted");
+
+        Files.createDirectories(base.resolve("marked"));
+        Files.write(base.resolve("marked").resolve("segment-000.log"), new byte[4096]);
+        Files.write(base.resolve("marked").resolve("closed"), new byte[0]);
+        Files.createDirectories(base.resolve("abandoned"));
+        Path old = Files.write(base.resolve("abandoned").resolve("journal.state"), new byte[24]);
+        Files.setLastModifiedTime(old, FileTime.fromMillis(System.currentTimeMillis() - 8L * 24 * 60 * 60 * 1000));
+
+        int pruned = OutboxJournal.prune(base, 7L * 24 * 60 * 60 * 1000);
+        if (pruned != 2 || Files.exists(base.resolve("marked")) || Files.exists(base.resolve("abandoned"))) {
+            ok = fail("pruning deleted " + pruned + " journals, expected the marked and the abandoned one");
+        }
+        if (!Files.isDirectory(base.resolve("pending"))) ok = fail("pruning deleted a recent journal with unacknowledged entries");
+        return ok;
+    }
+
+    private static void benchmark(Path dir) throws IOException {
+        String message = message(0);
+        try (OutboxJournal journal = new OutboxJournal(dir, 16, 1024 * 1024)) {
+            for (int i = 0; i < APPENDS / 10; i++) journal.acknowledge(journal.append(message)); // Warm up
+            long start = System.nanoTime();
+            for (int i = 0; i < APPENDS; i++) {
+                long sequence = journal.append(message);
+                if (i % 1000 == 999) journal.acknowledge(sequence);
+            }
+            long nanos = System.nanoTime() - start;
+            System.out.printf("Append: %,.0f messages/s, %.0f MB/s, %.0f ns per %d-byte message%n",
+                    APPENDS * 1e9 / nanos, (double) APPENDS * message.length() / nanos * 1e3, (double) nanos / APPENDS,
+                    message.length());
+            journal.acknowledge(journal.getLastSequence());
+
+            // Fill the journal with unacknowledged entries, as after a long time offline
+            while (journal.getDroppedCount() == 0) journal.append(message);
+            start = System.nanoTime();
+            journal.sync();
+            System.out.printf("Sync of a full 16 MB journal to disk: %.1f ms%n", (System.nanoTime() - start) / 1e6);
+        }
+
+        long start = System.nanoTime();
+        try (OutboxJournal journal = new OutboxJournal(dir, 16, 1024 * 1024)) {
+            long openNanos = System.nanoTime() - start;
+            long after = journal.getAcknowledged();
+            long replayed = 0;
+            while (true) {
+                List<OutboxJournal.Entry> entries = journal.readAfter(after, 256);
+                if (entries.isEmpty()) break;
+                after = entries.get(entries.size() - 1).sequence;
+                replayed += entries.size();
+            }
+            long totalNanos = System.nanoTime() - start;
+            System.out.printf("Reopen (recovery scan): %.1f ms; replay of %,d pending messages: %.1f ms total%n",
+                    openNanos / 1e6, replayed, totalNanos / 1e6);
+        }
+    }
+
+    /**
+     * Corrupts the newest record's checksum in place, as if the process died while writing it.
+     */
+    private static void tearLastRecord(Path dir) throws IOException {
+        Path newest = null;
+        long newestFirst = -1;
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path file : (Iterable<Path>) files.filter(f -> f.getFileName().toString().startsWith("segment-"))::iterator) {
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    ByteBuffer header = ByteBuffer.allocate(16);
+                    channel.read(header, 0);
+                    if (header.getLong(8) > newestFirst) {
+                        newestFirst = header.getLong(8);
+                        newest = file;
+                    }
+                }
+            }
+        }
+        try (FileChannel channel = FileChannel.open(newest, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            ByteBuffer record = ByteBuffer.allocate(16);
+            int p = 16;
+            int lastRecord = -1;
+            while (true) {
+                record.clear();
+                channel.read(record, p);
+                int length = record.getInt(0);
+                if (length <= 0) break;
+                lastRecord = p;
+                p += 16 + length;
+            }
+            ByteBuffer garbage = ByteBuffer.allocate(4).putInt(0, 0xDEADBEEF);
+            channel.write(garbage, lastRecord + 12);
+        }
+    }
+
+    private static boolean expectEntries(List<OutboxJournal.Entry> entries, long first, long last, String what) {
+        if (entries.size() != last - first + 1) return fail(what + ": " + entries.size() + " entries, expected " + (last - first + 1));
+        for (int i = 0; i < entries.size(); i++) {
+            OutboxJournal.Entry entry = entries.get(i);
+            if (entry.sequence != first + i) return fail(what + ": sequence " + entry.sequence + " at " + i);
+            if (first + i <= 100 && !entry.message.equals(message((int) (first + i)))) return fail(what + ": content of " + entry.sequence);
+        }
+        return true;
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+
+    private static String message(int i) {
+        return "{\"type\":\"student_update\",\"payload\":{\"type\":\"blocked_app\",\"data\":{\"app_name\":\"game" + i
+                + ".exe\",\"pid\":" + (1000 + i) + ",\"count\":1,\"first_seen\":\"2024-01-01T10:00:00Z\","
+                + "\"last_seen\":\"2024-01-01T10:00:00Z\",\"detail\":\"Terminated by the enforcement service\"}}}";
+    }
+}
@@ -0,0 +1,101 @@
+package com.cmms.service;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * Manual check for the hand-over from an outbox replay to direct sending in {@link WebSocketService}, against
+ * {@link WireFormatTestServer}, which acknowledges and de-duplicates journaled messages as the backend does.
+ * <p>
+ * Each round journals messages while disconnected, then connects while another thread keeps sending, so sends land
+ * just before and after authentication and on both sides of the moment the replay hands over. Every message must
+ * reach the server exactly once and in order, and the journal must end fully acknowledged; a message sent directly
+ * ahead of an unsent older one would be acknowledged past it and lost. Exits with status 1 on a mismatch (the
+ * unfixed hand-over failed within a few hundred rounds).
+ * Run with: java com.cmms.service.OutboxReplayBenchmark
+ */
+public class OutboxReplayBenchmark {
+
+    private static final int ROUNDS = 200;
+    private static final int OFFLINE_MESSAGES = 100;
+    private static final int LIVE_MESSAGES = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The service logs every connection and replay
+        Path root = Files.createTempDirectory("cmms-replay");
+        boolean ok = true;
+        long start = System.nanoTime();
+        try {
+            for (int round = 0; round < ROUNDS && ok; round++) ok = round(root.resolve("round-" + round), round);
+        } finally {
+            try (Stream<Path> files = Files.walk(root)) {
+                files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+            }
+        }
+        if (!ok) {
+            System.err.println("Outbox replay verification FAILED");
+            System.exit(1);
+        }
+        out.printf("%d rounds of %,d journaled and %,d live messages delivered once and in order (%.1f s)%n",
+                ROUNDS, OFFLINE_MESSAGES, LIVE_MESSAGES, (System.nanoTime() - start) / 1e9);
+    }
+
+    private static boolean round(Path dir, int round) throws Exception {
+        WireFormatTestServer server = new WireFormatTestServer(new InetSocketAddress("127.0.0.1", 0), true);
+        server.start();
+        server.awaitStart();
+        WebSocketService service = new WebSocketService("ws://127.0.0.1:" + server.getPort());
+        try (OutboxJournal journal = new OutboxJournal(dir, 4, 1024 * 1024)) {
+            service.setOutboxJournal(journal);
+            for (int i = 0; i < OFFLINE_MESSAGES; i++) service.sendMessage("student_update", Map.of("n", i));
+
+            // Sends from before authentication until after the replay, so some land on every hand-over point
+            Thread sender = new Thread(() -> {
+                for (int i = 0; i < LIVE_MESSAGES; i++) {
+                    service.sendMessage("student_update", Map.of("n", OFFLINE_MESSAGES + i));
+                    if (i % 8 == 7) LockSupport.parkNanos(1);
+                }
+            });
+            sender.start();
+            service.connectAndAuthenticate("token");
+            sender.join();
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!service.isAuthenticated() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            if (!service.isAuthenticated()) return fail("round " + round + ": did not authenticate");
+
+            long last = journal.getLastSequence();
+            deadline = System.currentTimeMillis() + 10_000;
+            while (journal.getAcknowledged() < last && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            List<Long> handled = server.getHandledSequences();
+            boolean ok = true;
+            if (last != OFFLINE_MESSAGES + LIVE_MESSAGES) ok = fail("round " + round + ": journaled " + last + " messages");
+            if (journal.getAcknowledged() != last) ok = fail("round " + round + ": acknowledged " + journal.getAcknowledged() + " of " + last);
+            if (handled.size() != last) ok = fail("round " + round + ": server handled " + handled.size() + " of " + last);
+            for (int i = 0; i < handled.size(); i++) {
+                if (handled.get(i) != i + 1) {
+                    ok = fail("round " + round + ": server handled seq " + handled.get(i) + " where " + (i + 1) + " was due");
+                    break;
+                }
+            }
+            return ok;
+        } finally {
+            service.setOutboxJournal(null);
+            service.disconnect();
+            server.stop(1000);
+        }
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+}
@@ -0,0 +1,64 @@
+package com.cmms.service;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Delays between reconnect attempts: exponential backoff with full jitter and a cap.
+ * <p>
+ * Attempt n waits a uniformly random time between 0 and min(cap, base * 2^n). The randomness matters more than
+ * the growth: when an access point drops a whole classroom at once, every agent would otherwise retry at the same
+ * instants and hit the backend together; spread over the whole window, the retries arrive at a steady rate.
+ * Not thread-safe; used from the connection's own threads one at a time.
+ */
+class ReconnectBackoff {
+
+    static final long DEFAULT_BASE_MS = 500;
+    static final long DEFAULT_CAP_MS = 30_000;
+
+    private final long baseMillis;
+    private final long capMillis;
+    private int attempt;
+
+    ReconnectBackoff() {
+        this(DEFAULT_BASE_MS, DEFAULT_CAP_MS);
+    }
+
+    ReconnectBackoff(long baseMillis, long capMillis) {
+        if (baseMillis <= 0 || capMillis < baseMillis) {
+            throw new IllegalArgumentException("Need 0 < base <= cap: " + baseMillis + ", " + capMillis);
+        }
+        this.baseMillis = baseMillis;
+        this.capMillis = capMillis;
+    }
+
+    /**
+     * @return The delay before the next attempt; each call counts as one attempt.
+     */
+    long nextDelayMillis() {
+        long window = ceilingMillis(attempt);
+        attempt++;
+        return ThreadLocalRandom.current().nextLong(window + 1);
+    }
+
+    /**
+     * The upper bound of the delay before the given attempt (counted from 0).
+     */
+    long ceilingMillis(int attempt) {
+        if (attempt >= Long.numberOfLeadingZeros(baseMillis) - 1) return capMillis; // Shift would overflow
+        return Math.min(capMillis, baseMillis << attempt);
+    }
+
+    /**
+     * Starts over from the shortest delay, once a connection has proven stable.
+     */
+    void reset() {
+        attempt = 0;
+    }
+
+    /**
+     * @return Attempts since the last reset.
+     */
+    int getAttempt() {
+        return attempt;
+    }
+}
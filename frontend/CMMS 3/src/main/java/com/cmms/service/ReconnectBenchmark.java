@@ -0,0 +1,320 @@
+package com.cmms.service;
+
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Manual check and benchmark for the automatic reconnect of {@link WebSocketService}, against a local stand-in for
+ * the backend that drops connections on purpose.
+ * <p>
+ * Checks that a dropped student reconnects on its own with growing, capped delays while the server refuses it,
+ * re-authenticates with its token and the last settings version it saw, and receives only the settings changes it
+ * missed instead of the full initial settings; and that force_disconnect and 4xxx close codes end reconnecting
+ * (exits with status 1 on a mismatch). Then drops a classroom of students at once and compares how reconnect
+ * attempts bunch up at the server with and without jitter.
+ * Run with: java com.cmms.service.ReconnectBenchmark
+ */
+public class ReconnectBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final int CLASS_SIZE = 40;
+    private static final long WINDOW_MS = 50;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The service logs every connection and reconnect attempt
+        StandInServer server = new StandInServer();
+        server.start();
+        server.started.await(5, TimeUnit.SECONDS);
+        String url = "ws://127.0.0.1:" + server.getPort();
+        try {
+            boolean ok = verifyResume(server, url);
+            ok &= verifyFinalClose(server, url);
+            if (!ok) {
+                System.err.println("Reconnect verification FAILED");
+                System.exit(1);
+            }
+            out.println("Reconnect, backoff, settings resume and final close OK");
+            benchmarkClassroom(server, url, out);
+        } finally {
+            server.stop(1000);
+        }
+    }
+
+    private static boolean verifyResume(StandInServer server, String url) throws InterruptedException {
+        boolean ok = true;
+        RecordingListener events = new RecordingListener();
+        WebSocketService service = new WebSocketService(url, new ReconnectBackoff(50, 400));
+        service.addListener(events);
+        service.connectAndAuthenticate("token-resume");
+        if (!waitFor(service::isAuthenticated, 2000)) return fail("first authentication");
+        server.pushChange("blockUsb", true);
+        server.pushChange("app_name", "game.exe");
+        if (!waitFor(() -> service.getSettingsVersion() == 2, 2000)) return fail("settings version " + service.getSettingsVersion());
+
+        // Drop the connection, change settings meanwhile and refuse the first attempts to come back
+        server.refuse(3);
+        server.dropAll();
+        for (int i = 0; i < 3; i++) server.pushChange("websiteBlacklist", "site" + i + ".com");
+        if (!waitFor(service::isAuthenticated, 5000)) return fail("no reconnect");
+        if (!waitFor(() -> events.types().contains("settings_resumed"), 2000)) ok = fail("no settings_resumed: " + events.types());
+        if (service.getSettingsVersion() != 5) ok = fail("resumed version " + service.getSettingsVersion());
+
+        Map<String, Object> auth = server.lastAuthentication("token-resume");
+        if (auth == null || !(auth.get("settingsVersion") instanceof Number) || ((Number) auth.get("settingsVersion")).intValue() != 2) {
+            ok = fail("reconnect did not resume from version 2: " + auth);
+        }
+        List<String> types = events.types();
+        if (Collections.frequency(types, "initial_settings") != 1) ok = fail("initial settings sent again: " + types);
+        if (Collections.frequency(types, "settings_update") != 5) ok = fail("missed changes not delivered: " + types);
+
+        List<long[]> attempts = events.reconnects();
+        if (attempts.size() != 4) ok = fail(attempts.size() + " reconnect attempts, expected 4");
+        ReconnectBackoff bounds = new ReconnectBackoff(50, 400);
+        for (long[] attempt : attempts) {
+            if (attempt[1] > bounds.ceilingMillis((int) attempt[0] - 1)) ok = fail("attempt " + attempt[0] + " waited " + attempt[1] + " ms");
+        }
+        service.disconnect();
+        return ok;
+    }
+
+    private static boolean verifyFinalClose(StandInServer server, String url) throws InterruptedException {
+        boolean ok = true;
+        WebSocketService kicked = new WebSocketService(url, new ReconnectBackoff(20, 100));
+        kicked.connectAndAuthenticate("token-kicked");
+        WebSocketService refused = new WebSocketService(url, new ReconnectBackoff(20, 100));
+        refused.connectAndAuthenticate("token-refused");
+        if (!waitFor(() -> kicked.isAuthenticated() && refused.isAuthenticated(), 2000)) return fail("authentication");
+
+        int opens = server.opens();
+        server.forceDisconnect("token-kicked");
+        server.close("token-refused", 4404, "Session not found or inactive.");
+        Thread.sleep(500);
+        if (server.opens() != opens) ok = fail("reconnected after a final close: " + (server.opens() - opens) + " attempts");
+        if (kicked.isReconnecting() || refused.isReconnecting()) ok = fail("still reconnecting after a final close");
+        return ok;
+    }
+
+    private static void benchmarkClassroom(StandInServer server, String url, PrintStream out) throws InterruptedException {
+        for (boolean jitter : new boolean[]{false, true}) {
+            List<WebSocketService> students = new ArrayList<>();
+            for (int i = 0; i < CLASS_SIZE; i++) {
+                WebSocketService student = new WebSocketService(url, jitter ? new ReconnectBackoff() : new FixedBackoff());
+                student.connectAndAuthenticate("token-student-" + i);
+                students.add(student);
+            }
+            waitFor(() -> students.stream().allMatch(WebSocketService::isAuthenticated), 5000);
+
+            server.clearOpenTimes();
+            long dropped = System.nanoTime();
+            server.dropAll(); // The access point went away and came back
+            boolean back = waitFor(() -> students.stream().allMatch(WebSocketService::isAuthenticated), 10_000);
+            long allBackMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - dropped);
+
+            List<Long> times = server.openTimes();
+            int peak = 0;
+            for (long start : times) {
+                int inWindow = 0;
+                for (long t : times) if (t >= start && t < start + TimeUnit.MILLISECONDS.toNanos(WINDOW_MS)) inWindow++;
+                peak = Math.max(peak, inWindow);
+            }
+            long spread = times.isEmpty() ? 0 : TimeUnit.NANOSECONDS.toMillis(Collections.max(times) - Collections.min(times));
+            out.printf("%d students dropped at once, %-20s: peak %2d connection attempts per %d ms, spread over %4d ms, "
+                            + "all back %s %d ms%n", CLASS_SIZE, jitter ? "full jitter" : "fixed delay (no jitter)",
+                    peak, WINDOW_MS, spread, back ? "after" : "NOT after", allBackMillis);
+            for (WebSocketService student : students) student.disconnect();
+        }
+    }
+
+    private static boolean waitFor(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) return false;
+            Thread.sleep(5);
+        }
+        return true;
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+
+    /**
+     * Plain exponential backoff without jitter, for comparison: every client waits exactly the same time.
+     */
+    private static final class FixedBackoff extends ReconnectBackoff {
+        @Override
+        long nextDelayMillis() {
+            long delay = ceilingMillis(getAttempt());
+            super.nextDelayMillis();
+            return delay;
+        }
+    }
+
+    private static final class RecordingListener implements WebSocketService.WebSocketListener {
+        private final List<String> types = Collections.synchronizedList(new ArrayList<>());
+        private final List<long[]> reconnects = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void onWebSocketOpen() {
+        }
+
+        @Override
+        public void onWebSocketMessage(WebSocketMessage message) {
+            types.add(message.getType());
+        }
+
+        @Override
+        public void onWebSocketClose(int code, String reason) {
+        }
+
+        @Override
+        public void onWebSocketError(String message, Exception ex) {
+        }
+
+        @Override
+        public void onWebSocketReconnecting(int attempt, long delayMillis) {
+            reconnects.add(new long[]{attempt, delayMillis});
+        }
+
+        List<String> types() {
+            return new ArrayList<>(types);
+        }
+
+        List<long[]> reconnects() {
+            return new ArrayList<>(reconnects);
+        }
+    }
+
+    /**
+     * Speaks the backend's protocol as far as the reconnect needs: authentication, versioned settings changes and
+     * resuming from a version. Can refuse connections, drop them abruptly or end them on purpose.
+     */
+    private static final class StandInServer extends WebSocketServer {
+        private static final String EPOCH = "stand-in";
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final List<Map<String, Object>> history = new ArrayList<>();
+        private final Map<String, Map<String, Object>> authentications = new HashMap<>();
+        private final Map<String, WebSocket> byToken = new HashMap<>();
+        private final List<Long> openTimes = new ArrayList<>();
+        private int refuse;
+        private int opens;
+
+        StandInServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public synchronized void onOpen(WebSocket conn, ClientHandshake handshake) {
+            opens++;
+            openTimes.add(System.nanoTime());
+            if (refuse > 0) {
+                refuse--;
+                conn.close(CloseFrame.TRY_AGAIN_LATER, "Try again later");
+                return;
+            }
+            send(conn, "connection_ack", Map.of("message", "Connected. Please authenticate."));
+        }
+
+        @Override
+        public synchronized void onMessage(WebSocket conn, String text) {
+            WebSocketMessage message = GSON.fromJson(text, WebSocketMessage.class);
+            if (!"authenticate".equals(message.getType())) return;
+            String token = String.valueOf(message.getPayload().get("token"));
+            authentications.put(token, message.getPayload());
+            byToken.put(token, conn);
+            send(conn, "response", Map.of("message", "Authentication successful."));
+
+            Object version = message.getPayload().get("settingsVersion");
+            if (version instanceof Number && EPOCH.equals(message.getPayload().get("settingsEpoch"))
+                    && ((Number) version).intValue() <= history.size()) {
+                int missed = 0;
+                for (Map<String, Object> change : history.subList(((Number) version).intValue(), history.size())) {
+                    send(conn, "settings_update", change);
+                    missed++;
+                }
+                send(conn, "settings_resumed", Map.of("settingsVersion", history.size(), "settingsEpoch", EPOCH, "missed", missed));
+            } else {
+                send(conn, "initial_settings", Map.of("sessionType", "blocklist", "settingsVersion", history.size(), "settingsEpoch", EPOCH));
+            }
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        synchronized void pushChange(String key, Object value) {
+            Map<String, Object> change = new HashMap<>();
+            change.put(key, value);
+            change.put("settingsVersion", history.size() + 1);
+            change.put("settingsEpoch", EPOCH);
+            history.add(change);
+            for (WebSocket conn : getConnections()) send(conn, "settings_update", change);
+        }
+
+        synchronized void refuse(int connections) {
+            refuse = connections;
+        }
+
+        synchronized void dropAll() {
+            for (WebSocket conn : getConnections()) conn.closeConnection(CloseFrame.ABNORMAL_CLOSE, "Dropped");
+        }
+
+        synchronized void forceDisconnect(String token) {
+            WebSocket conn = byToken.get(token);
+            send(conn, "force_disconnect", Map.of("message", "Removed by the teacher."));
+            conn.close(); // After the message; an ordinary close code, so only the message ends reconnecting
+        }
+
+        synchronized void close(String token, int code, String reason) {
+            byToken.get(token).close(code, reason);
+        }
+
+        synchronized Map<String, Object> lastAuthentication(String token) {
+            return authentications.get(token);
+        }
+
+        synchronized int opens() {
+            return opens;
+        }
+
+        synchronized List<Long> openTimes() {
+            return new ArrayList<>(openTimes);
+        }
+
+        synchronized void clearOpenTimes() {
+            openTimes.clear();
+        }
+
+        private static void send(WebSocket conn, String type, Map<String, Object> payload) {
+            if (conn.isOpen()) conn.send(GSON.toJson(new WebSocketMessage(type, payload)));
+        }
+    }
+}
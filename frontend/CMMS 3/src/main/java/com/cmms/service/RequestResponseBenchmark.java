@@ -0,0 +1,244 @@
+package com.cmms.service;
+
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+import org.java_websocket.WebSocket;
+import org.java_websocket.framing.CloseFrame;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Manual check and benchmark for request/response correlation in {@link WebSocketService}, against a local
+ * stand-in server that answers requests after random delays, so replies come back out of order.
+ * <p>
+ * Checks that every reply reaches the future of its own request and not the listeners, that an unanswered request
+ * times out, that a closing connection cancels what is in flight, and that {@link LatencyHistogram} percentiles
+ * are within its stated error (exits with status 1 on a mismatch). Then compares sending requests one at a time
+ * with pipelining them, and prints the latency histogram.
+ * Run with: java com.cmms.service.RequestResponseBenchmark
+ */
+public class RequestResponseBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final int REQUESTS = 2000;
+    private static final long SERVER_DELAY_MS = 2; // Simulated database work per request
+    private static final int PIPELINE_WINDOW = 64;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The service logs every connection and reconnect attempt
+        StandInServer server = new StandInServer();
+        server.start();
+        server.started.await(5, TimeUnit.SECONDS);
+        String url = "ws://127.0.0.1:" + server.getPort();
+        try {
+            boolean ok = verifyHistogram();
+            ok &= verifyCorrelation(server, url);
+            if (!ok) {
+                System.err.println("Request/response verification FAILED");
+                System.exit(1);
+            }
+            out.println("Correlation, timeout, cancellation and histogram OK");
+            benchmark(url, out);
+        } finally {
+            server.stop(1000);
+        }
+    }
+
+    private static boolean verifyHistogram() {
+        boolean ok = true;
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (long micros = 1; micros <= 100_000; micros++) histogram.record(TimeUnit.MICROSECONDS.toNanos(micros));
+        for (double percentile : new double[]{50, 90, 99, 99.9}) {
+            double expected = percentile * 1000;
+            double error = Math.abs(histogram.getPercentileMicros(percentile) - expected) / expected;
+            if (error > 0.125) ok = fail("p" + percentile + " = " + histogram.getPercentileMicros(percentile) + " µs");
+        }
+        if (histogram.getCount() != 100_000 || histogram.getMaxMicros() != 100_000) ok = fail("count or max: " + histogram);
+        return ok;
+    }
+
+    private static boolean verifyCorrelation(StandInServer server, String url) throws Exception {
+        boolean ok = true;
+        WebSocketService service = connect(url);
+        AtomicInteger listenerReplies = new AtomicInteger();
+        service.addListener(new WebSocketService.WebSocketListener() {
+            @Override
+            public void onWebSocketOpen() {
+            }
+
+            @Override
+            public void onWebSocketMessage(WebSocketMessage message) {
+                if (message.getRequestId() != null) listenerReplies.incrementAndGet();
+            }
+
+            @Override
+            public void onWebSocketClose(int code, String reason) {
+            }
+
+            @Override
+            public void onWebSocketError(String message, Exception ex) {
+            }
+        });
+
+        List<CompletableFuture<WebSocketMessage>> futures = new ArrayList<>();
+        for (int i = 0; i < 200; i++) futures.add(service.sendRequest("echo", Map.of("n", i, "delay", 20)));
+        for (int i = 0; i < futures.size(); i++) {
+            WebSocketMessage reply = futures.get(i).get(5, TimeUnit.SECONDS);
+            if (((Number) reply.getPayload().get("n")).intValue() != i) ok = fail("request " + i + " got the reply to " + reply.getPayload().get("n"));
+        }
+        if (server.outOfOrder.get() == 0) ok = fail("replies were not out of order; the check proves nothing");
+        if (listenerReplies.get() != 0) ok = fail(listenerReplies.get() + " replies also went to the listeners");
+
+        try {
+            service.sendRequest("ignore", Map.of(), 200).get(5, TimeUnit.SECONDS);
+            ok = fail("unanswered request completed");
+        } catch (ExecutionException e) {
+            if (!(e.getCause() instanceof TimeoutException)) ok = fail("timeout failed with " + e.getCause());
+        }
+
+        CompletableFuture<WebSocketMessage> inFlight = service.sendRequest("ignore", Map.of());
+        CompletableFuture<WebSocketMessage> closing = service.sendRequest("close", Map.of());
+        for (CompletableFuture<WebSocketMessage> request : List.of(inFlight, closing)) {
+            try {
+                request.get(5, TimeUnit.SECONDS);
+                ok = fail("request survived the close");
+            } catch (CancellationException e) {
+                // Expected
+            }
+        }
+        if (!service.getRequestStats().startsWith("pending=0")) ok = fail("requests left pending: " + service.getRequestStats());
+        service.disconnect();
+        return ok;
+    }
+
+    private static void benchmark(String url, PrintStream out) throws Exception {
+        WebSocketService service = connect(url);
+        for (int i = 0; i < 500; i++) service.sendRequest("echo", Map.of("n", i)).get(); // Warm up
+
+        long start = System.nanoTime();
+        for (int i = 0; i < REQUESTS; i++) service.sendRequest("echo", Map.of("n", i, "delay", SERVER_DELAY_MS)).get();
+        long sequentialNanos = System.nanoTime() - start;
+
+        WebSocketService pipelined = connect(url);
+        start = System.nanoTime();
+        List<CompletableFuture<WebSocketMessage>> futures = new ArrayList<>();
+        Semaphore window = new Semaphore(PIPELINE_WINDOW); // Bounded, so the critical lane never overflows
+        for (int i = 0; i < REQUESTS; i++) {
+            window.acquire();
+            CompletableFuture<WebSocketMessage> future = pipelined.sendRequest("echo", Map.of("n", i, "delay", SERVER_DELAY_MS));
+            future.whenComplete((reply, error) -> window.release());
+            futures.add(future);
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        long pipelinedNanos = System.nanoTime() - start;
+
+        out.printf("%,d requests with %d ms server work each: one at a time %,.0f ms (%,.0f req/s), "
+                        + "pipelined %d deep %,.0f ms (%,.0f req/s)%n", REQUESTS, SERVER_DELAY_MS, sequentialNanos / 1e6,
+                REQUESTS * 1e9 / sequentialNanos, PIPELINE_WINDOW, pipelinedNanos / 1e6, REQUESTS * 1e9 / pipelinedNanos);
+        out.println("Latency one at a time: " + service.getRequestLatency());
+        out.println("Latency pipelined:     " + pipelined.getRequestLatency());
+        service.disconnect();
+        pipelined.disconnect();
+    }
+
+    private static WebSocketService connect(String url) throws InterruptedException {
+        WebSocketService service = new WebSocketService(url);
+        service.connectAndAuthenticate("token");
+        long deadline = System.currentTimeMillis() + 5000;
+        while (!service.isAuthenticated() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+        return service;
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+
+    /**
+     * Authenticates anyone. Answers "echo" with the request's payload after payload.delay milliseconds (a random
+     * delay up to that, so replies overtake each other), never answers "ignore", and closes on "close".
+     */
+    private static final class StandInServer extends WebSocketServer {
+        private final CountDownLatch started = new CountDownLatch(1);
+        private final ScheduledExecutorService workers = Executors.newScheduledThreadPool(4, runnable -> {
+            Thread thread = new Thread(runnable, "stand-in-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        private final AtomicInteger outOfOrder = new AtomicInteger();
+        private int lastReplied = -1; // Guarded by this
+
+        StandInServer() {
+            super(new InetSocketAddress("127.0.0.1", 0));
+            setReuseAddr(true);
+        }
+
+        @Override
+        public void onStart() {
+            started.countDown();
+        }
+
+        @Override
+        public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        }
+
+        @Override
+        public void onMessage(WebSocket conn, String text) {
+            WebSocketMessage request = GSON.fromJson(text, WebSocketMessage.class);
+            switch (request.getType()) {
+                case "authenticate":
+                    reply(conn, new WebSocketMessage("response", Map.of("message", "Authentication successful.")));
+                    break;
+                case "echo":
+                    Object delay = request.getPayload().get("delay");
+                    long delayMillis = delay instanceof Number ? ThreadLocalRandom.current().nextLong(((Number) delay).longValue() + 1) : 0;
+                    WebSocketMessage response = new WebSocketMessage("response", request.getPayload(), request.getRequestId());
+                    response.setStatus("success");
+                    int n = ((Number) request.getPayload().get("n")).intValue();
+                    workers.schedule(() -> {
+                        synchronized (this) {
+                            if (n < lastReplied) outOfOrder.incrementAndGet();
+                            lastReplied = n;
+                        }
+                        reply(conn, response);
+                    }, delayMillis, TimeUnit.MILLISECONDS);
+                    break;
+                case "close":
+                    conn.close(CloseFrame.GOING_AWAY, "Closing on request");
+                    break;
+                default: // "ignore"
+            }
+        }
+
+        @Override
+        public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+        }
+
+        @Override
+        public void onError(WebSocket conn, Exception ex) {
+        }
+
+        private static void reply(WebSocket conn, WebSocketMessage message) {
+            if (conn.isOpen()) conn.send(GSON.toJson(message));
+        }
+    }
+}
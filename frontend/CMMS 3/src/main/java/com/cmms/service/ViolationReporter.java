@@ -0,0 +1,173 @@
+package com.cmms.service;
+
+import com.cmms.EnforcementScheduler;
+
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Coalesces repeated "student_update" violation reports from the student agent.
+ * <p>
+ * Events are grouped by (type, subject), e.g. ("blocked_app", "game.exe"). The first occurrence of a key is
+ * sent immediately; repeats within the window are only counted and sent as one digest when the window ends,
+ * with "count", "first_seen" and "last_seen" added to the data map. A key that stays quiet for a whole window
+ * is forgotten, so its next occurrence is sent immediately again.
+ * Events that arrive while the socket is not authenticated are kept and go out with the next digest.
+ */
+public class ViolationReporter {
+
+    private static final long DEFAULT_WINDOW_MS = 30_000;
+    private static final long MIN_FLUSH_PERIOD_MS = 250;
+
+    private final WebSocketService webSocketService;
+    private final long windowMillis;
+    private final EnforcementScheduler scheduler;
+    private final Map<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+    private EnforcementScheduler.TaskHandle flushTask;
+
+    public ViolationReporter(WebSocketService webSocketService) {
+        this(webSocketService, DEFAULT_WINDOW_MS);
+    }
+
+    public ViolationReporter(WebSocketService webSocketService, long windowMillis) {
+        this(webSocketService, windowMillis, EnforcementScheduler.getShared());
+    }
+
+    public ViolationReporter(WebSocketService webSocketService, long windowMillis, EnforcementScheduler scheduler) {
+        this.webSocketService = webSocketService;
+        this.windowMillis = windowMillis;
+        this.scheduler = scheduler;
+    }
+
+    /**
+     * Reports one violation.
+     *
+     * @param type    The student_update type, e.g. "blocked_app".
+     * @param subject What the violation is about (app name, device, error text); the coalescing key within the type.
+     * @param data    The data map sent to the teacher. The latest event's data is used for the digest.
+     * @return true if the event was sent right away, false if it was coalesced into the next digest.
+     */
+    public boolean report(String type, String subject, Map<String, Object> data) {
+        long now = System.currentTimeMillis();
+        String key = type + '\u0000' + subject;
+        Aggregate aggregate = aggregates.computeIfAbsent(key, k -> new Aggregate(type));
+        boolean sendNow;
+        synchronized (aggregate) {
+            if (aggregate.removed) {
+                // Lost a race with the flusher removing an idle entry; start a fresh one
+                return report(type, subject, data);
+            }
+            sendNow = aggregate.windowStart == 0 && isConnected();
+            if (aggregate.windowStart == 0) aggregate.windowStart = now;
+            if (!sendNow) {
+                if (aggregate.pending == 0) aggregate.firstSeen = now;
+                aggregate.pending++;
+                aggregate.lastSeen = now;
+                aggregate.data = data;
+            }
+        }
+        if (sendNow) {
+            send(type, data, 1, now, now);
+        }
+        ensureFlushTask();
+        return sendNow;
+    }
+
+    /**
+     * Sends every pending digest now, regardless of the window (e.g. before the session ends).
+     */
+    public void flush() {
+        flush(true);
+    }
+
+    /**
+     * @return Number of (type, subject) keys currently tracked.
+     */
+    public int getTrackedCount() {
+        return aggregates.size();
+    }
+
+    private void flush(boolean force) {
+        long now = System.currentTimeMillis();
+        boolean connected = isConnected();
+        Iterator<Aggregate> it = aggregates.values().iterator();
+        while (it.hasNext()) {
+            Aggregate aggregate = it.next();
+            int count;
+            long firstSeen;
+            long lastSeen;
+            Map<String, Object> data;
+            synchronized (aggregate) {
+                if (!force && now - aggregate.windowStart < windowMillis) continue;
+                if (aggregate.pending == 0) {
+                    // A full window without repeats: forget the key
+                    aggregate.removed = true;
+                    it.remove();
+                    continue;
+                }
+                if (!connected) continue; // Keep counting until we can send
+                count = aggregate.pending;
+                firstSeen = aggregate.firstSeen;
+                lastSeen = aggregate.lastSeen;
+                data = aggregate.data;
+                aggregate.pending = 0;
+                aggregate.windowStart = now;
+            }
+            send(aggregate.type, data, count, firstSeen, lastSeen);
+        }
+    }
+
+    private synchronized void ensureFlushTask() {
+        if (flushTask != null) return;
+        long period = Math.max(MIN_FLUSH_PERIOD_MS, windowMillis / 4);
+        flushTask = scheduler.register("violation-digest", this::flushAndMaybeStop, period, 0.1);
+    }
+
+    private boolean flushAndMaybeStop() {
+        flush(false);
+        synchronized (this) {
+            if (aggregates.isEmpty() && flushTask != null) {
+                flushTask.cancel();
+                flushTask = null;
+            }
+        }
+        return false; // Flushing is housekeeping, never a violation
+    }
+
+    private boolean isConnected() {
+        return webSocketService != null && webSocketService.isAuthenticated();
+    }
+
+    private void send(String type, Map<String, Object> data, int count, long firstSeen, long lastSeen) {
+        Map<String, Object> digest = new HashMap<>();
+        if (data != null) digest.putAll(data);
+        digest.put("count", count);
+        digest.put("first_seen", Instant.ofEpochMilli(firstSeen).toString());
+        digest.put("last_seen", Instant.ofEpochMilli(lastSeen).toString());
+
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", type);
+        payload.put("data", digest);
+        webSocketService.sendMessage("student_update", payload);
+    }
+
+    /**
+     * Counters for one (type, subject) key. Guarded by its own monitor.
+     */
+    private static final class Aggregate {
+        final String type;
+        long windowStart;
+        int pending;
+        long firstSeen;
+        long lastSeen;
+        Map<String, Object> data;
+        boolean removed;
+
+        Aggregate(String type) {
+            this.type = type;
+        }
+    }
+}
@@ -1,33 +1,111 @@
 package com.cmms.service;
 
+import com.cmms.dto.MessagePayloads;
 import com.cmms.dto.WebSocketMessage;
 import com.google.gson.Gson;
-import com.google.gson.JsonSyntaxException;
+import com.google.gson.JsonParseException;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
 import org.java_websocket.handshake.ServerHandshake;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Service for managing WebSocket communication with the backend.
+ * Outgoing messages go through an {@link OutboundPipeline}: {@link #sendMessage} uses its critical lane and
+ * {@link #sendTelemetry} its batched telemetry lane, so neither ever blocks the caller on the network.
+ * With an {@link OutboxJournal} set, messages passed to {@link #sendMessage} are journaled first and carry a
+ * sequence number; those the server has not acknowledged are sent again, in order, after the next authentication.
+ * <p>
+ * A connection that closes without {@link #disconnect} being called is re-established automatically, after a
+ * delay from a {@link ReconnectBackoff}, and re-authenticated with the same token. The authentication carries the
+ * last settings version received, so the server can send only the settings changes missed meanwhile instead of
+ * the full initial settings. The server ends reconnecting with force_disconnect, session_ending or a close code
+ * from 4000 to 4999.
+ * <p>
+ * {@link #sendRequest} gives each request an id and returns a future completed by the reply carrying that id,
+ * so several requests can be in flight at once and each reply goes straight to its caller.
+ * <p>
+ * Messages travel as JSON text frames. Each connection offers permessage-deflate, which compresses frames of
+ * {@value #DEFLATE_THRESHOLD_BYTES} bytes or more if the server accepts it.
+ * <p>
+ * The connection's read thread only decodes messages and keeps this service's own state (authentication, acks,
+ * settings version). Everything else happens on the {@link MessageDispatcher}'s thread, in arrival order: the
+ * handlers registered with {@link #getDispatcher}, the {@link WebSocketListener} callbacks and the completion of
+ * request futures. So a slow handler delays other handlers, never the reading of frames.
  */
 public class WebSocketService {
 
     private final String wsUrl;
-    private SimpleWebSocketClient client;
+    private volatile SimpleWebSocketClient client;
     private final Gson gson;
-    private final List<WebSocketListener> listeners = new ArrayList<>();
-    private String authToken = null;
-    private boolean isAuthenticated = false;
+    private final MessageCodec codec = new MessageCodec();
+    private final OutboundPipeline outbound = new OutboundPipeline(new ClientSink());
+
+    private static final int REPLAY_CHUNK = 256;
+    private static final long REPLAY_QUEUE_TIMEOUT_MS = 5_000;
+    private final Object journalLock = new Object();
+    private OutboxJournal journal; // Guarded by journalLock
+    private boolean replaying;     // Guarded by journalLock; a replay thread is running
+    private boolean caughtUp;      // Guarded by journalLock; every entry has been handed to the connection, so new
+                                   // ones may be sent directly. Until then they wait in the journal for a replay
+    private final List<WebSocketListener> listeners = new CopyOnWriteArrayList<>(); // Safe to change while notifying
+    private final MessageDispatcher dispatcher;
+    private volatile String authToken = null;
+    private volatile boolean isAuthenticated = false;
+
+    private static final long STABLE_CONNECTION_MS = 10_000; // Authenticated this long, the backoff starts over
+    private final ReconnectBackoff backoff;
+    private final ScheduledExecutorService reconnectTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cmms-ws-reconnect");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private final Object reconnectLock = new Object();
+    private ScheduledFuture<?> pendingReconnect; // Guarded by reconnectLock
+    private volatile boolean reconnectEnabled;   // From connectAndAuthenticate until disconnect or a final close
+    private volatile long authenticatedAtNanos;
+    private volatile long settingsVersion = -1;  // Of the last settings message received, with its epoch
+    private volatile String settingsEpoch;
+
+    public static final long DEFAULT_REQUEST_TIMEOUT_MS = 10_000;
+    private final Map<String, PendingRequest> pendingRequests = new ConcurrentHashMap<>();
+    private final AtomicLong nextRequestId = new AtomicLong();
+    private final AtomicLong requestsTimedOut = new AtomicLong();
+    private final AtomicLong requestsCancelled = new AtomicLong();
+    private final LatencyHistogram requestLatency = new LatencyHistogram();
+
+    static final int DEFLATE_THRESHOLD_BYTES = 1024; // Smaller frames are not worth the CPU; the backend's is the same
 
     public WebSocketService(String wsUrl) {
+        this(wsUrl, new ReconnectBackoff());
+    }
+
+    WebSocketService(String wsUrl, ReconnectBackoff backoff) {
+        this(wsUrl, backoff, new MessageDispatcher());
+    }
+
+    WebSocketService(String wsUrl, ReconnectBackoff backoff, MessageDispatcher dispatcher) {
         this.wsUrl = wsUrl;
         this.gson = new Gson();
+        this.backoff = backoff;
+        this.dispatcher = dispatcher;
+        dispatcher.onAny(MessageDispatcher.Affinity.IO, this::notifyListeners);
     }
 
     // --- Public Methods ---
@@ -40,6 +118,20 @@ public class WebSocketService {
         listeners.remove(listener);
     }
 
+    /**
+     * @return Where to register handlers for incoming message types.
+     */
+    public MessageDispatcher getDispatcher() {
+        return dispatcher;
+    }
+
+    /**
+     * @return Counters of the message dispatcher: messages routed, queue depth and handler errors.
+     */
+    public String getDispatchStats() {
+        return dispatcher.toString();
+    }
+
     public boolean isConnected() {
         return client != null && client.isOpen();
     }
@@ -48,6 +140,30 @@ public class WebSocketService {
         return isAuthenticated;
     }
 
+    /**
+     * @return true while the connection is down (or not yet authenticated) and will be re-established
+     *         automatically.
+     */
+    public boolean isReconnecting() {
+        return reconnectEnabled && !isAuthenticated;
+    }
+
+    /**
+     * @return The encoding of the current connection, "json+permessage-deflate" or "json"; null if
+     *         not connected.
+     */
+    public String getWireFormat() {
+        SimpleWebSocketClient current = client;
+        return current != null && current.isOpen() ? current.wireFormat() : null;
+    }
+
+    /**
+     * @return The version of the last settings message received from the server, or -1 if none carried one.
+     */
+    public long getSettingsVersion() {
+        return settingsVersion;
+    }
+
     /**
      * Connects to the WebSocket server and attempts authentication.
      * @param token The JWT token obtained from the API service.
@@ -65,71 +181,282 @@ public class WebSocketService {
             return;
         }
 
+        if (token == null || !token.equals(this.authToken)) {
+            settingsVersion = -1; // Versions belong to the session the old token was for
+            settingsEpoch = null;
+        }
         this.authToken = token;
         this.isAuthenticated = false;
-
-        try {
-            URI serverUri = new URI(wsUrl);
-            client = new SimpleWebSocketClient(serverUri);
-            System.out.println("Attempting WebSocket connection to: " + wsUrl);
-            client.connect(); // Connects asynchronously
-        } catch (URISyntaxException e) {
-            System.err.println("Invalid WebSocket URL: " + wsUrl);
-            notifyError("Invalid WebSocket URL", e);
-        }
+        reconnectEnabled = true;
+        openClient();
     }
 
+    /**
+     * Closes the connection for good: no reconnect follows.
+     */
     public void disconnect() {
+        reconnectEnabled = false;
+        synchronized (reconnectLock) {
+            if (pendingReconnect != null) {
+                pendingReconnect.cancel(false);
+                pendingReconnect = null;
+            }
+        }
         if (client != null) {
             isAuthenticated = false;
             authToken = null;
+            settingsVersion = -1;
+            settingsEpoch = null;
             client.close();
             // onClose event will notify listeners
         }
     }
 
     /**
-     * Sends a message over the WebSocket.
+     * Keeps messages passed to {@link #sendMessage} in the given journal until the server acknowledges them, so
+     * they survive disconnects. Pass null to stop journaling; the caller closes the journal.
+     */
+    public void setOutboxJournal(OutboxJournal journal) {
+        synchronized (journalLock) {
+            this.journal = journal;
+            caughtUp = false;
+        }
+        if (journal != null && isAuthenticated()) startReplay();
+    }
+
+    /**
+     * Sends a message over the WebSocket on the critical lane: as soon as possible, in order.
+     * With a journal set, a message that cannot be sent now is kept and sent after the next authentication.
      * @param type The message type.
      * @param payload The message payload map.
      */
     public void sendMessage(String type, Map<String, Object> payload) {
-        if (!isConnected()) {
-            System.err.println("Cannot send message: WebSocket not connected.");
-            return;
+        String json = gson.toJson(new WebSocketMessage(type, payload));
+        long sequence;
+        synchronized (journalLock) {
+            sequence = journal != null ? journal.append(json) : -1;
+            if (sequence > 0) {
+                if (!isConnected() || !isAuthenticated()) return; // The replay after authenticating sends it
+                // A direct send while older entries are unsent would be acknowledged past them
+                if (caughtUp && outbound.sendCritical(sequenced(journal, sequence, json))) return;
+                caughtUp = false;
+            }
         }
-        if (!isAuthenticated()) {
-            System.err.println("Cannot send message: WebSocket not authenticated.");
-            // Optionally queue message until authenticated?
+        if (sequence > 0) {
+            startReplay(); // Sends the message after the older ones; does nothing if a replay is running
             return;
         }
+        if (!canSend("message")) return;
+        if (!outbound.sendCritical(json)) {
+            System.err.println("Outbound queue full, dropped message: " + type);
+        }
+    }
+
+    /**
+     * Sends a message on the telemetry lane: batched with other telemetry into fewer frames, delayed by up to
+     * a fraction of a second, and dropped (oldest first) if the connection cannot keep up.
+     * Use for periodic reports and statistics, not for anything the teacher must see.
+     * @param type The message type.
+     * @param payload The message payload map.
+     */
+    public void sendTelemetry(String type, Map<String, Object> payload) {
+        if (!canSend("telemetry")) return;
+        outbound.sendTelemetry(gson.toJson(new WebSocketMessage(type, payload)));
+    }
 
-        WebSocketMessage message = new WebSocketMessage(type, payload);
-        String jsonMessage = gson.toJson(message);
-        System.out.println("Sending WebSocket message: " + jsonMessage);
-        client.send(jsonMessage);
+    /**
+     * @return Counters of the outbound pipeline: messages and frames sent, and messages dropped.
+     */
+    public String getOutboundStats() {
+        return outbound.toString();
     }
     
-     /**
-     * Sends a request message over the WebSocket and expects a response.
-     * (Simple version - doesn't track request/response matching here)
+    /**
+     * Sends a request on the critical lane and returns the reply the server sends for it, matched by request id.
+     * The reply is passed to the future only, not to the listeners. It completes on the dispatcher's thread, so
+     * dependent actions should be quick, and UI work in them belongs on the FX thread.
      * @param type The message type.
      * @param payload The message payload map.
-     * @param requestId A unique ID for this request.
+     * @return Completes with the reply (including replies with status "error"), or exceptionally with a
+     *         {@link TimeoutException} after {@link #DEFAULT_REQUEST_TIMEOUT_MS}, a CancellationException if the
+     *         connection closes first, or an IllegalStateException if the request could not be sent.
      */
-    public void sendRequest(String type, Map<String, Object> payload, String requestId) {
-         if (!isConnected() || !isAuthenticated()) {
-            System.err.println("Cannot send request: WebSocket not connected or authenticated.");
-            return;
+    public CompletableFuture<WebSocketMessage> sendRequest(String type, Map<String, Object> payload) {
+        return sendRequest(type, payload, DEFAULT_REQUEST_TIMEOUT_MS);
+    }
+
+    /**
+     * As {@link #sendRequest(String, Map)}, with the given timeout.
+     */
+    public CompletableFuture<WebSocketMessage> sendRequest(String type, Map<String, Object> payload, long timeoutMillis) {
+        if (!canSend("request")) {
+            return CompletableFuture.failedFuture(new IllegalStateException("WebSocket not connected and authenticated"));
         }
-        WebSocketMessage message = new WebSocketMessage(type, payload, requestId);
-        String jsonMessage = gson.toJson(message);
-        System.out.println("Sending WebSocket request: " + jsonMessage);
-        client.send(jsonMessage);
+        String requestId = "r" + nextRequestId.incrementAndGet();
+        PendingRequest pending = new PendingRequest(System.nanoTime());
+        pendingRequests.put(requestId, pending);
+        pending.future.orTimeout(timeoutMillis, TimeUnit.MILLISECONDS).whenComplete((reply, error) -> {
+            pendingRequests.remove(requestId);
+            if (reply != null) {
+                requestLatency.record(System.nanoTime() - pending.sentNanos);
+            } else if (error instanceof TimeoutException) {
+                requestsTimedOut.incrementAndGet();
+            }
+        });
+        if (!outbound.sendCritical(gson.toJson(new WebSocketMessage(type, payload, requestId)))) {
+            System.err.println("Outbound queue full, dropped request: " + type);
+            pending.future.completeExceptionally(new IllegalStateException("Outbound queue full"));
+        }
+        return pending.future;
+    }
+
+    /**
+     * @return Round-trip times of requests answered so far.
+     */
+    public LatencyHistogram getRequestLatency() {
+        return requestLatency;
+    }
+
+    /**
+     * @return Requests in flight, and counters of requests that timed out or were cancelled by a close.
+     */
+    public String getRequestStats() {
+        return "pending=" + pendingRequests.size() + ", timedOut=" + requestsTimedOut + ", cancelled=" + requestsCancelled
+                + ", latency: " + requestLatency;
     }
 
     // --- Private Helper Methods ---
 
+    private void openClient() {
+        try {
+            URI serverUri = new URI(wsUrl);
+            client = new SimpleWebSocketClient(serverUri, newDraft());
+            System.out.println("Attempting WebSocket connection to: " + wsUrl);
+            client.connect(); // Connects asynchronously
+        } catch (URISyntaxException e) {
+            reconnectEnabled = false;
+            System.err.println("Invalid WebSocket URL: " + wsUrl);
+            notifyError("Invalid WebSocket URL", e);
+        }
+    }
+
+    // A draft is used by one connection only, so every connection gets a new one
+    private static Draft newDraft() {
+        PerMessageDeflateExtension deflate = new PerMessageDeflateExtension();
+        deflate.setThreshold(DEFLATE_THRESHOLD_BYTES);
+        return new Draft_6455(deflate);
+    }
+
+    private void scheduleReconnect() {
+        long delay;
+        int attempt;
+        synchronized (reconnectLock) {
+            if (!reconnectEnabled || pendingReconnect != null) return;
+            delay = backoff.nextDelayMillis();
+            attempt = backoff.getAttempt();
+            pendingReconnect = reconnectTimer.schedule(this::reconnect, delay, TimeUnit.MILLISECONDS);
+        }
+        System.out.println("WebSocket reconnect attempt " + attempt + " in " + delay + " ms");
+        dispatcher.execute(() -> {
+            for (WebSocketListener listener : listeners) {
+                try {
+                    listener.onWebSocketReconnecting(attempt, delay);
+                } catch (Exception e) {
+                    System.err.println("Error in WebSocket listener (onReconnecting): " + e.getMessage());
+                }
+            }
+        });
+    }
+
+    private void reconnect() {
+        synchronized (reconnectLock) {
+            pendingReconnect = null;
+            if (!reconnectEnabled) return;
+        }
+        if (!isConnected()) openClient();
+    }
+
+    // Prefixes the journal's sequence number and id, which the server acknowledges and de-duplicates on
+    private static String sequenced(OutboxJournal journal, long sequence, String json) {
+        return "{\"seq\":" + sequence + ",\"journal\":\"" + Long.toHexString(journal.getJournalId()) + "\","
+                + json.substring(1);
+    }
+
+    private void startReplay() {
+        OutboxJournal current;
+        synchronized (journalLock) {
+            if (journal == null || replaying) return;
+            replaying = true;
+            current = journal;
+        }
+        Thread thread = new Thread(() -> replay(current), "cmms-outbox-replay");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Sends every unacknowledged journal entry in order, including entries appended meanwhile, then hands
+     * sending back to {@link #sendMessage}, in the same locked step that finds nothing left, so no entry is
+     * appended in between and left unsent. If it stops early (the connection went away or the lane stayed full),
+     * new entries keep waiting in the journal and the next replay starts over from the last acknowledgement.
+     */
+    private void replay(OutboxJournal current) {
+        long after = current.getAcknowledged();
+        long sent = 0;
+        boolean handedBack = false;
+        boolean journalChanged = false;
+        try {
+            while (isAuthenticated()) {
+                List<OutboxJournal.Entry> entries = current.readAfter(after, REPLAY_CHUNK);
+                if (entries.isEmpty()) {
+                    synchronized (journalLock) {
+                        if (journal != current) {
+                            journalChanged = true;
+                            break;
+                        }
+                        if (current.getLastSequence() <= after) {
+                            caughtUp = true;
+                            replaying = false;
+                            handedBack = true;
+                            break;
+                        }
+                    }
+                    continue;
+                }
+                for (OutboxJournal.Entry entry : entries) {
+                    if (!outbound.sendCritical(sequenced(current, entry.sequence, entry.message), REPLAY_QUEUE_TIMEOUT_MS)) {
+                        System.err.println("Outbox replay stalled; resuming with the next message or authentication.");
+                        return;
+                    }
+                    after = entry.sequence;
+                    sent++;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (!handedBack) {
+                synchronized (journalLock) {
+                    replaying = false;
+                }
+            }
+            if (sent > 0) System.out.println("Outbox replay sent " + sent + " journaled message(s).");
+        }
+        if (journalChanged && isAuthenticated()) startReplay(); // The new journal's entries
+    }
+
+    private boolean canSend(String what) {
+        if (!isConnected()) {
+            System.err.println("Cannot send " + what + ": WebSocket not connected.");
+            return false;
+        }
+        if (!isAuthenticated()) {
+            System.err.println("Cannot send " + what + ": WebSocket not authenticated.");
+            return false;
+        }
+        return true;
+    }
+
     private void authenticate() {
         if (authToken == null) {
             System.err.println("Cannot authenticate: Auth token is missing.");
@@ -142,20 +469,26 @@ public class WebSocketService {
 
         Map<String, Object> payload = new HashMap<>();
         payload.put("token", authToken);
+        if (settingsEpoch != null) {
+            // Lets the server send just the settings changes missed since then
+            payload.put("settingsVersion", settingsVersion);
+            payload.put("settingsEpoch", settingsEpoch);
+        }
         WebSocketMessage authMessage = new WebSocketMessage("authenticate", payload);
-        String jsonMessage = gson.toJson(authMessage);
         System.out.println("Sending authentication message...");
-        client.send(jsonMessage);
+        outbound.sendCritical(gson.toJson(authMessage));
     }
 
     private void notifyConnect() {
-        for (WebSocketListener listener : listeners) {
-            try {
-                listener.onWebSocketOpen();
-            } catch (Exception e) {
-                System.err.println("Error in WebSocket listener (onOpen): " + e.getMessage());
+        dispatcher.execute(() -> {
+            for (WebSocketListener listener : listeners) {
+                try {
+                    listener.onWebSocketOpen();
+                } catch (Exception e) {
+                    System.err.println("Error in WebSocket listener (onOpen): " + e.getMessage());
+                }
             }
-        }
+        });
     }
 
     private void notifyMessage(WebSocketMessage message) {
@@ -164,13 +497,23 @@ public class WebSocketService {
              String responseMessage = String.valueOf(message.getPayload().get("message"));
              if (responseMessage.toLowerCase().contains("authentication successful")) {
                  System.out.println("WebSocket authentication successful!");
+                 authenticatedAtNanos = System.nanoTime();
+                 synchronized (journalLock) {
+                     caughtUp = false; // Entries sent on the last connection may not have arrived
+                 }
                  isAuthenticated = true;
-                 // Optionally notify authenticated? 
-                 // Currently handled by generic onMessage
+                 startReplay(); // Deliver whatever was journaled while disconnected
              }
         }
-        
-        // Notify generic message
+        if ("force_disconnect".equals(message.getType()) || "session_ending".equals(message.getType())) {
+            reconnectEnabled = false; // The server is about to close this connection on purpose
+        }
+        recordSettingsVersion(message);
+        dispatcher.dispatch(message); // Handlers and listeners run off the read thread
+    }
+
+    // Registered with the dispatcher for every message, so listeners and handlers see messages in the same order
+    private void notifyListeners(WebSocketMessage message) {
         for (WebSocketListener listener : listeners) {
             try {
                 listener.onWebSocketMessage(message);
@@ -180,39 +523,113 @@ public class WebSocketService {
         }
     }
 
+    // Settings messages (initial_settings, settings_update, app_added, app_removed) carry a version and epoch
+    private void recordSettingsVersion(WebSocketMessage message) {
+        MessagePayloads.Settings settings = message.getBody(MessagePayloads.Settings.class);
+        MessagePayloads.AppChange change = message.getBody(MessagePayloads.AppChange.class);
+        if (settings != null || change != null) {
+            long version = settings != null ? settings.settingsVersion() : change.settingsVersion();
+            String epoch = settings != null ? settings.settingsEpoch() : change.settingsEpoch();
+            if (version >= 0 && epoch != null) {
+                settingsVersion = version;
+                settingsEpoch = epoch;
+            }
+            return;
+        }
+        if (!"settings_resumed".equals(message.getType())) return;
+        Map<String, Object> payload = message.getPayload();
+        if (payload == null) return;
+        Object version = payload.get("settingsVersion");
+        Object epoch = payload.get("settingsEpoch");
+        if (version instanceof Number && epoch instanceof String) {
+            settingsVersion = ((Number) version).longValue();
+            settingsEpoch = (String) epoch;
+        }
+    }
+
+    // The server confirms journaled messages up to payload.seq; see setOutboxJournal
+    private void handleAck(WebSocketMessage ack) {
+        Object sequence = ack.getPayload() != null ? ack.getPayload().get("seq") : null;
+        Object journalId = ack.getPayload() != null ? ack.getPayload().get("journal") : null;
+        synchronized (journalLock) {
+            if (journal == null || !(sequence instanceof Number)) return;
+            if (journalId != null && !Long.toHexString(journal.getJournalId()).equals(journalId)) return;
+            journal.acknowledge(((Number) sequence).longValue());
+        }
+    }
+
+    // A reply to sendRequest completes its future; anything else goes to the listeners
+    private boolean completeRequest(WebSocketMessage message) {
+        if (message.getRequestId() == null) return false;
+        PendingRequest pending = pendingRequests.get(message.getRequestId());
+        if (pending == null) return false; // Late (after a timeout) or not ours
+        dispatcher.execute(() -> pending.future.complete(message)); // Dependent actions stay off the read thread
+        return true;
+    }
+
+    // Batches (see OutboundPipeline) carry complete messages in payload.messages, decoded along with the batch
+    private void notifyBatch(WebSocketMessage batch) {
+        MessagePayloads.Batch body = batch.getBody(MessagePayloads.Batch.class);
+        if (body == null) {
+            System.err.println("Received batch message without messages.");
+            return;
+        }
+        for (WebSocketMessage message : body.messages()) {
+            if (message.getType() != null) notifyMessage(message);
+        }
+    }
+
     private void notifyClose(int code, String reason) {
+        boolean stable = isAuthenticated
+                && System.nanoTime() - authenticatedAtNanos >= TimeUnit.MILLISECONDS.toNanos(STABLE_CONNECTION_MS);
         isAuthenticated = false; // Ensure authenticated is false on close
-        for (WebSocketListener listener : listeners) {
-            try {
-                listener.onWebSocketClose(code, reason);
-            } catch (Exception e) {
-                System.err.println("Error in WebSocket listener (onClose): " + e.getMessage());
+        outbound.discardPending();
+        List<PendingRequest> unanswered = List.copyOf(pendingRequests.values());
+        dispatcher.execute(() -> { // After any replies already queued, which complete theirs first
+            for (PendingRequest pending : unanswered) {
+                if (pending.future.cancel(false)) requestsCancelled.incrementAndGet(); // Replies cannot arrive any more
             }
+        });
+        if (code >= 4000 && code < 5000) reconnectEnabled = false; // Refused for good, e.g. the session ended
+        dispatcher.execute(() -> {
+            for (WebSocketListener listener : listeners) {
+                try {
+                    listener.onWebSocketClose(code, reason);
+                } catch (Exception e) {
+                    System.err.println("Error in WebSocket listener (onClose): " + e.getMessage());
+                }
+            }
+        });
+        if (reconnectEnabled) {
+            if (stable) backoff.reset();
+            scheduleReconnect();
         }
     }
 
     private void notifyError(String message, Exception ex) {
         System.err.println("WebSocket Error: " + message + (ex != null ? " - " + ex.getMessage() : ""));
-        for (WebSocketListener listener : listeners) {
-            try {
-                listener.onWebSocketError(message, ex);
-            } catch (Exception e) {
-                System.err.println("Error in WebSocket listener (onError): " + e.getMessage());
+        dispatcher.execute(() -> {
+            for (WebSocketListener listener : listeners) {
+                try {
+                    listener.onWebSocketError(message, ex);
+                } catch (Exception e) {
+                    System.err.println("Error in WebSocket listener (onError): " + e.getMessage());
+                }
             }
-        }
+        });
     }
 
     // --- Inner WebSocketClient Implementation ---
 
     private class SimpleWebSocketClient extends WebSocketClient {
-
-        public SimpleWebSocketClient(URI serverUri) {
-            super(serverUri);
+        public SimpleWebSocketClient(URI serverUri, Draft draft) {
+            super(serverUri, draft);
         }
 
         @Override
         public void onOpen(ServerHandshake handshakedata) {
-            System.out.println("WebSocket connection opened (Status: " + handshakedata.getHttpStatus() + ")");
+            System.out.println("WebSocket connection opened (Status: " + handshakedata.getHttpStatus() + ", "
+                    + wireFormat() + ")");
             // Now that connection is open, attempt authentication
             authenticate(); 
             notifyConnect(); // Notify connection open BEFORE auth response
@@ -220,23 +637,39 @@ public class WebSocketService {
 
         @Override
         public void onMessage(String message) {
-            System.out.println("Received WebSocket message: " + message);
             try {
-                WebSocketMessage webSocketMessage = gson.fromJson(message, WebSocketMessage.class);
+                WebSocketMessage webSocketMessage = codec.decode(message);
                 if (webSocketMessage.getType() == null) {
                     System.err.println("Received WebSocket message with null type.");
                     return; // Ignore invalid message format
                 }
+                if ("ack".equals(webSocketMessage.getType())) {
+                    handleAck(webSocketMessage);
+                    return;
+                }
+                if ("batch".equals(webSocketMessage.getType())) {
+                    notifyBatch(webSocketMessage);
+                    return;
+                }
+                if (completeRequest(webSocketMessage)) return;
                 notifyMessage(webSocketMessage);
-            } catch (JsonSyntaxException e) {
+            } catch (JsonParseException e) {
                 System.err.println("Failed to parse WebSocket message: " + e.getMessage());
                  notifyError("Failed to parse message: " + message.substring(0, Math.min(message.length(), 100)), e);
             }
         }
 
+        String wireFormat() {
+            Draft negotiated = getConnection().getDraft(); // The draft passed in stays unnegotiated
+            boolean deflate = negotiated instanceof Draft_6455
+                    && ((Draft_6455) negotiated).getExtension() instanceof PerMessageDeflateExtension;
+            return deflate ? "json+permessage-deflate" : "json";
+        }
+
         @Override
         public void onClose(int code, String reason, boolean remote) {
             System.out.println("WebSocket connection closed. Code: " + code + ", Reason: " + reason + ", Remote: " + remote);
+            if (this != client) return; // A connection already replaced by a newer one
             notifyClose(code, reason);
         }
 
@@ -247,12 +680,54 @@ public class WebSocketService {
         }
     }
 
+    private static final class PendingRequest {
+        final long sentNanos;
+        final CompletableFuture<WebSocketMessage> future = new CompletableFuture<>();
+
+        PendingRequest(long sentNanos) {
+            this.sentNanos = sentNanos;
+        }
+    }
+
+    private class ClientSink implements OutboundPipeline.FrameSink {
+        @Override
+        public boolean isOpen() {
+            return isConnected();
+        }
+
+        @Override
+        public boolean isBackedUp() {
+            SimpleWebSocketClient current = client;
+            return current != null && current.hasBufferedData();
+        }
+
+        @Override
+        public void send(String frame) {
+            client.send(frame);
+        }
+    }
+
     // --- Listener Interface ---
 
+    /**
+     * Connection events, and every incoming message, called on the dispatcher's thread in order. Prefer handlers
+     * registered with {@link #getDispatcher} for messages.
+     */
     public interface WebSocketListener {
         void onWebSocketOpen();
-        void onWebSocketMessage(WebSocketMessage message);
+
+        default void onWebSocketMessage(WebSocketMessage message) {
+        }
+
         void onWebSocketClose(int code, String reason);
         void onWebSocketError(String message, Exception ex);
+
+        /**
+         * Called after a close when the next connection attempt is scheduled.
+         * @param attempt Attempts since the connection was last stable, starting at 1.
+         * @param delayMillis Time until the attempt.
+         */
+        default void onWebSocketReconnecting(int attempt, long delayMillis) {
+        }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,206 @@
+package com.cmms.service;
+
+import com.cmms.dto.MessagePayloads;
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonParser;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Manual check and benchmark for the permessage-deflate negotiation of {@link WebSocketService}, against
+ * {@link WireFormatTestServer}.
+ * <p>
+ * Checks that the service ends up on deflate when the server accepts it and on plain JSON otherwise, and that
+ * requests, replies and large settings pushes get through either way (exits with status 1 on a mismatch). Then
+ * reports, for typical messages, the bytes on the wire (frame header included) with and without deflate, and the
+ * CPU time per message to produce each frame from JSON text and read it back, deflating and inflating included in
+ * the deflate column.
+ * Run with: java com.cmms.service.WireFormatBenchmark
+ */
+public class WireFormatBenchmark {
+
+    private static final Gson GSON = new Gson();
+    private static final int ITERATIONS = 2_000;
+
+    public static void main(String[] args) throws Exception {
+        PrintStream out = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream())); // The service logs every connection and reconnect attempt
+        boolean ok = verifyNegotiation();
+        if (!ok) {
+            System.err.println("Wire format verification FAILED");
+            System.exit(1);
+        }
+        out.println("Negotiation with and without deflate OK");
+        report(out);
+    }
+
+    private static boolean verifyNegotiation() throws Exception {
+        return negotiate(true, "json+permessage-deflate") & negotiate(false, "json");
+    }
+
+    private static boolean negotiate(boolean serverDeflate, String expected) throws Exception {
+        String setup = "server deflate " + serverDeflate;
+        WireFormatTestServer server = new WireFormatTestServer(new InetSocketAddress("127.0.0.1", 0), serverDeflate);
+        server.start();
+        server.awaitStart();
+        WebSocketService service = new WebSocketService("ws://127.0.0.1:" + server.getPort());
+        AtomicReference<MessagePayloads.Settings> pushed = new AtomicReference<>();
+        service.addListener(new WebSocketService.WebSocketListener() {
+            @Override
+            public void onWebSocketOpen() {
+            }
+
+            @Override
+            public void onWebSocketMessage(WebSocketMessage message) {
+                if (message.getBody(MessagePayloads.Settings.class) != null) pushed.set(message.getBody(MessagePayloads.Settings.class));
+            }
+
+            @Override
+            public void onWebSocketClose(int code, String reason) {
+            }
+
+            @Override
+            public void onWebSocketError(String message, Exception ex) {
+            }
+        });
+        boolean ok = true;
+        try {
+            service.connectAndAuthenticate("token");
+            long deadline = System.currentTimeMillis() + 5000;
+            while (!service.isAuthenticated() && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            if (!service.isAuthenticated()) return fail(setup + ": did not authenticate");
+            if (!expected.equals(service.getWireFormat())) ok = fail(setup + ": negotiated " + service.getWireFormat());
+
+            Map<String, Object> payload = WireFormatTestServer.settingsPayload(2000); // Large enough to be deflated
+            WebSocketMessage reply = service.sendRequest("echo", payload).get(5, TimeUnit.SECONDS);
+            if (!JsonParser.parseString(GSON.toJson(payload)).equals(JsonParser.parseString(GSON.toJson(reply.getPayload())))) {
+                ok = fail(setup + ": echo came back different");
+            }
+            service.sendMessage("push_settings", Map.of("sites", 2000));
+            deadline = System.currentTimeMillis() + 5000;
+            while (pushed.get() == null && System.currentTimeMillis() < deadline) Thread.sleep(5);
+            if (pushed.get() == null || pushed.get().websiteBlacklist().size() != 2000) ok = fail(setup + ": settings push lost");
+        } finally {
+            service.disconnect();
+            server.stop(1000);
+        }
+        return ok;
+    }
+
+    private static void report(PrintStream out) {
+        MessageCodec codec = new MessageCodec();
+        Map<String, String> corpus = new LinkedHashMap<>();
+        corpus.put("website_visit telemetry", visitFrame(0));
+        StringBuilder batch = new StringBuilder("{\"type\":\"batch\",\"payload\":{\"messages\":[");
+        for (int i = 0; i < 20; i++) batch.append(i > 0 ? "," : "").append(visitFrame(i));
+        corpus.put("batch of 20 visits", batch.append("]}}").toString());
+        corpus.put("initial_student_list, 500", studentListFrame(500));
+        corpus.put("settings_update, 2,000 sites", GSON.toJson(new WebSocketMessage("settings_update", WireFormatTestServer.settingsPayload(2000))));
+
+        out.println("Bytes on the wire per message (frame header included; deflate only above "
+                + WebSocketService.DEFLATE_THRESHOLD_BYTES + " bytes, each message on its own):");
+        out.printf("  %-30s %10s %14s%n", "", "JSON", "JSON+deflate");
+        for (Map.Entry<String, String> entry : corpus.entrySet()) {
+            byte[] json = entry.getValue().getBytes(StandardCharsets.UTF_8);
+            out.printf("  %-30s %,10d %,14d%n", entry.getKey(), wireBytes(json.length), wireBytes(deflated(json).length));
+        }
+
+        out.println("CPU per message, producing the frame from JSON text and reading it back into a WebSocketMessage:");
+        out.printf("  %-30s %12s %14s%n", "", "JSON", "JSON+deflate");
+        for (Map.Entry<String, String> entry : corpus.entrySet()) {
+            String json = entry.getValue();
+            double jsonNanos = nanosPerOp(json, text -> codec.decode(new String(text.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8)));
+            double jsonDeflateNanos = nanosPerOp(json, text -> {
+                byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+                return codec.decode(new String(inflated(deflated(bytes), bytes.length), StandardCharsets.UTF_8));
+            });
+            out.printf("  %-30s %9.1f µs %11.1f µs%n", entry.getKey(), jsonNanos / 1e3, jsonDeflateNanos / 1e3);
+        }
+    }
+
+    private static <T> double nanosPerOp(T input, Function<T, ?> operation) {
+        for (int i = 0; i < ITERATIONS; i++) operation.apply(input); // Warm up
+        long start = System.nanoTime();
+        for (int i = 0; i < ITERATIONS; i++) operation.apply(input);
+        return (double) (System.nanoTime() - start) / ITERATIONS;
+    }
+
+    // Server to client frames, which are not masked
+    private static int wireBytes(int payloadBytes) {
+        return payloadBytes + (payloadBytes <= 125 ? 2 : payloadBytes <= 0xffff ? 4 : 10);
+    }
+
+    // As permessage-deflate sends a message: raw deflate, flushed, without the final empty block's 4 bytes
+    private static byte[] deflated(byte[] message) {
+        if (message.length <= WebSocketService.DEFLATE_THRESHOLD_BYTES) return message;
+        Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+        deflater.setInput(message);
+        byte[] buffer = new byte[message.length + 64];
+        int length = deflater.deflate(buffer, 0, buffer.length, Deflater.SYNC_FLUSH);
+        deflater.end();
+        return Arrays.copyOf(buffer, length - 4);
+    }
+
+    private static byte[] inflated(byte[] compressed, int length) {
+        if (compressed.length == length) return compressed; // Below the threshold, sent as is
+        Inflater inflater = new Inflater(true);
+        byte[] withTail = Arrays.copyOf(compressed, compressed.length + 4);
+        withTail[compressed.length + 2] = (byte) 0xff;
+        withTail[compressed.length + 3] = (byte) 0xff;
+        inflater.setInput(withTail);
+        byte[] result = new byte[length];
+        try {
+            inflater.inflate(result);
+        } catch (DataFormatException e) {
+            throw new IllegalStateException(e);
+        } finally {
+            inflater.end();
+        }
+        return result;
+    }
+
+    private static String visitFrame(int i) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("domain", "www.site" + i + ".example.com");
+        data.put("url", "https://www.site" + i + ".example.com/articles/" + (1000 + i));
+        data.put("timestamp", 1760000000000L + i * 1337L);
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("studentId", "student-17");
+        payload.put("updateType", "website_visit");
+        payload.put("data", data);
+        return GSON.toJson(new WebSocketMessage("student_data", payload));
+    }
+
+    private static String studentListFrame(int students) {
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (int i = 0; i < students; i++) {
+            Map<String, Object> student = new LinkedHashMap<>();
+            student.put("studentId", "student-" + i);
+            student.put("studentName", "Student Number " + i);
+            student.put("rollNo", String.valueOf(1000 + i));
+            student.put("class", "Class " + (i % 12 + 1));
+            list.add(student);
+        }
+        return GSON.toJson(new WebSocketMessage("initial_student_list", Map.of("students", list)));
+    }
+
+    private static boolean fail(String message) {
+        System.err.println(message);
+        return false;
+    }
+}
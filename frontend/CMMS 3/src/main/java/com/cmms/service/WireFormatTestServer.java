@@ -0,0 +1,162 @@
+package com.cmms.service;
+
+import com.cmms.dto.WebSocketMessage;
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.java_websocket.WebSocket;
+import org.java_websocket.drafts.Draft;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.IExtension;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
+import org.java_websocket.handshake.ClientHandshake;
+import org.java_websocket.server.WebSocketServer;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Local stand-in for the backend, speaking JSON text frames with or without permessage-deflate as negotiated.
+ * <p>
+ * It authenticates anyone, answers every message carrying a requestId with a "response" echoing its payload, and
+ * answers "push_settings" (payload.sites, payload.count) by pushing count settings_updates (1 by default) with that
+ * many blocked sites, before any response. Journaled messages (seq and journal) are acknowledged and
+ * de-duplicated as the backend does: one with a seq not above the highest handled is skipped, and the ack carries
+ * the highest. It records the seq of every journaled message it handled.
+ * Run with: java com.cmms.service.WireFormatTestServer [port] [--no-deflate]
+ */
+final class WireFormatTestServer extends WebSocketServer {
+
+    private static final Gson GSON = new Gson();
+
+    private final CountDownLatch started = new CountDownLatch(1);
+    private final Map<String, Long> lastJournalSeq = new ConcurrentHashMap<>();
+    private final List<Long> handledSequences = Collections.synchronizedList(new ArrayList<>());
+
+    /**
+     * @param deflate Whether to accept permessage-deflate.
+     */
+    WireFormatTestServer(InetSocketAddress address, boolean deflate) {
+        super(address, List.of(newDraft(deflate)));
+        setReuseAddr(true);
+        setTcpNoDelay(true); // As the backend's ws does
+        // A frame sent from a worker thread while the selector finishes writing another can stay queued until the
+        // next write; each ping is such a write
+        setConnectionLostTimeout(1);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        int port = args.length > 0 && !args[0].startsWith("--") ? Integer.parseInt(args[0]) : 8765;
+        boolean deflate = !List.of(args).contains("--no-deflate");
+        WireFormatTestServer server = new WireFormatTestServer(new InetSocketAddress("127.0.0.1", port), deflate);
+        server.start();
+        server.awaitStart();
+        System.out.println("Listening on ws://127.0.0.1:" + server.getPort() + " (deflate "
+                + (deflate ? "on" : "off") + "); Ctrl+C to stop");
+    }
+
+    private static Draft newDraft(boolean deflate) {
+        List<IExtension> extensions = new ArrayList<>();
+        if (deflate) {
+            PerMessageDeflateExtension extension = new PerMessageDeflateExtension();
+            extension.setThreshold(WebSocketService.DEFLATE_THRESHOLD_BYTES);
+            extensions.add(extension);
+        }
+        return new Draft_6455(extensions);
+    }
+
+    void awaitStart() throws InterruptedException {
+        if (!started.await(5, TimeUnit.SECONDS)) throw new IllegalStateException("Test server did not start");
+    }
+
+    /**
+     * @return The seq of every journaled message handled (not skipped), in arrival order.
+     */
+    List<Long> getHandledSequences() {
+        synchronized (handledSequences) {
+            return new ArrayList<>(handledSequences);
+        }
+    }
+
+    @Override
+    public void onStart() {
+        started.countDown();
+    }
+
+    @Override
+    public void onOpen(WebSocket conn, ClientHandshake handshake) {
+        send(conn, new WebSocketMessage("connection_ack", Map.of("message", "Connected.")));
+    }
+
+    @Override
+    public void onMessage(WebSocket conn, String text) {
+        handle(conn, text);
+    }
+
+    @Override
+    public void onClose(WebSocket conn, int code, String reason, boolean remote) {
+    }
+
+    @Override
+    public void onError(WebSocket conn, Exception ex) {
+        System.err.println("Test server error: " + ex.getMessage());
+    }
+
+    private void handle(WebSocket conn, String json) {
+        JsonObject object = JsonParser.parseString(json).getAsJsonObject();
+        if (object.has("seq") && object.has("journal")) {
+            long seq = object.get("seq").getAsLong();
+            String journal = object.get("journal").getAsString();
+            long lastSeq = lastJournalSeq.getOrDefault(journal, 0L);
+            if (seq > lastSeq) {
+                handledSequences.add(seq);
+                lastJournalSeq.put(journal, seq);
+            }
+            send(conn, new WebSocketMessage("ack", Map.of("seq", Math.max(seq, lastSeq), "journal", journal)));
+            return;
+        }
+        WebSocketMessage request = GSON.fromJson(object, WebSocketMessage.class);
+        if ("authenticate".equals(request.getType())) {
+            WebSocketMessage response = new WebSocketMessage("response", Map.of("message", "Authentication successful."));
+            response.setStatus("success");
+            send(conn, response);
+            return;
+        }
+        if ("push_settings".equals(request.getType())) {
+            Object sites = request.getPayload() != null ? request.getPayload().get("sites") : null;
+            Object count = request.getPayload() != null ? request.getPayload().get("count") : null;
+            for (int i = count instanceof Number ? ((Number) count).intValue() : 1; i > 0; i--) {
+                send(conn, new WebSocketMessage("settings_update", settingsPayload(sites instanceof Number ? ((Number) sites).intValue() : 10)));
+            }
+        }
+        if (request.getRequestId() != null) {
+            WebSocketMessage response = new WebSocketMessage("response", request.getPayload(), request.getRequestId());
+            response.setStatus("success");
+            send(conn, response);
+        }
+    }
+
+    /**
+     * @return A settings_update payload blocking the given number of sites, like the backend sends.
+     */
+    static Map<String, Object> settingsPayload(int sites) {
+        List<String> blacklist = new ArrayList<>(sites);
+        for (int i = 0; i < sites; i++) blacklist.add("blocked-site-" + i + (i % 3 == 0 ? ".example.com" : ".test.org"));
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("websiteBlacklist", blacklist);
+        payload.put("settingsVersion", 42);
+        payload.put("settingsEpoch", "5f2c9e01a4b7d3c8");
+        return payload;
+    }
+
+    private static void send(WebSocket conn, WebSocketMessage message) {
+        if (conn.isOpen()) conn.send(GSON.toJson(message));
+    }
+}
@@ -20,16 +20,16 @@ public class StudentManager {
         notifyAdmin(sessionCode, studentPcId, studentName, className, rollNo);
 
         // Start monitoring blacklisted apps
-//        new Thread(() -> TaskManagement.monitorApps(sessionCode, studentPcId)).start();
+//        TaskManagement.monitorApps(sessionCode, studentPcId);
 
         // Start monitoring USB devices
-        new Thread(() -> DriverManager.startMonitoring(
+        DriverManager.startMonitoring(
                 sessionCode,
                 studentPcId,
                 studentName,
                 className,
                 rollNo
-        )).start();
+        );
         // Block websites
 //        WebsiteBlocker.blockWebsites();
     }
@@ -1,15 +1,12 @@
 package com.cmms.taskManager;
 
+import com.cmms.EnforcementScheduler;
+import com.cmms.service.ViolationReporter;
 import com.cmms.service.WebSocketService;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.*;
-import java.util.concurrent.Executors;
-import java.util.concurrent.ScheduledExecutorService;
-import java.util.concurrent.TimeUnit;
-import java.util.stream.Collectors;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for monitoring and blocking blacklisted applications on Windows.
@@ -17,14 +14,76 @@ import java.util.stream.Collectors;
 public class AppMonitorService {
 
     private final WebSocketService webSocketService;
+    private final ViolationReporter violationReporter;
     private final String studentId;
-    private volatile Set<String> appBlacklist = Collections.synchronizedSet(new HashSet<>());
-    private ScheduledExecutorService executorService;
+    private final BlacklistMatcher appBlacklist = new BlacklistMatcher();
+    private final EnforcementScheduler scheduler;
+    private EnforcementScheduler.TaskHandle scanTask;
     private volatile boolean isRunning = false;
+    private final ProcessSnapshotProvider snapshotProvider;
+
+    // Incremental scanning: only processes not seen on a previous tick are checked,
+    // with a periodic full pass in case a kill did not take effect.
+    // The poll interval stretches from 250 ms to 300 ms while nothing is blocked; full passes stay every 3 s.
+    private static final long MIN_POLL_INTERVAL_MS = 250;
+    private static final long MAX_POLL_INTERVAL_MS = 300;
+    private static final double POLL_JITTER = 0.1;
+    private static final long FULL_SCAN_INTERVAL_NANOS = 3_000_000_000L;
+    private final ProcessTable processTable = new ProcessTable();
+    private final ProcessTerminator terminator = new ProcessTerminator();
+    private final Set<Long> killsInProgress = ConcurrentHashMap.newKeySet(); // Not matched again until confirmed
+
+    // Resource history comes from the monitor's own snapshots; fields the backend can't report are left out
+    private final ResourceSampler resourceSampler = new ResourceSampler();
+    private final List<ProcessInfo> startedSinceLastTick = new ArrayList<>();
+    private volatile boolean fullScanRequested = true;
+    private long lastFullScanNanos;
 
     public AppMonitorService(WebSocketService webSocketService, String studentId) {
+        this(webSocketService, studentId, ProcessSnapshotProvider.getDefault());
+    }
+
+    public AppMonitorService(WebSocketService webSocketService, String studentId, ProcessSnapshotProvider snapshotProvider) {
+        this(webSocketService, studentId, snapshotProvider, EnforcementScheduler.getShared());
+    }
+
+    public AppMonitorService(WebSocketService webSocketService, String studentId, ProcessSnapshotProvider snapshotProvider,
+                             EnforcementScheduler scheduler) {
         this.webSocketService = webSocketService;
+        this.violationReporter = new ViolationReporter(webSocketService);
         this.studentId = studentId;
+        this.snapshotProvider = snapshotProvider;
+        this.scheduler = scheduler;
+        this.processTable.addListener(new ProcessTable.ProcessEventListener() {
+            @Override
+            public void onProcessStarted(ProcessInfo process) {
+                startedSinceLastTick.add(process);
+            }
+
+            @Override
+            public void onProcessExited(ProcessInfo process) {
+                // Nothing to enforce for exited processes
+            }
+        });
+    }
+
+    /**
+     * Subscribes to process start/exit events seen by the scanner. Listeners are called
+     * on the scanner thread and must return quickly.
+     */
+    public void addProcessEventListener(ProcessTable.ProcessEventListener listener) {
+        processTable.addListener(listener);
+    }
+
+    public void removeProcessEventListener(ProcessTable.ProcessEventListener listener) {
+        processTable.removeListener(listener);
+    }
+
+    /**
+     * @return Per-process CPU/memory history for this machine, kept while monitoring runs.
+     */
+    public ResourceSampler getResourceSampler() {
+        return resourceSampler;
     }
 
     public synchronized void startMonitoring(List<String> initialBlacklist) {
@@ -34,16 +93,13 @@ public class AppMonitorService {
         }
         System.out.println("AppMonitorService: Starting monitoring...");
         updateBlacklistInternal(initialBlacklist);
-        System.out.println("AppMonitorService: Initial blacklist: " + this.appBlacklist);
+        System.out.println("AppMonitorService: Initial blacklist: " + this.appBlacklist.getRules());
 
-        executorService = Executors.newSingleThreadScheduledExecutor(r -> {
-            Thread t = Executors.defaultThreadFactory().newThread(r);
-            t.setDaemon(true); // Allow JVM to exit even if this thread is running
-            return t;
-        });
-        // Check running processes periodically (e.g., every 3 seconds)
-        executorService.scheduleAtFixedRate(this::checkAndKillProcesses, 0, 3, TimeUnit.SECONDS);
+        // Check for new processes frequently; each tick only evaluates processes started since the last one
+        fullScanRequested = true;
         isRunning = true;
+        scanTask = scheduler.register("app-monitor", this::checkAndKillProcesses,
+                MIN_POLL_INTERVAL_MS, MAX_POLL_INTERVAL_MS, POLL_JITTER);
     }
 
     public synchronized void stopMonitoring() {
@@ -51,163 +107,153 @@ public class AppMonitorService {
             return;
         }
         System.out.println("AppMonitorService: Stopping monitoring...");
-        if (executorService != null) {
-            executorService.shutdownNow();
-            try {
-                // Wait a bit for termination
-                if (!executorService.awaitTermination(2, TimeUnit.SECONDS)) {
-                    System.err.println("AppMonitorService: Executor did not terminate gracefully.");
-                }
-            } catch (InterruptedException e) {
-                Thread.currentThread().interrupt();
-            }
+        isRunning = false; // A scan in progress stops at the next process
+        if (scanTask != null) {
+            scanTask.cancel();
+            scanTask = null;
         }
-        isRunning = false;
+        violationReporter.flush(); // Don't lose coalesced repeats
         System.out.println("AppMonitorService: Monitoring stopped.");
     }
 
     public synchronized void updateAppBlacklist(List<String> newBlacklist) {
         if (!isRunning) return;
         updateBlacklistInternal(newBlacklist);
-        System.out.println("AppMonitorService: Blacklist updated: " + this.appBlacklist);
-        // Immediately re-check processes after update
-        executorService.execute(this::checkAndKillProcesses); 
+        System.out.println("AppMonitorService: Blacklist updated: " + this.appBlacklist.getRules());
+        // Immediately re-check all processes after update
+        fullScanRequested = true;
+        scanTask.runNow();
     }
     
     public synchronized void addToBlacklist(String appName) {
         if (!isRunning || appName == null || appName.trim().isEmpty()) return;
-        if (this.appBlacklist.add(appName.trim().toLowerCase())) {
+        // Rebuilds the compiled snapshot on this thread; the scanner keeps using the old one until the swap
+        if (this.appBlacklist.add(appName)) {
              System.out.println("AppMonitorService: Added to blacklist: " + appName.trim().toLowerCase());
-             // Immediately re-check processes after adding
-             executorService.execute(this::checkAndKillProcesses);
+             // Immediately re-check all processes after adding
+             fullScanRequested = true;
+             scanTask.runNow();
         }
     }
     
     public synchronized void removeFromBlacklist(String appName) {
         if (!isRunning || appName == null || appName.trim().isEmpty()) return;
-         if (this.appBlacklist.remove(appName.trim().toLowerCase())) {
+         if (this.appBlacklist.remove(appName)) {
              System.out.println("AppMonitorService: Removed from blacklist: " + appName.trim().toLowerCase());
          }
     }
     
     private void updateBlacklistInternal(List<String> list) {
-         this.appBlacklist = list != null ? 
-                            Collections.synchronizedSet(list.stream()
-                                .map(String::trim)
-                                .map(String::toLowerCase)
-                                .filter(s -> !s.isEmpty())
-                                .collect(Collectors.toSet())) : 
-                            Collections.synchronizedSet(new HashSet<>());
+         this.appBlacklist.setRules(list);
     }
 
-    private void checkAndKillProcesses() {
-        if (!isRunning || appBlacklist.isEmpty()) {
-            return;
+    /**
+     * @return true if a blacklisted process was found, so the scheduler polls faster for a while.
+     */
+    private boolean checkAndKillProcesses() {
+        if (!isRunning) {
+            return false;
+        }
+        if (appBlacklist.isEmpty()) {
+            // Nothing to enforce, but keep the resource history going at its own rate
+            long nowMillis = System.currentTimeMillis();
+            if (resourceSampler.isDue(nowMillis)) {
+                try {
+                    resourceSampler.record(snapshotProvider.snapshot(), nowMillis);
+                } catch (IOException e) {
+                    System.err.println("AppMonitorService: Failed to sample processes: " + e.getMessage());
+                }
+            }
+            return false;
         }
-        Set<String> currentBlacklist = new HashSet<>(this.appBlacklist);
-        if (currentBlacklist.isEmpty()) return; // Double check after copy
-        
         // Add verbose logging flag if needed for debugging
         boolean verboseLog = false; 
-        if(verboseLog) System.out.println("AppMonitorService: Checking processes against blacklist: " + currentBlacklist);
+        if(verboseLog) System.out.println("AppMonitorService: Checking processes against blacklist: " + appBlacklist.getRules());
         
-        Process process = null;
         try {
-            process = Runtime.getRuntime().exec("tasklist /nh /fo csv");
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            String line;
-            while ((line = reader.readLine()) != null && isRunning) {
-                if(verboseLog) System.out.println("AppMonitorService: Raw tasklist line: " + line);
-                String[] parts = line.split("\",\""); 
-                if (parts.length > 0) {
-                    String imageName = parts[0].replace("\"", "").trim().toLowerCase();
-                    if (imageName.isEmpty()) continue; // Skip empty image names
-                    
-                    if(verboseLog) System.out.println("AppMonitorService: Parsed imageName: '" + imageName + "'");
-                    
-                    // Check blacklist (case-insensitive due to lowercasing above)
-                    if (currentBlacklist.contains(imageName)) {
-                        System.out.println("AppMonitorService: MATCH FOUND - Attempting to kill blacklisted process: " + imageName);
-                        killProcess(imageName); // Attempt kill
-                        reportBlockedApp(imageName); // Report block attempt
-                    }
-                }
+            List<ProcessInfo> processes = snapshotProvider.snapshot();
+            resourceSampler.record(processes, System.currentTimeMillis());
+            startedSinceLastTick.clear();
+            processTable.update(processes);
+
+            long now = System.nanoTime();
+            boolean fullScan = fullScanRequested || now - lastFullScanNanos >= FULL_SCAN_INTERVAL_NANOS;
+            if (fullScan) {
+                fullScanRequested = false;
+                lastFullScanNanos = now;
             }
-            reader.close();
-            // Removed waitFor() as it can block unnecessarily if output reading finishes
-            // int exitCode = process.waitFor(); 
-            // if (exitCode != 0) { ... }
+            List<ProcessInfo> toCheck = fullScan ? processes : startedSinceLastTick;
 
+            // Collect every match from this scan and kill them as one batch
+            List<ProcessInfo> matched = new ArrayList<>();
+            for (ProcessInfo info : toCheck) {
+                if (!isRunning) break;
+                if (info.getName().isEmpty()) continue; // Skip empty image names
+                if (killsInProgress.contains(info.getPid())) continue;
+
+                if(verboseLog) System.out.println("AppMonitorService: Parsed imageName: '" + info.getName() + "'");
+
+                // Check blacklist (case-insensitive, name or command line)
+                if (appBlacklist.matches(info)) {
+                    System.out.println("AppMonitorService: MATCH FOUND - Blacklisted process: " + info.getName() + " (PID " + info.getPid() + ")");
+                    matched.add(info);
+                }
+            }
+            if (!matched.isEmpty() && isRunning) {
+                killProcesses(matched);
+                return true;
+            }
         } catch (IOException e) {
-            System.err.println("AppMonitorService: IOException while checking processes: " + e.getMessage());
-        } /* Removed InterruptedException catch block - waitFor removed */
-        catch (Exception e) { 
+            System.err.println("AppMonitorService: IOException while checking processes (" + snapshotProvider.getName() + "): " + e.getMessage());
+        } catch (Exception e) { 
             System.err.println("AppMonitorService: Unexpected error checking processes: " + e.getMessage());
             e.printStackTrace();
-        } finally {
-             if (process != null) {
-                 // Ensure streams are closed
-                 try { process.getInputStream().close(); } catch (IOException e) { /* ignore */ }
-                 try { process.getErrorStream().close(); } catch (IOException e) { /* ignore */ }
-                 try { process.getOutputStream().close(); } catch (IOException e) { /* ignore */ }
-                 process.destroy(); // Ensure process is destroyed
-             }
         }
+        return false;
     }
 
-    private void killProcess(String imageName) {
-        if (!isRunning || imageName == null || imageName.isEmpty()) return;
-        System.out.println("AppMonitorService: Executing taskkill for: " + imageName);
-        Process killProcess = null;
-        BufferedReader errorReader = null; // To read error stream
-        try {
-            killProcess = Runtime.getRuntime().exec("taskkill /F /IM " + imageName + " /T"); // Added /T to kill child processes
-            
-            // Capture error stream for more details on failure
-            errorReader = new BufferedReader(new InputStreamReader(killProcess.getErrorStream()));
-            StringBuilder errorOutput = new StringBuilder();
-            String errorLine;
-            while ((errorLine = errorReader.readLine()) != null) {
-                errorOutput.append(errorLine).append(System.lineSeparator());
+    // Sends the kills and returns; results are logged and reported once the exits are confirmed, off the scanner
+    private void killProcesses(List<ProcessInfo> processes) {
+        Map<Long, String> names = new HashMap<>();
+        for (ProcessInfo info : processes) {
+            names.put(info.getPid(), info.getName().toLowerCase());
+            killsInProgress.add(info.getPid());
+        }
+        terminator.terminateProcessesAsync(processes).whenComplete((results, error) -> {
+            killsInProgress.removeAll(names.keySet());
+            if (error != null) {
+                System.err.println("AppMonitorService: Error killing processes: " + error.getMessage());
+            } else {
+                reportKills(results, names);
             }
-            
-            int exitCode = killProcess.waitFor();
-            if (exitCode == 0) {
-                System.out.println("AppMonitorService: Successfully killed " + imageName);
+        });
+    }
+
+    private void reportKills(Map<Long, ProcessTerminator.Result> results, Map<Long, String> names) {
+        Set<String> reported = new HashSet<>();
+        for (ProcessTerminator.Result result : results.values()) {
+            String imageName = names.get(result.getPid());
+            if (result.getStatus() == ProcessTerminator.Status.PID_REUSED) continue; // Not the process we matched
+            if (result.isSuccess()) {
+                System.out.println("AppMonitorService: Killed " + imageName + " (PID " + result.getPid() + ", " + result.getStatus() + ")");
             } else {
-                System.err.println("AppMonitorService: taskkill command for \"" + imageName + "\" exited with code: " + exitCode);
-                if (errorOutput.length() > 0) {
-                    System.err.println("AppMonitorService: taskkill error output:\n" + errorOutput.toString());
-                }
+                System.err.println("AppMonitorService: Failed to kill " + imageName + " (PID " + result.getPid() + ", " + result.getStatus() + ")");
             }
-        } catch (IOException e) {
-            System.err.println("AppMonitorService: IOException while killing process \"" + imageName + "\": " + e.getMessage());
-        } catch (InterruptedException e) { 
-             System.err.println("AppMonitorService: Kill process interrupted for \"" + imageName + "\"");
-             Thread.currentThread().interrupt();
-        } catch (Exception e) {
-            System.err.println("AppMonitorService: Unexpected error killing process \"" + imageName + "\": " + e.getMessage());
-        } finally {
-            try { if (errorReader != null) errorReader.close(); } catch (IOException e) { /* ignore */ }
-            if (killProcess != null) {
-                 try { killProcess.getInputStream().close(); } catch (IOException e) { /* ignore */ }
-                 try { killProcess.getErrorStream().close(); } catch (IOException e) { /* ignore */ }
-                 try { killProcess.getOutputStream().close(); } catch (IOException e) { /* ignore */ }
-                killProcess.destroy();
+            if (reported.add(imageName)) {
+                reportBlockedApp(imageName); // Report block attempt once per image name
             }
         }
     }
     
     private void reportBlockedApp(String appName) {
         if (!isRunning) return;
-        if (webSocketService != null && webSocketService.isAuthenticated()) {
-             Map<String, Object> payload = new HashMap<>();
-             payload.put("type", "blocked_app"); // Specific type for student update
+        if (webSocketService != null) {
              Map<String, Object> data = new HashMap<>();
              data.put("app_name", appName);
-             payload.put("data", data);
-             webSocketService.sendMessage("student_update", payload);
-             System.out.println("AppMonitorService: Reported blocked app: " + appName);
+             // First block of an app is sent at once; relaunches are folded into a periodic digest
+             if (violationReporter.report("blocked_app", appName, data)) {
+                 System.out.println("AppMonitorService: Reported blocked app: " + appName);
+             }
         }
     }
 } 
\ No newline at end of file
@@ -0,0 +1,254 @@
+package com.cmms.taskManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compiled application blacklist.
+ * <p>
+ * Rules are compiled once into an immutable {@link Compiled} snapshot that is published through a single
+ * volatile field, so the scanner thread reads it without locking while updates rebuild a new snapshot
+ * on the caller's thread. Supported rule forms (all case-insensitive):
+ * <ul>
+ *   <li>{@code chrome.exe} - exact image name</li>
+ *   <li>{@code steam*} / {@code *launcher.exe} - image name prefix / suffix</li>
+ *   <li>{@code *game?.exe} - any other glob with '*' and '?'</li>
+ *   <li>{@code re:minecraft.*\.exe} or {@code /minecraft.*\.exe/} - regular expression over the image name</li>
+ *   <li>{@code cmd:} followed by any of the above - matched against the full command line instead</li>
+ * </ul>
+ * Globs and regexes must match the whole name (or command line); use '*' or ".*" for substrings.
+ */
+public class BlacklistMatcher {
+
+    private static final String COMMAND_LINE_PREFIX = "cmd:";
+    private static final String REGEX_PREFIX = "re:";
+
+    private final Object writeLock = new Object();
+    private volatile Compiled compiled = Compiled.EMPTY;
+
+    /**
+     * Replaces all rules.
+     */
+    public void setRules(Collection<String> rules) {
+        Set<String> normalized = new LinkedHashSet<>();
+        if (rules != null) {
+            for (String rule : rules) {
+                String n = normalize(rule);
+                if (n != null) normalized.add(n);
+            }
+        }
+        synchronized (writeLock) {
+            compiled = Compiled.build(normalized);
+        }
+    }
+
+    /**
+     * @return true if the rule was not already present.
+     */
+    public boolean add(String rule) {
+        String n = normalize(rule);
+        if (n == null) return false;
+        synchronized (writeLock) {
+            if (compiled.rules.contains(n)) return false;
+            Set<String> updated = new LinkedHashSet<>(compiled.rules);
+            updated.add(n);
+            compiled = Compiled.build(updated);
+            return true;
+        }
+    }
+
+    /**
+     * @return true if the rule was present and has been removed.
+     */
+    public boolean remove(String rule) {
+        String n = normalize(rule);
+        if (n == null) return false;
+        synchronized (writeLock) {
+            if (!compiled.rules.contains(n)) return false;
+            Set<String> updated = new LinkedHashSet<>(compiled.rules);
+            updated.remove(n);
+            compiled = Compiled.build(updated);
+            return true;
+        }
+    }
+
+    public boolean isEmpty() {
+        return compiled.rules.isEmpty();
+    }
+
+    /**
+     * @return The normalized rules in insertion order (read-only).
+     */
+    public Set<String> getRules() {
+        return compiled.rules;
+    }
+
+    /**
+     * @return true if the process is blacklisted by its image name or command line. Does not allocate.
+     */
+    public boolean matches(ProcessInfo process) {
+        Compiled c = compiled;
+        return c.matchesName(process.getName()) || (process.getCommandLine() != null && c.matchesCommandLine(process.getCommandLine()));
+    }
+
+    public boolean matchesName(CharSequence imageName) {
+        return compiled.matchesName(imageName);
+    }
+
+    public boolean matchesCommandLine(CharSequence commandLine) {
+        return compiled.matchesCommandLine(commandLine);
+    }
+
+    private static String normalize(String rule) {
+        if (rule == null) return null;
+        String trimmed = rule.trim();
+        if (trimmed.isEmpty()) return null;
+        // Regex bodies keep their case: escapes like \D and \W are case-sensitive
+        return isRegex(stripTarget(trimmed)) ? trimmed : trimmed.toLowerCase();
+    }
+
+    private static String stripTarget(String rule) {
+        return rule.regionMatches(true, 0, COMMAND_LINE_PREFIX, 0, COMMAND_LINE_PREFIX.length())
+                ? rule.substring(COMMAND_LINE_PREFIX.length()).trim() : rule;
+    }
+
+    private static boolean isRegex(String rule) {
+        return rule.regionMatches(true, 0, REGEX_PREFIX, 0, REGEX_PREFIX.length())
+                || (rule.length() > 2 && rule.startsWith("/") && rule.endsWith("/"));
+    }
+
+    private static String regexBody(String rule) {
+        return rule.startsWith("/") ? rule.substring(1, rule.length() - 1) : rule.substring(REGEX_PREFIX.length());
+    }
+
+    /**
+     * Immutable compiled form of a rule set.
+     */
+    private static final class Compiled {
+        static final Compiled EMPTY = build(Collections.emptySet());
+
+        final Set<String> rules;
+        final NameSet exactNames;
+        final CharTrie prefixes;
+        final CharTrie suffixes;
+        final RuleAutomaton namePatterns;
+        final RuleAutomaton commandLinePatterns;
+
+        private Compiled(Set<String> rules, NameSet exactNames, CharTrie prefixes, CharTrie suffixes,
+                         RuleAutomaton namePatterns, RuleAutomaton commandLinePatterns) {
+            this.rules = rules;
+            this.exactNames = exactNames;
+            this.prefixes = prefixes;
+            this.suffixes = suffixes;
+            this.namePatterns = namePatterns;
+            this.commandLinePatterns = commandLinePatterns;
+        }
+
+        static Compiled build(Set<String> rules) {
+            List<String> exact = new ArrayList<>();
+            List<String> prefixList = new ArrayList<>();
+            List<String> suffixList = new ArrayList<>();
+            List<String> nameGlobs = new ArrayList<>();
+            List<String> nameRegexes = new ArrayList<>();
+            List<String> commandGlobs = new ArrayList<>();
+            List<String> commandRegexes = new ArrayList<>();
+
+            for (String rule : rules) {
+                boolean commandLine = rule.regionMatches(true, 0, COMMAND_LINE_PREFIX, 0, COMMAND_LINE_PREFIX.length());
+                String body = stripTarget(rule);
+                if (body.isEmpty()) continue;
+                if (isRegex(body)) {
+                    (commandLine ? commandRegexes : nameRegexes).add(regexBody(body));
+                    continue;
+                }
+                int wildcards = countWildcards(body);
+                if (commandLine) {
+                    commandGlobs.add(body); // Exact command lines are just globs without wildcards
+                } else if (wildcards == 0) {
+                    exact.add(body);
+                } else if (wildcards == 1 && body.endsWith("*") && body.length() > 1) {
+                    prefixList.add(body.substring(0, body.length() - 1));
+                } else if (wildcards == 1 && body.startsWith("*") && body.length() > 1) {
+                    suffixList.add(body.substring(1));
+                } else {
+                    nameGlobs.add(body);
+                }
+            }
+
+            return new Compiled(Collections.unmodifiableSet(new LinkedHashSet<>(rules)),
+                    new NameSet(exact),
+                    CharTrie.build(prefixList, false),
+                    CharTrie.build(suffixList, true),
+                    nameGlobs.isEmpty() && nameRegexes.isEmpty() ? RuleAutomaton.EMPTY : RuleAutomaton.compile(nameGlobs, nameRegexes),
+                    commandGlobs.isEmpty() && commandRegexes.isEmpty() ? RuleAutomaton.EMPTY : RuleAutomaton.compile(commandGlobs, commandRegexes));
+        }
+
+        boolean matchesName(CharSequence name) {
+            return exactNames.contains(name)
+                    || prefixes.matchesAnyKey(name)
+                    || suffixes.matchesAnyKey(name)
+                    || namePatterns.matches(name);
+        }
+
+        boolean matchesCommandLine(CharSequence commandLine) {
+            return commandLinePatterns.matches(commandLine);
+        }
+
+        private static int countWildcards(String s) {
+            int count = 0;
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '*' || c == '?') count++;
+            }
+            return count;
+        }
+    }
+
+    /**
+     * Open-addressing set of lowercase names with a case-folding hash, so lookups need no lowercased copy.
+     */
+    private static final class NameSet {
+        private final String[] table;
+        private final int mask;
+
+        NameSet(List<String> names) {
+            int capacity = Integer.highestOneBit(Math.max(4, names.size() * 2 - 1)) << 1;
+            table = new String[capacity];
+            mask = capacity - 1;
+            for (String name : names) {
+                if (contains(name)) continue;
+                int slot = foldedHash(name) & mask;
+                while (table[slot] != null) slot = (slot + 1) & mask;
+                table[slot] = name;
+            }
+        }
+
+        boolean contains(CharSequence name) {
+            int slot = foldedHash(name) & mask;
+            String candidate;
+            while ((candidate = table[slot]) != null) {
+                if (equalsFolded(candidate, name)) return true;
+                slot = (slot + 1) & mask;
+            }
+            return false;
+        }
+
+        private static int foldedHash(CharSequence s) {
+            int h = 0;
+            for (int i = 0; i < s.length(); i++) h = 31 * h + Character.toLowerCase(s.charAt(i));
+            return h ^ (h >>> 16);
+        }
+
+        private static boolean equalsFolded(String lower, CharSequence s) {
+            if (lower.length() != s.length()) return false;
+            for (int i = 0; i < lower.length(); i++) {
+                if (lower.charAt(i) != Character.toLowerCase(s.charAt(i))) return false;
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,103 @@
+package com.cmms.taskManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Immutable, case-insensitive character trie used by {@link BlacklistMatcher} for prefix and suffix rules.
+ * Nodes are flattened into arrays with sorted edge labels so lookups only do binary searches.
+ */
+final class CharTrie {
+
+    private final char[][] edgeLabels;
+    private final int[][] edgeTargets;
+    private final boolean[] terminal;
+    private final boolean reversed;
+
+    private CharTrie(char[][] edgeLabels, int[][] edgeTargets, boolean[] terminal, boolean reversed) {
+        this.edgeLabels = edgeLabels;
+        this.edgeTargets = edgeTargets;
+        this.terminal = terminal;
+        this.reversed = reversed;
+    }
+
+    /**
+     * Builds a trie over the given (already lowercased) keys.
+     *
+     * @param reversed true to index the keys back to front, for suffix matching.
+     */
+    static CharTrie build(Collection<String> keys, boolean reversed) {
+        List<TreeMap<Character, Integer>> nodes = new ArrayList<>();
+        List<Boolean> ends = new ArrayList<>();
+        nodes.add(new TreeMap<>());
+        ends.add(false);
+        for (String key : keys) {
+            int node = 0;
+            for (int i = 0; i < key.length(); i++) {
+                char c = key.charAt(reversed ? key.length() - 1 - i : i);
+                Integer next = nodes.get(node).get(c);
+                if (next == null) {
+                    next = nodes.size();
+                    nodes.add(new TreeMap<>());
+                    ends.add(false);
+                    nodes.get(node).put(c, next);
+                }
+                node = next;
+            }
+            ends.set(node, true);
+        }
+
+        char[][] labels = new char[nodes.size()][];
+        int[][] targets = new int[nodes.size()][];
+        boolean[] terminal = new boolean[nodes.size()];
+        for (int n = 0; n < nodes.size(); n++) {
+            TreeMap<Character, Integer> edges = nodes.get(n);
+            labels[n] = new char[edges.size()];
+            targets[n] = new int[edges.size()];
+            int i = 0;
+            for (Map.Entry<Character, Integer> edge : edges.entrySet()) {
+                labels[n][i] = edge.getKey();
+                targets[n][i] = edge.getValue();
+                i++;
+            }
+            terminal[n] = ends.get(n);
+        }
+        return new CharTrie(labels, targets, terminal, reversed);
+    }
+
+    /**
+     * @return true if any key is a prefix (or suffix, for a reversed trie) of the input, ignoring case.
+     */
+    boolean matchesAnyKey(CharSequence input) {
+        int node = 0;
+        int length = input.length();
+        for (int i = 0; i < length; i++) {
+            if (terminal[node]) return true;
+            char c = Character.toLowerCase(input.charAt(reversed ? length - 1 - i : i));
+            node = step(node, c);
+            if (node < 0) return false;
+        }
+        return terminal[node];
+    }
+
+    boolean isEmpty() {
+        return edgeLabels[0].length == 0 && !terminal[0];
+    }
+
+    private int step(int node, char c) {
+        char[] labels = edgeLabels[node];
+        int lo = 0;
+        int hi = labels.length - 1;
+        while (lo <= hi) {
+            int mid = (lo + hi) >>> 1;
+            char label = labels[mid];
+            if (label < c) lo = mid + 1;
+            else if (label > c) hi = mid - 1;
+            else return edgeTargets[node][mid];
+        }
+        return -1;
+    }
+}
@@ -7,9 +7,15 @@ import java.lang.management.ManagementFactory;
 import java.io.*;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class MemoryManagement {
+    private static final ProcessSnapshotProvider MEMORY_SNAPSHOT_PROVIDER = ProcessSnapshotProvider.withResidentMemory();
+    private static final ProcessSnapshotProvider KILL_SNAPSHOT_PROVIDER = ProcessSnapshotProvider.getDefault();
+    private static final ProcessTerminator TERMINATOR = new ProcessTerminator();
+    private static final ProcessListingParser PS_PARSER = new ProcessListingParser(ProcessListingParser.Format.PS_COMM_MEM);
+
     public static List<String> getCurrentMemoryProcesses(double memoryThreshold){
         CommonFunctions cF = new CommonFunctions();
         if (cF.getOS().contains( "win" )){
@@ -29,33 +35,21 @@ public class MemoryManagement {
             // Get processes with command and memory usage percentage
             ProcessBuilder processBuilder = new ProcessBuilder("ps", "-caxm", "-o", "comm,%mem");
             Process process = processBuilder.start();
-            BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-
-            String line;
-            reader.readLine();
 
             double memoryThreshold = 0.5;
-            while ((line = reader.readLine()) != null) {
-                int lastSpace = line.lastIndexOf(' ');
-                if (lastSpace != -1) {
-                    String appName = line.substring(0, lastSpace).trim(); // Process name
-                    String memoryUsageStr = line.substring(lastSpace + 1).trim(); // Memory usage
-                    try {
-                        double memUsage = Double.parseDouble(memoryUsageStr);
-
-
-                        if (memUsage > memoryThreshold && !isSystemProcess(appName)) {
-                            if (appName.equals( kill )){
-                                killTaskMac( appName );
-                            }
+            boolean[] matched = new boolean[1];
+            try (InputStream input = process.getInputStream()) {
+                synchronized (PS_PARSER) {
+                    PS_PARSER.parse(input, record -> {
+                        if (record.getMemoryPercent() > memoryThreshold && record.nameEquals(kill)) {
+                            matched[0] = true;
                         }
-                    } catch (NumberFormatException e) {
-                        System.err.println("Error parsing memory usage: " + memoryUsageStr);
-                    }
+                    });
                 }
             }
-
-            reader.close();
+            if (matched[0] && !isSystemProcess(kill)) {
+                killTaskMac( kill );
+            }
         } catch (IOException e) {
             e.printStackTrace();
         }
@@ -78,24 +72,14 @@ public class MemoryManagement {
     }
 
     private static void killTaskMac(String processName){
+        // Same matching as "pgrep -i": case-insensitive substring of the process name
+        String needle = processName.toLowerCase();
         try {
-            // Step 1: Get the PID of the process using the process name
-            String[] getPidCommand = {"/bin/sh", "-c", "pgrep -i '" + processName + "'"};
-            Process getPidProcess = Runtime.getRuntime().exec(getPidCommand);
-
-            BufferedReader reader = new BufferedReader(new InputStreamReader(getPidProcess.getInputStream()));
-            String pid;
-
-            while ((pid = reader.readLine()) != null) {
-                System.out.println("Found PID: " + pid);
-
-                // Step 2: Terminate the process using the PID
-                String[] killCommand = {"/bin/sh", "-c", "kill -9 " + pid};
-                Process killProcess = Runtime.getRuntime().exec(killCommand);
-                killProcess.waitFor();
-                System.out.println("Terminated process with PID: " + pid);
+            Map<Long, ProcessTerminator.Result> results = TERMINATOR.terminateMatching(KILL_SNAPSHOT_PROVIDER,
+                    info -> info.getName().toLowerCase().contains(needle));
+            for (ProcessTerminator.Result result : results.values()) {
+                System.out.println("Terminated process with PID: " + result.getPid() + " (" + result.getStatus() + ")");
             }
-
         } catch (Exception e) {
             System.err.println("Couldn't terminate the process");
         }
@@ -118,27 +102,14 @@ public class MemoryManagement {
         } catch (Exception e) {
             System.err.println("MemoryManagement: Error getting total memory size: " + e.getMessage());
         }
-        Process process = Runtime.getRuntime().exec("tasklist /fo csv /nh");
-        BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String line;
-
-        while ((line = input.readLine()) != null) {
-            String[] processDetails = line.split("\",\"");
-            if (processDetails.length > 4) {
-                String memoryUsageString = processDetails[4].replace(" K", "").replace(",", "").replace("\"", "");
-                String processName = processDetails[0].replace("\"", "");
-                try {
-                    long memoryUsage = Long.parseLong(memoryUsageString) * 1024; // Convert to bytes
-                    double memoryPercentage = (double) memoryUsage / totalMemory * 100;
-                    if (memoryPercentage > memoryThreshold) {
-                        memoryProcesses.add(processName + " is using " + String.format("%.2f", memoryPercentage) + "% of memory.");
-                    }
-                } catch (NumberFormatException e) {
-                    throw new RuntimeException(e);
-                }
+        for (ProcessInfo info : MEMORY_SNAPSHOT_PROVIDER.snapshot()) {
+            long memoryUsage = info.getResidentBytes();
+            if (memoryUsage < 0) continue;
+            double memoryPercentage = (double) memoryUsage / totalMemory * 100;
+            if (memoryPercentage > memoryThreshold) {
+                memoryProcesses.add(info.getName() + " is using " + String.format("%.2f", memoryPercentage) + "% of memory.");
             }
         }
-        input.close();
         return memoryProcesses;
     }
 //    private static List<String> getCurrentMemoryProcessesMac(double memoryThreshold){
@@ -157,8 +128,8 @@ public class MemoryManagement {
 
     public static void killProcess(String processName) {
         try {
-            Runtime.getRuntime().exec("taskkill /IM " + processName + " /F");
-            System.out.println("Terminated process: " + processName);
+            Map<Long, ProcessTerminator.Result> results = TERMINATOR.terminateByName(processName, KILL_SNAPSHOT_PROVIDER);
+            System.out.println("Terminated process: " + processName + " " + results.values());
         } catch (Exception e) {
             System.out.println("Failed to terminate process: " + processName);
             e.printStackTrace();
@@ -0,0 +1,215 @@
+package com.cmms.taskManager;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process snapshots read directly from the Linux /proc filesystem.
+ * Unlike {@link ProcessHandleSnapshotProvider} this also reports resident memory and thread counts.
+ * Each call reads every process's stat file; the command line is read only for processes that were not there on
+ * the previous call, which at the monitor's poll rate is almost none.
+ */
+public class ProcFsSnapshotProvider implements ProcessSnapshotProvider {
+
+    // CPU and start times come in USER_HZ ticks. That is 100 in the user-space ABI of every architecture we run on
+    // (x86, ARM, ARM64), whatever the kernel's own HZ; no /proc file gives it, only sysconf(_SC_CLK_TCK) in native code.
+    private static final long CLOCK_TICKS_PER_SECOND = 100;
+    private static final long DEFAULT_PAGE_SIZE = 4096;
+    private static final long AT_NULL = 0;
+    private static final long AT_PAGESZ = 6;
+
+    // Indexes of the stat fields used, counted from the state field (field 3 in proc(5))
+    private static final int STAT_UTIME = 11;
+    private static final int STAT_STIME = 12;
+    private static final int STAT_THREADS = 17;
+    private static final int STAT_START_TIME = 19;
+    private static final int STAT_RSS = 21;
+
+    private final Path procRoot;
+    private final byte[] statBytes = new byte[4096];
+    private final long[] statFields = new long[STAT_RSS + 1];
+    private Map<Long, ProcessInfo> known = new HashMap<>(); // From the previous snapshot, by pid
+    private long bootMillis = -1;
+    private long pageSize = -1; // Resident memory comes in pages: 4K on x86, 16K or 64K on some ARM64 kernels
+
+    public ProcFsSnapshotProvider() {
+        this(Paths.get("/proc"));
+    }
+
+    public ProcFsSnapshotProvider(Path procRoot) {
+        this.procRoot = procRoot;
+    }
+
+    @Override
+    public synchronized List<ProcessInfo> snapshot() throws IOException {
+        if (bootMillis < 0) {
+            bootMillis = readBootMillis();
+        }
+        if (pageSize < 0) {
+            pageSize = readPageSize();
+        }
+        List<ProcessInfo> processes = new ArrayList<>(Math.max(256, known.size()));
+        Map<Long, ProcessInfo> seen = new HashMap<>(Math.max(256, known.size() * 2));
+        try (DirectoryStream<Path> dirs = Files.newDirectoryStream(procRoot)) {
+            for (Path dir : dirs) {
+                String fileName = dir.getFileName().toString();
+                if (!isNumeric(fileName)) continue;
+                try {
+                    ProcessInfo info = readProcess(Long.parseLong(fileName), dir);
+                    if (info != null) {
+                        processes.add(info);
+                        seen.put(info.getPid(), info);
+                    }
+                } catch (IOException | RuntimeException e) {
+                    // Process exited while we were reading it, or the entry is not readable
+                }
+            }
+        }
+        known = seen; // Drops processes that exited
+        return processes;
+    }
+
+    // Reads stat on every call, for CPU time, memory and threads; the name and command line only for a process
+    // not seen on the previous call (a new pid, or a reused one with another start time)
+    private ProcessInfo readProcess(long pid, Path dir) throws IOException {
+        int length = readStat(dir.resolve("stat"));
+        int open = -1;
+        int close = -1;
+        for (int i = 0; i < length; i++) {
+            if (statBytes[i] == '(') {
+                open = i;
+                break;
+            }
+        }
+        for (int i = length - 1; i > open; i--) {
+            if (statBytes[i] == ')') {
+                close = i;
+                break;
+            }
+        }
+        if (open < 0 || close < 0) return null;
+        // Fields after the command, starting at field 3 (state)
+        long[] fields = statFields;
+        int field = 0;
+        long value = 0;
+        boolean negative = false;
+        for (int i = close + 2; i <= length && field <= STAT_RSS; i++) {
+            byte b = i < length ? statBytes[i] : (byte) ' ';
+            if (b == ' ' || b == '\n') {
+                fields[field++] = negative ? -value : value;
+                value = 0;
+                negative = false;
+            } else if (b == '-') {
+                negative = true;
+            } else if (b >= '0' && b <= '9') {
+                value = value * 10 + (b - '0');
+            }
+        }
+        if (field <= STAT_RSS) return null;
+
+        long startMillis = bootMillis >= 0 ? bootMillis + fields[STAT_START_TIME] * 1000 / CLOCK_TICKS_PER_SECOND : -1;
+        long cpuMillis = (fields[STAT_UTIME] + fields[STAT_STIME]) * 1000 / CLOCK_TICKS_PER_SECOND;
+        long residentBytes = fields[STAT_RSS] * pageSize;
+        int threads = (int) fields[STAT_THREADS];
+
+        ProcessInfo previous = known.get(pid);
+        if (previous != null && previous.getStartMillis() == startMillis && previous.getCommandLine() != null) {
+            return new ProcessInfo(pid, previous.getName(), previous.getCommandLine(), startMillis, cpuMillis, residentBytes, threads);
+        }
+
+        String commandLine = null;
+        String name = new String(statBytes, open + 1, close - open - 1, StandardCharsets.UTF_8);
+        if (previous != null && previous.getStartMillis() == startMillis) {
+            // A kernel thread, named by comm alone, which it may change
+            return new ProcessInfo(pid, name, null, startMillis, cpuMillis, residentBytes, threads);
+        }
+        byte[] cmdline = Files.readAllBytes(dir.resolve("cmdline"));
+        if (cmdline.length > 0) {
+            int argv0End = 0;
+            while (argv0End < cmdline.length && cmdline[argv0End] != 0) argv0End++;
+            String argv0 = new String(cmdline, 0, argv0End, StandardCharsets.UTF_8);
+            if (!argv0.isEmpty()) {
+                name = ProcessHandleSnapshotProvider.baseName(argv0);
+            }
+            for (int i = 0; i < cmdline.length; i++) {
+                if (cmdline[i] == 0) cmdline[i] = ' ';
+            }
+            commandLine = new String(cmdline, StandardCharsets.UTF_8).trim();
+        }
+        return new ProcessInfo(pid, name, commandLine, startMillis, cpuMillis, residentBytes, threads);
+    }
+
+    // Into statBytes, reused across processes; stat is one short line
+    private int readStat(Path file) throws IOException {
+        ByteBuffer buffer = ByteBuffer.wrap(statBytes);
+        try (SeekableByteChannel channel = Files.newByteChannel(file)) {
+            while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                // Keep reading
+            }
+        }
+        return buffer.position();
+    }
+
+    private long readBootMillis() {
+        try {
+            for (String line : Files.readAllLines(procRoot.resolve("stat"), StandardCharsets.US_ASCII)) {
+                if (line.startsWith("btime ")) {
+                    return Long.parseLong(line.substring(6).trim()) * 1000;
+                }
+            }
+        } catch (IOException | NumberFormatException e) {
+            System.err.println("ProcFsSnapshotProvider: Could not read boot time: " + e.getMessage());
+        }
+        return -1;
+    }
+
+    // The kernel passes the page size to every process in its auxiliary vector: (type, value) pairs of native
+    // words, AT_PAGESZ being type 6 and AT_NULL (0) ending the list
+    private long readPageSize() {
+        try {
+            ByteBuffer auxv = ByteBuffer.wrap(Files.readAllBytes(procRoot.resolve("self").resolve("auxv"))).order(ByteOrder.nativeOrder());
+            boolean wide = !"32".equals(System.getProperty("sun.arch.data.model"));
+            int entrySize = wide ? 16 : 8;
+            while (auxv.remaining() >= entrySize) {
+                long type = wide ? auxv.getLong() : auxv.getInt() & 0xffffffffL;
+                long value = wide ? auxv.getLong() : auxv.getInt() & 0xffffffffL;
+                if (type == AT_NULL) break;
+                if (type == AT_PAGESZ && value > 0) return value;
+            }
+            System.err.println("ProcFsSnapshotProvider: No page size in auxv, assuming " + DEFAULT_PAGE_SIZE);
+        } catch (IOException e) {
+            System.err.println("ProcFsSnapshotProvider: Could not read page size: " + e.getMessage());
+        }
+        return DEFAULT_PAGE_SIZE;
+    }
+
+    private static boolean isNumeric(String s) {
+        if (s.isEmpty()) return false;
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c < '0' || c > '9') return false;
+        }
+        return true;
+    }
+
+    @Override
+    public String getName() {
+        return "procfs";
+    }
+
+    @Override
+    public boolean supportsResidentMemory() {
+        return true;
+    }
+}
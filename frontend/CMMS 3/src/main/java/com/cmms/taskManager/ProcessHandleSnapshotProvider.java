@@ -0,0 +1,90 @@
+package com.cmms.taskManager;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Process snapshots via {@link ProcessHandle#allProcesses()}, without forking any external command.
+ * {@link ProcessHandle} has no memory or thread information; given {@link WindowsProcessCounters}, each snapshot
+ * takes them from one batched call for all processes.
+ * If the JVM cannot see the executable of any process (e.g. restricted token on Windows),
+ * the optional fallback provider is used instead.
+ */
+public class ProcessHandleSnapshotProvider implements ProcessSnapshotProvider {
+
+    private final ProcessSnapshotProvider fallback;
+    private final WindowsProcessCounters counters;
+
+    public ProcessHandleSnapshotProvider(ProcessSnapshotProvider fallback) {
+        this(fallback, null);
+    }
+
+    /**
+     * @param counters Source of resident memory and thread counts, or null to report neither.
+     */
+    ProcessHandleSnapshotProvider(ProcessSnapshotProvider fallback, WindowsProcessCounters counters) {
+        this.fallback = fallback;
+        this.counters = counters;
+    }
+
+    @Override
+    public List<ProcessInfo> snapshot() throws IOException {
+        List<ProcessInfo> processes = new ArrayList<>(256);
+        Map<Long, WindowsProcessCounters.Counters> countersByPid = readCounters();
+        Iterator<ProcessHandle> it = ProcessHandle.allProcesses().iterator();
+        while (it.hasNext()) {
+            ProcessHandle handle = it.next();
+            ProcessHandle.Info info = handle.info();
+            String command = info.command().orElse(null);
+            if (command == null) {
+                continue; // Not visible to this user, nothing to match against
+            }
+            long start = info.startInstant().map(Instant::toEpochMilli).orElse(-1L);
+            long cpu = info.totalCpuDuration().map(Duration::toMillis).orElse(-1L);
+            WindowsProcessCounters.Counters counts = countersByPid != null ? countersByPid.get(handle.pid()) : null;
+            if (counts != null && start >= 0 && counts.startMillis() >= 0 && counts.startMillis() != start) {
+                counts = null; // The PID was reused between the two reads
+            }
+            processes.add(new ProcessInfo(handle.pid(), baseName(command), info.commandLine().orElse(command), start, cpu,
+                    counts != null ? counts.residentBytes() : -1, counts != null ? counts.threadCount() : -1));
+        }
+        if (processes.isEmpty() && fallback != null) {
+            System.err.println("ProcessHandleSnapshotProvider: No process details visible, using " + fallback.getName());
+            return fallback.snapshot();
+        }
+        return processes;
+    }
+
+    // A failed read leaves memory out of this snapshot only; the processes are still needed for enforcement
+    private Map<Long, WindowsProcessCounters.Counters> readCounters() {
+        if (counters == null) {
+            return null;
+        }
+        try {
+            return counters.read();
+        } catch (IOException e) {
+            System.err.println("ProcessHandleSnapshotProvider: Could not read process counters: " + e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public String getName() {
+        return counters != null ? "ProcessHandle+ntdll" : "ProcessHandle";
+    }
+
+    @Override
+    public boolean supportsResidentMemory() {
+        return counters != null;
+    }
+
+    static String baseName(String path) {
+        int slash = Math.max(path.lastIndexOf('/'), path.lastIndexOf('\\'));
+        return slash >= 0 ? path.substring(slash + 1) : path;
+    }
+}
@@ -0,0 +1,88 @@
+package com.cmms.taskManager;
+
+/**
+ * Immutable view of a single running process as reported by a {@link ProcessSnapshotProvider}.
+ * Numeric fields that a backend cannot supply are reported as -1.
+ */
+public class ProcessInfo {
+    private final long pid;
+    private final String name;
+    private final String commandLine;
+    private final long startMillis;
+    private final long cpuMillis;
+    private final long residentBytes;
+    private final int threadCount;
+
+    public ProcessInfo(long pid, String name, String commandLine, long startMillis, long cpuMillis, long residentBytes) {
+        this(pid, name, commandLine, startMillis, cpuMillis, residentBytes, -1);
+    }
+
+    public ProcessInfo(long pid, String name, String commandLine, long startMillis, long cpuMillis, long residentBytes,
+                       int threadCount) {
+        this.pid = pid;
+        this.name = name != null ? name : "";
+        this.commandLine = commandLine;
+        this.startMillis = startMillis;
+        this.cpuMillis = cpuMillis;
+        this.residentBytes = residentBytes;
+        this.threadCount = threadCount;
+    }
+
+    public long getPid() {
+        return pid;
+    }
+
+    /**
+     * @return The executable image name (e.g. "chrome.exe"), never null.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * @return The full command line, or null if the backend cannot read it.
+     */
+    public String getCommandLine() {
+        return commandLine;
+    }
+
+    /**
+     * @return Process start time in epoch milliseconds, or -1 if unknown.
+     */
+    public long getStartMillis() {
+        return startMillis;
+    }
+
+    /**
+     * @return Total CPU time consumed in milliseconds, or -1 if unknown.
+     */
+    public long getCpuMillis() {
+        return cpuMillis;
+    }
+
+    /**
+     * @return Resident memory in bytes, or -1 if unknown.
+     */
+    public long getResidentBytes() {
+        return residentBytes;
+    }
+
+    /**
+     * @return Number of threads, or -1 if unknown.
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
+
+    @Override
+    public String toString() {
+        return "ProcessInfo{" +
+               "pid=" + pid +
+               ", name='" + name + '\'' +
+               ", startMillis=" + startMillis +
+               ", cpuMillis=" + cpuMillis +
+               ", residentBytes=" + residentBytes +
+               ", threadCount=" + threadCount +
+               '}';
+    }
+}
@@ -0,0 +1,171 @@
+package com.cmms.taskManager;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manual check and benchmark for {@link ProcessListingParser}.
+ * <p>
+ * First verifies the parser against the recorded tasklist and ps fixtures (exits with status 1 on a mismatch),
+ * then compares it with the split/replace based parsing it replaced on a synthetic listing of the given size.
+ * Run with: java com.cmms.taskManager.ProcessListingBenchmark [processes] [iterations]
+ */
+public class ProcessListingBenchmark {
+
+    private static final String FIXTURES = "/com/cmms/taskManager/fixtures/";
+
+    public static void main(String[] args) throws Exception {
+        int processes = args.length > 0 ? Integer.parseInt(args[0]) : 300;
+        int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20_000;
+
+        boolean ok = verifyTasklistFixture() & verifyPsFixture();
+        if (!ok) {
+            System.err.println("Fixture verification FAILED");
+            System.exit(1);
+        }
+        System.out.println("Fixtures OK");
+
+        byte[] tasklist = synthesize(readFixture("tasklist_csv.txt"), processes);
+        byte[] ps = synthesize(readFixture("ps_comm_mem.txt"), processes);
+
+        ProcessListingParser tasklistParser = new ProcessListingParser(ProcessListingParser.Format.TASKLIST_CSV);
+        ProcessListingParser psParser = new ProcessListingParser(ProcessListingParser.Format.PS_COMM_MEM);
+        long[] sink = new long[1];
+
+        run("tasklist split", iterations, () -> sink[0] += legacyTasklist(tasklist));
+        run("tasklist stream", iterations, () -> sink[0] += tasklistParser.parse(new ByteArrayInputStream(tasklist),
+                r -> sink[0] += r.getPid() + r.getMemoryKb()));
+        run("ps split", iterations, () -> sink[0] += legacyPs(ps));
+        run("ps stream", iterations, () -> sink[0] += psParser.parse(new ByteArrayInputStream(ps),
+                r -> sink[0] += (long) r.getMemoryPercent()));
+        System.out.println("(checksum " + sink[0] + ")");
+    }
+
+    private interface Body {
+        void run() throws IOException;
+    }
+
+    private static void run(String label, int iterations, Body body) throws IOException {
+        for (int i = 0; i < iterations / 4; i++) body.run(); // Warm up
+
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long threadId = Thread.currentThread().getId();
+        long allocatedBefore = threads.getThreadAllocatedBytes(threadId);
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) body.run();
+        long elapsed = System.nanoTime() - start;
+        long allocated = threads.getThreadAllocatedBytes(threadId) - allocatedBefore;
+        System.out.printf("%-16s %9.2f us/listing  %10d bytes allocated/listing%n",
+                label, elapsed / 1e3 / iterations, allocated / iterations);
+    }
+
+    // --- Fixture verification ---
+
+    private static boolean verifyTasklistFixture() throws IOException {
+        List<String> actual = new ArrayList<>();
+        new ProcessListingParser(ProcessListingParser.Format.TASKLIST_CSV, StandardCharsets.UTF_8)
+                .parse(new ByteArrayInputStream(readFixture("tasklist_csv.txt")),
+                        r -> actual.add(r.getNameString() + "|" + r.getPid() + "|" + r.getMemoryKb()));
+        return compare("tasklist_csv", actual);
+    }
+
+    private static boolean verifyPsFixture() throws IOException {
+        List<String> actual = new ArrayList<>();
+        new ProcessListingParser(ProcessListingParser.Format.PS_COMM_MEM, StandardCharsets.UTF_8)
+                .parse(new ByteArrayInputStream(readFixture("ps_comm_mem.txt")),
+                        r -> actual.add(r.getNameString() + "|" + r.getMemoryPercent()));
+        return compare("ps_comm_mem", actual);
+    }
+
+    private static boolean compare(String fixture, List<String> actual) throws IOException {
+        List<String> expected = new ArrayList<>();
+        for (String line : new String(readFixture(fixture + ".expected"), StandardCharsets.UTF_8).split("\n")) {
+            if (!line.isEmpty()) expected.add(line);
+        }
+        boolean ok = expected.size() == actual.size();
+        for (int i = 0; i < Math.min(expected.size(), actual.size()); i++) {
+            if (!expected.get(i).equals(actual.get(i))) {
+                System.err.println(fixture + " line " + (i + 1) + ": expected '" + expected.get(i) + "' but got '" + actual.get(i) + "'");
+                ok = false;
+            }
+        }
+        if (expected.size() != actual.size()) {
+            System.err.println(fixture + ": expected " + expected.size() + " records but got " + actual.size());
+        }
+        return ok;
+    }
+
+    private static byte[] readFixture(String name) throws IOException {
+        try (InputStream in = ProcessListingBenchmark.class.getResourceAsStream(FIXTURES + name)) {
+            if (in == null) throw new IOException("Missing fixture " + name);
+            return in.readAllBytes();
+        }
+    }
+
+    /**
+     * Repeats the fixture's data lines (header kept once) until the listing has the requested number of lines.
+     */
+    private static byte[] synthesize(byte[] fixture, int lines) {
+        String[] fixtureLines = new String(fixture, StandardCharsets.UTF_8).split("\r?\n");
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] header = (fixtureLines[0] + "\r\n").getBytes(StandardCharsets.UTF_8);
+        out.write(header, 0, header.length);
+        for (int i = 0; i < lines; i++) {
+            String line = fixtureLines[1 + i % (fixtureLines.length - 1)];
+            byte[] bytes = (line + "\r\n").getBytes(StandardCharsets.UTF_8);
+            out.write(bytes, 0, bytes.length);
+        }
+        return out.toByteArray();
+    }
+
+    // --- The parsing this replaced, kept here as the baseline ---
+
+    private static long legacyTasklist(byte[] data) throws IOException {
+        long checksum = 0;
+        try (BufferedReader input = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data)))) {
+            String line;
+            while ((line = input.readLine()) != null) {
+                String[] processDetails = line.split("\",\"");
+                if (processDetails.length > 4) {
+                    String memoryUsageString = processDetails[4].replace(" K", "").replace(",", "").replace(".", "").replace("\"", "");
+                    String processName = processDetails[0].replace("\"", "");
+                    try {
+                        checksum += Long.parseLong(processDetails[1]) + Long.parseLong(memoryUsageString) + processName.length();
+                    } catch (NumberFormatException e) {
+                        // Header line
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+
+    private static long legacyPs(byte[] data) throws IOException {
+        long checksum = 0;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(new ByteArrayInputStream(data)))) {
+            String line;
+            reader.readLine();
+            while ((line = reader.readLine()) != null) {
+                int lastSpace = line.lastIndexOf(' ');
+                if (lastSpace != -1) {
+                    String appName = line.substring(0, lastSpace).trim();
+                    String memoryUsageStr = line.substring(lastSpace + 1).trim();
+                    try {
+                        checksum += (long) Double.parseDouble(memoryUsageStr) + appName.length();
+                    } catch (NumberFormatException e) {
+                        // "0,9" style values are not handled by the old code
+                    }
+                }
+            }
+        }
+        return checksum;
+    }
+}
@@ -0,0 +1,357 @@
+package com.cmms.taskManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Streaming parser for the output of the process listing commands we still fork:
+ * <ul>
+ *   <li>{@link Format#TASKLIST_CSV}: {@code tasklist /fo csv [/nh]} - "Image Name","PID","Session Name","Session#","Mem Usage"</li>
+ *   <li>{@link Format#PS_COMM_MEM}: {@code ps -o comm,%mem} - name (may contain spaces) followed by the memory percentage</li>
+ * </ul>
+ * Bytes are read into a reusable buffer and each line is decoded into a single reusable {@link Record}, so parsing
+ * creates no Strings unless the caller asks for one. Header lines and lines that do not parse are skipped.
+ * An instance is not thread-safe; reuse it from one thread (or guard it) to keep its buffers warm.
+ */
+public class ProcessListingParser {
+
+    public enum Format {
+        TASKLIST_CSV,
+        PS_COMM_MEM
+    }
+
+    /**
+     * Receives each parsed line. The record is reused for the next line, so copy out anything that must outlive the call.
+     */
+    public interface RecordHandler {
+        void onRecord(Record record);
+    }
+
+    private static final int READ_BUFFER_SIZE = 8192;
+
+    private final Format format;
+    private final byte[] readBuffer = new byte[READ_BUFFER_SIZE];
+    private byte[] line = new byte[256];
+    private int lineLength;
+    private final Record record;
+    private int records;
+    private int skippedLines;
+
+    public ProcessListingParser(Format format) {
+        this(format, Charset.defaultCharset());
+    }
+
+    /**
+     * @param charset Used only to decode names that are not plain ASCII.
+     */
+    public ProcessListingParser(Format format, Charset charset) {
+        this.format = format;
+        this.record = new Record(charset);
+    }
+
+    /**
+     * Parses the stream to its end.
+     *
+     * @return Number of records passed to the handler.
+     */
+    public int parse(InputStream in, RecordHandler handler) throws IOException {
+        reset();
+        int n;
+        while ((n = in.read(readBuffer)) > 0) {
+            feed(readBuffer, 0, n, handler);
+        }
+        return finish(handler);
+    }
+
+    /**
+     * Parses output that is already in memory.
+     *
+     * @return Number of records passed to the handler.
+     */
+    public int parse(byte[] data, int offset, int length, RecordHandler handler) {
+        reset();
+        feed(data, offset, length, handler);
+        return finish(handler);
+    }
+
+    /**
+     * @return Lines skipped by the last parse (headers, blank or malformed lines).
+     */
+    public int getSkippedLines() {
+        return skippedLines;
+    }
+
+    private void reset() {
+        lineLength = 0;
+        records = 0;
+        skippedLines = 0;
+    }
+
+    private void feed(byte[] data, int offset, int length, RecordHandler handler) {
+        int end = offset + length;
+        for (int i = offset; i < end; i++) {
+            byte b = data[i];
+            if (b == '\n') {
+                endLine(handler);
+            } else if (b != '\r') {
+                if (lineLength == line.length) {
+                    byte[] grown = new byte[line.length * 2];
+                    System.arraycopy(line, 0, grown, 0, lineLength);
+                    line = grown;
+                }
+                line[lineLength++] = b;
+            }
+        }
+    }
+
+    private int finish(RecordHandler handler) {
+        if (lineLength > 0) endLine(handler);
+        return records;
+    }
+
+    private void endLine(RecordHandler handler) {
+        boolean parsed = lineLength > 0
+                && (format == Format.TASKLIST_CSV ? parseTasklistLine() : parsePsLine());
+        lineLength = 0;
+        if (parsed) {
+            records++;
+            handler.onRecord(record);
+        } else {
+            skippedLines++;
+        }
+    }
+
+    private boolean parseTasklistLine() {
+        record.clear();
+        int field = 0;
+        boolean inQuotes = false;
+        boolean pidDigits = false;
+        boolean memoryDigits = false;
+        long pid = 0;
+        long memoryKb = 0;
+        for (int i = 0; i < lineLength; i++) {
+            byte b = line[i];
+            if (b == '"') {
+                if (inQuotes && i + 1 < lineLength && line[i + 1] == '"') {
+                    i++; // Escaped quote inside a field
+                } else {
+                    inQuotes = !inQuotes;
+                    continue;
+                }
+            } else if (b == ',' && !inQuotes) {
+                field++;
+                continue;
+            }
+            switch (field) {
+                case 0:
+                    record.appendName(b);
+                    break;
+                case 1:
+                    if (b >= '0' && b <= '9') {
+                        pid = pid * 10 + (b - '0');
+                        pidDigits = true;
+                    }
+                    break;
+                case 4:
+                    // "123,456 K" or "123.456 K" depending on locale: keep digits only
+                    if (b >= '0' && b <= '9') {
+                        memoryKb = memoryKb * 10 + (b - '0');
+                        memoryDigits = true;
+                    }
+                    break;
+                default:
+                    break;
+            }
+        }
+        record.trimName();
+        if (record.nameLength == 0 || !pidDigits) return false; // Header or garbage
+        record.pid = pid;
+        record.memoryKb = memoryDigits ? memoryKb : -1;
+        return true;
+    }
+
+    private boolean parsePsLine() {
+        record.clear();
+        int end = lineLength;
+        while (end > 0 && isSpace(line[end - 1])) end--;
+        int tokenStart = end;
+        while (tokenStart > 0 && !isSpace(line[tokenStart - 1])) tokenStart--;
+        if (tokenStart == 0 || tokenStart == end) return false; // Need a name and a value
+
+        double percent = parseDecimal(line, tokenStart, end);
+        if (percent < 0) return false; // "%MEM" header or malformed
+
+        int nameStart = 0;
+        while (nameStart < tokenStart && isSpace(line[nameStart])) nameStart++;
+        for (int i = nameStart; i < tokenStart; i++) record.appendName(line[i]);
+        record.trimName();
+        if (record.nameLength == 0) return false;
+        record.memoryPercent = percent;
+        return true;
+    }
+
+    /**
+     * Parses "12", "0.5" or "0,5" without allocating.
+     *
+     * @return The value, or -1 if the token is not a plain non-negative decimal.
+     */
+    private static double parseDecimal(byte[] bytes, int start, int end) {
+        long whole = 0;
+        long fraction = 0;
+        long divisor = 1;
+        boolean separatorSeen = false;
+        boolean digitSeen = false;
+        for (int i = start; i < end; i++) {
+            byte b = bytes[i];
+            if (b >= '0' && b <= '9') {
+                digitSeen = true;
+                if (separatorSeen) {
+                    fraction = fraction * 10 + (b - '0');
+                    divisor *= 10;
+                } else {
+                    whole = whole * 10 + (b - '0');
+                }
+            } else if ((b == '.' || b == ',') && !separatorSeen) {
+                separatorSeen = true;
+            } else {
+                return -1;
+            }
+        }
+        return digitSeen ? whole + (double) fraction / divisor : -1;
+    }
+
+    private static boolean isSpace(byte b) {
+        return b == ' ' || b == '\t';
+    }
+
+    /**
+     * One parsed line. Fields a format does not provide are -1.
+     */
+    public static final class Record {
+        private final Charset charset;
+        private final NameView nameView = new NameView();
+        private byte[] name = new byte[64];
+        private int nameLength;
+        private boolean nameAscii;
+        private long pid;
+        private long memoryKb;
+        private double memoryPercent;
+
+        Record(Charset charset) {
+            this.charset = charset;
+        }
+
+        /**
+         * @return The process name. For ASCII names this is a view over the record's buffer that is only valid
+         * during the handler call; non-ASCII names are decoded into a new String.
+         */
+        public CharSequence getName() {
+            return nameAscii ? nameView : getNameString();
+        }
+
+        /**
+         * @return The process name as a new String.
+         */
+        public String getNameString() {
+            return new String(name, 0, nameLength, nameAscii ? StandardCharsets.US_ASCII : charset);
+        }
+
+        public boolean nameEquals(String other) {
+            if (!nameAscii) return getNameString().equals(other);
+            if (other.length() != nameLength) return false;
+            for (int i = 0; i < nameLength; i++) {
+                if (other.charAt(i) != (char) name[i]) return false;
+            }
+            return true;
+        }
+
+        public boolean nameEqualsIgnoreCase(String other) {
+            if (!nameAscii) return getNameString().equalsIgnoreCase(other);
+            if (other.length() != nameLength) return false;
+            for (int i = 0; i < nameLength; i++) {
+                if (Character.toLowerCase(other.charAt(i)) != Character.toLowerCase((char) name[i])) return false;
+            }
+            return true;
+        }
+
+        /**
+         * @return PID, or -1 if the format has none (ps comm,%mem).
+         */
+        public long getPid() {
+            return pid;
+        }
+
+        /**
+         * @return Memory usage in KB as reported by tasklist, or -1.
+         */
+        public long getMemoryKb() {
+            return memoryKb;
+        }
+
+        /**
+         * @return Memory usage percentage as reported by ps, or -1.
+         */
+        public double getMemoryPercent() {
+            return memoryPercent;
+        }
+
+        private void clear() {
+            nameLength = 0;
+            nameAscii = true;
+            pid = -1;
+            memoryKb = -1;
+            memoryPercent = -1;
+        }
+
+        private void appendName(byte b) {
+            if (nameLength == name.length) {
+                byte[] grown = new byte[name.length * 2];
+                System.arraycopy(name, 0, grown, 0, nameLength);
+                name = grown;
+            }
+            if (b < 0) nameAscii = false;
+            name[nameLength++] = b;
+        }
+
+        private void trimName() {
+            int start = 0;
+            while (start < nameLength && isSpace(name[start])) start++;
+            int end = nameLength;
+            while (end > start && isSpace(name[end - 1])) end--;
+            if (start > 0) System.arraycopy(name, start, name, 0, end - start);
+            nameLength = end - start;
+        }
+
+        @Override
+        public String toString() {
+            return "Record{name='" + getNameString() + "', pid=" + pid + ", memoryKb=" + memoryKb + ", memoryPercent=" + memoryPercent + '}';
+        }
+
+        /**
+         * Zero-copy CharSequence over an ASCII name.
+         */
+        private final class NameView implements CharSequence {
+            @Override
+            public int length() {
+                return nameLength;
+            }
+
+            @Override
+            public char charAt(int index) {
+                return (char) name[index];
+            }
+
+            @Override
+            public CharSequence subSequence(int start, int end) {
+                return toString().substring(start, end);
+            }
+
+            @Override
+            public String toString() {
+                return getNameString();
+            }
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.cmms.taskManager;
+
+import com.cmms.util.OSValidator;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Manual benchmark: measures the cost of one monitoring tick for each snapshot backend
+ * available on this machine, and what that costs at the app monitor's poll rate. Ticks run back to back, so after
+ * the first few a provider that caches per process sees no new processes, as between most real polls.
+ * First checks, on any platform, that {@link WindowsProcessCounters} reads hand-built process tables of both
+ * pointer sizes (exits with status 1 if not).
+ * Run with: java com.cmms.taskManager.ProcessSnapshotBenchmark [ticks]
+ */
+public class ProcessSnapshotBenchmark {
+
+    private static final long POLL_INTERVAL_MS = 250; // AppMonitorService's fastest poll
+
+    public static void main(String[] args) throws Exception {
+        int ticks = args.length > 0 ? Integer.parseInt(args[0]) : 50;
+
+        List<ProcessSnapshotProvider> providers = new ArrayList<>();
+        providers.add(new ProcessHandleSnapshotProvider(null));
+        if (OSValidator.isUnix()) {
+            providers.add(new ProcFsSnapshotProvider());
+        }
+        if (OSValidator.isWindows()) {
+            if (WindowsProcessCounters.shared() != null) {
+                providers.add(new ProcessHandleSnapshotProvider(null, WindowsProcessCounters.shared()));
+            }
+            providers.add(new TasklistSnapshotProvider());
+        }
+        if (!verifyCounterLayout()) {
+            System.err.println("Windows process counter parsing FAILED");
+            System.exit(1);
+        }
+
+        for (ProcessSnapshotProvider provider : providers) {
+            // Warm up JIT and file system caches
+            for (int i = 0; i < 5; i++) provider.snapshot();
+
+            long totalNanos = 0;
+            long worstNanos = 0;
+            int processCount = 0;
+            for (int i = 0; i < ticks; i++) {
+                long start = System.nanoTime();
+                processCount = provider.snapshot().size();
+                long elapsed = System.nanoTime() - start;
+                totalNanos += elapsed;
+                worstNanos = Math.max(worstNanos, elapsed);
+            }
+            System.out.printf("%-14s processes=%-5d avg=%8.3f ms/tick  worst=%8.3f ms  %.2f%% of a core at the %d ms poll%n",
+                    provider.getName(), processCount, totalNanos / 1e6 / ticks, worstNanos / 1e6,
+                    totalNanos / 1e4 / ticks / POLL_INTERVAL_MS, POLL_INTERVAL_MS);
+        }
+    }
+
+    private static boolean verifyCounterLayout() {
+        long startMillis = 1_760_000_000_000L;
+        long createTime = startMillis * 10_000 + 116_444_736_000_000_000L;
+        ByteBuffer x64 = ByteBuffer.allocate(1024).order(ByteOrder.LITTLE_ENDIAN);
+        x64.putInt(0, 256 + 2 * 80).putInt(4, 2).putLong(32, createTime).putLong(80, 1234).putLong(144, 50L << 20);
+        x64.putInt(416 + 4, 7).putLong(416 + 80, 4).putLong(416 + 144, 1L << 20); // System: no creation time, last entry
+        ByteBuffer x86 = ByteBuffer.allocate(256).order(ByteOrder.LITTLE_ENDIAN);
+        x86.putInt(4, 3).putLong(32, createTime).putInt(68, 0xfffffff0).putInt(104, 0x90000000);
+
+        Map<Long, WindowsProcessCounters.Counters> wide = WindowsProcessCounters.parse(x64, WindowsProcessCounters.Layout.X64);
+        Map<Long, WindowsProcessCounters.Counters> narrow = WindowsProcessCounters.parse(x86, WindowsProcessCounters.Layout.X86);
+        return wide.size() == 2
+                && new WindowsProcessCounters.Counters(startMillis, 50L << 20, 2).equals(wide.get(1234L))
+                && new WindowsProcessCounters.Counters(-1, 1L << 20, 7).equals(wide.get(4L))
+                && narrow.size() == 1
+                && new WindowsProcessCounters.Counters(startMillis, 0x90000000L, 3).equals(narrow.get(0xfffffff0L));
+    }
+}
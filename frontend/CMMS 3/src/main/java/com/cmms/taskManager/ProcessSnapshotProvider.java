@@ -0,0 +1,60 @@
+package com.cmms.taskManager;
+
+import com.cmms.util.OSValidator;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.List;
+
+/**
+ * Source of process table snapshots used by the app monitors.
+ * Implementations should be cheap enough to call on every monitoring tick.
+ */
+public interface ProcessSnapshotProvider {
+
+    /**
+     * Takes a snapshot of the currently running processes.
+     *
+     * @return The processes visible to this backend. Never null.
+     * @throws IOException If the underlying source could not be read.
+     */
+    List<ProcessInfo> snapshot() throws IOException;
+
+    /**
+     * @return Short backend name used in logs and benchmarks.
+     */
+    String getName();
+
+    /**
+     * @return true if {@link ProcessInfo#getResidentBytes()} is populated by this backend.
+     */
+    boolean supportsResidentMemory();
+
+    /**
+     * Returns the preferred in-JVM provider for the current platform:
+     * /proc on Linux, {@link ProcessHandle} elsewhere. On Windows, memory and thread counts come from
+     * {@link WindowsProcessCounters}, and tasklist is the fallback.
+     */
+    static ProcessSnapshotProvider getDefault() {
+        if (OSValidator.isUnix() && Files.isDirectory(Paths.get("/proc"))) {
+            return new ProcFsSnapshotProvider();
+        }
+        if (OSValidator.isWindows()) {
+            return new ProcessHandleSnapshotProvider(new TasklistSnapshotProvider(), WindowsProcessCounters.shared());
+        }
+        return new ProcessHandleSnapshotProvider(null);
+    }
+
+    /**
+     * Returns a provider that reports resident memory, for callers that rank processes by memory.
+     * Windows uses tasklist here only if ntdll's process counters could not be loaded.
+     */
+    static ProcessSnapshotProvider withResidentMemory() {
+        ProcessSnapshotProvider provider = getDefault();
+        if (provider.supportsResidentMemory()) {
+            return provider;
+        }
+        return OSValidator.isWindows() ? new TasklistSnapshotProvider() : provider;
+    }
+}
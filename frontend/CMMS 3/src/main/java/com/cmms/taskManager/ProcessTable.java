@@ -0,0 +1,193 @@
+package com.cmms.taskManager;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
+/**
+ * Generational table of live processes keyed by (pid, start time).
+ * Each {@link #update(List)} marks the processes seen in a snapshot with the current generation,
+ * emits "started" for keys not seen before and "exited" for keys missing from the snapshot.
+ * Keys are kept in primitive long arrays (open addressing, linear probing) so lookups never box.
+ * Not thread-safe: meant to be owned by a single scanner thread.
+ */
+public class ProcessTable {
+
+    /**
+     * Receives process lifecycle events from {@link ProcessTable#update(List)}.
+     */
+    public interface ProcessEventListener {
+        void onProcessStarted(ProcessInfo process);
+        void onProcessExited(ProcessInfo process);
+    }
+
+    private static final byte EMPTY = 0;
+    private static final byte FULL = 1;
+    private static final byte DELETED = 2;
+
+    private final List<ProcessEventListener> listeners = new CopyOnWriteArrayList<>();
+    private long[] pids;
+    private long[] starts;
+    private int[] generations;
+    private ProcessInfo[] infos;
+    private byte[] states;
+    private int size;
+    private int tombstones;
+    private int generation;
+
+    public ProcessTable() {
+        this(512);
+    }
+
+    public ProcessTable(int initialCapacity) {
+        allocate(Integer.highestOneBit(Math.max(16, initialCapacity - 1)) << 1);
+    }
+
+    public void addListener(ProcessEventListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(ProcessEventListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Applies a new snapshot, emitting started events for unseen processes and exited events
+     * for processes that are no longer present.
+     *
+     * @return The number of newly started processes.
+     */
+    public int update(List<ProcessInfo> snapshot) {
+        generation++;
+        int started = 0;
+        for (int i = 0, n = snapshot.size(); i < n; i++) {
+            ProcessInfo info = snapshot.get(i);
+            int slot = find(info.getPid(), info.getStartMillis());
+            if (slot >= 0) {
+                generations[slot] = generation;
+                infos[slot] = info; // Keep the freshest counters for this process
+                continue;
+            }
+            insert(info);
+            started++;
+            for (ProcessEventListener listener : listeners) {
+                listener.onProcessStarted(info);
+            }
+        }
+        // Sweep: anything not touched in this generation has exited
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == FULL && generations[slot] != generation) {
+                ProcessInfo exited = infos[slot];
+                states[slot] = DELETED;
+                infos[slot] = null;
+                size--;
+                tombstones++;
+                for (ProcessEventListener listener : listeners) {
+                    listener.onProcessExited(exited);
+                }
+            }
+        }
+        if (tombstones > states.length / 4) {
+            rehash(states.length);
+        }
+        return started;
+    }
+
+    /**
+     * Visits every process present in the last snapshot.
+     */
+    public void forEach(Consumer<ProcessInfo> action) {
+        for (int slot = 0; slot < states.length; slot++) {
+            if (states[slot] == FULL) action.accept(infos[slot]);
+        }
+    }
+
+    public boolean contains(long pid, long startMillis) {
+        return find(pid, startMillis) >= 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Forgets all processes without emitting events, so the next update reports every process as started.
+     */
+    public void clear() {
+        Arrays.fill(states, EMPTY);
+        Arrays.fill(infos, null);
+        size = 0;
+        tombstones = 0;
+    }
+
+    private int find(long pid, long start) {
+        int mask = states.length - 1;
+        int slot = hash(pid, start) & mask;
+        while (true) {
+            byte state = states[slot];
+            if (state == EMPTY) return -1;
+            if (state == FULL && pids[slot] == pid && starts[slot] == start) return slot;
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    private void insert(ProcessInfo info) {
+        if ((size + tombstones + 1) * 2 > states.length) {
+            rehash(size * 4 > states.length ? states.length << 1 : states.length);
+        }
+        int mask = states.length - 1;
+        int slot = hash(info.getPid(), info.getStartMillis()) & mask;
+        while (states[slot] == FULL) {
+            slot = (slot + 1) & mask;
+        }
+        if (states[slot] == DELETED) tombstones--;
+        states[slot] = FULL;
+        pids[slot] = info.getPid();
+        starts[slot] = info.getStartMillis();
+        generations[slot] = generation;
+        infos[slot] = info;
+        size++;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldPids = pids;
+        long[] oldStarts = starts;
+        int[] oldGenerations = generations;
+        ProcessInfo[] oldInfos = infos;
+        byte[] oldStates = states;
+        allocate(capacity);
+        int mask = capacity - 1;
+        for (int i = 0; i < oldStates.length; i++) {
+            if (oldStates[i] != FULL) continue;
+            int slot = hash(oldPids[i], oldStarts[i]) & mask;
+            while (states[slot] == FULL) {
+                slot = (slot + 1) & mask;
+            }
+            states[slot] = FULL;
+            pids[slot] = oldPids[i];
+            starts[slot] = oldStarts[i];
+            generations[slot] = oldGenerations[i];
+            infos[slot] = oldInfos[i];
+            size++;
+        }
+    }
+
+    private void allocate(int capacity) {
+        pids = new long[capacity];
+        starts = new long[capacity];
+        generations = new int[capacity];
+        infos = new ProcessInfo[capacity];
+        states = new byte[capacity];
+        size = 0;
+        tombstones = 0;
+    }
+
+    private static int hash(long pid, long start) {
+        long h = pid * 0x9E3779B97F4A7C15L + start;
+        h ^= (h >>> 33);
+        h *= 0xff51afd7ed558ccdL;
+        h ^= (h >>> 33);
+        return (int) h;
+    }
+}
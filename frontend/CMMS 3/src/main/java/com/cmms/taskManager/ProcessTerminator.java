@@ -0,0 +1,298 @@
+package com.cmms.taskManager;
+
+import com.cmms.util.OSValidator;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Predicate;
+
+/**
+ * Terminates a batch of processes (and their descendants) by PID.
+ * <p>
+ * Each batch is killed in-JVM with {@link ProcessHandle#destroyForcibly()} and confirmed through
+ * {@link ProcessHandle#onExit()} with a timeout. Only PIDs that survive are handed to a single native
+ * command ("taskkill /F /T /PID .." on Windows, "kill -9 .." elsewhere), so a batch costs at most one fork.
+ * <p>
+ * Processes from a snapshot are killed only if their PID still belongs to the same process, i.e. its start time
+ * still matches the snapshot's, so a PID reused since the scan is left alone. {@link #terminateProcessesAsync}
+ * returns as soon as the kills are sent; the waits for exit and the fallback happen on a background thread.
+ */
+public class ProcessTerminator {
+
+    public enum Status {
+        /** Killed through ProcessHandle and confirmed exited. */
+        TERMINATED,
+        /** Survived destroyForcibly but was killed by the native fallback command. */
+        TERMINATED_BY_FALLBACK,
+        /** Was no longer running when the batch was processed. */
+        NOT_RUNNING,
+        /** The PID now belongs to a process started after the snapshot; left alone. */
+        PID_REUSED,
+        /** Refused to kill (our own JVM). */
+        PROTECTED,
+        /** Still alive after the fallback and timeout. */
+        FAILED
+    }
+
+    /**
+     * Outcome for one requested PID.
+     */
+    public static class Result {
+        private final long pid;
+        private final Status status;
+        private final int descendantsKilled;
+
+        Result(long pid, Status status, int descendantsKilled) {
+            this.pid = pid;
+            this.status = status;
+            this.descendantsKilled = descendantsKilled;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        public Status getStatus() {
+            return status;
+        }
+
+        public int getDescendantsKilled() {
+            return descendantsKilled;
+        }
+
+        public boolean isSuccess() {
+            return status == Status.TERMINATED || status == Status.TERMINATED_BY_FALLBACK || status == Status.NOT_RUNNING
+                    || status == Status.PID_REUSED;
+        }
+
+        @Override
+        public String toString() {
+            return "Result{pid=" + pid + ", status=" + status + ", descendantsKilled=" + descendantsKilled + '}';
+        }
+    }
+
+    private static final long DEFAULT_EXIT_TIMEOUT_MS = 2000;
+    // Snapshot and ProcessHandle start times come from the same OS clock; this only absorbs rounding
+    private static final long START_TIME_TOLERANCE_MS = 1000;
+
+    // Exit waits and fallback commands, so callers such as the scanner never block on them
+    private static final ExecutorService WAITER = Executors.newCachedThreadPool(runnable -> {
+        Thread thread = new Thread(runnable, "ProcessTerminator-wait");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final long exitTimeoutMillis;
+    private final AtomicLong fallbackForks = new AtomicLong();
+
+    public ProcessTerminator() {
+        this(DEFAULT_EXIT_TIMEOUT_MS);
+    }
+
+    public ProcessTerminator(long exitTimeoutMillis) {
+        this.exitTimeoutMillis = exitTimeoutMillis;
+    }
+
+    /**
+     * Kills every PID in the batch together with its descendants, whatever process now has that PID.
+     *
+     * @return Per-PID results in request order.
+     */
+    public Map<Long, Result> terminate(Collection<Long> pids) {
+        return start(pids, Map.of()).join();
+    }
+
+    /**
+     * Kills the given processes from a snapshot together with their descendants, and waits for the outcome.
+     *
+     * @return Per-PID results in request order.
+     */
+    public Map<Long, Result> terminateProcesses(Collection<ProcessInfo> processes) {
+        return terminateProcessesAsync(processes).join();
+    }
+
+    /**
+     * As {@link #terminateProcesses}, but returns once the kills are sent; the future completes with the results
+     * after the exits are confirmed (up to two exit timeouts and one fallback command later).
+     */
+    public CompletableFuture<Map<Long, Result>> terminateProcessesAsync(Collection<ProcessInfo> processes) {
+        List<Long> pids = new ArrayList<>();
+        Map<Long, Long> startMillis = new HashMap<>();
+        for (ProcessInfo info : processes) {
+            pids.add(info.getPid());
+            if (info.getStartMillis() >= 0) startMillis.put(info.getPid(), info.getStartMillis());
+        }
+        return start(pids, startMillis);
+    }
+
+    // Sends the kills on this thread; the rest happens on WAITER
+    private CompletableFuture<Map<Long, Result>> start(Collection<Long> pids, Map<Long, Long> expectedStartMillis) {
+        Map<Long, Result> results = new HashMap<>();
+        Map<Long, ProcessHandle> roots = new LinkedHashMap<>();
+        Map<Long, Integer> descendantCounts = new HashMap<>();
+        long self = ProcessHandle.current().pid();
+
+        for (Long pid : pids) {
+            if (pid == null || results.containsKey(pid) || roots.containsKey(pid)) continue;
+            if (pid == self) {
+                results.put(pid, new Result(pid, Status.PROTECTED, 0));
+                continue;
+            }
+            Optional<ProcessHandle> handle = ProcessHandle.of(pid);
+            if (handle.isEmpty() || !handle.get().isAlive()) {
+                results.put(pid, new Result(pid, Status.NOT_RUNNING, 0));
+                continue;
+            }
+            ProcessHandle root = handle.get();
+            if (!isSameProcess(root, expectedStartMillis.get(pid))) {
+                results.put(pid, new Result(pid, Status.PID_REUSED, 0));
+                continue;
+            }
+            // Kill children first so they cannot be re-parented and keep running (like taskkill /T).
+            // Only the requested PIDs are confirmed: descendants may linger as zombies until their new parent reaps them.
+            List<ProcessHandle> descendants = new ArrayList<>();
+            root.descendants().forEach(descendants::add);
+            int killed = 0;
+            for (int i = descendants.size() - 1; i >= 0; i--) {
+                ProcessHandle child = descendants.get(i);
+                if (child.pid() != self && child.destroyForcibly()) killed++;
+            }
+            descendantCounts.put(pid, killed);
+            root.destroyForcibly();
+            roots.put(pid, root);
+        }
+        if (roots.isEmpty()) return CompletableFuture.completedFuture(inRequestOrder(pids, results));
+        return CompletableFuture.supplyAsync(() -> confirm(pids, roots, descendantCounts, results), WAITER);
+    }
+
+    private Map<Long, Result> confirm(Collection<Long> pids, Map<Long, ProcessHandle> roots,
+                                      Map<Long, Integer> descendantCounts, Map<Long, Result> results) {
+        List<CompletableFuture<ProcessHandle>> exits = new ArrayList<>();
+        for (ProcessHandle root : roots.values()) exits.add(root.onExit());
+        awaitExits(exits);
+
+        List<Long> survivors = new ArrayList<>();
+        for (Map.Entry<Long, ProcessHandle> entry : roots.entrySet()) {
+            if (entry.getValue().isAlive()) {
+                survivors.add(entry.getKey());
+            } else {
+                results.put(entry.getKey(), new Result(entry.getKey(), Status.TERMINATED, descendantCounts.get(entry.getKey())));
+            }
+        }
+
+        if (!survivors.isEmpty()) {
+            System.err.println("ProcessTerminator: " + survivors.size() + " process(es) survived destroyForcibly, using native fallback: " + survivors);
+            runFallback(survivors);
+            List<CompletableFuture<ProcessHandle>> fallbackExits = new ArrayList<>();
+            for (Long pid : survivors) fallbackExits.add(roots.get(pid).onExit());
+            awaitExits(fallbackExits);
+            for (Long pid : survivors) {
+                Status status = roots.get(pid).isAlive() ? Status.FAILED : Status.TERMINATED_BY_FALLBACK;
+                results.put(pid, new Result(pid, status, descendantCounts.get(pid)));
+            }
+        }
+        return inRequestOrder(pids, results);
+    }
+
+    // A PID without a known snapshot start time is taken as is
+    private static boolean isSameProcess(ProcessHandle handle, Long expectedStartMillis) {
+        if (expectedStartMillis == null) return true;
+        Optional<Instant> started = handle.info().startInstant();
+        return started.isEmpty()
+                || Math.abs(started.get().toEpochMilli() - expectedStartMillis) <= START_TIME_TOLERANCE_MS;
+    }
+
+    private static Map<Long, Result> inRequestOrder(Collection<Long> pids, Map<Long, Result> results) {
+        Map<Long, Result> ordered = new LinkedHashMap<>();
+        for (Long pid : pids) {
+            if (pid != null && results.containsKey(pid)) ordered.put(pid, results.get(pid));
+        }
+        return ordered;
+    }
+
+    /**
+     * Convenience for name-based callers: kills every process in the snapshot whose image name matches, ignoring case.
+     */
+    public Map<Long, Result> terminateByName(String imageName, ProcessSnapshotProvider provider) throws IOException {
+        return terminateMatching(provider, info -> info.getName().equalsIgnoreCase(imageName));
+    }
+
+    /**
+     * Takes one snapshot and kills every process accepted by the filter as a single batch.
+     */
+    public Map<Long, Result> terminateMatching(ProcessSnapshotProvider provider, Predicate<ProcessInfo> filter) throws IOException {
+        List<ProcessInfo> matches = new ArrayList<>();
+        for (ProcessInfo info : provider.snapshot()) {
+            if (info.getPid() >= 0 && filter.test(info)) matches.add(info);
+        }
+        return terminateProcesses(matches);
+    }
+
+    /**
+     * @return How many native fallback commands this terminator has started.
+     */
+    public long getFallbackForkCount() {
+        return fallbackForks.get();
+    }
+
+    private void awaitExits(List<CompletableFuture<ProcessHandle>> exits) {
+        if (exits.isEmpty()) return;
+        try {
+            CompletableFuture.allOf(exits.toArray(new CompletableFuture<?>[0])).get(exitTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            // Survivors are detected by the caller via isAlive()
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            System.err.println("ProcessTerminator: Error waiting for exit: " + e.getMessage());
+        }
+    }
+
+    private void runFallback(List<Long> pids) {
+        List<String> command = new ArrayList<>();
+        if (OSValidator.isWindows()) {
+            command.add("taskkill");
+            command.add("/F");
+            command.add("/T");
+            for (Long pid : pids) {
+                command.add("/PID");
+                command.add(String.valueOf(pid));
+            }
+        } else {
+            command.add("kill");
+            command.add("-9");
+            for (Long pid : pids) command.add(String.valueOf(pid));
+        }
+        Process process = null;
+        try {
+            fallbackForks.incrementAndGet();
+            process = new ProcessBuilder(command)
+                    .redirectErrorStream(true)
+                    .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                    .start();
+            if (!process.waitFor(exitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                System.err.println("ProcessTerminator: Fallback command timed out: " + command);
+            }
+        } catch (IOException e) {
+            System.err.println("ProcessTerminator: Could not run fallback command: " + e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            if (process != null) process.destroy();
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package com.cmms.taskManager;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Keeps a short per-process history of CPU time, resident memory and thread count.
+ * <p>
+ * Each process (identified by PID and start time) gets fixed-size primitive ring buffers, so recording a
+ * sample does not allocate once a process is known. Samples are fed from snapshots the app monitor already
+ * takes; nothing is forked to fill in memory or thread counts the snapshot backend can't report. The default
+ * backends report both: /proc on Linux, and on Windows {@link ProcessHandle} with the working set and thread count
+ * of all processes read in one call ({@link WindowsProcessCounters}). On macOS, and on Windows if ntdll can't be
+ * loaded, only CPU time is known, and memory is left out of {@link #toPayload}.
+ * Entries for processes that are no longer running are dropped on the next sample.
+ */
+public class ResourceSampler {
+
+    private static final int DEFAULT_CAPACITY = 120;
+    private static final long DEFAULT_MIN_SAMPLE_INTERVAL_MS = 1000;
+
+    private final int capacity;
+    private final long minSampleIntervalMillis;
+    private final Map<Long, Series> seriesByPid = new HashMap<>();
+    private long lastSampleMillis = -1;
+    private int generation;
+    private int sampleCount;
+
+    /**
+     * Keeps 120 samples per process, at most one per second (two minutes of history).
+     */
+    public ResourceSampler() {
+        this(DEFAULT_CAPACITY, DEFAULT_MIN_SAMPLE_INTERVAL_MS);
+    }
+
+    /**
+     * @param capacity                Samples kept per process.
+     * @param minSampleIntervalMillis Snapshots arriving faster than this are ignored.
+     */
+    public ResourceSampler(int capacity, long minSampleIntervalMillis) {
+        this.capacity = capacity;
+        this.minSampleIntervalMillis = minSampleIntervalMillis;
+    }
+
+    /**
+     * Records one snapshot, unless the previous sample is more recent than the minimum interval.
+     *
+     * @return true if the snapshot was recorded.
+     */
+    public synchronized boolean record(List<ProcessInfo> processes, long nowMillis) {
+        if (!isDue(nowMillis)) {
+            return false;
+        }
+        lastSampleMillis = nowMillis;
+        generation++;
+        sampleCount++;
+        for (ProcessInfo info : processes) {
+            Series series = seriesByPid.get(info.getPid());
+            if (series == null || series.startMillis != info.getStartMillis()) {
+                // New process, or the PID was reused
+                series = new Series(info.getPid(), info.getStartMillis(), capacity);
+                seriesByPid.put(info.getPid(), series);
+            }
+            series.name = info.getName();
+            series.generation = generation;
+            series.add(nowMillis, info.getCpuMillis(), info.getResidentBytes(), info.getThreadCount());
+        }
+        Iterator<Series> it = seriesByPid.values().iterator();
+        while (it.hasNext()) {
+            if (it.next().generation != generation) it.remove();
+        }
+        return true;
+    }
+
+    /**
+     * @return true if a snapshot taken now would be recorded.
+     */
+    public synchronized boolean isDue(long nowMillis) {
+        return lastSampleMillis < 0 || nowMillis - lastSampleMillis >= minSampleIntervalMillis;
+    }
+
+    /**
+     * @return The processes with the highest average resident memory over the last windowMillis.
+     */
+    public List<ResourceUsage> topByMemory(int n, long windowMillis) {
+        return top(n, windowMillis, Comparator.comparingLong(ResourceUsage::getAverageResidentBytes));
+    }
+
+    /**
+     * @return The processes with the highest CPU usage over the last windowMillis.
+     */
+    public List<ResourceUsage> topByCpu(int n, long windowMillis) {
+        return top(n, windowMillis, Comparator.comparingDouble(ResourceUsage::getCpuPercent));
+    }
+
+    /**
+     * Builds the compact payload sent to the teacher: the top-N lists as arrays of
+     * [name, pid, value...] rows instead of one object per process.
+     * <ul>
+     *   <li>"top_mem" rows: [name, pid, average RSS KB, peak RSS KB, threads]; threads is left off when the
+     *   backend doesn't report it, and "top_mem" itself when it reports no memory</li>
+     *   <li>"top_cpu" rows: [name, pid, CPU percent of one core]</li>
+     * </ul>
+     */
+    public Map<String, Object> toPayload(int n, long windowMillis) {
+        List<List<Object>> memoryRows = new ArrayList<>();
+        for (ResourceUsage usage : topByMemory(n, windowMillis)) {
+            if (usage.getAverageResidentBytes() < 0) break; // Backend without memory information
+            List<Object> row = new ArrayList<>(List.of(usage.getName(), usage.getPid(),
+                    usage.getAverageResidentBytes() / 1024, usage.getPeakResidentBytes() / 1024));
+            if (usage.getThreadCount() >= 0) row.add(usage.getThreadCount());
+            memoryRows.add(row);
+        }
+        List<List<Object>> cpuRows = new ArrayList<>();
+        for (ResourceUsage usage : topByCpu(n, windowMillis)) {
+            if (usage.getCpuPercent() < 0) break;
+            cpuRows.add(List.of(usage.getName(), usage.getPid(), Math.round(usage.getCpuPercent() * 10) / 10.0));
+        }
+        Map<String, Object> payload = new LinkedHashMap<>();
+        payload.put("window_s", windowMillis / 1000);
+        payload.put("cores", Runtime.getRuntime().availableProcessors());
+        if (!memoryRows.isEmpty()) payload.put("top_mem", memoryRows);
+        payload.put("top_cpu", cpuRows);
+        return payload;
+    }
+
+    /**
+     * @return Number of processes currently tracked.
+     */
+    public synchronized int getTrackedProcessCount() {
+        return seriesByPid.size();
+    }
+
+    /**
+     * @return Number of snapshots recorded so far.
+     */
+    public synchronized int getSampleCount() {
+        return sampleCount;
+    }
+
+    private synchronized List<ResourceUsage> top(int n, long windowMillis, Comparator<ResourceUsage> order) {
+        if (n <= 0 || lastSampleMillis < 0) return new ArrayList<>();
+        long since = lastSampleMillis - windowMillis;
+        // Min-heap of the best n seen so far
+        PriorityQueue<ResourceUsage> heap = new PriorityQueue<>(n + 1, order);
+        for (Series series : seriesByPid.values()) {
+            ResourceUsage usage = series.summarize(since);
+            if (usage == null) continue;
+            heap.offer(usage);
+            if (heap.size() > n) heap.poll();
+        }
+        List<ResourceUsage> result = new ArrayList<>(heap);
+        result.sort(order.reversed());
+        return result;
+    }
+
+    /**
+     * Ring buffers for one process. Guarded by the sampler's monitor.
+     */
+    private static final class Series {
+        final long pid;
+        final long startMillis;
+        final long[] timestamps;
+        final long[] cpuMillis;
+        final long[] residentBytes;
+        final int[] threadCounts;
+        String name;
+        int generation;
+        int head; // Next write position
+        int size;
+
+        Series(long pid, long startMillis, int capacity) {
+            this.pid = pid;
+            this.startMillis = startMillis;
+            this.timestamps = new long[capacity];
+            this.cpuMillis = new long[capacity];
+            this.residentBytes = new long[capacity];
+            this.threadCounts = new int[capacity];
+        }
+
+        void add(long timestamp, long cpu, long rss, int threads) {
+            timestamps[head] = timestamp;
+            cpuMillis[head] = cpu;
+            residentBytes[head] = rss;
+            threadCounts[head] = threads;
+            head = (head + 1) % timestamps.length;
+            if (size < timestamps.length) size++;
+        }
+
+        /**
+         * @return Usage over samples taken at or after since, or null if there are none.
+         */
+        ResourceUsage summarize(long since) {
+            int capacity = timestamps.length;
+            int newest = (head - 1 + capacity) % capacity;
+            int oldest = newest;
+            int count = 0;
+            long rssSum = 0;
+            long rssPeak = -1;
+            int rssCount = 0;
+            // Walk backwards from the newest sample until we leave the window
+            for (int i = 0; i < size; i++) {
+                int idx = (newest - i + capacity) % capacity;
+                if (timestamps[idx] < since) break;
+                oldest = idx;
+                count++;
+                if (residentBytes[idx] >= 0) {
+                    rssSum += residentBytes[idx];
+                    rssPeak = Math.max(rssPeak, residentBytes[idx]);
+                    rssCount++;
+                }
+            }
+            if (count == 0) return null;
+
+            double cpuPercent = -1;
+            long elapsed = timestamps[newest] - timestamps[oldest];
+            if (elapsed > 0 && cpuMillis[newest] >= 0 && cpuMillis[oldest] >= 0) {
+                cpuPercent = (cpuMillis[newest] - cpuMillis[oldest]) * 100.0 / elapsed;
+            }
+            long rssAverage = rssCount > 0 ? rssSum / rssCount : -1;
+            return new ResourceUsage(pid, name, cpuPercent, rssAverage, rssPeak, threadCounts[newest]);
+        }
+    }
+
+    /**
+     * Summary of one process over a query window.
+     */
+    public static class ResourceUsage {
+        private final long pid;
+        private final String name;
+        private final double cpuPercent;
+        private final long averageResidentBytes;
+        private final long peakResidentBytes;
+        private final int threadCount;
+
+        ResourceUsage(long pid, String name, double cpuPercent, long averageResidentBytes, long peakResidentBytes, int threadCount) {
+            this.pid = pid;
+            this.name = name;
+            this.cpuPercent = cpuPercent;
+            this.averageResidentBytes = averageResidentBytes;
+            this.peakResidentBytes = peakResidentBytes;
+            this.threadCount = threadCount;
+        }
+
+        public long getPid() {
+            return pid;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        /**
+         * @return CPU usage as a percentage of one core (can exceed 100), or -1 with fewer than two samples.
+         */
+        public double getCpuPercent() {
+            return cpuPercent;
+        }
+
+        /**
+         * @return Average resident memory in bytes, or -1 if unknown.
+         */
+        public long getAverageResidentBytes() {
+            return averageResidentBytes;
+        }
+
+        /**
+         * @return Peak resident memory in bytes, or -1 if unknown.
+         */
+        public long getPeakResidentBytes() {
+            return peakResidentBytes;
+        }
+
+        /**
+         * @return Thread count at the latest sample, or -1 if unknown.
+         */
+        public int getThreadCount() {
+            return threadCount;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("ResourceUsage{pid=%d, name='%s', cpu=%.1f%%, avgRss=%d, peakRss=%d, threads=%d}",
+                    pid, name, cpuPercent, averageResidentBytes, peakResidentBytes, threadCount);
+        }
+    }
+}
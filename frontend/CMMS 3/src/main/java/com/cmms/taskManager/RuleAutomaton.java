@@ -0,0 +1,586 @@
+package com.cmms.taskManager;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * Single combined automaton for all glob and regex rules of one target (name or command line).
+ * Rules are parsed into one Thompson NFA and, where the state count allows, converted to a DFA
+ * over character equivalence classes, so a match is one table walk over the input.
+ * Matching is case-insensitive and anchored at both ends (like {@link Pattern#matches}).
+ * Regexes using features outside the supported subset fall back to {@link Pattern}.
+ */
+final class RuleAutomaton {
+
+    private static final int RANGE = 0;
+    private static final int EPSILON = 1;
+    private static final int SPLIT = 2;
+    private static final int MATCH = 3;
+
+    // Past this the DFA table stops paying for itself and we simulate the NFA instead
+    private static final int MAX_DFA_STATES = 4096;
+
+    static final RuleAutomaton EMPTY = compile(new ArrayList<>(), new ArrayList<>());
+
+    private final Nfa nfa;
+    private final int start;
+    private final boolean hasNfaRules;
+    private final int[] classBounds;
+    private final int classCount;
+    private final int[] dfaTransitions;
+    private final boolean[] dfaAccept;
+    private final Pattern[] fallbackPatterns;
+    private final ThreadLocal<Matcher[]> fallbackMatchers;
+    private final ThreadLocal<int[][]> simulationScratch;
+
+    private RuleAutomaton(Nfa nfa, int start, boolean hasNfaRules, List<Pattern> fallbackPatterns) {
+        this.nfa = nfa;
+        this.start = start;
+        this.hasNfaRules = hasNfaRules;
+        this.classBounds = computeClassBounds(nfa);
+        this.classCount = classBounds.length + 1;
+        this.fallbackPatterns = fallbackPatterns.toArray(new Pattern[0]);
+        this.fallbackMatchers = ThreadLocal.withInitial(() -> {
+            Matcher[] matchers = new Matcher[this.fallbackPatterns.length];
+            for (int i = 0; i < matchers.length; i++) matchers[i] = this.fallbackPatterns[i].matcher("");
+            return matchers;
+        });
+        this.simulationScratch = ThreadLocal.withInitial(() -> new int[][] {
+                new int[nfa.size], new int[nfa.size], new int[nfa.size], new int[2 * nfa.size + 2], new int[1] });
+
+        int[] transitions = null;
+        boolean[] accept = null;
+        if (hasNfaRules) {
+            List<int[]> rows = new ArrayList<>();
+            List<Boolean> accepting = new ArrayList<>();
+            if (buildDfa(rows, accepting)) {
+                transitions = new int[rows.size() * classCount];
+                accept = new boolean[rows.size()];
+                for (int s = 0; s < rows.size(); s++) {
+                    System.arraycopy(rows.get(s), 0, transitions, s * classCount, classCount);
+                    accept[s] = accepting.get(s);
+                }
+            } else {
+                System.out.println("RuleAutomaton: DFA exceeds " + MAX_DFA_STATES + " states, using NFA simulation.");
+            }
+        }
+        this.dfaTransitions = transitions;
+        this.dfaAccept = accept;
+    }
+
+    /**
+     * Compiles glob and regex rules into one automaton.
+     *
+     * @param globs Glob patterns using '*' and '?'.
+     * @param regexes Regular expressions.
+     */
+    static RuleAutomaton compile(List<String> globs, List<String> regexes) {
+        Nfa nfa = new Nfa();
+        int match = nfa.add(MATCH, -1, -1, null, false);
+        List<Integer> starts = new ArrayList<>();
+        List<Pattern> fallback = new ArrayList<>();
+
+        List<String> all = new ArrayList<>(regexes.size() + globs.size());
+        for (String glob : globs) all.add(globToRegex(glob));
+        all.addAll(regexes);
+
+        for (String regex : all) {
+            int mark = nfa.size;
+            try {
+                int[] fragment = new Parser(regex, nfa).parseWhole();
+                nfa.out1[fragment[1]] = match;
+                starts.add(fragment[0]);
+            } catch (IllegalArgumentException e) {
+                nfa.size = mark; // Discard the partial fragment
+                try {
+                    fallback.add(Pattern.compile(regex, Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE));
+                } catch (PatternSyntaxException pse) {
+                    System.err.println("RuleAutomaton: Ignoring invalid pattern '" + regex + "': " + pse.getDescription());
+                }
+            }
+        }
+
+        int start;
+        if (starts.isEmpty()) {
+            start = nfa.add(EPSILON, -1, -1, null, false); // Dead start state, matches nothing
+        } else {
+            start = starts.get(starts.size() - 1);
+            for (int i = starts.size() - 2; i >= 0; i--) {
+                start = nfa.add(SPLIT, starts.get(i), start, null, false);
+            }
+        }
+        return new RuleAutomaton(nfa, start, !starts.isEmpty(), fallback);
+    }
+
+    boolean isEmpty() {
+        return !hasNfaRules && fallbackPatterns.length == 0;
+    }
+
+    /**
+     * @return true if the whole input matches any rule, ignoring case. Does not allocate.
+     */
+    boolean matches(CharSequence input) {
+        if (hasNfaRules) {
+            if (dfaTransitions != null ? runDfa(input) : simulateNfa(input)) return true;
+        }
+        if (fallbackPatterns.length > 0) {
+            for (Matcher matcher : fallbackMatchers.get()) {
+                if (matcher.reset(input).matches()) return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean runDfa(CharSequence input) {
+        int state = 0;
+        for (int i = 0, n = input.length(); i < n; i++) {
+            state = dfaTransitions[state * classCount + classOf(Character.toLowerCase(input.charAt(i)))];
+            if (state < 0) return false;
+        }
+        return dfaAccept[state];
+    }
+
+    private boolean simulateNfa(CharSequence input) {
+        int[][] scratch = simulationScratch.get();
+        int[] current = scratch[0];
+        int[] next = scratch[1];
+        int[] marks = scratch[2];
+        int[] stack = scratch[3];
+        int[] generation = scratch[4];
+
+        int currentSize = addClosure(start, current, 0, marks, ++generation[0], stack);
+        for (int i = 0, n = input.length(); i < n; i++) {
+            char c = Character.toLowerCase(input.charAt(i));
+            int gen = ++generation[0];
+            int nextSize = 0;
+            for (int k = 0; k < currentSize; k++) {
+                int s = current[k];
+                if (nfa.kind[s] == RANGE && nfa.accepts(s, c)) {
+                    nextSize = addClosure(nfa.out1[s], next, nextSize, marks, gen, stack);
+                }
+            }
+            int[] swap = current;
+            current = next;
+            next = swap;
+            currentSize = nextSize;
+            if (currentSize == 0) return false;
+        }
+        for (int k = 0; k < currentSize; k++) {
+            if (nfa.kind[current[k]] == MATCH) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Adds the epsilon closure of a state to a state list, skipping states already stamped with this generation.
+     */
+    private int addClosure(int state, int[] list, int size, int[] marks, int gen, int[] stack) {
+        int top = 0;
+        stack[top++] = state;
+        while (top > 0) {
+            int s = stack[--top];
+            if (s < 0 || marks[s] == gen) continue;
+            marks[s] = gen;
+            switch (nfa.kind[s]) {
+                case EPSILON:
+                    stack[top++] = nfa.out1[s];
+                    break;
+                case SPLIT:
+                    stack[top++] = nfa.out2[s];
+                    stack[top++] = nfa.out1[s];
+                    break;
+                default:
+                    list[size++] = s;
+            }
+        }
+        return size;
+    }
+
+    private boolean buildDfa(List<int[]> rows, List<Boolean> accepting) {
+        int[] representatives = new int[classCount];
+        for (int c = 1; c < classCount; c++) representatives[c] = classBounds[c - 1];
+
+        Map<BitSet, Integer> ids = new HashMap<>();
+        List<BitSet> sets = new ArrayList<>();
+        ArrayDeque<Integer> pending = new ArrayDeque<>();
+
+        BitSet initial = closure(singleton(start));
+        ids.put(initial, 0);
+        sets.add(initial);
+        pending.add(0);
+
+        while (!pending.isEmpty()) {
+            int id = pending.poll();
+            BitSet set = sets.get(id);
+            int[] row = new int[classCount];
+            for (int cls = 0; cls < classCount; cls++) {
+                BitSet moved = new BitSet(nfa.size);
+                for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                    if (nfa.kind[s] == RANGE && nfa.accepts(s, representatives[cls])) moved.set(nfa.out1[s]);
+                }
+                if (moved.isEmpty()) {
+                    row[cls] = -1;
+                    continue;
+                }
+                BitSet target = closure(moved);
+                Integer targetId = ids.get(target);
+                if (targetId == null) {
+                    if (sets.size() >= MAX_DFA_STATES) return false;
+                    targetId = sets.size();
+                    ids.put(target, targetId);
+                    sets.add(target);
+                    pending.add(targetId);
+                }
+                row[cls] = targetId;
+            }
+            while (rows.size() <= id) {
+                rows.add(null);
+                accepting.add(false);
+            }
+            rows.set(id, row);
+            boolean isAccepting = false;
+            for (int s = set.nextSetBit(0); s >= 0; s = set.nextSetBit(s + 1)) {
+                if (nfa.kind[s] == MATCH) isAccepting = true;
+            }
+            accepting.set(id, isAccepting);
+        }
+        return true;
+    }
+
+    private BitSet singleton(int state) {
+        BitSet set = new BitSet(nfa.size);
+        set.set(state);
+        return set;
+    }
+
+    /**
+     * Epsilon closure keeping only consuming and accepting states, so equal DFA states compare equal.
+     */
+    private BitSet closure(BitSet states) {
+        BitSet visited = new BitSet(nfa.size);
+        BitSet result = new BitSet(nfa.size);
+        ArrayDeque<Integer> stack = new ArrayDeque<>();
+        for (int s = states.nextSetBit(0); s >= 0; s = states.nextSetBit(s + 1)) stack.push(s);
+        while (!stack.isEmpty()) {
+            int s = stack.pop();
+            if (s < 0 || visited.get(s)) continue;
+            visited.set(s);
+            switch (nfa.kind[s]) {
+                case EPSILON:
+                    stack.push(nfa.out1[s]);
+                    break;
+                case SPLIT:
+                    stack.push(nfa.out1[s]);
+                    stack.push(nfa.out2[s]);
+                    break;
+                default:
+                    result.set(s);
+            }
+        }
+        return result;
+    }
+
+    private int classOf(char c) {
+        // Number of bounds <= c
+        int lo = 0;
+        int hi = classBounds.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (classBounds[mid] <= c) lo = mid + 1;
+            else hi = mid;
+        }
+        return lo;
+    }
+
+    private static int[] computeClassBounds(Nfa nfa) {
+        TreeSet<Integer> bounds = new TreeSet<>();
+        for (int s = 0; s < nfa.size; s++) {
+            if (nfa.kind[s] != RANGE) continue;
+            int[] ranges = nfa.ranges[s];
+            for (int i = 0; i < ranges.length; i += 2) {
+                if (ranges[i] > 0) bounds.add(ranges[i]);
+                if (ranges[i + 1] + 1 <= Character.MAX_VALUE) bounds.add(ranges[i + 1] + 1);
+            }
+        }
+        int[] result = new int[bounds.size()];
+        int i = 0;
+        for (int bound : bounds) result[i++] = bound;
+        return result;
+    }
+
+    static String globToRegex(String glob) {
+        StringBuilder regex = new StringBuilder(glob.length() + 8);
+        for (int i = 0; i < glob.length(); i++) {
+            char c = glob.charAt(i);
+            if (c == '*') regex.append(".*");
+            else if (c == '?') regex.append('.');
+            else if (Character.isLetterOrDigit(c) || c == ' ') regex.append(c);
+            else regex.append('\\').append(c);
+        }
+        return regex.toString();
+    }
+
+    /**
+     * Growable Thompson NFA storage. RANGE states hold sorted [lo, hi] pairs and consume one char.
+     */
+    private static final class Nfa {
+        int[] kind = new int[64];
+        int[] out1 = new int[64];
+        int[] out2 = new int[64];
+        int[][] ranges = new int[64][];
+        boolean[] negated = new boolean[64];
+        int size;
+
+        int add(int k, int o1, int o2, int[] r, boolean neg) {
+            if (size == kind.length) {
+                int capacity = size * 2;
+                kind = Arrays.copyOf(kind, capacity);
+                out1 = Arrays.copyOf(out1, capacity);
+                out2 = Arrays.copyOf(out2, capacity);
+                ranges = Arrays.copyOf(ranges, capacity);
+                negated = Arrays.copyOf(negated, capacity);
+            }
+            kind[size] = k;
+            out1[size] = o1;
+            out2[size] = o2;
+            ranges[size] = r;
+            negated[size] = neg;
+            return size++;
+        }
+
+        boolean accepts(int state, int c) {
+            int[] r = ranges[state];
+            boolean inside = false;
+            for (int i = 0; i < r.length; i += 2) {
+                if (c >= r[i] && c <= r[i + 1]) {
+                    inside = true;
+                    break;
+                }
+            }
+            return inside != negated[state];
+        }
+    }
+
+    /**
+     * Recursive-descent parser for the supported regex subset: literals, '.', classes, escapes
+     * \d \w \s (and negations), groups, '|', '*', '+', '?'. Anything else throws IllegalArgumentException.
+     * Fragments are returned as {start, end} where end is an EPSILON state awaiting a target.
+     */
+    private static final class Parser {
+        private static final int[] DIGIT = {'0', '9'};
+        private static final int[] WORD = {'0', '9', '_', '_', 'a', 'z'};
+        private static final int[] SPACE = {'\t', '\r', ' ', ' '};
+        private static final int[] ANY = {};
+
+        private final String pattern;
+        private final Nfa nfa;
+        private int pos;
+        private int end;
+
+        Parser(String pattern, Nfa nfa) {
+            this.pattern = pattern;
+            this.nfa = nfa;
+            this.end = pattern.length();
+        }
+
+        int[] parseWhole() {
+            // Matching is always anchored, so explicit anchors at the edges are redundant
+            if (pos < end && pattern.charAt(pos) == '^') pos++;
+            if (end > pos && pattern.charAt(end - 1) == '$' && (end < 2 || pattern.charAt(end - 2) != '\\')) end--;
+            int[] fragment = parseAlternation();
+            if (pos != end) throw new IllegalArgumentException("Unexpected '" + pattern.charAt(pos) + "'");
+            return fragment;
+        }
+
+        private int[] parseAlternation() {
+            int[] left = parseConcatenation();
+            while (pos < end && pattern.charAt(pos) == '|') {
+                pos++;
+                int[] right = parseConcatenation();
+                int join = nfa.add(EPSILON, -1, -1, null, false);
+                nfa.out1[left[1]] = join;
+                nfa.out1[right[1]] = join;
+                left = new int[] {nfa.add(SPLIT, left[0], right[0], null, false), join};
+            }
+            return left;
+        }
+
+        private int[] parseConcatenation() {
+            int[] result = null;
+            while (pos < end && pattern.charAt(pos) != '|' && pattern.charAt(pos) != ')') {
+                int[] next = parseRepetition();
+                if (result == null) {
+                    result = next;
+                } else {
+                    nfa.out1[result[1]] = next[0];
+                    result[1] = next[1];
+                }
+            }
+            if (result == null) {
+                int empty = nfa.add(EPSILON, -1, -1, null, false);
+                result = new int[] {empty, empty};
+            }
+            return result;
+        }
+
+        private int[] parseRepetition() {
+            int[] atom = parseAtom();
+            while (pos < end) {
+                char q = pattern.charAt(pos);
+                if (q == '*') {
+                    int exit = nfa.add(EPSILON, -1, -1, null, false);
+                    int loop = nfa.add(SPLIT, atom[0], exit, null, false);
+                    nfa.out1[atom[1]] = loop;
+                    atom = new int[] {loop, exit};
+                } else if (q == '+') {
+                    int exit = nfa.add(EPSILON, -1, -1, null, false);
+                    int loop = nfa.add(SPLIT, atom[0], exit, null, false);
+                    nfa.out1[atom[1]] = loop;
+                    atom = new int[] {atom[0], exit};
+                } else if (q == '?') {
+                    int exit = nfa.add(EPSILON, -1, -1, null, false);
+                    int skip = nfa.add(SPLIT, atom[0], exit, null, false);
+                    nfa.out1[atom[1]] = exit;
+                    atom = new int[] {skip, exit};
+                } else if (q == '{') {
+                    throw new IllegalArgumentException("Counted repetition is not supported");
+                } else {
+                    break;
+                }
+                pos++;
+                if (pos < end && (pattern.charAt(pos) == '?' || pattern.charAt(pos) == '+')) {
+                    throw new IllegalArgumentException("Lazy/possessive quantifiers are not supported");
+                }
+            }
+            return atom;
+        }
+
+        private int[] parseAtom() {
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case '(':
+                    if (pattern.startsWith("?:", pos)) {
+                        pos += 2;
+                    } else if (pos < end && pattern.charAt(pos) == '?') {
+                        throw new IllegalArgumentException("Group flags and lookaround are not supported");
+                    }
+                    int[] group = parseAlternation();
+                    if (pos >= end || pattern.charAt(pos) != ')') throw new IllegalArgumentException("Unclosed group");
+                    pos++;
+                    return group;
+                case '.':
+                    return consuming(ANY, true);
+                case '[':
+                    return parseClass();
+                case '\\':
+                    return parseEscape();
+                case '*':
+                case '+':
+                case '?':
+                case '{':
+                case '^':
+                case '$':
+                    throw new IllegalArgumentException("Unexpected '" + c + "'");
+                default:
+                    return literal(c);
+            }
+        }
+
+        private int[] parseEscape() {
+            if (pos >= end) throw new IllegalArgumentException("Trailing backslash");
+            char c = pattern.charAt(pos++);
+            switch (c) {
+                case 'd': return consuming(DIGIT, false);
+                case 'D': return consuming(DIGIT, true);
+                case 'w': return consuming(WORD, false);
+                case 'W': return consuming(WORD, true);
+                case 's': return consuming(SPACE, false);
+                case 'S': return consuming(SPACE, true);
+                case 't': return literal('\t');
+                case 'n': return literal('\n');
+                default:
+                    if (Character.isLetterOrDigit(c)) throw new IllegalArgumentException("Escape \\" + c + " is not supported");
+                    return literal(c);
+            }
+        }
+
+        private int[] parseClass() {
+            boolean negated = pos < end && pattern.charAt(pos) == '^';
+            if (negated) pos++;
+            List<Integer> ranges = new ArrayList<>();
+            boolean first = true;
+            while (pos < end && (pattern.charAt(pos) != ']' || first)) {
+                first = false;
+                char lo = pattern.charAt(pos++);
+                if (lo == '\\') {
+                    if (pos >= end) throw new IllegalArgumentException("Trailing backslash");
+                    char e = pattern.charAt(pos++);
+                    int[] shorthand = e == 'd' ? DIGIT : e == 'w' ? WORD : e == 's' ? SPACE : null;
+                    if (shorthand != null) {
+                        for (int v : shorthand) ranges.add(v);
+                        continue;
+                    }
+                    if (Character.isLetterOrDigit(e)) throw new IllegalArgumentException("Escape \\" + e + " is not supported in classes");
+                    lo = e;
+                } else if (lo == '[') {
+                    throw new IllegalArgumentException("Nested classes are not supported");
+                }
+                char hi = lo;
+                if (pos + 1 < end && pattern.charAt(pos) == '-' && pattern.charAt(pos + 1) != ']') {
+                    hi = pattern.charAt(pos + 1);
+                    if (hi == '\\' || hi == '[') throw new IllegalArgumentException("Unsupported range end");
+                    pos += 2;
+                    if (hi < lo) throw new IllegalArgumentException("Invalid range");
+                }
+                addFolded(ranges, lo, hi);
+            }
+            if (pos >= end) throw new IllegalArgumentException("Unclosed character class");
+            pos++; // ']'
+            int[] r = new int[ranges.size()];
+            for (int i = 0; i < r.length; i++) r[i] = ranges.get(i);
+            return consuming(r, negated);
+        }
+
+        private int[] literal(char c) {
+            char lower = Character.toLowerCase(c);
+            return consuming(new int[] {lower, lower}, false);
+        }
+
+        private int[] consuming(int[] ranges, boolean negated) {
+            int exit = nfa.add(EPSILON, -1, -1, null, false);
+            int state = nfa.add(RANGE, exit, -1, ranges, negated);
+            return new int[] {state, exit};
+        }
+
+        /**
+         * Adds a range as typed plus its lowercase image, since input is lowercased before matching.
+         */
+        private static void addFolded(List<Integer> ranges, char lo, char hi) {
+            ranges.add((int) lo);
+            ranges.add((int) hi);
+            if (lo == hi) {
+                char lower = Character.toLowerCase(lo);
+                if (lower != lo) {
+                    ranges.add((int) lower);
+                    ranges.add((int) lower);
+                }
+                return;
+            }
+            int upperLo = Math.max(lo, 'A');
+            int upperHi = Math.min(hi, 'Z');
+            if (upperLo <= upperHi) {
+                ranges.add(upperLo + ('a' - 'A'));
+                ranges.add(upperHi + ('a' - 'A'));
+            }
+        }
+    }
+}
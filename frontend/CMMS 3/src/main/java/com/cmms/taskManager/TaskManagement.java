@@ -1,58 +1,75 @@
 package com.cmms.taskManager;
 
+import com.cmms.EnforcementScheduler;
+import com.cmms.policy.MongoPolicySource;
+import com.cmms.policy.PolicyCache;
+import com.cmms.policy.PushedPolicySource;
 import com.cmms.utils.MongoDBHelper;
 import com.mongodb.client.MongoCollection;
 import org.bson.Document;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
 
 public class TaskManagement {
-    public static void monitorApps(String sessionCode, String studentPcId) {
-        while (true) {
-            try {
-                List<String> blacklistedApps = getBlacklistedApps();
-                for (String app : blacklistedApps) {
-                    if (isAppRunning(app)) {
-                        terminateApp(app);
-                        notifyAdmin(sessionCode, studentPcId, "Terminated blacklisted app: " + app);
-                    }
-                }
-                TimeUnit.SECONDS.sleep(3);
-            } catch (Exception e) {
-                e.printStackTrace();
+    private static final ProcessSnapshotProvider SNAPSHOT_PROVIDER = ProcessSnapshotProvider.getDefault();
+    private static final ProcessTerminator TERMINATOR = new ProcessTerminator();
+    private static final long POLICY_CHECK_INTERVAL_MS = 30_000;
+    private static final PolicyCache APP_POLICY = new PolicyCache(
+            new MongoPolicySource("blacklisted_apps", "app_name", ".exe"), POLICY_CHECK_INTERVAL_MS);
+    // The session teacher's list, only ever pushed over WebSocket; kept apart so Mongo refreshes don't replace it
+    private static final PolicyCache SESSION_APP_POLICY = new PolicyCache(
+            new PushedPolicySource("session_apps"), POLICY_CHECK_INTERVAL_MS);
+
+    // Checks every 1.5 s after terminating an app, relaxing to the old 3 s while nothing is blacklisted
+    private static final long MIN_CHECK_INTERVAL_MS = 1_500;
+    private static final long MAX_CHECK_INTERVAL_MS = 3_000;
+    private static final double CHECK_JITTER = 0.1;
+
+    /**
+     * Registers the blacklist check on the shared enforcement scheduler and returns immediately.
+     *
+     * @return Handle used to cancel monitoring.
+     */
+    public static EnforcementScheduler.TaskHandle monitorApps(String sessionCode, String studentPcId) {
+        return EnforcementScheduler.getShared().registerBlocking("task-management-" + sessionCode,
+                () -> checkApps(sessionCode, studentPcId),
+                MIN_CHECK_INTERVAL_MS, MAX_CHECK_INTERVAL_MS, CHECK_JITTER);
+    }
+
+    private static boolean checkApps(String sessionCode, String studentPcId) {
+        boolean terminated = false;
+        List<String> blacklistedApps = getBlacklistedApps();
+        for (String app : blacklistedApps) {
+            if (isAppRunning(app)) {
+                terminateApp(app);
+                notifyAdmin(sessionCode, studentPcId, "Terminated blacklisted app: " + app);
+                terminated = true;
             }
         }
+        return terminated;
     }
 
-
-
     private static List<String> getBlacklistedApps() {
-        MongoCollection<Document> blacklistedApps = MongoDBHelper.getCollection("blacklisted_apps");
-        List<String> apps = new ArrayList<>();
-        for (Document doc : blacklistedApps.find()) {
-            apps.add(doc.getString("app_name") +".exe");
-        }
-        return apps;
+        // Served from the local caches; MongoDB is only asked whether the list changed every 30 s
+        LinkedHashSet<String> apps = new LinkedHashSet<>(APP_POLICY.getEntries());
+        apps.addAll(SESSION_APP_POLICY.getEntries());
+        return new ArrayList<>(apps);
+    }
+
+    /**
+     * @return The app blacklist pushed by the session teacher, so WebSocket pushes can be applied to it.
+     */
+    public static PolicyCache getSessionAppPolicy() {
+        return SESSION_APP_POLICY;
     }
 
     private static boolean isAppRunning(String appName) {
         try {
-            Process process;
-            if (System.getProperty("os.name").toLowerCase().contains("win")) {
-                process = Runtime.getRuntime().exec("tasklist /FI \"IMAGENAME eq " + appName + "\"");
-                BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-                String line;
-                while ((line = reader.readLine()) != null) {
-                    if (line.contains(appName)) return true;
-                }
-            } else {
-                process = Runtime.getRuntime().exec("pgrep -x " + appName);
-                return process.waitFor() == 0;
+            for (ProcessInfo info : SNAPSHOT_PROVIDER.snapshot()) {
+                if (info.getName().equalsIgnoreCase(appName)) return true;
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -63,11 +80,7 @@ public class TaskManagement {
 
     private static void terminateApp(String appName) {
         try {
-            if (System.getProperty("os.name").toLowerCase().contains("win")) {
-                Runtime.getRuntime().exec("taskkill /F /IM " + appName);
-            } else {
-                Runtime.getRuntime().exec("pkill -9 " + appName);
-            }
+            TERMINATOR.terminateByName(appName, SNAPSHOT_PROVIDER);
         } catch (IOException e) {
             e.printStackTrace();
         }
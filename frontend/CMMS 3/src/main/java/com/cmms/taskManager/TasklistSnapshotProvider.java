@@ -0,0 +1,41 @@
+package com.cmms.taskManager;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Fallback provider that forks "tasklist /nh /fo csv" and parses its output.
+ * Only used on Windows when {@link ProcessHandle} cannot see process details,
+ * or when resident memory is required.
+ */
+public class TasklistSnapshotProvider implements ProcessSnapshotProvider {
+
+    private final ProcessListingParser parser = new ProcessListingParser(ProcessListingParser.Format.TASKLIST_CSV);
+
+    @Override
+    public synchronized List<ProcessInfo> snapshot() throws IOException {
+        List<ProcessInfo> processes = new ArrayList<>(256);
+        Process process = Runtime.getRuntime().exec("tasklist /nh /fo csv");
+        try (InputStream in = process.getInputStream()) {
+            parser.parse(in, record -> processes.add(new ProcessInfo(record.getPid(), record.getNameString(), null, -1, -1,
+                    record.getMemoryKb() >= 0 ? record.getMemoryKb() * 1024 : -1)));
+        } finally {
+            try { process.getErrorStream().close(); } catch (IOException e) { /* ignore */ }
+            try { process.getOutputStream().close(); } catch (IOException e) { /* ignore */ }
+            process.destroy();
+        }
+        return processes;
+    }
+
+    @Override
+    public String getName() {
+        return "tasklist";
+    }
+
+    @Override
+    public boolean supportsResidentMemory() {
+        return true;
+    }
+}
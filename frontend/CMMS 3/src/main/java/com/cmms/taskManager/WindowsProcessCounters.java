@@ -0,0 +1,137 @@
+package com.cmms.taskManager;
+
+import com.cmms.util.OSValidator;
+import com.sun.jna.Library;
+import com.sun.jna.Memory;
+import com.sun.jna.Native;
+import com.sun.jna.Pointer;
+import com.sun.jna.ptr.IntByReference;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Working set and thread count of every process on Windows, read with a single
+ * NtQuerySystemInformation(SystemProcessInformation) call per snapshot. This is the table Task Manager reads, so
+ * it needs no handle to each process and forks nothing, unlike tasklist.
+ */
+final class WindowsProcessCounters {
+
+    private static final int SYSTEM_PROCESS_INFORMATION = 5;
+    private static final int STATUS_INFO_LENGTH_MISMATCH = 0xC0000004;
+    private static final long FILETIME_UNIX_EPOCH = 116_444_736_000_000_000L; // 1970 in 100 ns units since 1601
+    private static final int INITIAL_BUFFER_BYTES = 1024 * 1024; // Holds ~300 processes with their threads
+
+    /**
+     * Offsets in SYSTEM_PROCESS_INFORMATION that follow pointer-sized fields, for each pointer size.
+     */
+    static final class Layout {
+        static final Layout X64 = new Layout(8, 80, 144);
+        static final Layout X86 = new Layout(4, 68, 104);
+
+        final int pointerSize;
+        final int pidOffset;
+        final int workingSetOffset;
+
+        private Layout(int pointerSize, int pidOffset, int workingSetOffset) {
+            this.pointerSize = pointerSize;
+            this.pidOffset = pidOffset;
+            this.workingSetOffset = workingSetOffset;
+        }
+
+        long word(ByteBuffer buffer, int offset) {
+            return pointerSize == 8 ? buffer.getLong(offset) : buffer.getInt(offset) & 0xffffffffL;
+        }
+    }
+
+    /**
+     * The counters of one process.
+     *
+     * @param startMillis   Creation time in epoch milliseconds, as {@link ProcessHandle.Info#startInstant} reports it.
+     * @param residentBytes Working set in bytes.
+     */
+    record Counters(long startMillis, long residentBytes, int threadCount) {
+    }
+
+    public interface NtDll extends Library {
+        int NtQuerySystemInformation(int informationClass, Pointer information, int length, IntByReference returnLength);
+    }
+
+    private final NtDll ntdll;
+    private final Layout layout;
+    private final IntByReference returnLength = new IntByReference();
+    private Memory buffer = new Memory(INITIAL_BUFFER_BYTES);
+
+    private WindowsProcessCounters(NtDll ntdll, Layout layout) {
+        this.ntdll = ntdll;
+        this.layout = layout;
+    }
+
+    // Loaded on first use, then shared by every provider
+    private static final class Shared {
+        static final WindowsProcessCounters INSTANCE = load();
+    }
+
+    /**
+     * @return The counters, or null if not on Windows or ntdll could not be loaded.
+     */
+    static WindowsProcessCounters shared() {
+        return Shared.INSTANCE;
+    }
+
+    private static WindowsProcessCounters load() {
+        if (!OSValidator.isWindows()) {
+            return null;
+        }
+        try {
+            return new WindowsProcessCounters(Native.load("ntdll", NtDll.class),
+                    Native.POINTER_SIZE == 8 ? Layout.X64 : Layout.X86);
+        } catch (LinkageError e) {
+            System.err.println("WindowsProcessCounters: ntdll not available, no process memory counters: " + e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * @return The counters of every process, by PID.
+     * @throws IOException If the call fails.
+     */
+    synchronized Map<Long, Counters> read() throws IOException {
+        for (int attempt = 0; ; attempt++) {
+            int status = ntdll.NtQuerySystemInformation(SYSTEM_PROCESS_INFORMATION, buffer, (int) buffer.size(), returnLength);
+            if (status == STATUS_INFO_LENGTH_MISMATCH && attempt < 3) {
+                // Room for processes started before the next call too
+                buffer = new Memory(Math.max(returnLength.getValue(), buffer.size()) * 5 / 4);
+                continue;
+            }
+            if (status != 0) {
+                throw new IOException("NtQuerySystemInformation failed with status 0x" + Integer.toHexString(status));
+            }
+            return parse(buffer.getByteBuffer(0, returnLength.getValue()).order(ByteOrder.LITTLE_ENDIAN), layout);
+        }
+    }
+
+    /**
+     * Walks the chain of SYSTEM_PROCESS_INFORMATION entries, each followed by its threads, in a little-endian buffer.
+     */
+    static Map<Long, Counters> parse(ByteBuffer buffer, Layout layout) {
+        Map<Long, Counters> counters = new HashMap<>(512);
+        int offset = 0;
+        while (true) {
+            int next = buffer.getInt(offset);
+            int threads = buffer.getInt(offset + 4);
+            long createTime = buffer.getLong(offset + 32);
+            long pid = layout.word(buffer, offset + layout.pidOffset);
+            long workingSet = layout.word(buffer, offset + layout.workingSetOffset);
+            long start = createTime > 0 ? (createTime - FILETIME_UNIX_EPOCH) / 10_000 : -1; // 0 for Idle and System
+            counters.put(pid, new Counters(start, workingSet, threads));
+            if (next == 0) {
+                return counters;
+            }
+            offset += next;
+        }
+    }
+}
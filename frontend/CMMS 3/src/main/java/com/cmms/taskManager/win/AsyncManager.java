@@ -1,26 +1,31 @@
 package com.cmms.taskManager.win;
 
+import com.cmms.taskManager.ProcessListingParser;
+import com.cmms.taskManager.ProcessSnapshotProvider;
+import com.cmms.taskManager.ProcessTerminator;
 import com.sun.management.OperatingSystemMXBean;
 
-import java.io.BufferedReader;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.lang.management.ManagementFactory;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.TimeUnit;
+import java.util.Map;
 
 
 public class AsyncManager implements Runnable{
+    private static final ProcessSnapshotProvider SNAPSHOT_PROVIDER = ProcessSnapshotProvider.getDefault();
+    private static final ProcessTerminator TERMINATOR = new ProcessTerminator();
+
+    /**
+     * Runs one check.
+     */
     @Override
     public void run() {
         try {
-            while (true) {
-                TimeUnit.SECONDS.sleep(2);
-                for (String process :
-                        getCurrentMemoryProcessesWin(1)) {
-//                    if (isBlacklistedProcessHybrid(process)) killProcess(process);
+            for (String process :
+                    getCurrentMemoryProcessesWin(1)) {
+//                if (isBlacklistedProcessHybrid(process)) killProcess(process);
 
-                }
             }
         } catch (Exception e) {
             throw new RuntimeException(e);
@@ -33,29 +38,9 @@ public class AsyncManager implements Runnable{
         String nameToKill = parts[0].trim(); // Get only the process name
 
         try {
-            // Enclose the process name in quotes
-            Process process = Runtime.getRuntime().exec("taskkill /IM \"" + nameToKill + "\" /F");
-
-            // Read the output and error streams
-            BufferedReader inputReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            BufferedReader errorReader = new BufferedReader(new InputStreamReader(process.getErrorStream()));
-
-            // Collecting output messages
-            StringBuilder output = new StringBuilder();
-            String line;
-            while ((line = inputReader.readLine()) != null) {
-                output.append(line).append("\n");
-            }
-
-            // Collecting error messages
-            StringBuilder errorOutput = new StringBuilder();
-            while ((line = errorReader.readLine()) != null) {
-                errorOutput.append(line).append("\n");
-            }
-
-            // Wait for the process to complete and check the exit code
-            int exitCode = process.waitFor();
-            if (exitCode == 0) {
+            Map<Long, ProcessTerminator.Result> results = TERMINATOR.terminateByName(nameToKill, SNAPSHOT_PROVIDER);
+            boolean allKilled = !results.isEmpty() && results.values().stream().allMatch(ProcessTerminator.Result::isSuccess);
+            if (allKilled) {
                 System.out.println("Task Manager: Terminated process: " + nameToKill);
             }
         } catch (Exception e) {
@@ -66,32 +51,27 @@ public class AsyncManager implements Runnable{
 
 
 
+    private static final ProcessListingParser TASKLIST_PARSER = new ProcessListingParser(ProcessListingParser.Format.TASKLIST_CSV);
+
     private static List<String> getCurrentMemoryProcessesWin(double memoryThreshold) throws Exception {
 
         List<String> memoryProcesses = new ArrayList<>();
         OperatingSystemMXBean osBean = (OperatingSystemMXBean) ManagementFactory.getOperatingSystemMXBean();
         long totalMemory = osBean.getTotalPhysicalMemorySize();
         Process process = Runtime.getRuntime().exec("tasklist /fo csv /nh");
-        BufferedReader input = new BufferedReader(new InputStreamReader(process.getInputStream()));
-        String line;
-
-        while ((line = input.readLine()) != null) {
-            String[] processDetails = line.split("\",\"");
-            if (processDetails.length > 4) {
-                String memoryUsageString = processDetails[4].replace(" K", "").replace(",", "").replace("\"", "");
-                String processName = processDetails[0].replace("\"", "");
-                try {
-                    long memoryUsage = Long.parseLong(memoryUsageString) * 1024; // Convert to bytes
+        try (InputStream input = process.getInputStream()) {
+            synchronized (TASKLIST_PARSER) {
+                TASKLIST_PARSER.parse(input, record -> {
+                    if (record.getMemoryKb() < 0) return;
+                    long memoryUsage = record.getMemoryKb() * 1024; // Convert to bytes
                     double memoryPercentage = (double) memoryUsage / totalMemory * 100;
                     if (memoryPercentage > memoryThreshold) {
-                        memoryProcesses.add(processName + " is using " + String.format("%.2f", memoryPercentage) + "% of memory.");
+                        // Only processes over the threshold cost a String
+                        memoryProcesses.add(record.getNameString() + " is using " + String.format("%.2f", memoryPercentage) + "% of memory.");
                     }
-                } catch (NumberFormatException e) {
-                    throw new RuntimeException(e);
-                }
+                });
             }
         }
-        input.close();
         return memoryProcesses;
     }
 
@@ -2,17 +2,29 @@ package com.cmms.ui;
 
 import com.cmms.Main;
 import com.cmms.ServiceAwareController;
+import com.cmms.dto.MessagePayloads;
 import com.cmms.dto.SessionSettings;
 import com.cmms.dto.WebSocketMessage;
 import com.cmms.service.ApiService;
+import com.cmms.service.MessageDispatcher;
+import com.cmms.service.OutboxJournal;
 import com.cmms.service.WebSocketService;
 // Updated imports
 import com.cmms.taskManager.AppMonitorService; 
+import com.cmms.taskManager.TaskManagement;
+import com.cmms.policy.PolicyPushListener;
+import com.cmms.networkManager.BlocklistFile;
+import com.cmms.networkManager.DnsFilterResolver;
+import com.cmms.networkManager.FilteringProxy;
+import com.cmms.networkManager.LiveTrafficCapture;
+import com.cmms.networkManager.TrafficObserver;
 import com.cmms.networkManager.WebsiteMonitorService; // <-- UNCOMMENTED
+import com.cmms.networkManager.WebsiteVisitReporter;
 // import com.cmms.driverManager.UsbMonitorService; // REMOVED
 import com.cmms.networkManager.NetworkManagerWin; // COMMENTED OUT
 import com.cmms.driverManager.DriverManager; // ADDED
 import com.cmms.logging.SessionLoggerService; // Import logger service
+import com.cmms.utils.ClientSettings;
 
 import javafx.application.Platform;
 import javafx.event.ActionEvent;
@@ -21,6 +33,9 @@ import javafx.scene.control.Button;
 import javafx.scene.control.Label;
 import javafx.scene.control.TextArea;
 
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.List;
@@ -40,7 +55,9 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
 
     private ApiService apiService; // Might not be needed here, but injected
     private WebSocketService webSocketService;
+    private final List<MessageDispatcher.Registration> handlerRegistrations = new ArrayList<>();
     private SessionLoggerService sessionLoggerService; // Keep instance if needed later
+    private static final Path BLOCKLIST_CACHE_DIR = Paths.get(System.getProperty("user.home"), ".cmms", "blocklists");
 
     // Instance variables to hold session data
     private SessionSettings currentSettings;
@@ -54,10 +71,14 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
     // Enforcement service instances
     private AppMonitorService appMonitorService;
     private WebsiteMonitorService websiteMonitorService; // <-- ADDED
+    private LiveTrafficCapture trafficCapture; // Optional DNS/SNI visit telemetry
+    private WebsiteVisitReporter visitReporter;
+    private OutboxJournal outboxJournal; // Violations reported while offline, sent after reconnecting
     // private UsbMonitorService usbMonitorService; // REMOVED (Keep removed if DriverManager handles it)
     // No instance needed for static NetworkManagerWin or DriverManager
 
     private boolean isCleanupDone = false;
+    private boolean isEnforcing = false; // Kept across automatic reconnects
     private boolean isInitialized = false; // Flag to prevent double init
 
     @Override
@@ -69,7 +90,12 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
     public void setWebSocketService(WebSocketService webSocketService) {
         this.webSocketService = webSocketService;
         if (this.webSocketService != null) {
-            this.webSocketService.addListener(this);
+            this.webSocketService.addListener(this); // Connection events
+            registerMessageHandlers(this.webSocketService.getDispatcher());
+            // Keep the cached session app blacklist (and its cold-start copy on disk) in step with teacher pushes
+            handlerRegistrations.addAll(new PolicyPushListener(TaskManagement.getSessionAppPolicy(),
+                    "appBlacklist", "app_added", "app_removed", "app_name", ".exe")
+                    .register(this.webSocketService.getDispatcher()));
         }
     }
 
@@ -127,8 +153,26 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         // Instantiate necessary services
         appMonitorService = new AppMonitorService(webSocketService, this.studentId);
         websiteMonitorService = new WebsiteMonitorService(webSocketService, this.studentId); // <-- ADDED Instantiation
+        String websiteEnforcement = ClientSettings.getWebsiteEnforcement();
+        if ("dns".equals(websiteEnforcement)) {
+            websiteMonitorService.useDnsResolver(DnsFilterResolver.defaultListenAddress(), ClientSettings.getDnsUpstream());
+        } else if ("proxy".equals(websiteEnforcement)) {
+            websiteMonitorService.useProxy(FilteringProxy.defaultListenAddress());
+        }
+        Path blocklist = ClientSettings.getBlocklistFile();
+        if (blocklist != null) {
+            try {
+                BlocklistFile imported = BlocklistFile.openOrImport(blocklist, BLOCKLIST_CACHE_DIR);
+                websiteMonitorService.setImportedBlocklist(imported);
+                logInfo("Imported blocklist " + blocklist + " (" + imported.size() + " rules).");
+            } catch (IOException e) {
+                logWarn("Imported blocklist " + blocklist + " unavailable: " + e.getMessage());
+            }
+        }
         // usbMonitorService = new UsbMonitorService(webSocketService, this.studentId); // REMOVED
 
+        openOutboxJournal();
+
         // Connect to WebSocket
         connectionStatusLabel.setText("Status: Connecting...");
         webSocketService.connectAndAuthenticate(this.authToken);
@@ -136,6 +180,29 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         initializeServices();
     }
 
+    private void openOutboxJournal() {
+        try {
+            outboxJournal = OutboxJournal.openDefault(sessionCode, studentId);
+            webSocketService.setOutboxJournal(outboxJournal);
+            long pending = outboxJournal.getPendingCount();
+            if (pending > 0) logInfo("Outbox holds " + pending + " unsent report(s) from before; sending after connecting.");
+        } catch (IOException e) {
+            logWarn("Outbox journal unavailable, reports made while offline will be lost: " + e.getMessage());
+        }
+    }
+
+    // Only when leaving the session for good; unacknowledged reports stay on disk, an emptied journal is deleted
+    private void closeOutboxJournal() {
+        if (outboxJournal == null) return;
+        webSocketService.setOutboxJournal(null);
+        try {
+            outboxJournal.close();
+        } catch (IOException e) {
+            logWarn("Error closing outbox journal: " + e.getMessage());
+        }
+        outboxJournal = null;
+    }
+
     private void initializeServices() {
         logInfo("Initializing monitoring services...");
         try {
@@ -155,6 +222,7 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
 
     private void startEnforcement(SessionSettings settings) {
         logInfo("Starting enforcement based on initial settings...");
+        isEnforcing = true;
         this.currentSettings = settings; // Update local settings copy
 
         // Start App Monitoring
@@ -172,17 +240,22 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
              ); // <-- ADDED Call
         } // <-- ADDED Check
 
+        // Report visited domains to the teacher, if enabled on this machine and packet capture (Npcap) is available
+        if (ClientSettings.isTrafficCaptureEnabled()) {
+            startTrafficCapture();
+        }
+
         // Start USB Monitoring (PnP)
         if (settings.isBlockUsb()) {
             logInfo("USB monitoring (PnP) starting (Blocking Enabled)... Session: " + this.sessionCode + ", PC: " + this.studentId);
-             // Start in a new thread as it contains an indefinite loop
-            new Thread(() -> DriverManager.startMonitoring(
+            // Registers a periodic check on the shared enforcement scheduler and returns immediately
+            DriverManager.startMonitoring(
                     this.sessionCode, 
                     this.studentId, 
                     this.studentName, // Pass necessary details
                     this.studentClass,
                     this.studentRollNo
-            ), "DriverManager-Monitor").start(); // Give thread a name
+            );
         } else {
             logInfo("USB monitoring (PnP) is disabled by session settings.");
             // Ensure any previous PnP monitoring is stopped
@@ -192,9 +265,26 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         isCleanupDone = false; // Reset cleanup flag
     }
 
+    private void startTrafficCapture() {
+        if (trafficCapture != null) return;
+        WebsiteMonitorService monitor = websiteMonitorService;
+        WebsiteVisitReporter reporter = new WebsiteVisitReporter(webSocketService, monitor != null ? monitor::isBlocked : null);
+        LiveTrafficCapture capture = new LiveTrafficCapture(null, new TrafficObserver(reporter));
+        try {
+            capture.start();
+            reporter.start();
+            trafficCapture = capture;
+            visitReporter = reporter;
+            logInfo("Website visit telemetry started.");
+        } catch (IOException e) {
+            logWarn("Website visit telemetry unavailable: " + e.getMessage());
+        }
+    }
+
     private void stopEnforcementAndCleanup() {
         if(isCleanupDone) return;
         isCleanupDone = true; // Set flag early
+        isEnforcing = false;
         
         logInfo("Stopping enforcement and performing cleanup...");
         
@@ -213,6 +303,13 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
             websiteMonitorService.stopMonitoring(); // <-- ADDED
             logInfo("Website monitoring stopped (Hosts file reverted)."); // <-- ADDED
         } // <-- ADDED
+        if (trafficCapture != null) {
+            trafficCapture.close();
+            trafficCapture = null;
+            visitReporter.close();
+            visitReporter = null;
+            logInfo("Website visit telemetry stopped.");
+        }
         
         // Stop USB Monitor (PnP) and Re-enable Devices
         logInfo("Stopping USB monitoring (PnP) and re-enabling devices...");
@@ -227,9 +324,10 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         logInfo("Manual disconnect initiated by user.");
         disconnectButton.setDisable(true);
         stopEnforcementAndCleanup();
-        if (webSocketService.isConnected()) {
-            webSocketService.disconnect();
-        }
+        closeOutboxJournal();
+        unregisterFromWebSocket();
+        TaskManagement.getSessionAppPolicy().applyPush(List.of(), "session-ended"); // Not carried into the next session
+        webSocketService.disconnect(); // Also cancels a pending reconnect
         // Navigate back to role selection
         Main.loadRoleSelectionView();
     }
@@ -243,131 +341,133 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         });
     }
 
-    @Override
-    public void onWebSocketMessage(WebSocketMessage message) {
-        Platform.runLater(() -> {
-            logInfo("WS Received: Type=" + message.getType());
-
-            switch (message.getType()) {
-                 case "response": 
-                    if (message.getPayload() != null && 
-                        message.getPayload().containsKey("message") &&
-                        String.valueOf(message.getPayload().get("message")).toLowerCase().contains("authentication successful")) {
-                        logInfo("WebSocket Authenticated successfully by server.");
-                        connectionStatusLabel.setText("Status: Connected & Authenticated");
-                        if(this.currentSettings != null) {
-                            startEnforcement(this.currentSettings); // Start enforcement AFTER auth
-                        } else {
-                            logError("Cannot start enforcement: Initial settings missing after authentication.");
-                        }
-                    } else if ("error".equalsIgnoreCase(message.getStatus())) {
-                          logError("WS Error Response: " + message.getPayload());
-                     } else {
-                         logInfo("WS Response: " + message.getPayload());
-                     }
-                    break;
-                    
-                case "initial_settings":
-                    logInfo("Received initial settings from server.");
-                     if (message.getPayload() != null) {
-                         try {
-                            SessionSettings initialSettings = parseSettingsFromPayload(message.getPayload());
-                            this.currentSettings = initialSettings; 
-                            logInfo("Initial settings applied locally.");
-                            // If already authenticated, update enforcement immediately
-                            if (connectionStatusLabel.getText().contains("Authenticated")) {
-                                logInfo("Applying initial_settings received after auth.");
-                                updateEnforcementServices(initialSettings);
-                            }
-                         } catch (Exception e) {
-                             logError("Failed to parse initial_settings payload: " + e.getMessage());
-                         }
-                    }
-                    break;
-
-                case "settings_update":
-                    logInfo("Received settings update from server.");
-                    if (message.getPayload() != null) {
-                         try {
-                            SessionSettings updatedSettings = parseSettingsFromPayload(message.getPayload());
-                            // Store the *previous* settings before updating
-                            boolean wasUsbBlocked = this.currentSettings.isBlockUsb();
-                            String previousSessionType = this.currentSettings.getSessionType();
-                            
-                            updateLocalSettings(updatedSettings); // Update internal state
-                            logInfo("Applying updated server settings to enforcement...");
-                            
-                            // Compare previous and new settings to apply changes correctly
-                            updateEnforcementServicesCompared(previousSessionType, wasUsbBlocked, this.currentSettings);
-                         } catch (Exception e) {
-                             logError("Failed to parse settings_update payload: " + e.getMessage());
-                         }
-                    }
-                    break;
-
-                case "app_added": // Specific app added update
-                    if (appMonitorService != null && message.getPayload() != null && message.getPayload().containsKey("app_name")) {
-                        String appName = (String) message.getPayload().get("app_name");
-                        appMonitorService.addToBlacklist(appName);
-                        logInfo("App added to blacklist via WS: " + appName);
-                    }
-                    break;
-                
-                 case "app_removed": // Specific app removed update
-                    if (appMonitorService != null && message.getPayload() != null && message.getPayload().containsKey("app_name")) {
-                        String appName = (String) message.getPayload().get("app_name");
-                        appMonitorService.removeFromBlacklist(appName);
-                         logInfo("App removed from blacklist via WS: " + appName);
-                    }
-                    break;
-                
-                case "force_disconnect":
-                    logWarn("Received force_disconnect command from teacher/server.");
-                    connectionStatusLabel.setText("Status: Disconnected by Teacher");
-                    disconnectButton.setDisable(true);
-                    stopEnforcementAndCleanup();
-                    if (webSocketService.isConnected()) webSocketService.removeListener(this);
-                    webSocketService.disconnect(); // Disconnect WS
-                    Main.showInfo("Disconnected", "The teacher has ended the session or removed you.");
-                    // Navigate back to role selection
-                    Main.loadRoleSelectionView();
-                    break;
-                    
-                case "session_ending": // ADDED Handler
-                     logWarn("Session is ending as signaled by the server.");
-                     connectionStatusLabel.setText("Status: Session Ended by Teacher");
-                     disconnectButton.setDisable(true);
-                     stopEnforcementAndCleanup();
-                     if (webSocketService.isConnected()) webSocketService.removeListener(this);
-                     // WS should be terminated by server, but call disconnect locally too
-                     webSocketService.disconnect(); 
-                     Main.showInfo("Session Ended", "The session has been ended by the teacher.");
-                     // Navigate back to role selection
-                     Main.loadRoleSelectionView();
-                     break;
-                    
-                case "error": // Errors sent by backend explicitly
-                    if (message.getPayload() != null && message.getPayload().containsKey("message")) {
-                        logError("Backend WS Error: " + message.getPayload().get("message"));
-                        // Potentially disconnect or show error to user depending on severity
-                    }
-                    break;
-
-                // Ignore messages meant for the teacher
-                case "student_joined":
-                case "student_left":
-                case "student_data": 
-                case "initial_student_list":
-                    break; 
-
-                case "connection_ack": // Explicitly ignore connection_ack
-                     logInfo("Connection acknowledged by server.");
-                     break;
-
-                default:
-                    logWarn("Received unhandled WS message type: " + message.getType());
+    // Message handlers: UI and enforcement changes on the FX thread, process sampling on a worker
+    private void registerMessageHandlers(MessageDispatcher dispatcher) {
+        handlerRegistrations.add(dispatcher.onAny(MessageDispatcher.Affinity.FX,
+                message -> logInfo("WS Received: Type=" + message.getType())));
+        handlerRegistrations.add(dispatcher.on("response", MessageDispatcher.Affinity.FX, this::onResponse));
+        handlerRegistrations.add(dispatcher.on("initial_settings", MessageDispatcher.Affinity.FX, this::onInitialSettings));
+        handlerRegistrations.add(dispatcher.on("settings_update", MessageDispatcher.Affinity.FX, this::onSettingsUpdate));
+        handlerRegistrations.add(dispatcher.on("app_added", MessageDispatcher.Affinity.FX, message -> {
+            MessagePayloads.AppChange change = message.getBody(MessagePayloads.AppChange.class);
+            if (appMonitorService != null && change != null && change.appName() != null) {
+                appMonitorService.addToBlacklist(change.appName());
+                logInfo("App added to blacklist via WS: " + change.appName());
             }
-        });
+        }));
+        handlerRegistrations.add(dispatcher.on("app_removed", MessageDispatcher.Affinity.FX, message -> {
+            MessagePayloads.AppChange change = message.getBody(MessagePayloads.AppChange.class);
+            if (appMonitorService != null && change != null && change.appName() != null) {
+                appMonitorService.removeFromBlacklist(change.appName());
+                logInfo("App removed from blacklist via WS: " + change.appName());
+            }
+        }));
+        // Teacher asked for this machine's top processes
+        handlerRegistrations.add(dispatcher.on("request_resource_usage", MessageDispatcher.Affinity.WORKER,
+                message -> sendResourceUsage(message.getPayload())));
+        handlerRegistrations.add(dispatcher.on("force_disconnect", MessageDispatcher.Affinity.FX, message -> endSession(
+                "Received force_disconnect command from teacher/server.", "Status: Disconnected by Teacher",
+                "Disconnected", "The teacher has ended the session or removed you.")));
+        handlerRegistrations.add(dispatcher.on("session_ending", MessageDispatcher.Affinity.FX, message -> endSession(
+                "Session is ending as signaled by the server.", "Status: Session Ended by Teacher",
+                "Session Ended", "The session has been ended by the teacher.")));
+        handlerRegistrations.add(dispatcher.on("error", MessageDispatcher.Affinity.FX, message -> { // Errors sent by backend explicitly
+            if (message.getPayload() != null && message.getPayload().containsKey("message")) {
+                logError("Backend WS Error: " + message.getPayload().get("message"));
+            }
+        }));
+        // After a reconnect: missed settings changes (if any) came just before
+        handlerRegistrations.add(dispatcher.on("settings_resumed", MessageDispatcher.Affinity.FX, message -> logInfo("Settings resumed at version "
+                + message.getPayload().get("settingsVersion") + " (" + message.getPayload().get("missed")
+                + " missed change(s) applied).")));
+        handlerRegistrations.add(dispatcher.on("connection_ack", MessageDispatcher.Affinity.FX,
+                message -> logInfo("Connection acknowledged by server.")));
+        // Ignore messages meant for the teacher
+        for (String type : List.of("student_joined", "student_left", "student_data", "initial_student_list")) {
+            handlerRegistrations.add(dispatcher.on(type, MessageDispatcher.Affinity.IO, message -> { }));
+        }
+        handlerRegistrations.add(dispatcher.onUnhandled(MessageDispatcher.Affinity.FX,
+                message -> logWarn("Received unhandled WS message type: " + message.getType())));
+    }
+
+    private void unregisterFromWebSocket() {
+        webSocketService.removeListener(this);
+        handlerRegistrations.forEach(MessageDispatcher.Registration::remove);
+        handlerRegistrations.clear();
+    }
+
+    private void onResponse(WebSocketMessage message) {
+        if (message.getPayload() != null &&
+            message.getPayload().containsKey("message") &&
+            String.valueOf(message.getPayload().get("message")).toLowerCase().contains("authentication successful")) {
+            logInfo("WebSocket Authenticated successfully by server.");
+            connectionStatusLabel.setText("Status: Connected & Authenticated");
+            disconnectButton.setDisable(false);
+            if (isEnforcing) {
+                logInfo("Reconnected; enforcement continued meanwhile.");
+            } else if(this.currentSettings != null) {
+                startEnforcement(this.currentSettings); // Start enforcement AFTER auth
+            } else {
+                logError("Cannot start enforcement: Initial settings missing after authentication.");
+            }
+        } else if ("error".equalsIgnoreCase(message.getStatus())) {
+            logError("WS Error Response: " + message.getPayload());
+        } else {
+            logInfo("WS Response: " + message.getPayload());
+        }
+    }
+
+    private void onInitialSettings(WebSocketMessage message) {
+        logInfo("Received initial settings from server.");
+        if (message.getBody(MessagePayloads.Settings.class) != null) {
+            try {
+                SessionSettings initialSettings = message.getBody(MessagePayloads.Settings.class).toSessionSettings();
+                this.currentSettings = initialSettings;
+                logInfo("Initial settings applied locally.");
+                // If already authenticated, update enforcement immediately
+                if (connectionStatusLabel.getText().contains("Authenticated")) {
+                    logInfo("Applying initial_settings received after auth.");
+                    updateEnforcementServices(initialSettings);
+                }
+            } catch (Exception e) {
+                logError("Failed to parse initial_settings payload: " + e.getMessage());
+            }
+        }
+    }
+
+    private void onSettingsUpdate(WebSocketMessage message) {
+        logInfo("Received settings update from server.");
+        if (message.getBody(MessagePayloads.Settings.class) != null) {
+            try {
+                MessagePayloads.Settings update = message.getBody(MessagePayloads.Settings.class);
+                // Store the *previous* settings before updating
+                boolean wasUsbBlocked = this.currentSettings.isBlockUsb();
+                String previousSessionType = this.currentSettings.getSessionType();
+
+                update.applyTo(this.currentSettings); // Only the fields the update carries
+                logInfo("Applying updated server settings to enforcement...");
+
+                // Compare previous and new settings to apply changes correctly
+                updateEnforcementServicesCompared(previousSessionType, wasUsbBlocked, this.currentSettings);
+            } catch (Exception e) {
+                logError("Failed to parse settings_update payload: " + e.getMessage());
+            }
+        }
+    }
+
+    // force_disconnect or session_ending: the server closes the connection, we stop and go back
+    private void endSession(String logMessage, String status, String title, String notice) {
+        logWarn(logMessage);
+        connectionStatusLabel.setText(status);
+        disconnectButton.setDisable(true);
+        stopEnforcementAndCleanup();
+        closeOutboxJournal();
+        unregisterFromWebSocket();
+        TaskManagement.getSessionAppPolicy().applyPush(List.of(), "session-ended"); // Not carried into the next session
+        webSocketService.disconnect(); // WS should be terminated by server, but call disconnect locally too
+        Main.showInfo(title, notice);
+        // Navigate back to role selection
+        Main.loadRoleSelectionView();
     }
 
     // Renamed old update method
@@ -406,10 +506,10 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         if (shouldBlockUsb && !wasUsbBlocked) {
             // USB blocking was OFF, now turned ON
             logInfo("Settings Update: Starting USB monitoring (PnP) - Blocking Enabled.");
-             new Thread(() -> DriverManager.startMonitoring(
+             DriverManager.startMonitoring(
                     this.sessionCode, this.studentId, this.studentName, 
                     this.studentClass, this.studentRollNo
-             ), "DriverManager-Monitor-Update").start();
+             );
         } else if (!shouldBlockUsb && wasUsbBlocked) {
             // USB blocking was ON, now turned OFF
             logInfo("Settings Update: Stopping USB monitoring (PnP) - Blocking Disabled.");
@@ -419,38 +519,28 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         logInfo("Enforcement services update process finished.");
     }
 
-    // Helper to parse settings from a payload Map (used by initial_settings & settings_update)
-    private SessionSettings parseSettingsFromPayload(Map<String, Object> payload) {
-         SessionSettings settings = new SessionSettings(); // Create a new DTO
-         if (payload.containsKey("sessionType")) settings.setSessionType((String) payload.get("sessionType"));
-         if (payload.containsKey("blockUsb")) settings.setBlockUsb(Boolean.TRUE.equals(payload.get("blockUsb")));
-         if (payload.containsKey("websiteBlacklist")) settings.setWebsiteBlacklist((List<String>) payload.get("websiteBlacklist"));
-         if (payload.containsKey("websiteWhitelist")) settings.setWebsiteWhitelist((List<String>) payload.get("websiteWhitelist"));
-         if (payload.containsKey("appBlacklist")) settings.setAppBlacklist((List<String>) payload.get("appBlacklist")); // If backend sends full list
-         return settings;
-    }
-    
-    // Helper to update local currentSettings based on a partial update payload
-    private void updateLocalSettings(SessionSettings updatedSettings) {
-         if (updatedSettings.getSessionType() != null) this.currentSettings.setSessionType(updatedSettings.getSessionType());
-         // Always update boolean directly if key exists
-         if (updatedSettings.isBlockUsb() != this.currentSettings.isBlockUsb()) { // More robust check needed if key missing vs false
-              this.currentSettings.setBlockUsb(updatedSettings.isBlockUsb());
-         }
-         if (updatedSettings.getWebsiteBlacklist() != null) this.currentSettings.setWebsiteBlacklist(updatedSettings.getWebsiteBlacklist());
-         if (updatedSettings.getWebsiteWhitelist() != null) this.currentSettings.setWebsiteWhitelist(updatedSettings.getWebsiteWhitelist());
-         if (updatedSettings.getAppBlacklist() != null) this.currentSettings.setAppBlacklist(updatedSettings.getAppBlacklist());
-    }
-
     @Override
     public void onWebSocketClose(int code, String reason) {
+        boolean reconnecting = webSocketService.isReconnecting();
         Platform.runLater(() -> {
             logWarn("WebSocket closed. Code: " + code + ", Reason: " + reason);
+            if (reconnecting) {
+                // Restrictions stay in place; violations wait in the outbox journal until the connection is back
+                connectionStatusLabel.setText("Status: Reconnecting...");
+                return;
+            }
             connectionStatusLabel.setText("Status: Disconnected (" + reason + ")");
             disconnectButton.setDisable(true); // Disable manual disconnect if already closed
             // Perform cleanup if not already done (e.g., due to force_disconnect)
             stopEnforcementAndCleanup(); 
-            // Optional: Add automatic reconnect logic here if desired
+        });
+    }
+
+    @Override
+    public void onWebSocketReconnecting(int attempt, long delayMillis) {
+        Platform.runLater(() -> {
+            logInfo("Reconnecting in " + delayMillis + " ms (attempt " + attempt + ")...");
+            connectionStatusLabel.setText("Status: Reconnecting (attempt " + attempt + ")...");
         });
     }
 
@@ -459,7 +549,7 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         Platform.runLater(() -> {
             logError("WebSocket Error: " + message + (ex != null ? " - " + ex.getMessage() : ""));
             connectionStatusLabel.setText("Status: Error");
-            // Maybe try reconnect or show error
+            // A failed connection also closes, and onWebSocketClose/onWebSocketReconnecting take it from there
             if (ex != null) ex.printStackTrace();
         });
     }
@@ -472,6 +562,26 @@ public class StudentMonitorController implements ServiceAwareController, WebSock
         logArea.appendText(String.format("[%s] [%s] %s%n", timestamp, level, message));
     }
 
+    private static final int DEFAULT_RESOURCE_TOP_N = 5;
+    private static final int DEFAULT_RESOURCE_WINDOW_S = 60;
+
+    private void sendResourceUsage(Map<String, Object> request) {
+        if (appMonitorService == null || !webSocketService.isAuthenticated()) return;
+        int topN = DEFAULT_RESOURCE_TOP_N;
+        int windowSeconds = DEFAULT_RESOURCE_WINDOW_S;
+        if (request != null) {
+            // Gson decodes JSON numbers as Double
+            if (request.get("top_n") instanceof Number) topN = ((Number) request.get("top_n")).intValue();
+            if (request.get("window_s") instanceof Number) windowSeconds = ((Number) request.get("window_s")).intValue();
+        }
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("type", "resource_usage");
+        payload.put("data", appMonitorService.getResourceSampler().toPayload(topN, windowSeconds * 1000L));
+        webSocketService.sendTelemetry("student_update", payload);
+        int shown = topN, seconds = windowSeconds; // Called on a worker thread; the log is on the FX thread
+        Platform.runLater(() -> logInfo("Sent resource usage (top " + shown + ", last " + seconds + " s) to teacher."));
+    }
+
     private void logInfo(String message) {
         log(message, "INFO");
     }
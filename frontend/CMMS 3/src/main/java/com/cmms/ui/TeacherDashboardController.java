@@ -1,13 +1,18 @@
 package com.cmms.ui;
 
 import com.cmms.Main; // To navigate views
+import com.cmms.analytics.ClassDomainAnalytics;
+import com.cmms.analytics.DomainActivity;
 import com.cmms.ServiceAwareController; // Interface for service injection
 import com.cmms.dto.Session; // The new Session DTO
 import com.cmms.dto.ApiResponse; // Assuming ApiService returns this
+import com.cmms.dto.MessagePayloads;
 import com.cmms.dto.WebSocketMessage; // Import WebSocketMessage DTO
 import com.cmms.dto.SessionSettings; // ADDED IMPORT
 import com.cmms.dto.StudentInfo; // IMPORT MOVED DTO
 import com.cmms.service.ApiService;
+import com.cmms.service.MessageCodec;
+import com.cmms.service.MessageDispatcher;
 import com.cmms.service.WebSocketService;
 import com.cmms.logging.SessionLoggerService; // Corrected import path
 import com.cmms.driverManager.IDriverManager;
@@ -39,6 +44,10 @@ import java.util.UUID; // Added for unique teacher ID generation
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Collections; // Added for empty list
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
 
 // Implement ServiceAwareController AND WebSocketListener
 public class TeacherDashboardController implements ServiceAwareController, WebSocketService.WebSocketListener {
@@ -86,6 +95,9 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     
     @FXML private VBox settingsContainerVBox; // Added parent container
 
+    @FXML private Label domainSummaryLabel;
+    @FXML private ListView<String> topDomainsListView;
+
     // Current Session State
     private String desiredSessionType; // ADDED: To store type selected before starting
     private String currentSessionType = null;
@@ -97,6 +109,10 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
 
     // Store map of studentId to their detailed logs
     private Map<String, List<String>> studentLogs = new HashMap<>();
+    // Class-wide website analytics merged from the students' "domain_stats" sketches
+    private final ClassDomainAnalytics domainAnalytics = new ClassDomainAnalytics();
+    private final MessageCodec messageCodec = new MessageCodec(); // Types request replies, which arrive as maps
+    private static final int TOP_DOMAINS_SHOWN = 20;
 
     // Implement service setters
     @Override
@@ -108,7 +124,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     public void setWebSocketService(WebSocketService webSocketService) {
         this.webSocketService = webSocketService;
         if (this.webSocketService != null) {
-            this.webSocketService.addListener(this); // Register as listener
+            this.webSocketService.addListener(this); // Connection events
+            registerMessageHandlers(this.webSocketService.getDispatcher());
             // If WS is already connected (e.g., reconnect scenario), try authenticating
             if (this.webSocketService.isConnected() && this.apiService != null && this.apiService.getTeacherAuthToken() != null) {
                  authenticateWebSocket();
@@ -214,6 +231,7 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
             if (event.getClickCount() == 2) { // Double-click
                 StudentInfo selectedStudent = studentListView.getSelectionModel().getSelectedItem();
                 if (selectedStudent != null) {
+                    requestResourceUsage(selectedStudent);
                     openStudentDetailWindow(selectedStudent);
                 }
             }
@@ -612,6 +630,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         currentWebsiteList.clear();
         currentAppList.clear();
         studentLogs.clear(); // Clear student logs
+        domainAnalytics.clear();
+        refreshDomainAnalytics();
         startSessionButton.setDisable(false);
         endSessionButton.setDisable(true);
         logoutButton.setDisable(false);
@@ -645,48 +665,25 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         });
     }
 
-    @Override
-    public void onWebSocketMessage(WebSocketMessage message) {
-        Platform.runLater(() -> {
-            // System.out.println("Teacher WS Received: Type=" + message.getType() + ", Payload=" + message.getPayload()); // Debug more
-            switch (message.getType()) {
-                case "response":
-                    handleWebSocketResponse(message);
-                    break;
-                case "initial_student_list":
-                    handleInitialStudentList(message);
-                    break;
-                case "student_joined":
-                     handleStudentJoined(message);
-                     break;
-                 case "student_left": 
-                     handleStudentLeft(message);
-                     break;
-                case "force_disconnect":
-                     handleForceDisconnect();
-                     break;
-                // Listen for updates pushed by server after our own actions or others
-                case "settings_update":
-                     handleSettingsUpdate(message); // Handle general settings updates
-                     break;
-                 case "app_added": // If server broadcasts this back
-                     handleAddAppResponse(message, true); // Treat as success
-                     break;
-                 case "app_removed": // If server broadcasts this back
-                     handleDeleteAppResponse(message, true); // Treat as success
-                     break;
-                 case "student_data": // Add case for student logs/updates
-                     handleStudentData(message);
-                     break;
-                 // Ignore messages meant only for students 
-                 case "command":
-                 case "initial_settings": // This is for students
-                 case "connection_ack": 
-                     break; 
-                default:
-                     System.out.println("Teacher received unhandled WS type: " + message.getType());
-            }
-        });
+    // Message handlers, all on the FX thread since they update the dashboard
+    private void registerMessageHandlers(MessageDispatcher dispatcher) {
+        MessageDispatcher.Affinity fx = MessageDispatcher.Affinity.FX;
+        dispatcher.on("response", fx, this::handleWebSocketResponse);
+        dispatcher.on("initial_student_list", fx, this::handleInitialStudentList);
+        dispatcher.on("student_joined", fx, this::handleStudentJoined);
+        dispatcher.on("student_left", fx, this::handleStudentLeft);
+        dispatcher.on("force_disconnect", fx, message -> handleForceDisconnect());
+        // Listen for updates pushed by server after our own actions or others
+        dispatcher.on("settings_update", fx, message -> handleSettingsUpdate(message.getBody(MessagePayloads.Settings.class)));
+        dispatcher.on("app_added", fx, message -> handleAddAppResponse(message, true)); // If server broadcasts this back
+        dispatcher.on("app_removed", fx, message -> handleDeleteAppResponse(message, true));
+        dispatcher.on("student_data", fx, this::handleStudentData); // Student logs/updates
+        // Ignore messages meant only for students
+        for (String type : List.of("command", "initial_settings", "connection_ack")) {
+            dispatcher.on(type, MessageDispatcher.Affinity.IO, message -> { });
+        }
+        dispatcher.onUnhandled(MessageDispatcher.Affinity.IO,
+                message -> System.out.println("Teacher received unhandled WS type: " + message.getType()));
     }
 
     // --- WebSocket Message Handler Helpers ---
@@ -704,71 +701,61 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
             return; // Handled authentication response
         }
 
-        // If not an auth success response, check if it might be settings or apps response
-        // Check for settings response (heuristic)
-        if (message.getPayload() != null && message.getPayload().containsKey("sessionType")) { 
-            logToStatus("Processing potential settings response...");
-            handleSettingsUpdate(message); 
-            return; // Handled settings response
-        }
-        
-        // Check for apps response (heuristic)
-        if (message.getPayload() != null && message.getPayload().containsKey("apps")) { 
-            logToStatus("Processing potential apps response...");
-            handleAppListUpdate(message);
-            return; // Handled apps response
-        }
-        
-        // Handle other specific responses with request IDs if implemented
-        if (message.getRequestId() != null) { 
-             boolean success = "success".equalsIgnoreCase(message.getStatus());
-             if (success) {
-                 logToStatus("Action successful (Req ID: " + message.getRequestId() + ").");
-                 // UI updates are now primarily handled by broadcast messages (app_added, settings_update)
-             } else {
-                 String errorMsg = "Action failed";
-                 if(message.getPayload() != null && message.getPayload().get("message") instanceof String) {
-                    errorMsg += ": " + message.getPayload().get("message");
-                 }
-                 logToStatus(errorMsg + " (Req ID: " + message.getRequestId() + ").");
-                 showAlert("Action Failed", errorMsg);
-             }
-             return; // Handled response to specific action
-         }
-         
-         // Log if it's some other kind of response we didn't specifically handle
-         logToStatus("Received generic WS response: " + message.getPayload());
+        // Replies to our own requests go straight to their futures (see handleReply);
+        // log any other kind of response
+        logToStatus("Received generic WS response: " + message.getPayload());
     }
     
     // Method to explicitly request data from backend via WS
     private void requestSessionData() {
         if (webSocketService != null && webSocketService.isConnected()) {
              logToStatus("Requesting session settings and apps...");
-             // Assign Request IDs if WebSocketService supports it
-            webSocketService.sendMessage("get_session_settings", null); 
-            webSocketService.sendMessage("get_apps", null);
+            // Both requests are in flight at once; each reply is handled as it arrives
+            handleReply(webSocketService.sendRequest("get_session_settings", null), "Loading session settings",
+                    reply -> handleSettingsUpdate((MessagePayloads.Settings) messageCodec.decodeBody("initial_settings", reply.getPayload())));
+            handleReply(webSocketService.sendRequest("get_apps", null), "Loading blocked apps", this::handleAppListUpdate);
         } else {
             logToStatus("Cannot request session data: WebSocket not connected.");
         }
     }
 
+    // Runs onSuccess on the FX thread for a successful reply; reports errors, timeouts and lost connections
+    private void handleReply(CompletableFuture<WebSocketMessage> request, String action, Consumer<WebSocketMessage> onSuccess) {
+        request.whenComplete((reply, error) -> Platform.runLater(() -> {
+            if (error instanceof TimeoutException) {
+                logToStatus(action + " failed: no reply from server.");
+            } else if (error instanceof CancellationException) {
+                logToStatus(action + " failed: connection closed.");
+            } else if (error != null) {
+                logToStatus(action + " failed: " + error.getMessage());
+            } else if (!"success".equalsIgnoreCase(reply.getStatus())) {
+                String errorMsg = action + " failed";
+                if (reply.getPayload() != null && reply.getPayload().get("message") instanceof String) {
+                    errorMsg += ": " + reply.getPayload().get("message");
+                }
+                logToStatus(errorMsg);
+                showAlert("Action Failed", errorMsg);
+            } else {
+                onSuccess.accept(reply);
+            }
+        }));
+    }
+
     private void handleInitialStudentList(WebSocketMessage message) {
-        if (message.getPayload() != null && message.getPayload().get("students") instanceof List) {
-             // Expecting List<Map<String, String>> for student info
-             List<Map<String, Object>> studentsData = (List<Map<String, Object>>) message.getPayload().get("students");
-            logToStatus("Received initial student list (" + studentsData.size() + ").");
-            connectedStudents.clear();
+        MessagePayloads.StudentList studentList = message.getBody(MessagePayloads.StudentList.class);
+        if (studentList != null) {
+            logToStatus("Received initial student list (" + studentList.students().size() + ").");
+            List<StudentInfo> students = new ArrayList<>(studentList.students().size());
             studentLogs.clear(); // Clear logs for new session
-            studentsData.forEach(studentMap -> {
-                String id = (String) studentMap.get("studentId");
-                String name = (String) studentMap.get("studentName");
-                String roll = (String) studentMap.get("rollNo");
-                String cls = (String) studentMap.get("class");
+            for (StudentInfo student : studentList.students()) {
+                String id = student.studentId();
                 if (id != null) {
-                    connectedStudents.add(new StudentInfo(id, name != null ? name : id, roll, cls));
+                    students.add(student.studentName() != null ? student
+                            : new StudentInfo(id, id, student.rollNo(), student.studentClass()));
                     studentLogs.put(id, new ArrayList<>()); // Initialize log list
                 }
-            });
+            }
+            connectedStudents.setAll(students); // One list change instead of one per student
              if (connectedStudents.isEmpty()) {
                 // Don't add placeholder string to StudentInfo list
                 // studentListView.setPlaceholder(new Label("Waiting for students...")); // Set placeholder instead
@@ -779,15 +766,11 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     private void handleStudentJoined(WebSocketMessage message) {
         Platform.runLater(() -> {
             try {
-                // Assuming payload is a Map<String, Object> containing student details
-                Map<String, Object> payload = (Map<String, Object>) message.getPayload();
-                String studentId = (String) payload.get("studentId");
-                String studentName = (String) payload.get("studentName");
-                String rollNo = (String) payload.get("rollNo"); // Added rollNo
-                String studentClass = (String) payload.get("class"); // Added class
-                
+                StudentInfo newStudent = message.getBody(StudentInfo.class);
+                String studentId = newStudent != null ? newStudent.studentId() : null;
+                String studentName = newStudent != null ? newStudent.studentName() : null;
+
                 if (studentId != null) {
-                    StudentInfo newStudent = new StudentInfo(studentId, studentName, rollNo, studentClass);
                     // Prevent duplicates if message is received multiple times
                     if (!connectedStudents.stream().anyMatch(s -> s.studentId().equals(studentId))) {
                         connectedStudents.add(newStudent);
@@ -812,9 +795,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     private void handleStudentLeft(WebSocketMessage message) {
         Platform.runLater(() -> {
             try {
-                // Assuming payload is Map<String, String> like {"studentId": "someId"}
-                Map<String, Object> payload = (Map<String, Object>) message.getPayload();
-                String studentId = (String) payload.get("studentId");
+                MessagePayloads.StudentLeft left = message.getBody(MessagePayloads.StudentLeft.class);
+                String studentId = left != null ? left.studentId() : null;
                 if (studentId != null) {
                     // Find student info to get name for status message
                     StudentInfo leavingStudent = connectedStudents.stream()
@@ -850,40 +832,35 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     }
 
     // Handles settings updates from initial fetch or server push
-    private void handleSettingsUpdate(WebSocketMessage message) {
+    private void handleSettingsUpdate(MessagePayloads.Settings received) {
         logToStatus("Received settings update from server.");
-        if (message.getPayload() instanceof Map) {
-            SessionSettings settings = parseSessionSettings((Map<String, Object>) message.getPayload());
-            if (settings != null) {
-                logToStatus("Applying received settings: Type="+settings.getSessionType()+", USB="+settings.isBlockUsb());
-                
-                // Store current settings
-                this.currentSessionType = settings.getSessionType();
-                this.currentUsbBlocked = settings.isBlockUsb(); 
+        if (received != null) {
+            SessionSettings settings = received.toSessionSettings();
+            logToStatus("Applying received settings: Type="+settings.getSessionType()+", USB="+settings.isBlockUsb());
+            
+            // Store current settings
+            this.currentSessionType = settings.getSessionType();
+            this.currentUsbBlocked = settings.isBlockUsb(); 
 
-                // Update UI based on settings
-                Platform.runLater(() -> {
-                    // Update website list
-                    currentWebsiteList.setAll(getAllWebsitesFromSettings(settings));
-                    updateWebsiteListLabel(); // Update label based on type
-                    
-                    // Update app list 
-                    currentAppList.setAll(settings.getAppBlacklist() != null ? settings.getAppBlacklist() : Collections.emptyList());
-                    
-                    // Update pane visibility
-                    updateSettingsPanesVisibility();
-                    
-                    // *** ADDED: Apply USB block state based on received settings ***
-                    applyUsbBlockState(settings.isBlockUsb());
-                });
+            // Update UI based on settings
+            Platform.runLater(() -> {
+                // Update website list
+                currentWebsiteList.setAll(getAllWebsitesFromSettings(settings));
+                updateWebsiteListLabel(); // Update label based on type
                 
-                // *** INTEGRATION: Log received settings ***
-                if (sessionLoggerService != null) {
-                    sessionLoggerService.settingsUpdated(settings);
-                }
+                // Update app list 
+                currentAppList.setAll(settings.getAppBlacklist() != null ? settings.getAppBlacklist() : Collections.emptyList());
                 
-            } else {
-                logToStatus("Failed to parse received session settings.");
+                // Update pane visibility
+                updateSettingsPanesVisibility();
+                
+                // *** ADDED: Apply USB block state based on received settings ***
+                applyUsbBlockState(settings.isBlockUsb());
+            });
+            
+            // *** INTEGRATION: Log received settings ***
+            if (sessionLoggerService != null) {
+                sessionLoggerService.settingsUpdated(settings);
             }
         } else {
             logToStatus("Received settings update with invalid payload format.");
@@ -910,8 +887,9 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     
     // Handles confirmation of app addition (from broadcast)
     private void handleAddAppResponse(WebSocketMessage message, boolean success) {
-        if (success && message.getPayload() != null && message.getPayload().containsKey("app_name")) {
-            String appName = (String) message.getPayload().get("app_name");
+        MessagePayloads.AppChange change = message.getBody(MessagePayloads.AppChange.class);
+        if (success && change != null && change.appName() != null) {
+            String appName = change.appName();
             if (!currentAppList.contains(appName)) {
                 currentAppList.add(appName); // Add to UI list if successful
                 logToStatus("App added: " + appName);
@@ -927,8 +905,9 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
     
      // Handles confirmation of app deletion (from broadcast)
     private void handleDeleteAppResponse(WebSocketMessage message, boolean success) {
-        if (success && message.getPayload() != null && message.getPayload().containsKey("app_name")) {
-            String appName = (String) message.getPayload().get("app_name");
+        MessagePayloads.AppChange change = message.getBody(MessagePayloads.AppChange.class);
+        if (success && change != null && change.appName() != null) {
+            String appName = change.appName();
             if (currentAppList.contains(appName)) {
                 boolean removed = currentAppList.remove(appName); // Remove from UI list if successful
                 if (removed) {
@@ -1106,7 +1085,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         payload.put("websites", updatedList); // Send list containing base domains
         
         // Send update via WebSocket
-        webSocketService.sendMessage("set_website_list", payload);
+        handleReply(webSocketService.sendRequest("set_website_list", payload), "Adding website",
+                reply -> logToStatus("Website list updated."));
         
         // Optimistically update UI? Or wait for confirmation?
         // Let's wait for confirmation via settings_update message from server
@@ -1144,7 +1124,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         payload.put("websites", updatedList);
 
         // Send update via WebSocket
-        webSocketService.sendMessage("set_website_list", payload);
+        handleReply(webSocketService.sendRequest("set_website_list", payload), "Deleting website",
+                reply -> logToStatus("Website list updated."));
         
          // Optimistically update UI? Or wait for confirmation?
          // Let's wait for confirmation via settings_update message from server
@@ -1176,7 +1157,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         logToStatus("Requesting to add app: " + processedAppName);
         Map<String, Object> payload = new HashMap<>();
         payload.put("app_name", processedAppName); // Send processed name
-        webSocketService.sendMessage("add_app", payload);
+        handleReply(webSocketService.sendRequest("add_app", payload), "Adding app",
+                reply -> logToStatus("App add confirmed."));
     }
 
     @FXML
@@ -1192,7 +1174,8 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         logToStatus("Requesting to delete app: " + selectedApp);
         Map<String, Object> payload = new HashMap<>();
         payload.put("app_name", selectedApp);
-        webSocketService.sendMessage("delete_app", payload);
+        handleReply(webSocketService.sendRequest("delete_app", payload), "Deleting app",
+                reply -> logToStatus("App removal confirmed."));
          // Wait for response/broadcast before updating list
     }
 
@@ -1247,6 +1230,20 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         });
     }
 
+    // Asks the student's agent for its top processes; the answer arrives as a "resource_usage" student_data log entry
+    private void requestResourceUsage(StudentInfo student) {
+        if (webSocketService == null || !webSocketService.isAuthenticated()) return;
+        Map<String, Object> payload = new HashMap<>();
+        payload.put("targetStudentId", student.studentId());
+        payload.put("commandType", "request_resource_usage");
+        Map<String, Object> commandData = new HashMap<>();
+        commandData.put("top_n", 5);
+        commandData.put("window_s", 60);
+        payload.put("commandData", commandData);
+        handleReply(webSocketService.sendRequest("teacher_command", payload), "Requesting resource usage",
+                reply -> logToStatus("Resource usage requested from " + student.studentId() + "."));
+    }
+
     // --- Student Detail Window --- 
     private void openStudentDetailWindow(StudentInfo student) {
         try {
@@ -1254,7 +1251,11 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
             Parent root = loader.load();
 
             StudentDetailController controller = loader.getController();
-            List<String> logs = studentLogs.getOrDefault(student.studentId(), List.of("No logs available."));
+            List<String> logs = new ArrayList<>(studentLogs.getOrDefault(student.studentId(), List.of("No logs available.")));
+            long distinctDomains = domainAnalytics.getDistinctDomains(student.studentId());
+            if (distinctDomains >= 0) {
+                logs.add(0, "Distinct domains visited this session: ~" + distinctDomains);
+            }
             controller.setStudentDetails(student);
             controller.setLogs(logs);
 
@@ -1274,24 +1275,31 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
 
     // Handle student data messages (logs, errors, etc.)
     private void handleStudentData(WebSocketMessage message) {
-        if (message.getPayload() == null) return;
-        Map<String, Object> payload = message.getPayload();
-        String studentId = (String) payload.get("studentId");
-        String updateType = (String) payload.get("updateType");
-        Object data = payload.get("data"); // Can be Map or other type
+        MessagePayloads.StudentData studentData = message.getBody(MessagePayloads.StudentData.class);
+        if (studentData == null) return;
+        String studentId = studentData.studentId();
+        String updateType = studentData.updateType();
+        Object data = studentData.data(); // Can be Map or other type
 
         if (studentId == null || updateType == null) {
             System.err.println("Received student_data message with missing fields.");
             return;
         }
+        if ("domain_stats".equals(updateType)) {
+            handleDomainStats(studentId, data);
+            return;
+        }
 
         // Format the log message
         String timeStamp = java.time.LocalTime.now().format(java.time.format.DateTimeFormatter.ofPattern("HH:mm:ss"));
         String logEntry = String.format("[%s] [%s] %s", timeStamp, updateType.toUpperCase(), data); // Simple format
 
         // Add log to the specific student's list IN MEMORY (for detail view)
-        List<String> logs = studentLogs.computeIfAbsent(studentId, k -> new ArrayList<>());
-        logs.add(logEntry);
+        // Plain visits are summarised by the domain sketches; keeping each one here would grow without bound
+        if (!"website_visit".equals(updateType)) {
+            List<String> logs = studentLogs.computeIfAbsent(studentId, k -> new ArrayList<>());
+            logs.add(logEntry);
+        }
         
         // *** INTEGRATION: Log to individual student file ***
         if (sessionLoggerService != null) {
@@ -1315,6 +1323,35 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         // TODO: If the detail window for this student is open, update it.
     }
 
+    // Merge a student's website activity sketch into the class-wide view
+    private void handleDomainStats(String studentId, Object data) {
+        if (!(data instanceof Map) || !(((Map<?, ?>) data).get("sketch") instanceof String)) {
+            System.err.println("Received domain_stats from " + studentId + " without a sketch.");
+            return;
+        }
+        try {
+            DomainActivity snapshot = DomainActivity.decode((String) ((Map<?, ?>) data).get("sketch"));
+            domainAnalytics.merge(studentId, snapshot);
+        } catch (IOException | IllegalArgumentException e) {
+            System.err.println("Ignoring bad domain_stats from " + studentId + ": " + e.getMessage());
+            return;
+        }
+        refreshDomainAnalytics();
+    }
+
+    private void refreshDomainAnalytics() {
+        if (topDomainsListView == null) return;
+        List<String> rows = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : domainAnalytics.topDomains(TOP_DOMAINS_SHOWN)) {
+            rows.add(String.format("%6d  %s", entry.getValue(), entry.getKey()));
+        }
+        topDomainsListView.getItems().setAll(rows);
+        domainSummaryLabel.setText(domainAnalytics.getSnapshotCount() == 0
+                ? "No website activity reported yet."
+                : String.format("~%d distinct domains across the class, %d visits.",
+                        domainAnalytics.getDistinctDomains(), domainAnalytics.getTotalVisits()));
+    }
+
     // ADDED: Method for the calling controller (e.g., Main or Config) to set the type
     public void setDesiredSessionType(String sessionType) {
         System.out.println("TeacherDashboardController: Desired session type set to: " + sessionType);
@@ -1352,51 +1389,6 @@ public class TeacherDashboardController implements ServiceAwareController, WebSo
         return normalized;
     }
 
-    // Helper to parse settings from a payload Map (copied from StudentMonitorController)
-    private SessionSettings parseSessionSettings(Map<String, Object> payload) {
-         SessionSettings settings = new SessionSettings(); // Create a new DTO
-         // Use safe casting and null checks
-         Object sessionType = payload.get("sessionType");
-         if (sessionType instanceof String) settings.setSessionType((String) sessionType);
-         
-         Object blockUsb = payload.get("blockUsb");
-         if (blockUsb instanceof Boolean) settings.setBlockUsb((Boolean) blockUsb);
-         
-         Object webBlacklist = payload.get("websiteBlacklist");
-         if (webBlacklist instanceof List) {
-             try {
-                 @SuppressWarnings("unchecked")
-                 List<String> list = (List<String>) webBlacklist;
-                 settings.setWebsiteBlacklist(list);
-             } catch (ClassCastException e) {
-                 logToStatus("Error parsing websiteBlacklist: " + e.getMessage());
-             }
-         }
-         
-         Object webWhitelist = payload.get("websiteWhitelist");
-          if (webWhitelist instanceof List) {
-             try {
-                 @SuppressWarnings("unchecked")
-                 List<String> list = (List<String>) webWhitelist;
-                 settings.setWebsiteWhitelist(list);
-             } catch (ClassCastException e) {
-                 logToStatus("Error parsing websiteWhitelist: " + e.getMessage());
-             }
-         }
-         
-         Object appBlacklist = payload.get("appBlacklist");
-          if (appBlacklist instanceof List) {
-             try {
-                 @SuppressWarnings("unchecked")
-                 List<String> list = (List<String>) appBlacklist;
-                 settings.setAppBlacklist(list);
-             } catch (ClassCastException e) {
-                 logToStatus("Error parsing appBlacklist: " + e.getMessage());
-             }
-         }
-         return settings;
-    }
-
     // Helper to extract relevant website list based on mode (copied from StudentMonitorController, adapted)
     private List<String> getAllWebsitesFromSettings(SessionSettings settings) {
         if (settings == null) return List.of();
@@ -0,0 +1,55 @@
+package com.cmms.utils;
+
+import java.net.InetSocketAddress;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Per-machine settings of the student client, read from environment variables like {@code MONGODB_URI}.
+ * Everything defaults to the behaviour the client had before the setting existed.
+ */
+public class ClientSettings {
+
+    /**
+     * {@code CMMS_WEBSITE_ENFORCEMENT}: how blocked websites are enforced, "hosts" (default), "dns" or "proxy".
+     */
+    public static String getWebsiteEnforcement() {
+        String value = System.getenv("CMMS_WEBSITE_ENFORCEMENT");
+        return value != null && !value.isBlank() ? value.trim().toLowerCase() : "hosts";
+    }
+
+    /**
+     * {@code CMMS_DNS_UPSTREAM}: "host" or "host:port" of the server the DNS resolver forwards to.
+     *
+     * @return The address, or null to use the server the system was configured with.
+     */
+    public static InetSocketAddress getDnsUpstream() {
+        String value = System.getenv("CMMS_DNS_UPSTREAM");
+        if (value == null || value.isBlank()) return null;
+        value = value.trim();
+        int colon = value.lastIndexOf(':');
+        if (colon > 0 && value.indexOf(':') == colon) {
+            return new InetSocketAddress(value.substring(0, colon), Integer.parseInt(value.substring(colon + 1)));
+        }
+        return new InetSocketAddress(value, 53);
+    }
+
+    /**
+     * {@code CMMS_BLOCKLIST_FILE}: a category blocklist enforced in the blacklist modes on top of the teacher's
+     * list, either a CMMS blocklist file or a plain/hosts-format list (imported on first use).
+     *
+     * @return The path, or null if none is set.
+     */
+    public static Path getBlocklistFile() {
+        String value = System.getenv("CMMS_BLOCKLIST_FILE");
+        return value != null && !value.isBlank() ? Paths.get(value.trim()) : null;
+    }
+
+    /**
+     * {@code CMMS_TRAFFIC_CAPTURE}: "true" to capture DNS queries and TLS server names and report visited
+     * websites to the teacher. Off by default; needs Npcap and administrator rights.
+     */
+    public static boolean isTrafficCaptureEnabled() {
+        return "true".equalsIgnoreCase(System.getenv("CMMS_TRAFFIC_CAPTURE"));
+    }
+}